@@ -0,0 +1,97 @@
+package com.emi.bench;
+
+import com.emi.service.AmortizationEngine;
+import com.emi.service.AmortizationSchedule;
+import com.emi.service.LoanTerms;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of AmortizationEngine's exact (BigDecimal) and fast (paise) modes
+ * One 20-year home loan schedule, its EMI alone, and a rate revision batch of
+ * BATCH_LOANS loans computed in parallel
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AmortizationBenchmark {
+
+    static final int TENURE_MONTHS = 240;
+    static final int BATCH_LOANS = 10_000;
+
+    private final AmortizationEngine engine = new AmortizationEngine();
+    private LoanTerms loan;
+    private long principalPaise;
+    private int rateBps;
+    private long[] rows;
+    private List<LoanTerms> batch;
+
+    @Setup
+    public void setUp() {
+        loan = new LoanTerms(new BigDecimal("5000000.00"), new BigDecimal("8.65"), TENURE_MONTHS);
+        principalPaise = 500_000_000L;
+        rateBps = 865;
+        rows = new long[TENURE_MONTHS * AmortizationEngine.COLUMNS];
+
+        // What-if schedules for a rate revision: many loans, tenures from 1 to 30 years
+        batch = new ArrayList<>(BATCH_LOANS);
+        for (int i = 0; i < BATCH_LOANS; i++) {
+            batch.add(new LoanTerms(BigDecimal.valueOf(200_000 + (i % 500) * 10_000L),
+                BigDecimal.valueOf(750 + i % 300, 2), 12 + i % 349));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal emiExact() {
+        return engine.emi(loan.getPrincipal(), loan.getAnnualRatePercent(), TENURE_MONTHS);
+    }
+
+    @Benchmark
+    public long emiFast() {
+        return engine.emi(principalPaise, rateBps, TENURE_MONTHS);
+    }
+
+    @Benchmark
+    public AmortizationSchedule scheduleExact() {
+        return engine.schedule(loan, AmortizationEngine.Mode.EXACT);
+    }
+
+    @Benchmark
+    public AmortizationSchedule scheduleFast() {
+        return engine.schedule(loan, AmortizationEngine.Mode.FAST);
+    }
+
+    @Benchmark
+    public long scheduleFastPreallocated() {
+        return engine.schedule(principalPaise, rateBps, TENURE_MONTHS, rows);
+    }
+
+    @Benchmark
+    public AmortizationSchedule[] batchExact() {
+        return engine.schedules(batch, AmortizationEngine.Mode.EXACT);
+    }
+
+    @Benchmark
+    public AmortizationSchedule[] batchFast() {
+        return engine.schedules(batch, AmortizationEngine.Mode.FAST);
+    }
+}
@@ -0,0 +1,198 @@
+package com.emi.bench;
+
+import com.emi.dao.LoanDao;
+import com.emi.dao.LoanDaoImpl;
+import com.emi.dao.StaleReceivableException;
+import com.emi.model.Allocation;
+import com.emi.model.ReceiptPayment;
+import com.emi.model.Receivable;
+import com.emi.service.BulkPaymentReport;
+import com.emi.service.BulkPaymentServiceImpl;
+import com.emi.service.EmiServiceImpl;
+import com.emi.service.SnowflakeReceiptNumberGenerator;
+import com.emi.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.query.MutationQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the bulk posting flow against embedded H2
+ * Compares the StatelessSession write path of LoanDaoImpl with the stateful
+ * Session path it replaced (session.save with flush/clear every batch):
+ * postFile runs a file of one payment per account through
+ * BulkPaymentServiceImpl, savePayments writes the same rows already allocated.
+ * Each invocation is a single shot against freshly restored receivables.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Dhibernate.config=hibernate-h2.cfg.xml", "-Dpool.register.mbeans=false"})
+public class BulkPostingBenchmark {
+
+    static final int ACCOUNTS = 2000;
+
+    @Param({"stateless", "stateful"})
+    public String writePath;
+
+    @Param({"500"})
+    public int batchSize;
+
+    private LoanDao loanDao;
+    private BulkPaymentServiceImpl bulkPaymentService;
+    private String paymentFile;
+    private List<Allocation> allocations;
+    private List<ReceiptPayment> receipts;
+
+    @Setup
+    public void setUp() {
+        System.out.println(HibernateUtil.warmUp());
+
+        StringBuilder file = new StringBuilder();
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                String account = String.valueOf(100000 + i);
+                session.persist(new Receivable(account, new BigDecimal("5000.00"),
+                    new BigDecimal("150.00"), new BigDecimal("5150.00")));
+                file.append(account).append(",5150.00,NACH\n");
+            }
+            transaction.commit();
+        }
+        paymentFile = file.toString();
+
+        loanDao = "stateful".equals(writePath) ? new StatefulLoanDao() : new LoanDaoImpl();
+        bulkPaymentService = new BulkPaymentServiceImpl(
+            new EmiServiceImpl(loanDao, new SnowflakeReceiptNumberGenerator(1)), loanDao, batchSize);
+    }
+
+    /**
+     * Undo the previous run: restore every receivable and drop its receipts and allocations
+     */
+    @Setup(Level.Invocation)
+    public void restore() {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.createNativeMutationQuery("DELETE FROM LMS_RECEIPTPAYMENT_DTL_POOJA").executeUpdate();
+            session.createNativeMutationQuery("DELETE FROM LMS_ALLOCATION_DTL_POOJA").executeUpdate();
+            session.createNativeMutationQuery("UPDATE LMS_RECEIVABLEPAYBLE_DTL_POOJA "
+                + "SET emi_amount = 5000.00, principal_amount = 5000.00, interest_amount = 0, penalty = 150.00, "
+                + "total_amount = 5150.00").executeUpdate();
+            transaction.commit();
+        }
+
+        // Fresh rows every time: inserting assigns ids to these objects
+        LocalDateTime now = LocalDateTime.now();
+        allocations = new ArrayList<>(ACCOUNTS);
+        receipts = new ArrayList<>(ACCOUNTS);
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            for (Receivable receivable : session.createQuery("FROM Receivable", Receivable.class).list()) {
+                Allocation allocation = new Allocation(receivable.getLoanAccountNo(), receivable.getId(),
+                    receivable.getPenalty(), receivable.getInterestAmount(), receivable.getPrincipalAmount(), now);
+                // As EmiServiceImpl does, so both write paths run the version check
+                allocation.setReceivableVersion(receivable.getVersion());
+                allocations.add(allocation);
+                receipts.add(new ReceiptPayment(receivable.getLoanAccountNo(), receivable.getTotalAmount(), "NACH",
+                    "RCP-BENCH-" + receivable.getId()));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @Benchmark
+    public BulkPaymentReport postFile() throws IOException {
+        BulkPaymentReport report = bulkPaymentService.process(new StringReader(paymentFile));
+        if (report.getPostedRows() != ACCOUNTS) {
+            throw new IllegalStateException("Posted " + report.getPostedRows() + " of " + ACCOUNTS + " rows");
+        }
+        return report;
+    }
+
+    @Benchmark
+    public int savePayments() {
+        loanDao.savePayments(allocations, receipts, batchSize);
+        return allocations.size();
+    }
+
+    /**
+     * The bulk write path as it was before LoanDaoImpl moved to StatelessSession:
+     * a stateful Session that saves every row into the persistence context and
+     * flushes and clears it once per batch
+     */
+    static class StatefulLoanDao extends LoanDaoImpl {
+
+        @Override
+        public void savePayments(List<Allocation> allocations, List<ReceiptPayment> receiptPayments,
+                                 int batchSize) {
+            Session session = HibernateUtil.getSessionFactory().openSession();
+            Transaction transaction = null;
+            try {
+                session.setJdbcBatchSize(batchSize);
+                transaction = session.beginTransaction();
+
+                MutationQuery settle = session.createNamedMutationQuery(Receivable.SETTLE_BY_ID);
+                int rows = 0;
+                for (Allocation allocation : allocations) {
+                    settle.setParameter("id", allocation.getReceivableId());
+                    settle.setParameter("penalty", allocation.getAllocatedPenalty());
+                    settle.setParameter("interest", allocation.getAllocatedInterest());
+                    settle.setParameter("principal", allocation.getAllocatedPrincipal());
+                    settle.setParameter("version", allocation.getReceivableVersion(), Long.class);
+                    if (settle.executeUpdate() == 0) {
+                        throw new StaleReceivableException(allocation.getLoanAccountNo(), null);
+                    }
+                    session.save(allocation);
+                    if (++rows % batchSize == 0) {
+                        session.flush();
+                        session.clear();
+                    }
+                }
+                for (ReceiptPayment receiptPayment : receiptPayments) {
+                    session.save(receiptPayment);
+                    if (++rows % batchSize == 0) {
+                        session.flush();
+                        session.clear();
+                    }
+                }
+
+                transaction.commit();
+            } catch (RuntimeException e) {
+                if (transaction != null && transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            } finally {
+                session.close();
+            }
+        }
+    }
+}
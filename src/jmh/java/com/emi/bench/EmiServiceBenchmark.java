@@ -0,0 +1,139 @@
+package com.emi.bench;
+
+import com.emi.StubLoanDao;
+import com.emi.model.Allocation;
+import com.emi.model.Receivable;
+import com.emi.service.AllocationEngine;
+import com.emi.service.EmiServiceImpl;
+import com.emi.service.PaymentResult;
+import com.emi.service.SnowflakeReceiptNumberGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the EmiService hot paths without a database
+ * The LoanDao is an in-memory stand-in, so these isolate the service logic
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmiServiceBenchmark {
+
+    static final int ACCOUNTS = 1000;
+    static final int SCHEDULE_INSTALLMENTS = 300;
+
+    private EmiServiceImpl emiService;
+    private String[] accounts;
+    private Receivable receivable;
+    private BigDecimal paymentAmount;
+    private List<Receivable> schedule;
+    private BigDecimal scheduleAmount;
+    private AllocationEngine allocationEngine;
+    private long[] scheduleDues;
+    private long[] scheduleAllocated;
+    private long schedulePaise;
+
+    @Setup
+    public void setUp() {
+        StubLoanDao loanDao = new StubLoanDao();
+        loanDao.discardWrites = true;
+        accounts = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = String.valueOf(100000 + i);
+            loanDao.addReceivable(new Receivable(accounts[i], new BigDecimal("5000.00"),
+                new BigDecimal("150.00"), new BigDecimal("5150.00")));
+        }
+        emiService = new EmiServiceImpl(loanDao, new SnowflakeReceiptNumberGenerator(1));
+        receivable = loanDao.findReceivableByLoanAccountNo(accounts[0]);
+        paymentAmount = new BigDecimal("5150.00");
+
+        // A long loan with every installment overdue; the payment clears all but part of the last one
+        schedule = new ArrayList<>(SCHEDULE_INSTALLMENTS);
+        LocalDate dueDate = LocalDate.of(2000, 1, 5);
+        for (int i = 0; i < SCHEDULE_INSTALLMENTS; i++) {
+            BigDecimal principal = new BigDecimal("3200.00").add(BigDecimal.valueOf(i));
+            BigDecimal interest = new BigDecimal("1800.00").subtract(BigDecimal.valueOf(i));
+            BigDecimal penalty = i % 5 == 0 ? new BigDecimal("150.00") : BigDecimal.ZERO;
+            Receivable installment = new Receivable("200000", dueDate.plusMonths(i), principal, interest, penalty);
+            installment.setId((long) i + 1);
+            schedule.add(installment);
+        }
+        scheduleAmount = Receivable.summaryOf(schedule).getTotalAmount().subtract(new BigDecimal("999.99"));
+
+        allocationEngine = new AllocationEngine(AllocationEngine.DEFAULT_WATERFALL);
+        scheduleDues = new long[SCHEDULE_INSTALLMENTS * AllocationEngine.COMPONENTS];
+        for (int i = 0; i < SCHEDULE_INSTALLMENTS; i++) {
+            Receivable installment = schedule.get(i);
+            scheduleDues[i * 3] = AllocationEngine.toPaise(installment.getPenalty());
+            scheduleDues[i * 3 + 1] = AllocationEngine.toPaise(installment.getInterestAmount());
+            scheduleDues[i * 3 + 2] = AllocationEngine.toPaise(installment.getPrincipalAmount());
+        }
+        scheduleAllocated = new long[scheduleDues.length];
+        schedulePaise = AllocationEngine.toPaise(scheduleAmount);
+    }
+
+    private String randomAccount() {
+        return accounts[ThreadLocalRandom.current().nextInt(ACCOUNTS)];
+    }
+
+    @Benchmark
+    public Allocation calculateAllocation() {
+        return emiService.calculateAllocation(receivable, paymentAmount);
+    }
+
+    @Benchmark
+    public List<Allocation> calculateAllocationByAccount() {
+        return emiService.calculateAllocation(randomAccount(), paymentAmount);
+    }
+
+    @Benchmark
+    public List<Allocation> calculateAllocationAcrossSchedule() {
+        return emiService.calculateAllocation(schedule, scheduleAmount);
+    }
+
+    @Benchmark
+    public long allocationEngineAcrossSchedule() {
+        return allocationEngine.allocate(scheduleDues, SCHEDULE_INSTALLMENTS, schedulePaise, scheduleAllocated);
+    }
+
+    @Benchmark
+    public String generateReceiptNumber() {
+        return emiService.generateReceiptNumber();
+    }
+
+    @Benchmark
+    public boolean validateLoanAccountValid() {
+        return emiService.validateLoanAccount("9876543210");
+    }
+
+    @Benchmark
+    public boolean validateLoanAccountInvalid() {
+        return emiService.validateLoanAccount("98765A3210");
+    }
+
+    @Benchmark
+    public PaymentResult processPayment() {
+        return emiService.processPayment(randomAccount(), paymentAmount, "CASH");
+    }
+}
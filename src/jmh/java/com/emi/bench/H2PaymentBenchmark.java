@@ -0,0 +1,137 @@
+package com.emi.bench;
+
+import com.emi.dao.LoanDaoImpl;
+import com.emi.dao.PendingBalanceMismatch;
+import com.emi.model.Receivable;
+import com.emi.service.EmiServiceImpl;
+import com.emi.service.PaymentResult;
+import com.emi.service.SnowflakeReceiptNumberGenerator;
+import com.emi.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JMH benchmarks for the full payment path against embedded H2
+ * Runs LoanDaoImpl, Hibernate and the HikariCP pool end to end with the
+ * hibernate-h2.cfg.xml profile; numbers include JDBC and transaction overhead
+ * but not network latency to Oracle. A payment settles its receivable, so
+ * processPayment walks through the accounts in turn and restores them all
+ * after every ACCOUNTS payments (one UPDATE of the receivables and one of
+ * their pending balances, amortised into the score).
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dhibernate.config=hibernate-h2.cfg.xml", "-Dpool.register.mbeans=false"})
+public class H2PaymentBenchmark {
+
+    static final int ACCOUNTS = 1000;
+
+    private LoanDaoImpl loanDao;
+    private EmiServiceImpl emiService;
+    private String[] accounts;
+    private BigDecimal paymentAmount;
+    private final AtomicInteger nextPayableAccount = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        System.out.println(HibernateUtil.warmUp());
+
+        accounts = new String[ACCOUNTS];
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                accounts[i] = String.valueOf(100000 + i);
+                session.persist(new Receivable(accounts[i], new BigDecimal("5000.00"),
+                    new BigDecimal("150.00"), new BigDecimal("5150.00")));
+            }
+            transaction.commit();
+        }
+
+        loanDao = new LoanDaoImpl();
+        loanDao.rebuildPendingBalances(Arrays.asList(accounts));
+        emiService = new EmiServiceImpl(loanDao, new SnowflakeReceiptNumberGenerator(1));
+        paymentAmount = new BigDecimal("5150.00");
+    }
+
+    /**
+     * Drop rows written by the previous iteration so table growth does not skew
+     * results, and restore the receivables it settled
+     */
+    @Setup(Level.Iteration)
+    public void clearPayments() {
+        nextPayableAccount.set(0);
+        restoreReceivables();
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.createNativeMutationQuery("DELETE FROM LMS_RECEIPTPAYMENT_DTL_POOJA").executeUpdate();
+            session.createNativeMutationQuery("DELETE FROM LMS_ALLOCATION_DTL_POOJA").executeUpdate();
+            transaction.commit();
+        }
+    }
+
+    private void restoreReceivables() {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.createNativeMutationQuery("UPDATE LMS_RECEIVABLEPAYBLE_DTL_POOJA "
+                + "SET emi_amount = 5000.00, principal_amount = 5000.00, interest_amount = 0, penalty = 150.00, "
+                + "total_amount = 5150.00").executeUpdate();
+            // Every account has the one installment restored above
+            session.createNativeMutationQuery("UPDATE LMS_PENDING_BALANCE_POOJA "
+                + "SET total_pending = 5150.00, updated_date = CURRENT_TIMESTAMP").executeUpdate();
+            transaction.commit();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        List<PendingBalanceMismatch> mismatches = loanDao.verifyPendingBalances();
+        HibernateUtil.shutdown();
+        if (!mismatches.isEmpty()) {
+            throw new IllegalStateException(mismatches.size() + " pending balances drifted, e.g. " + mismatches.get(0));
+        }
+    }
+
+    private String randomAccount() {
+        return accounts[ThreadLocalRandom.current().nextInt(ACCOUNTS)];
+    }
+
+    @Benchmark
+    public Receivable getPendingEmiDetails() {
+        return emiService.getPendingEmiDetails(randomAccount());
+    }
+
+    @Benchmark
+    public PaymentResult processPayment() {
+        int payment = nextPayableAccount.getAndIncrement();
+        if (payment > 0 && payment % ACCOUNTS == 0) {
+            restoreReceivables();
+        }
+        String account = accounts[payment % ACCOUNTS];
+        return emiService.processPayment(account, paymentAmount, "CASH");
+    }
+}
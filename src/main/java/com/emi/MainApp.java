@@ -1,19 +1,68 @@
 package com.emi;
 
 import com.emi.controller.EmiController;
+import com.emi.controller.EmiHttpServer;
+import com.emi.dao.LoanDao;
+import com.emi.dao.LoanDaoFactory;
+import com.emi.dao.PendingBalanceMismatch;
+import com.emi.service.BulkPaymentReport;
+import com.emi.service.BulkPaymentServiceImpl;
+import com.emi.service.EmiServiceFactory;
+import com.emi.service.ExportFormat;
+import com.emi.service.PenaltyAccrualReport;
+import com.emi.service.PenaltyAccrualServiceImpl;
+import com.emi.service.ReceivableExportServiceImpl;
+import com.emi.util.AppConfig;
+import com.emi.util.HibernateUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 /**
  * Main application entry point for EMI Payment System
  * Console-based application for managing EMI payments
+ * Run with "--bulk file.csv [batchSize]" to post a payment file in batch mode
+ * Run with "--server [port]" to serve many branch terminals over HTTP
+ * Run with "--export file [csv|fixed]" to export all pending receivables
+ * Run with "--balances [verify|rebuild]" to check the per-account pending balances
+ * Run with "--penalties [yyyy-MM-dd]" to accrue overdue penalties up to a business date
  *
  * @author EMI Payment System
  * @version 1.0
  */
 public class MainApp {
 
+    private static final Logger LOG = LoggerFactory.getLogger(MainApp.class);
+
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--bulk")) {
+            runBulk(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--server")) {
+            runServer(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--export")) {
+            runExport(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--balances")) {
+            runBalances(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--penalties")) {
+            runPenalties(args);
+            return;
+        }
+
         System.out.println("=== EMI PAYMENT SYSTEM ===");
+        warmUp();
 
         Scanner scanner = new Scanner(System.in);
         EmiController controller = new EmiController();
@@ -24,8 +73,11 @@ public class MainApp {
             while (continueRunning) {
                 System.out.println("\n1. Make Payment");
                 System.out.println("2. Check Pending EMI");
-                System.out.println("3. Exit");
-                System.out.print("Choose an option (1-3): ");
+                System.out.println("3. Show Metrics");
+                System.out.println("4. Export Metrics");
+                System.out.println("5. Payment History");
+                System.out.println("6. Exit");
+                System.out.print("Choose an option (1-6): ");
 
                 int choice = scanner.nextInt();
                 scanner.nextLine(); // Consume newline
@@ -38,6 +90,15 @@ public class MainApp {
                         controller.checkPendingEmi(scanner);
                         break;
                     case 3:
+                        controller.showMetrics();
+                        break;
+                    case 4:
+                        controller.exportMetrics();
+                        break;
+                    case 5:
+                        controller.showPaymentHistory(scanner);
+                        break;
+                    case 6:
                         continueRunning = false;
                         System.out.println("Thank you for using EMI Payment System!");
                         break;
@@ -47,9 +108,207 @@ public class MainApp {
             }
         } catch (Exception e) {
             System.err.println("An error occurred: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Console session failed", e);
         } finally {
             scanner.close();
+            LoanDaoFactory.shutdown();
+            HibernateUtil.shutdown();
+        }
+    }
+
+    /**
+     * Warm up Hibernate and the connection pool before the first request
+     * A failure is reported but not fatal; the first request retries the bootstrap.
+     * Nothing to warm up when the LoanDao is held in memory (dao.type=memory)
+     */
+    private static void warmUp() {
+        if (!LoanDaoFactory.usesDatabase()) {
+            return;
+        }
+        try {
+            System.out.println(HibernateUtil.warmUp());
+        } catch (Exception e) {
+            LOG.warn("Warm-up failed, will retry on first request: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Run bulk payment ingestion for a CSV file
+     *
+     * @param args command line arguments: --bulk file.csv [batchSize]
+     */
+    private static void runBulk(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: MainApp --bulk <file.csv> [batchSize]");
+            return;
+        }
+
+        System.out.println("=== BULK PAYMENT INGESTION ===");
+        try {
+            if (LoanDaoFactory.usesDatabase()) {
+                System.out.println(HibernateUtil.warmUp());
+            }
+
+            BulkPaymentServiceImpl bulkService = args.length > 2
+                ? new BulkPaymentServiceImpl(Integer.parseInt(args[2]))
+                : new BulkPaymentServiceImpl();
+            BulkPaymentReport report = bulkService.processFile(Paths.get(args[1]));
+
+            System.out.println("Rows Read: " + report.getTotalRows());
+            System.out.println("Rows Posted: " + report.getPostedRows());
+            System.out.println("Rows Failed: " + report.getFailedRows());
+            System.out.println("Elapsed (ms): " + report.getElapsedMillis());
+            System.out.println(String.format("Rows/second: %.1f", report.getRowsPerSecond()));
+            for (BulkPaymentReport.RowFailure failure : report.getFailures()) {
+                System.out.println("FAILED " + failure);
+            }
+        } catch (Exception e) {
+            System.err.println("Bulk ingestion failed: " + e.getMessage());
+            LOG.error("Bulk ingestion failed", e);
+        } finally {
+            LoanDaoFactory.shutdown();
+            HibernateUtil.shutdown();
+        }
+    }
+
+    /**
+     * Export the pending receivables of the whole loan book to a file
+     *
+     * @param args command line arguments: --export file [csv|fixed]
+     */
+    private static void runExport(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: MainApp --export <file> [csv|fixed]");
+            return;
+        }
+
+        System.out.println("=== PENDING RECEIVABLE EXPORT ===");
+        try {
+            ExportFormat format = args.length > 2 ? ExportFormat.parse(args[2]) : ExportFormat.CSV;
+            if (LoanDaoFactory.usesDatabase()) {
+                System.out.println(HibernateUtil.warmUp());
+            }
+
+            long start = System.nanoTime();
+            long rows = new ReceivableExportServiceImpl().exportFile(Paths.get(args[1]), format);
+            System.out.println("Rows Exported: " + rows);
+            System.out.println("Elapsed (ms): " + (System.nanoTime() - start) / 1_000_000L);
+        } catch (Exception e) {
+            System.err.println("Export failed: " + e.getMessage());
+            LOG.error("Export failed", e);
+        } finally {
+            LoanDaoFactory.shutdown();
+            HibernateUtil.shutdown();
+        }
+    }
+
+    /**
+     * Compare the recorded pending balances with the receivables and, with
+     * "rebuild", recompute the accounts that differ
+     *
+     * @param args command line arguments: --balances [verify|rebuild]
+     */
+    private static void runBalances(String[] args) {
+        String mode = args.length > 1 ? args[1] : "verify";
+        if (!mode.equals("verify") && !mode.equals("rebuild")) {
+            System.err.println("Usage: MainApp --balances [verify|rebuild]");
+            return;
+        }
+
+        System.out.println("=== PENDING BALANCE CHECK ===");
+        try {
+            if (LoanDaoFactory.usesDatabase()) {
+                System.out.println(HibernateUtil.warmUp());
+            }
+
+            LoanDao loanDao = LoanDaoFactory.getLoanDao();
+            long start = System.nanoTime();
+            List<PendingBalanceMismatch> mismatches = loanDao.verifyPendingBalances();
+            for (PendingBalanceMismatch mismatch : mismatches) {
+                System.out.println("MISMATCH " + mismatch);
+            }
+            System.out.println("Accounts Mismatched: " + mismatches.size());
+            if (mode.equals("rebuild") && !mismatches.isEmpty()) {
+                List<String> loanAccountNos = new ArrayList<>(mismatches.size());
+                for (PendingBalanceMismatch mismatch : mismatches) {
+                    loanAccountNos.add(mismatch.getLoanAccountNo());
+                }
+                System.out.println("Accounts Rebuilt: " + loanDao.rebuildPendingBalances(loanAccountNos));
+            }
+            System.out.println("Elapsed (ms): " + (System.nanoTime() - start) / 1_000_000L);
+        } catch (Exception e) {
+            System.err.println("Pending balance check failed: " + e.getMessage());
+            LOG.error("Pending balance check failed", e);
+        } finally {
+            LoanDaoFactory.shutdown();
+            HibernateUtil.shutdown();
+        }
+    }
+
+    /**
+     * Accrue the penalty on overdue installments up to a business date
+     * Running a date again resumes the partitions that did not finish
+     *
+     * @param args command line arguments: --penalties [yyyy-MM-dd], today by default
+     */
+    private static void runPenalties(String[] args) {
+        if (!LoanDaoFactory.usesDatabase()) {
+            System.err.println("Penalty accrual needs dao.type=database");
+            return;
+        }
+
+        System.out.println("=== PENALTY ACCRUAL ===");
+        try {
+            LocalDate businessDate = args.length > 1 ? LocalDate.parse(args[1]) : LocalDate.now();
+            System.out.println(HibernateUtil.warmUp());
+
+            PenaltyAccrualReport report = new PenaltyAccrualServiceImpl().accrue(businessDate);
+            System.out.println("Business Date: " + report.getBusinessDate());
+            System.out.println("Partitions: " + report.getPartitions()
+                + " (" + report.getResumedPartitions() + " done by an earlier run)");
+            System.out.println("Installments Accrued: " + report.getInstallmentsAccrued());
+            System.out.println("Penalty Accrued: " + report.getPenaltyAccrued());
+            System.out.println("Failed Partitions: " + report.getFailedPartitions());
+            for (PenaltyAccrualReport.PartitionFailure failure : report.getFailures()) {
+                System.out.println("  " + failure);
+            }
+            System.out.println("Elapsed (ms): " + report.getElapsedMillis());
+        } catch (Exception e) {
+            System.err.println("Penalty accrual failed: " + e.getMessage());
+            LOG.error("Penalty accrual failed", e);
+        } finally {
+            LoanDaoFactory.shutdown();
+            HibernateUtil.shutdown();
+        }
+    }
+
+    /**
+     * Run the multi-teller HTTP server until the process is stopped
+     *
+     * @param args command line arguments: --server [port]
+     */
+    private static void runServer(String[] args) {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : AppConfig.getInt("server.port", 8080);
+        int workerThreads = AppConfig.getInt("server.threads", 32);
+        String bindAddress = AppConfig.getString("server.bind.address", EmiHttpServer.DEFAULT_BIND_ADDRESS);
+
+        System.out.println("=== EMI PAYMENT SERVER ===");
+        warmUp();
+        try {
+            EmiHttpServer server = new EmiHttpServer(EmiServiceFactory.getEmiService(), bindAddress, port,
+                workerThreads);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop(5);
+                LoanDaoFactory.shutdown();
+                HibernateUtil.shutdown();
+            }));
+            server.start();
+            System.out.println("Listening on " + bindAddress + ":" + server.getPort());
+        } catch (Exception e) {
+            System.err.println("Server failed to start: " + e.getMessage());
+            LOG.error("Server failed to start", e);
+            LoanDaoFactory.shutdown();
+            HibernateUtil.shutdown();
         }
     }
 }
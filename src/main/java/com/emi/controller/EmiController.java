@@ -1,12 +1,25 @@
 package com.emi.controller;
 
+import com.emi.dao.AllocationHistoryEntry;
+import com.emi.dao.HistoryCursor;
+import com.emi.dao.HistoryPage;
+import com.emi.dao.ReceiptHistoryEntry;
+import com.emi.dao.StaleReceivableException;
+import com.emi.metrics.MetricsReporter;
 import com.emi.service.EmiService;
-import com.emi.service.EmiServiceImpl;
+import com.emi.service.EmiServiceFactory;
+import com.emi.service.PaymentResult;
 import com.emi.model.Receivable;
 import com.emi.model.ReceiptPayment;
 import com.emi.model.Allocation;
+import com.emi.util.AppConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 /**
@@ -18,11 +31,13 @@ import java.util.Scanner;
  */
 public class EmiController {
 
+    private static final Logger LOG = LoggerFactory.getLogger(EmiController.class);
+
     private EmiService emiService;
     private Scanner scanner;
 
     public EmiController() {
-        this.emiService = new EmiServiceImpl();
+        this.emiService = EmiServiceFactory.getEmiService();
     }
 
     /**
@@ -65,16 +80,18 @@ public class EmiController {
             }
 
             // Process payment
-            ReceiptPayment receipt = emiService.processPayment(loanAccountNo, paymentAmount, paymentMode);
+            PaymentResult result = emiService.processPayment(loanAccountNo, paymentAmount, paymentMode);
 
             // Display success message
-            displayPaymentSuccess(receipt, receivable);
+            displayPaymentSuccess(result);
 
         } catch (IllegalArgumentException e) {
             System.out.println("Payment Error: " + e.getMessage());
+        } catch (StaleReceivableException e) {
+            System.out.println("Payment Error: " + e.getMessage() + ". Please check the pending EMI and try again.");
         } catch (Exception e) {
             System.out.println("An unexpected error occurred: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Unexpected error", e);
         }
     }
 
@@ -106,7 +123,87 @@ public class EmiController {
             System.out.println("Error: " + e.getMessage());
         } catch (Exception e) {
             System.out.println("An unexpected error occurred: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Unexpected error", e);
+        }
+    }
+
+    /**
+     * Browse the receipts or allocations of a loan account through console interaction
+     * Shows history.page.size entries at a time, newest first, until the user stops
+     * or the history ends
+     *
+     * @param scanner Scanner object for user input
+     */
+    public void showPaymentHistory(Scanner scanner) {
+        try {
+            System.out.println("\n=== PAYMENT HISTORY ===");
+
+            System.out.print("Enter Loan Account Number: ");
+            String loanAccountNo = scanner.nextLine().trim();
+
+            System.out.print("Show Receipts or Allocations (R/A): ");
+            boolean receipts = !scanner.nextLine().trim().equalsIgnoreCase("A");
+
+            int pageSize = AppConfig.getInt("history.page.size", 10);
+            HistoryCursor cursor = null;
+            int shown = 0;
+            do {
+                if (receipts) {
+                    HistoryPage<ReceiptHistoryEntry> page =
+                        emiService.getReceiptHistory(loanAccountNo, cursor, pageSize);
+                    for (ReceiptHistoryEntry entry : page.getEntries()) {
+                        System.out.println(entry.getPaymentDate() + "  " + entry.getReceiptNo()
+                            + "  " + formatAmount(entry.getPaidAmount()) + "  " + entry.getPaymentMode());
+                    }
+                    shown += page.getEntries().size();
+                    cursor = page.getNextCursor();
+                } else {
+                    HistoryPage<AllocationHistoryEntry> page =
+                        emiService.getAllocationHistory(loanAccountNo, cursor, pageSize);
+                    for (AllocationHistoryEntry entry : page.getEntries()) {
+                        System.out.println(entry.getAllocationDate() + "  " + entry.getReceiptNo()
+                            + "  Installment " + entry.getReceivableId()
+                            + " - Penalty: " + formatAmount(entry.getAllocatedPenalty())
+                            + ", Interest: " + formatAmount(entry.getAllocatedInterest())
+                            + ", Principal: " + formatAmount(entry.getAllocatedPrincipal()));
+                    }
+                    shown += page.getEntries().size();
+                    cursor = page.getNextCursor();
+                }
+                if (cursor == null) {
+                    System.out.println(shown == 0 ? "No payments found for loan account: " + loanAccountNo
+                        : "End of history (" + shown + " shown)");
+                    return;
+                }
+                System.out.print("Press Enter for older entries, Q to stop: ");
+            } while (!scanner.nextLine().trim().equalsIgnoreCase("Q"));
+
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("An unexpected error occurred: " + e.getMessage());
+            LOG.error("Unexpected error", e);
+        }
+    }
+
+    /**
+     * Show per-operation latency, Hibernate, pool and cache metrics
+     */
+    public void showMetrics() {
+        System.out.println("\n=== METRICS ===");
+        System.out.print(new MetricsReporter().formatReport());
+    }
+
+    /**
+     * Export metrics in Prometheus text format to the file named by metrics.export.file
+     */
+    public void exportMetrics() {
+        Path file = Paths.get(AppConfig.getString("metrics.export.file", "emi-metrics.prom"));
+        try {
+            new MetricsReporter().writePrometheus(file);
+            System.out.println("Metrics written to " + file.toAbsolutePath());
+        } catch (IOException e) {
+            System.out.println("Failed to export metrics: " + e.getMessage());
         }
     }
 
@@ -118,7 +215,10 @@ public class EmiController {
     private void displayPendingEmiDetails(Receivable receivable) {
         System.out.println("\n=== PENDING EMI DETAILS ===");
         System.out.println("Loan Account Number: " + receivable.getLoanAccountNo());
+        System.out.println("Oldest Due Date: " + receivable.getDueDate());
         System.out.println("Pending EMI: " + formatAmount(receivable.getEmiAmount()));
+        System.out.println("  Interest: " + formatAmount(receivable.getInterestAmount()));
+        System.out.println("  Principal: " + formatAmount(receivable.getPrincipalAmount()));
         System.out.println("Penalty Charges: " + formatAmount(receivable.getPenalty()));
         System.out.println("Total Amount: " + formatAmount(receivable.getTotalAmount()));
     }
@@ -126,21 +226,32 @@ public class EmiController {
     /**
      * Display payment success information
      *
-     * @param receipt ReceiptPayment object
-     * @param receivable Receivable object
+     * @param result PaymentResult carrying the receipt and its allocations
      */
-    private void displayPaymentSuccess(ReceiptPayment receipt, Receivable receivable) {
+    private void displayPaymentSuccess(PaymentResult result) {
+        ReceiptPayment receipt = result.getReceiptPayment();
         System.out.println("\n=== PAYMENT SUCCESSFUL ===");
         System.out.println("Receipt No: " + receipt.getReceiptNo());
         System.out.println("Amount Paid: " + formatAmount(receipt.getPaidAmount()));
         System.out.println("Payment Mode: " + receipt.getPaymentMode());
         System.out.println("Payment Date: " + receipt.getPaymentDate());
 
-        // Calculate allocation details
-        Allocation allocation = emiService.calculateAllocation(receipt.getLoanAccountNo(), receipt.getPaidAmount());
+        // Allocation details computed during payment processing
         System.out.println("\n=== ALLOCATION DETAILS ===");
-        System.out.println("Amount allocated to Penalty: " + formatAmount(allocation.getAllocatedPenalty()));
-        System.out.println("Amount allocated to EMI: " + formatAmount(allocation.getAllocatedEmi()));
+        System.out.println("Amount allocated to Penalty: " + formatAmount(result.getAllocatedPenalty()));
+        System.out.println("Amount allocated to Interest: " + formatAmount(result.getAllocatedInterest()));
+        System.out.println("Amount allocated to Principal: " + formatAmount(result.getAllocatedPrincipal()));
+        System.out.println("Amount allocated to EMI: " + formatAmount(result.getAllocatedEmi()));
+        if (result.getUnallocatedAmount().signum() > 0) {
+            System.out.println("Unallocated Amount: " + formatAmount(result.getUnallocatedAmount()));
+        }
+        System.out.println("Installments settled: " + result.getAllocations().size());
+        for (Allocation allocation : result.getAllocations()) {
+            System.out.println("  Installment " + allocation.getReceivableId()
+                + " - Penalty: " + formatAmount(allocation.getAllocatedPenalty())
+                + ", Interest: " + formatAmount(allocation.getAllocatedInterest())
+                + ", Principal: " + formatAmount(allocation.getAllocatedPrincipal()));
+        }
     }
 
     /**
@@ -162,7 +273,7 @@ public class EmiController {
      * @param paymentMode payment mode string
      * @return true if valid, false otherwise
      */
-    private boolean isValidPaymentMode(String paymentMode) {
+    static boolean isValidPaymentMode(String paymentMode) {
         return paymentMode.equals("CASH") || paymentMode.equals("CHEQUE") || paymentMode.equals("ONLINE");
     }
 }
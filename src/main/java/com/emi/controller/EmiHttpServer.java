@@ -0,0 +1,366 @@
+package com.emi.controller;
+
+import com.emi.dao.JournalFullException;
+import com.emi.dao.StaleReceivableException;
+import com.emi.metrics.MetricsReporter;
+import com.emi.model.Allocation;
+import com.emi.model.ReceiptPayment;
+import com.emi.model.Receivable;
+import com.emi.service.EmiService;
+import com.emi.service.PaymentResult;
+import com.emi.util.AppConfig;
+import com.emi.util.SqlTraceFilter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded HTTP server for serving many branch terminals from one process
+ * Dispatches enquiry and payment requests to EmiService on a worker executor:
+ * virtual threads when the runtime provides them (Java 21+), otherwise a fixed
+ * pool sized by server.threads.
+ *
+ * Endpoints:
+ *   GET  /emi/pending?loanAccountNo=...                      pending EMI details
+ *   POST /emi/payments  loanAccountNo=...&amount=...&mode=... (form encoded) post a payment;
+ *                       an Idempotency-Key header (or requestId field) makes retries safe
+ *   GET  /metrics                                            Prometheus text exposition
+ *   GET|POST|DELETE /admin/sql-trace[?loanAccountNo=...]     list, start or stop logging the SQL of
+ *                       one loan account (DELETE without an account stops all); see SqlTraceFilter.
+ *                       Only with server.sql.trace.enabled=true, and only from the loopback interface
+ *
+ * Every LoanDao call opens and closes its own Session on the worker thread that
+ * handles the request, so no Session is ever shared between requests.
+ *
+ * The server does not authenticate callers. It listens on the loopback
+ * interface unless given another address (server.bind.address), and must only
+ * be reachable through an authenticating reverse proxy.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class EmiHttpServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmiHttpServer.class);
+
+    public static final String DEFAULT_BIND_ADDRESS = "127.0.0.1";
+
+    private final EmiService emiService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final MetricsReporter metricsReporter = new MetricsReporter();
+
+    /**
+     * Create a server listening on the loopback interface only
+     */
+    public EmiHttpServer(EmiService emiService, int port, int workerThreads) throws IOException {
+        this(emiService, DEFAULT_BIND_ADDRESS, port, workerThreads);
+    }
+
+    /**
+     * @param bindAddress host name or IP address to listen on; 0.0.0.0 for every interface
+     */
+    public EmiHttpServer(EmiService emiService, String bindAddress, int port, int workerThreads)
+            throws IOException {
+        this.emiService = emiService;
+        this.executor = createExecutor(workerThreads);
+        this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        this.server.createContext("/emi/pending", this::handlePending);
+        this.server.createContext("/emi/payments", this::handlePayment);
+        this.server.createContext("/metrics", this::handleMetrics);
+        // Traced SQL is logged with its bind parameters, so the endpoint is off unless asked for
+        if (AppConfig.getBoolean("server.sql.trace.enabled", false)) {
+            this.server.createContext("/admin/sql-trace", this::handleSqlTrace);
+        }
+        this.server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop accepting requests and wait for in-flight requests to finish
+     *
+     * @param timeoutSeconds maximum time to wait for in-flight requests
+     */
+    public void stop(int timeoutSeconds) {
+        server.stop(timeoutSeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the port the server is bound to (useful when started on port 0)
+     *
+     * @return bound port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Use a virtual-thread-per-task executor when running on Java 21+,
+     * otherwise fall back to a fixed platform thread pool
+     */
+    static ExecutorService createExecutor(int workerThreads) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(workerThreads);
+        }
+    }
+
+    private void handlePending(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error("Method not allowed"));
+                return;
+            }
+            Map<String, String> params = parseParams(exchange.getRequestURI().getRawQuery());
+            Receivable receivable = emiService.getPendingEmiDetails(params.get("loanAccountNo"));
+            if (receivable == null) {
+                send(exchange, 404, error("No pending EMI found for loan account: " + params.get("loanAccountNo")));
+                return;
+            }
+            send(exchange, 200, toJson(receivable));
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            LOG.error("Error handling pending EMI request", e);
+            send(exchange, 500, error("Internal error"));
+        }
+    }
+
+    private void handlePayment(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error("Method not allowed"));
+                return;
+            }
+            Map<String, String> params = parseParams(readBody(exchange));
+            String paymentMode = params.getOrDefault("mode", "").trim().toUpperCase();
+            if (!EmiController.isValidPaymentMode(paymentMode)) {
+                send(exchange, 400, error("Invalid payment mode. Please use CASH, CHEQUE, or ONLINE."));
+                return;
+            }
+            BigDecimal paymentAmount = parseAmount(params.get("amount"));
+
+            String requestId = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+            if (requestId == null) {
+                requestId = params.get("requestId");
+            }
+
+            PaymentResult result = emiService.processPayment(requestId, params.get("loanAccountNo"),
+                paymentAmount, paymentMode);
+            send(exchange, 200, toJson(result));
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } catch (StaleReceivableException e) {
+            send(exchange, 409, error(e.getMessage()));
+        } catch (JournalFullException e) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            send(exchange, 503, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            LOG.error("Error handling payment request", e);
+            send(exchange, 500, error("Internal error"));
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, error("Method not allowed"));
+            return;
+        }
+        byte[] body = metricsReporter.toPrometheus().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void handleSqlTrace(HttpExchange exchange) throws IOException {
+        if (!exchange.getRemoteAddress().getAddress().isLoopbackAddress()) {
+            send(exchange, 403, error("SQL trace is only available from the server host"));
+            return;
+        }
+        String loanAccountNo = parseParams(exchange.getRequestURI().getRawQuery()).get("loanAccountNo");
+        switch (exchange.getRequestMethod()) {
+            case "GET":
+                break;
+            case "POST":
+                if (loanAccountNo == null) {
+                    loanAccountNo = parseParams(readBody(exchange)).get("loanAccountNo");
+                }
+                if (loanAccountNo == null || loanAccountNo.isBlank()) {
+                    send(exchange, 400, error("Loan account number is required"));
+                    return;
+                }
+                SqlTraceFilter.trace(loanAccountNo.trim());
+                LOG.info("SQL trace started for loan account {}", loanAccountNo.trim());
+                break;
+            case "DELETE":
+                if (loanAccountNo == null) {
+                    SqlTraceFilter.untraceAll();
+                    LOG.info("SQL trace stopped for all loan accounts");
+                } else {
+                    SqlTraceFilter.untrace(loanAccountNo.trim());
+                    LOG.info("SQL trace stopped for loan account {}", loanAccountNo.trim());
+                }
+                break;
+            default:
+                send(exchange, 405, error("Method not allowed"));
+                return;
+        }
+        StringBuilder json = new StringBuilder("{\"tracedAccounts\":[");
+        for (String traced : new TreeSet<>(SqlTraceFilter.getTracedAccounts())) {
+            if (json.charAt(json.length() - 1) != '[') {
+                json.append(',');
+            }
+            json.append('"').append(escape(traced)).append('"');
+        }
+        send(exchange, 200, json.append("]}").toString());
+    }
+
+    private BigDecimal parseAmount(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Payment amount is required");
+        }
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid payment amount: " + value);
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> parseParams(String encoded) {
+        Map<String, String> params = new HashMap<>();
+        if (encoded == null || encoded.isEmpty()) {
+            return params;
+        }
+        for (String pair : encoded.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String toJson(Receivable receivable) {
+        return "{\"loanAccountNo\":\"" + escape(receivable.getLoanAccountNo()) + "\"" +
+                ",\"dueDate\":\"" + receivable.getDueDate() + "\"" +
+                ",\"emiAmount\":" + receivable.getEmiAmount() +
+                ",\"interestAmount\":" + receivable.getInterestAmount() +
+                ",\"principalAmount\":" + receivable.getPrincipalAmount() +
+                ",\"penalty\":" + receivable.getPenalty() +
+                ",\"totalAmount\":" + receivable.getTotalAmount() + "}";
+    }
+
+    private static String toJson(PaymentResult result) {
+        ReceiptPayment receipt = result.getReceiptPayment();
+        StringBuilder allocations = new StringBuilder("[");
+        for (Allocation allocation : result.getAllocations()) {
+            if (allocations.length() > 1) {
+                allocations.append(',');
+            }
+            allocations.append("{\"receivableId\":").append(allocation.getReceivableId())
+                .append(",\"allocatedPenalty\":").append(allocation.getAllocatedPenalty())
+                .append(",\"allocatedInterest\":").append(allocation.getAllocatedInterest())
+                .append(",\"allocatedPrincipal\":").append(allocation.getAllocatedPrincipal()).append('}');
+        }
+        allocations.append(']');
+        return "{\"receiptNo\":\"" + escape(receipt.getReceiptNo()) + "\"" +
+                ",\"loanAccountNo\":\"" + escape(receipt.getLoanAccountNo()) + "\"" +
+                ",\"paidAmount\":" + receipt.getPaidAmount() +
+                ",\"paymentMode\":\"" + escape(receipt.getPaymentMode()) + "\"" +
+                ",\"paymentDate\":\"" + receipt.getPaymentDate() + "\"" +
+                ",\"allocatedPenalty\":" + result.getAllocatedPenalty() +
+                ",\"allocatedInterest\":" + result.getAllocatedInterest() +
+                ",\"allocatedPrincipal\":" + result.getAllocatedPrincipal() +
+                ",\"allocatedEmi\":" + result.getAllocatedEmi() +
+                ",\"unallocated\":" + result.getUnallocatedAmount() +
+                ",\"allocations\":" + allocations +
+                (receipt.getRequestId() != null ? ",\"requestId\":\"" + escape(receipt.getRequestId()) + "\"" : "") +
+                ",\"replayed\":" + result.isReplayed() + "}";
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + escape(message) + "\"}";
+    }
+
+    /**
+     * Escape a value for a JSON string; error messages echo decoded request input, control characters included
+     */
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '"':
+                    escaped.append("\\\"");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package com.emi.dao;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * An allocation in a loan account's payment history: the part of a receipt
+ * that went to one installment
+ * Read as a projection of LMS_ALLOCATION_DTL_POOJA, so listing history does
+ * not load Allocation entities
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class AllocationHistoryEntry {
+
+    private final Long id;
+    private final String receiptNo;
+    private final Long receivableId;
+    private final LocalDateTime allocationDate;
+    private final BigDecimal allocatedPenalty;
+    private final BigDecimal allocatedInterest;
+    private final BigDecimal allocatedPrincipal;
+
+    public AllocationHistoryEntry(Long id, String receiptNo, Long receivableId, LocalDateTime allocationDate,
+                                  BigDecimal allocatedPenalty, BigDecimal allocatedInterest,
+                                  BigDecimal allocatedPrincipal) {
+        this.id = id;
+        this.receiptNo = receiptNo;
+        this.receivableId = receivableId;
+        this.allocationDate = allocationDate;
+        this.allocatedPenalty = allocatedPenalty;
+        this.allocatedInterest = allocatedInterest;
+        this.allocatedPrincipal = allocatedPrincipal;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getReceiptNo() {
+        return receiptNo;
+    }
+
+    /**
+     * Get the installment (receivable row) the allocation settled
+     */
+    public Long getReceivableId() {
+        return receivableId;
+    }
+
+    public LocalDateTime getAllocationDate() {
+        return allocationDate;
+    }
+
+    public BigDecimal getAllocatedPenalty() {
+        return allocatedPenalty;
+    }
+
+    public BigDecimal getAllocatedInterest() {
+        return allocatedInterest;
+    }
+
+    public BigDecimal getAllocatedPrincipal() {
+        return allocatedPrincipal;
+    }
+
+    /**
+     * Get the position of this allocation, to read the history after it
+     */
+    public HistoryCursor getCursor() {
+        return new HistoryCursor(allocationDate, id);
+    }
+
+    @Override
+    public String toString() {
+        return allocationDate + " " + receiptNo + " installment " + receivableId + " penalty " + allocatedPenalty
+            + ", interest " + allocatedInterest + ", principal " + allocatedPrincipal;
+    }
+}
@@ -0,0 +1,309 @@
+package com.emi.dao;
+
+import com.emi.model.Allocation;
+import com.emi.model.ReceiptPayment;
+import com.emi.model.Receivable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Read-through cache of pending installments by loan account number in front of a LoanDao
+ * Entries are bounded by size (least recently used goes first) and by age, and
+ * the entry for an account is evicted whenever a payment is saved for it.
+ * Callers get copies of the cached installments, so they can never change the cache;
+ * the account summary is built from the same cached installments.
+ * The cache is local to one JVM; the TTL bounds how stale an entry can be when
+ * another instance posts a payment for the same account. Copies keep the versions
+ * that were read, so a payment settled against a stale entry fails its version
+ * check and is retried against a fresh read rather than double-posting.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class CachingLoanDao implements LoanDao {
+
+    private final LoanDao delegate;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final Map<String, CacheEntry> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingLoanDao(LoanDao delegate, int maxSize, long ttlSeconds) {
+        this(delegate, maxSize, ttlSeconds, System::nanoTime);
+    }
+
+    public CachingLoanDao(LoanDao delegate, int maxSize, long ttlSeconds, LongSupplier nanoClock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be greater than zero");
+        }
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.nanoClock = nanoClock;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > CachingLoanDao.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Receivable findReceivableByLoanAccountNo(String loanAccountNo) {
+        return Receivable.summaryOf(getPendingReceivables(loanAccountNo));
+    }
+
+    /**
+     * Serve cached accounts from the cache and look up the rest in one pass
+     * Accounts found this way are not added to the cache, which holds the
+     * installments a payment needs rather than summaries
+     */
+    @Override
+    public Map<String, Receivable> findReceivablesByLoanAccountNos(Collection<String> loanAccountNos) {
+        Map<String, Receivable> summaries = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        long now = nanoClock.getAsLong();
+        synchronized (cache) {
+            for (String loanAccountNo : loanAccountNos) {
+                CacheEntry entry = cache.get(loanAccountNo);
+                if (entry != null && now - entry.loadedAt < ttlNanos) {
+                    summaries.put(loanAccountNo, Receivable.summaryOf(entry.installments));
+                } else {
+                    missing.add(loanAccountNo);
+                }
+            }
+        }
+        hits.add(summaries.size());
+        misses.add(missing.size());
+
+        if (!missing.isEmpty()) {
+            summaries.putAll(delegate.findReceivablesByLoanAccountNos(missing));
+        }
+        return summaries;
+    }
+
+    @Override
+    public ReceiptPayment saveReceiptPayment(ReceiptPayment receiptPayment) {
+        try {
+            return delegate.saveReceiptPayment(receiptPayment);
+        } finally {
+            evict(receiptPayment.getLoanAccountNo());
+        }
+    }
+
+    @Override
+    public Allocation saveAllocation(Allocation allocation) {
+        try {
+            return delegate.saveAllocation(allocation);
+        } finally {
+            evict(allocation.getLoanAccountNo());
+        }
+    }
+
+    @Override
+    public ReceiptPayment savePayment(List<Receivable> receivables, List<Allocation> allocations,
+                                      ReceiptPayment receiptPayment) {
+        try {
+            return delegate.savePayment(receivables, allocations, receiptPayment);
+        } finally {
+            evict(receiptPayment.getLoanAccountNo());
+        }
+    }
+
+    @Override
+    public void saveReceivables(List<Receivable> receivables) {
+        try {
+            delegate.saveReceivables(receivables);
+        } finally {
+            for (Receivable receivable : receivables) {
+                evict(receivable.getLoanAccountNo());
+            }
+        }
+    }
+
+    @Override
+    public void savePayments(List<Allocation> allocations, List<ReceiptPayment> receiptPayments, int batchSize) {
+        try {
+            delegate.savePayments(allocations, receiptPayments, batchSize);
+        } finally {
+            for (ReceiptPayment receiptPayment : receiptPayments) {
+                evict(receiptPayment.getLoanAccountNo());
+            }
+        }
+    }
+
+    @Override
+    public ReceiptPayment findReceiptPaymentByRequestId(String requestId) {
+        return delegate.findReceiptPaymentByRequestId(requestId);
+    }
+
+    @Override
+    public List<Allocation> findAllocationsByRequestId(String requestId) {
+        return delegate.findAllocationsByRequestId(requestId);
+    }
+
+    @Override
+    public HistoryPage<ReceiptHistoryEntry> findReceiptHistory(String loanAccountNo, HistoryCursor after,
+                                                               int pageSize) {
+        return delegate.findReceiptHistory(loanAccountNo, after, pageSize);
+    }
+
+    @Override
+    public HistoryPage<AllocationHistoryEntry> findAllocationHistory(String loanAccountNo, HistoryCursor after,
+                                                                     int pageSize) {
+        return delegate.findAllocationHistory(loanAccountNo, after, pageSize);
+    }
+
+    @Override
+    public List<Receivable> getPendingReceivables(String loanAccountNo) {
+        long now = nanoClock.getAsLong();
+        synchronized (cache) {
+            CacheEntry entry = cache.get(loanAccountNo);
+            if (entry != null) {
+                if (now - entry.loadedAt < ttlNanos) {
+                    hits.increment();
+                    return copyOf(entry.installments);
+                }
+                cache.remove(loanAccountNo);
+                evictions.increment();
+            }
+        }
+
+        misses.increment();
+        List<Receivable> installments = delegate.getPendingReceivables(loanAccountNo);
+        if (installments != null && !installments.isEmpty()) {
+            synchronized (cache) {
+                cache.put(loanAccountNo, new CacheEntry(copyOf(installments), now));
+            }
+        }
+        return installments;
+    }
+
+    @Override
+    public long streamPendingReceivables(int fetchSize, Consumer<Receivable> consumer) {
+        return delegate.streamPendingReceivables(fetchSize, consumer);
+    }
+
+    @Override
+    public long streamLoanAccountNos(long afterId, int fetchSize, Consumer<String> consumer) {
+        return delegate.streamLoanAccountNos(afterId, fetchSize, consumer);
+    }
+
+    @Override
+    public BigDecimal getTotalPendingAmount(String loanAccountNo) {
+        return delegate.getTotalPendingAmount(loanAccountNo);
+    }
+
+    @Override
+    public Map<String, BigDecimal> getTotalPendingAmounts(Collection<String> loanAccountNos) {
+        return delegate.getTotalPendingAmounts(loanAccountNos);
+    }
+
+    @Override
+    public List<PendingBalanceMismatch> verifyPendingBalances() {
+        return delegate.verifyPendingBalances();
+    }
+
+    @Override
+    public int rebuildPendingBalances(Collection<String> loanAccountNos) {
+        return delegate.rebuildPendingBalances(loanAccountNos);
+    }
+
+    /**
+     * Remove the cached entry for a loan account
+     *
+     * @param loanAccountNo the loan account number
+     */
+    public void evict(String loanAccountNo) {
+        synchronized (cache) {
+            if (cache.remove(loanAccountNo) != null) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Remove every cached entry
+     */
+    public void evictAll() {
+        synchronized (cache) {
+            evictions.add(cache.size());
+            cache.clear();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Get the fraction of lookups served from the cache
+     *
+     * @return hit ratio between 0 and 1
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    private static List<Receivable> copyOf(List<Receivable> installments) {
+        List<Receivable> copies = new ArrayList<>(installments.size());
+        for (Receivable source : installments) {
+            Receivable copy = new Receivable(source.getLoanAccountNo(), source.getEmiAmount(),
+                source.getPenalty(), source.getTotalAmount());
+            copy.setId(source.getId());
+            copy.setInterestAmount(source.getInterestAmount());
+            copy.setPrincipalAmount(source.getPrincipalAmount());
+            copy.setDueDate(source.getDueDate());
+            copy.setCreatedDate(source.getCreatedDate());
+            copy.setPenaltyAccruedTo(source.getPenaltyAccruedTo());
+            copy.setVersion(source.getVersion());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private static class CacheEntry {
+
+        private final List<Receivable> installments;
+        private final long loadedAt;
+
+        CacheEntry(List<Receivable> installments, long loadedAt) {
+            this.installments = installments;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.emi.dao;
+
+/**
+ * Thrown when a payment is saved with an idempotency key that an earlier
+ * payment already used; the earlier payment's receipt is the one to return
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class DuplicatePaymentRequestException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String requestId;
+
+    public DuplicatePaymentRequestException(String requestId, Throwable cause) {
+        super("Payment request " + requestId + " has already been posted", cause);
+        this.requestId = requestId;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+}
@@ -0,0 +1,17 @@
+package com.emi.dao;
+
+/**
+ * Thrown when a receipt being saved has already been posted: its receipt
+ * number or idempotency key is taken by a row in LMS_RECEIPTPAYMENT_DTL_POOJA
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class DuplicateReceiptException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DuplicateReceiptException(Throwable cause) {
+        super("A receipt in the batch has already been posted", cause);
+    }
+}
@@ -0,0 +1,75 @@
+package com.emi.dao;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Position in a loan account's payment history, newest first
+ * Identifies the last entry of a page by its date and id; the next page holds
+ * the entries that sort after it (older date, or same date and lower id). Ids
+ * break ties between entries posted in the same instant, so a page boundary
+ * never skips or repeats an entry.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public final class HistoryCursor implements Comparable<HistoryCursor> {
+
+    // History order: newest date first, then highest id first
+    private static final Comparator<HistoryCursor> NEWEST_FIRST = Comparator
+        .comparing(HistoryCursor::getDate, Comparator.reverseOrder())
+        .thenComparing(HistoryCursor::getId, Comparator.reverseOrder());
+
+    private final LocalDateTime date;
+    private final long id;
+
+    public HistoryCursor(LocalDateTime date, long id) {
+        this.date = Objects.requireNonNull(date, "date");
+        this.id = id;
+    }
+
+    /**
+     * Get the payment or allocation date of the last entry read
+     */
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    /**
+     * Get the id of the last entry read
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Order cursors as the history is listed: an entry that comes later in the history sorts higher
+     */
+    @Override
+    public int compareTo(HistoryCursor other) {
+        return NEWEST_FIRST.compare(this, other);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HistoryCursor)) {
+            return false;
+        }
+        HistoryCursor other = (HistoryCursor) o;
+        return id == other.id && Objects.equals(date, other.date);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(date, id);
+    }
+
+    @Override
+    public String toString() {
+        return date + "/" + id;
+    }
+}
@@ -0,0 +1,39 @@
+package com.emi.dao;
+
+import java.util.List;
+
+/**
+ * One page of a loan account's payment history, newest first
+ * Returned by LoanDao.findReceiptHistory and findAllocationHistory; pass
+ * getNextCursor back to read the following page.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class HistoryPage<T> {
+
+    private final List<T> entries;
+    private final HistoryCursor nextCursor;
+
+    public HistoryPage(List<T> entries, HistoryCursor nextCursor) {
+        this.entries = List.copyOf(entries);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Get the position to read the next page from
+     *
+     * @return cursor after the last entry, or null if this is the last page
+     */
+    public HistoryCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,480 @@
+package com.emi.dao;
+
+import com.emi.model.Allocation;
+import com.emi.model.ReceiptPayment;
+import com.emi.model.Receivable;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * LoanDao held entirely in memory, for load rigs and tests that run without a database
+ * Behaves like LoanDaoImpl: installments come back oldest first as copies,
+ * payments settle them with the same version check, bulk settlement applies
+ * the same guarded deduction all-or-nothing, and receipt numbers and
+ * idempotency keys are unique. Select it with dao.type=memory.
+ *
+ * Installments of each account are an immutable list replaced on every
+ * settlement, so reads never lock. Single payments settle under the
+ * ConcurrentHashMap entry lock of their account; savePayments spans many
+ * accounts and excludes them while it runs.
+ *
+ * The pending total of each account is kept in a map next to its installments
+ * and changed only inside the account's entry lock, together with the
+ * installments, so getTotalPendingAmount is a single map lookup.
+ *
+ * Receipts and allocations are also kept per account in skip lists sorted
+ * newest first, so a history page is read from its cursor on without
+ * walking the entries before it.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class InMemoryLoanDao implements LoanDao {
+
+    private static final Comparator<Receivable> OLDEST_FIRST = Comparator
+        .comparing(Receivable::getDueDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparing(Receivable::getId);
+
+    private final Map<String, List<Receivable>> receivables = new ConcurrentHashMap<>();
+    // Changed only within receivables.compute for the same account
+    private final Map<String, BigDecimal> pendingTotals = new ConcurrentHashMap<>();
+    private final Map<String, ReceiptPayment> receiptsByReceiptNo = new ConcurrentHashMap<>();
+    private final Map<String, ReceiptPayment> receiptsByRequestId = new ConcurrentHashMap<>();
+    private final Map<String, List<Allocation>> allocationsByRequestId = new ConcurrentHashMap<>();
+    private final Map<String, NavigableMap<HistoryCursor, ReceiptPayment>> receiptHistory = new ConcurrentHashMap<>();
+    private final Map<String, NavigableMap<HistoryCursor, Allocation>> allocationHistory = new ConcurrentHashMap<>();
+    private final AtomicLong receivableIds = new AtomicLong();
+    private final AtomicLong receiptIds = new AtomicLong();
+    private final AtomicLong allocationIds = new AtomicLong();
+    // Read side: single-account payments; write side: savePayments across accounts
+    private final ReentrantReadWriteLock settleLock = new ReentrantReadWriteLock();
+
+    /**
+     * Add an installment to its account, assigning an id if it has none
+     */
+    public void addReceivable(Receivable receivable) {
+        if (receivable.getId() == null) {
+            receivable.setId(receivableIds.incrementAndGet());
+        }
+        Receivable stored = copyOf(receivable);
+        receivables.compute(receivable.getLoanAccountNo(), (loanAccountNo, installments) -> {
+            List<Receivable> updated = installments != null ? new ArrayList<>(installments) : new ArrayList<>();
+            updated.add(stored);
+            updated.sort(OLDEST_FIRST);
+            pendingTotals.merge(loanAccountNo, stored.getTotalAmount(), BigDecimal::add);
+            return List.copyOf(updated);
+        });
+    }
+
+    /**
+     * Load a book of accounts for load tests: account numbers from 100000, each
+     * with two monthly installments of 4000.00 principal, 1000.00 interest and
+     * 150.00 penalty (the same book as db/seed/load_test_accounts.sql)
+     *
+     * @param accounts number of accounts to add
+     */
+    public void seedLoadTestAccounts(int accounts) {
+        LocalDate firstDue = LocalDate.of(2026, 1, 5);
+        for (int i = 0; i < accounts; i++) {
+            for (int n = 0; n < 2; n++) {
+                addReceivable(new Receivable(String.valueOf(100000 + i), firstDue.plusMonths(n),
+                    new BigDecimal("4000.00"), new BigDecimal("1000.00"), new BigDecimal("150.00")));
+            }
+        }
+    }
+
+    @Override
+    public Receivable findReceivableByLoanAccountNo(String loanAccountNo) {
+        return Receivable.summaryOf(getPendingReceivables(loanAccountNo));
+    }
+
+    @Override
+    public Map<String, Receivable> findReceivablesByLoanAccountNos(Collection<String> loanAccountNos) {
+        Map<String, Receivable> summaries = new HashMap<>();
+        for (String loanAccountNo : loanAccountNos) {
+            Receivable summary = Receivable.summaryOf(pendingCopies(loanAccountNo));
+            if (summary != null) {
+                summaries.put(loanAccountNo, summary);
+            }
+        }
+        return summaries;
+    }
+
+    @Override
+    public ReceiptPayment saveReceiptPayment(ReceiptPayment receiptPayment) {
+        claimReceipt(receiptPayment);
+        return receiptPayment;
+    }
+
+    @Override
+    public Allocation saveAllocation(Allocation allocation) {
+        storeAllocation(allocation);
+        return allocation;
+    }
+
+    @Override
+    public ReceiptPayment savePayment(List<Receivable> receivables, List<Allocation> allocations,
+                                      ReceiptPayment receiptPayment) {
+        String loanAccountNo = receiptPayment.getLoanAccountNo();
+        settleLock.readLock().lock();
+        try {
+            claimReceipt(receiptPayment);
+            boolean[] settled = new boolean[1];
+            this.receivables.computeIfPresent(loanAccountNo, (account, installments) -> {
+                List<Receivable> updated = new ArrayList<>(installments);
+                BigDecimal settledAmount = BigDecimal.ZERO;
+                for (Receivable receivable : receivables) {
+                    int index = indexOf(updated, receivable.getId());
+                    if (index < 0 || updated.get(index).getVersion() != receivable.getVersion()) {
+                        return installments;
+                    }
+                    Receivable stored = copyOf(receivable);
+                    stored.setVersion(receivable.getVersion() + 1);
+                    Receivable previous = updated.set(index, stored);
+                    settledAmount = settledAmount.add(previous.getTotalAmount().subtract(stored.getTotalAmount()));
+                }
+                pendingTotals.merge(account, settledAmount.negate(), BigDecimal::add);
+                settled[0] = true;
+                return List.copyOf(updated);
+            });
+            if (!settled[0]) {
+                releaseReceipt(receiptPayment);
+                throw new StaleReceivableException(loanAccountNo, null);
+            }
+        } finally {
+            settleLock.readLock().unlock();
+        }
+
+        for (Receivable receivable : receivables) {
+            receivable.setVersion(receivable.getVersion() + 1);
+        }
+        for (Allocation allocation : allocations) {
+            storeAllocation(allocation);
+        }
+        return receiptPayment;
+    }
+
+    @Override
+    public void saveReceivables(List<Receivable> receivables) {
+        for (Receivable receivable : receivables) {
+            addReceivable(receivable);
+        }
+    }
+
+    @Override
+    public void savePayments(List<Allocation> allocations, List<ReceiptPayment> receiptPayments, int batchSize) {
+        settleLock.writeLock().lock();
+        try {
+            Set<String> receiptNos = new HashSet<>();
+            Set<String> requestIds = new HashSet<>();
+            for (ReceiptPayment receiptPayment : receiptPayments) {
+                String requestId = receiptPayment.getRequestId();
+                if (receiptsByReceiptNo.containsKey(receiptPayment.getReceiptNo())
+                        || !receiptNos.add(receiptPayment.getReceiptNo())
+                        || (requestId != null
+                            && (receiptsByRequestId.containsKey(requestId) || !requestIds.add(requestId)))) {
+                    throw new DuplicateReceiptException(null);
+                }
+            }
+
+            // Deduct from working copies so that a failed batch changes nothing
+            Map<Long, Receivable> settled = new HashMap<>();
+            for (Allocation allocation : allocations) {
+                Receivable receivable = settled.get(allocation.getReceivableId());
+                if (receivable == null) {
+                    List<Receivable> installments = receivables.get(allocation.getLoanAccountNo());
+                    int index = installments != null ? indexOf(installments, allocation.getReceivableId()) : -1;
+                    receivable = index >= 0 ? copyOf(installments.get(index)) : null;
+                }
+                if (receivable == null
+                        || (allocation.getReceivableVersion() != null
+                            && receivable.getVersion() != allocation.getReceivableVersion())
+                        || receivable.getPenalty().compareTo(allocation.getAllocatedPenalty()) < 0
+                        || receivable.getInterestAmount().compareTo(allocation.getAllocatedInterest()) < 0
+                        || receivable.getPrincipalAmount().compareTo(allocation.getAllocatedPrincipal()) < 0) {
+                    throw new StaleReceivableException(allocation.getLoanAccountNo(), null);
+                }
+                receivable.setPenalty(receivable.getPenalty().subtract(allocation.getAllocatedPenalty()));
+                receivable.setInterestAmount(
+                    receivable.getInterestAmount().subtract(allocation.getAllocatedInterest()));
+                receivable.setPrincipalAmount(
+                    receivable.getPrincipalAmount().subtract(allocation.getAllocatedPrincipal()));
+                receivable.setEmiAmount(receivable.getEmiAmount().subtract(allocation.getAllocatedEmi()));
+                receivable.setTotalAmount(receivable.getTotalAmount()
+                    .subtract(allocation.getAllocatedPenalty()).subtract(allocation.getAllocatedEmi()));
+                receivable.setVersion(receivable.getVersion() + 1);
+                settled.put(receivable.getId(), receivable);
+            }
+
+            for (Receivable receivable : settled.values()) {
+                receivables.computeIfPresent(receivable.getLoanAccountNo(), (account, installments) -> {
+                    List<Receivable> updated = new ArrayList<>(installments);
+                    Receivable previous = updated.set(indexOf(updated, receivable.getId()), receivable);
+                    pendingTotals.merge(account, receivable.getTotalAmount().subtract(previous.getTotalAmount()),
+                        BigDecimal::add);
+                    return List.copyOf(updated);
+                });
+            }
+            for (ReceiptPayment receiptPayment : receiptPayments) {
+                claimReceipt(receiptPayment);
+            }
+            for (Allocation allocation : allocations) {
+                storeAllocation(allocation);
+            }
+        } finally {
+            settleLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public ReceiptPayment findReceiptPaymentByRequestId(String requestId) {
+        return receiptsByRequestId.get(requestId);
+    }
+
+    @Override
+    public List<Allocation> findAllocationsByRequestId(String requestId) {
+        List<Allocation> allocations = allocationsByRequestId.get(requestId);
+        return allocations != null ? new ArrayList<>(allocations) : new ArrayList<>();
+    }
+
+    @Override
+    public HistoryPage<ReceiptHistoryEntry> findReceiptHistory(String loanAccountNo, HistoryCursor after,
+                                                               int pageSize) {
+        List<ReceiptHistoryEntry> entries = new ArrayList<>();
+        HistoryCursor next = readHistory(receiptHistory.get(loanAccountNo), after, pageSize, receipt -> entries.add(
+            new ReceiptHistoryEntry(receipt.getId(), receipt.getReceiptNo(), receipt.getPaymentDate(),
+                receipt.getPaidAmount(), receipt.getPaymentMode())));
+        return new HistoryPage<>(entries, next);
+    }
+
+    @Override
+    public HistoryPage<AllocationHistoryEntry> findAllocationHistory(String loanAccountNo, HistoryCursor after,
+                                                                     int pageSize) {
+        List<AllocationHistoryEntry> entries = new ArrayList<>();
+        HistoryCursor next = readHistory(allocationHistory.get(loanAccountNo), after, pageSize,
+            allocation -> entries.add(new AllocationHistoryEntry(allocation.getId(), allocation.getReceiptNo(),
+                allocation.getReceivableId(), allocation.getAllocationDate(), allocation.getAllocatedPenalty(),
+                allocation.getAllocatedInterest(), allocation.getAllocatedPrincipal())));
+        return new HistoryPage<>(entries, next);
+    }
+
+    @Override
+    public List<Receivable> getPendingReceivables(String loanAccountNo) {
+        return pendingCopies(loanAccountNo);
+    }
+
+    @Override
+    public long streamPendingReceivables(int fetchSize, Consumer<Receivable> consumer) {
+        long count = 0;
+        for (String loanAccountNo : new TreeSet<>(receivables.keySet())) {
+            for (Receivable installment : pendingCopies(loanAccountNo)) {
+                consumer.accept(installment);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long streamLoanAccountNos(long afterId, int fetchSize, Consumer<String> consumer) {
+        // Installments are held by account, so gather the newer ids first to hand them over in id order
+        TreeMap<Long, String> added = new TreeMap<>();
+        for (Map.Entry<String, List<Receivable>> account : receivables.entrySet()) {
+            for (Receivable installment : account.getValue()) {
+                if (installment.getId() > afterId) {
+                    added.put(installment.getId(), account.getKey());
+                }
+            }
+        }
+        added.values().forEach(consumer);
+        return added.isEmpty() ? afterId : added.lastKey();
+    }
+
+    @Override
+    public BigDecimal getTotalPendingAmount(String loanAccountNo) {
+        return pendingTotals.getOrDefault(loanAccountNo, BigDecimal.ZERO);
+    }
+
+    @Override
+    public Map<String, BigDecimal> getTotalPendingAmounts(Collection<String> loanAccountNos) {
+        Map<String, BigDecimal> totals = new HashMap<>();
+        for (String loanAccountNo : loanAccountNos) {
+            totals.put(loanAccountNo, getTotalPendingAmount(loanAccountNo));
+        }
+        return totals;
+    }
+
+    @Override
+    public List<PendingBalanceMismatch> verifyPendingBalances() {
+        Set<String> loanAccountNos = new TreeSet<>(receivables.keySet());
+        loanAccountNos.addAll(pendingTotals.keySet());
+        List<PendingBalanceMismatch> mismatches = new ArrayList<>();
+        for (String loanAccountNo : loanAccountNos) {
+            List<Receivable> installments = receivables.get(loanAccountNo);
+            BigDecimal recorded = pendingTotals.get(loanAccountNo);
+            BigDecimal actual = sumOf(installments);
+            if (recorded == null ? installments != null : recorded.compareTo(actual) != 0) {
+                mismatches.add(new PendingBalanceMismatch(loanAccountNo, recorded, actual));
+            }
+        }
+        return mismatches;
+    }
+
+    @Override
+    public int rebuildPendingBalances(Collection<String> loanAccountNos) {
+        int recorded = 0;
+        for (String loanAccountNo : new TreeSet<>(loanAccountNos)) {
+            boolean[] rebuilt = new boolean[1];
+            receivables.compute(loanAccountNo, (account, installments) -> {
+                if (installments != null || pendingTotals.containsKey(account)) {
+                    pendingTotals.put(account, sumOf(installments));
+                    rebuilt[0] = true;
+                }
+                return installments;
+            });
+            if (rebuilt[0]) {
+                recorded++;
+            }
+        }
+        return recorded;
+    }
+
+    /**
+     * Get the number of receipts saved
+     */
+    public int getReceiptCount() {
+        return receiptsByReceiptNo.size();
+    }
+
+    private List<Receivable> pendingCopies(String loanAccountNo) {
+        List<Receivable> pending = new ArrayList<>();
+        for (Receivable installment : receivables.getOrDefault(loanAccountNo, List.of())) {
+            if (installment.getTotalAmount().signum() > 0) {
+                pending.add(copyOf(installment));
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Take the receipt number and idempotency key of a receipt, as the unique keys would
+     */
+    private void claimReceipt(ReceiptPayment receiptPayment) {
+        String requestId = receiptPayment.getRequestId();
+        if (requestId != null && receiptsByRequestId.putIfAbsent(requestId, receiptPayment) != null) {
+            throw new DuplicatePaymentRequestException(requestId, null);
+        }
+        if (receiptsByReceiptNo.putIfAbsent(receiptPayment.getReceiptNo(), receiptPayment) != null) {
+            if (requestId != null) {
+                receiptsByRequestId.remove(requestId, receiptPayment);
+            }
+            throw new DuplicateReceiptException(null);
+        }
+        receiptPayment.setId(receiptIds.incrementAndGet());
+        if (receiptPayment.getPaymentDate() != null) {
+            receiptHistory.computeIfAbsent(receiptPayment.getLoanAccountNo(), k -> new ConcurrentSkipListMap<>())
+                .put(new HistoryCursor(receiptPayment.getPaymentDate(), receiptPayment.getId()), receiptPayment);
+        }
+    }
+
+    private void releaseReceipt(ReceiptPayment receiptPayment) {
+        receiptsByReceiptNo.remove(receiptPayment.getReceiptNo(), receiptPayment);
+        if (receiptPayment.getRequestId() != null) {
+            receiptsByRequestId.remove(receiptPayment.getRequestId(), receiptPayment);
+        }
+        NavigableMap<HistoryCursor, ReceiptPayment> history = receiptHistory.get(receiptPayment.getLoanAccountNo());
+        if (history != null && receiptPayment.getPaymentDate() != null) {
+            history.remove(new HistoryCursor(receiptPayment.getPaymentDate(), receiptPayment.getId()));
+        }
+        receiptPayment.setId(null);
+    }
+
+    private void storeAllocation(Allocation allocation) {
+        allocation.setId(allocationIds.incrementAndGet());
+        if (allocation.getAllocationDate() != null) {
+            allocationHistory.computeIfAbsent(allocation.getLoanAccountNo(), k -> new ConcurrentSkipListMap<>())
+                .put(new HistoryCursor(allocation.getAllocationDate(), allocation.getId()), allocation);
+        }
+        if (allocation.getRequestId() != null) {
+            allocationsByRequestId.merge(allocation.getRequestId(), List.of(allocation), (stored, added) -> {
+                List<Allocation> updated = new ArrayList<>(stored);
+                updated.addAll(added);
+                return List.copyOf(updated);
+            });
+        }
+    }
+
+    /**
+     * Hand over up to pageSize history entries after a cursor, newest first
+     *
+     * @return cursor of the last entry handed over if more follow, otherwise null
+     */
+    private static <T> HistoryCursor readHistory(NavigableMap<HistoryCursor, T> history, HistoryCursor after,
+                                                 int pageSize, Consumer<T> consumer) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be greater than zero");
+        }
+        if (history == null) {
+            return null;
+        }
+        int count = 0;
+        HistoryCursor last = null;
+        for (Map.Entry<HistoryCursor, T> entry : (after != null ? history.tailMap(after, false) : history).entrySet()) {
+            if (count == pageSize) {
+                return last;
+            }
+            consumer.accept(entry.getValue());
+            last = entry.getKey();
+            count++;
+        }
+        return null;
+    }
+
+    private static BigDecimal sumOf(List<Receivable> installments) {
+        BigDecimal total = BigDecimal.ZERO;
+        if (installments != null) {
+            for (Receivable installment : installments) {
+                total = total.add(installment.getTotalAmount());
+            }
+        }
+        return total;
+    }
+
+    private static int indexOf(List<Receivable> installments, Long id) {
+        for (int i = 0; i < installments.size(); i++) {
+            if (installments.get(i).getId().equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Receivable copyOf(Receivable source) {
+        Receivable copy = new Receivable(source.getLoanAccountNo(), source.getDueDate(),
+            source.getPrincipalAmount(), source.getInterestAmount(), source.getPenalty());
+        copy.setId(source.getId());
+        copy.setEmiAmount(source.getEmiAmount());
+        copy.setTotalAmount(source.getTotalAmount());
+        copy.setCreatedDate(source.getCreatedDate());
+        copy.setPenaltyAccruedTo(source.getPenaltyAccruedTo());
+        copy.setVersion(source.getVersion());
+        return copy;
+    }
+}
@@ -0,0 +1,20 @@
+package com.emi.dao;
+
+import java.nio.file.Path;
+
+/**
+ * Thrown when a payment cannot be journaled because the journal is full and
+ * the database did not catch up in time; the payment was not posted and the
+ * request can be retried later
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class JournalFullException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public JournalFullException(Path journal, long usedBytes) {
+        super("Payment journal " + journal + " is full (" + usedBytes + " bytes waiting for the database)");
+    }
+}
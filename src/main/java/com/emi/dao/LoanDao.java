@@ -4,7 +4,10 @@ import com.emi.model.Receivable;
 import com.emi.model.ReceiptPayment;
 import com.emi.model.Allocation;
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Data Access Object interface for loan operations
@@ -16,13 +19,23 @@ import java.util.List;
 public interface LoanDao {
 
     /**
-     * Find receivable details by loan account number
+     * Find the pending dues of a loan account, summed over its pending installments
      *
      * @param loanAccountNo the loan account number
-     * @return Receivable object containing EMI and penalty details
+     * @return summary Receivable (see Receivable.summaryOf), or null if nothing is pending
      */
     Receivable findReceivableByLoanAccountNo(String loanAccountNo);
 
+    /**
+     * Find the pending dues of many loan accounts at once
+     * Equivalent to findReceivableByLoanAccountNo for each account, in one
+     * query per 1000 accounts instead of one round trip per account
+     *
+     * @param loanAccountNos the loan account numbers
+     * @return summary Receivable by loan account number; accounts with nothing pending are absent
+     */
+    Map<String, Receivable> findReceivablesByLoanAccountNos(Collection<String> loanAccountNos);
+
     /**
      * Save receipt payment record
      *
@@ -40,18 +53,162 @@ public interface LoanDao {
     Allocation saveAllocation(Allocation allocation);
 
     /**
-     * Get all pending receivables for a loan account
+     * Settle a payment: update the installments it was allocated to and save
+     * the allocations and receipt payment records in a single transaction
+     * Each installment update is conditional on the version that was read, so
+     * a payment posted against dues that another payment has since changed
+     * is rolled back instead of double-posting
+     *
+     * @param receivables the installments as read, with their allocations already deducted
+     * @param allocations the allocations to save, one per installment
+     * @param receiptPayment the receipt payment to save
+     * @return the saved ReceiptPayment object
+     * @throws StaleReceivableException if an installment changed since it was read
+     * @throws DuplicatePaymentRequestException if the receipt's request id was already posted
+     */
+    ReceiptPayment savePayment(List<Receivable> receivables, List<Allocation> allocations,
+                               ReceiptPayment receiptPayment);
+
+    /**
+     * Save new installments and add them to the pending balance of their accounts
+     * in a single transaction
+     *
+     * @param receivables the installments to save; ids are assigned
+     */
+    void saveReceivables(List<Receivable> receivables);
+
+    /**
+     * Save a batch of allocations and receipt payments in a single transaction
+     * Each allocation is deducted from the installment it names (receivableId)
+     * in the same transaction; the deduction only applies while the installment
+     * still covers it and still has the version the allocation was calculated
+     * against (Allocation.getReceivableVersion, when set), so the whole batch
+     * rolls back if any installment was settled or changed, e.g. by a penalty
+     * accrual, since it was read.
+     * The inserts go out as JDBC batches of batchSize rows
+     *
+     * @param allocations the allocations to save, any number per receipt
+     * @param receiptPayments the receipt payments to save
+     * @param batchSize rows per JDBC batch
+     * @throws StaleReceivableException if an installment changed or no longer covers its allocation
+     * @throws DuplicateReceiptException if a receipt number or idempotency key is already posted,
+     *         also when its installments were settled by that earlier posting
+     */
+    void savePayments(List<Allocation> allocations, List<ReceiptPayment> receiptPayments, int batchSize);
+
+    /**
+     * Find the receipt payment posted with an idempotency key
+     *
+     * @param requestId the client request id
+     * @return the ReceiptPayment, or null if no payment used the key
+     */
+    ReceiptPayment findReceiptPaymentByRequestId(String requestId);
+
+    /**
+     * Find the allocations of the payment posted with an idempotency key
+     *
+     * @param requestId the client request id
+     * @return the allocations in the order they were saved, empty if no payment used the key
+     */
+    List<Allocation> findAllocationsByRequestId(String requestId);
+
+    /**
+     * Read one page of a loan account's receipts, newest first
+     * Pages are read by keyset: each continues after the (payment date, id)
+     * of the previous page's last receipt instead of skipping rows, so a page
+     * deep in the history costs the same as the first. Receipts without a
+     * payment date are not listed.
+     *
+     * @param loanAccountNo the loan account number
+     * @param after getNextCursor of the previous page, or null for the newest receipts
+     * @param pageSize most receipts to return
+     * @return page of receipts, with the cursor of the next page if there are older receipts
+     */
+    HistoryPage<ReceiptHistoryEntry> findReceiptHistory(String loanAccountNo, HistoryCursor after, int pageSize);
+
+    /**
+     * Read one page of a loan account's allocations, newest first
+     * Paged by (allocation date, id) as findReceiptHistory is
+     *
+     * @param loanAccountNo the loan account number
+     * @param after getNextCursor of the previous page, or null for the newest allocations
+     * @param pageSize most allocations to return
+     * @return page of allocations, with the cursor of the next page if there are older allocations
+     */
+    HistoryPage<AllocationHistoryEntry> findAllocationHistory(String loanAccountNo, HistoryCursor after,
+                                                              int pageSize);
+
+    /**
+     * Get all pending installments for a loan account
      *
      * @param loanAccountNo the loan account number
-     * @return list of pending receivables
+     * @return list of pending receivables, oldest due date first
      */
     List<Receivable> getPendingReceivables(String loanAccountNo);
 
     /**
-     * Calculate total pending amount for a loan account
+     * Stream every pending installment of the loan book
+     * Rows are read through a forward-only cursor, fetchSize rows per round trip,
+     * and handed to the consumer one at a time without being kept, so memory use
+     * does not grow with the size of the portfolio. Each Receivable is detached.
+     *
+     * @param fetchSize rows fetched per database round trip
+     * @param consumer called once per pending installment, by loan account then oldest due date first
+     * @return number of installments streamed
+     */
+    long streamPendingReceivables(int fetchSize, Consumer<Receivable> consumer);
+
+    /**
+     * Stream the loan account number of every installment added after a given id
+     * Rows are read in id order through a forward-only cursor, settled
+     * installments included, so a caller can read the whole book once and
+     * then only what was added since. An account is handed over once per
+     * installment.
+     *
+     * @param afterId only installments with a greater id are read; 0 for the whole book
+     * @param fetchSize rows fetched per database round trip
+     * @param consumer called once per installment with its loan account number
+     * @return the highest installment id read, or afterId if there was none
+     */
+    long streamLoanAccountNos(long afterId, int fetchSize, Consumer<String> consumer);
+
+    /**
+     * Get the total pending amount of a loan account
+     * Read from the account's recorded pending balance, which saveReceivables,
+     * savePayment and savePayments keep in step with its receivables
      *
      * @param loanAccountNo the loan account number
      * @return total pending amount
      */
     BigDecimal getTotalPendingAmount(String loanAccountNo);
+
+    /**
+     * Calculate total pending amount for many loan accounts at once
+     * Equivalent to getTotalPendingAmount for each account, in one query per
+     * 1000 accounts instead of one round trip per account
+     *
+     * @param loanAccountNos the loan account numbers
+     * @return total pending amount by loan account number, zero for accounts without receivables
+     */
+    Map<String, BigDecimal> getTotalPendingAmounts(Collection<String> loanAccountNos);
+
+    /**
+     * Compare every recorded pending balance with the sum of the account's receivables
+     * Accounts with receivables but no recorded balance are reported too.
+     * Payments being posted while this runs may show up as mismatches;
+     * rebuildPendingBalances on such an account is harmless.
+     *
+     * @return accounts whose recorded balance is missing or differs, by loan account number
+     */
+    List<PendingBalanceMismatch> verifyPendingBalances();
+
+    /**
+     * Recompute the pending balance of loan accounts from their receivables
+     * Each account is recomputed under its balance row lock, so payments can be
+     * posted meanwhile without being lost or counted twice
+     *
+     * @param loanAccountNos the loan account numbers, typically from verifyPendingBalances
+     * @return number of accounts whose balance was recorded
+     */
+    int rebuildPendingBalances(Collection<String> loanAccountNos);
 }
@@ -0,0 +1,136 @@
+package com.emi.dao;
+
+import com.emi.metrics.MetricsRegistry;
+import com.emi.metrics.TimingProxy;
+import com.emi.service.EmiServiceFactory;
+import com.emi.util.AppConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Factory for the JVM-wide LoanDao instance
+ * Every service shares one instance so that cache eviction on payment is
+ * seen by all readers in the process
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public final class LoanDaoFactory {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoanDaoFactory.class);
+
+    private static volatile WriteBehindLoanDao writeBehind;
+
+    private LoanDaoFactory() {}
+
+    /**
+     * Get the shared LoanDao, an InMemoryLoanDao when dao.type=memory and
+     * LoanDaoImpl otherwise, wrapped in a CachingLoanDao when
+     * cache.receivable.enabled is set and in a WriteBehindLoanDao when
+     * journal.enabled is set
+     *
+     * @return shared LoanDao instance
+     */
+    public static LoanDao getLoanDao() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Get the receivable cache in front of the shared LoanDao
+     *
+     * @return CachingLoanDao, or null if caching is disabled
+     */
+    public static CachingLoanDao getReceivableCache() {
+        return Holder.INSTANCE instanceof CachingLoanDao ? (CachingLoanDao) Holder.INSTANCE : null;
+    }
+
+    /**
+     * Get the write-behind journal in front of the database
+     *
+     * @return WriteBehindLoanDao, or null if journal.enabled is not set or the shared LoanDao is not created yet
+     */
+    public static WriteBehindLoanDao getWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Write journaled payments to the database and close the journal
+     * Call before HibernateUtil.shutdown; does nothing when the journal is disabled
+     */
+    public static void shutdown() {
+        WriteBehindLoanDao journaled = writeBehind;
+        if (journaled == null) {
+            return;
+        }
+        try {
+            journaled.close();
+        } catch (IOException e) {
+            LOG.error("Error closing payment journal", e);
+        }
+    }
+
+    /**
+     * Check whether the shared LoanDao is backed by the database (dao.type=database, the default)
+     * rather than held in memory (dao.type=memory)
+     */
+    public static boolean usesDatabase() {
+        return !"memory".equalsIgnoreCase(AppConfig.getString("dao.type", "database"));
+    }
+
+    private static LoanDao create() {
+        LoanDao loanDao;
+        if (usesDatabase()) {
+            loanDao = new LoanDaoImpl();
+        } else {
+            InMemoryLoanDao inMemory = new InMemoryLoanDao();
+            inMemory.seedLoadTestAccounts(AppConfig.getInt("dao.memory.seed.accounts", 0));
+            loanDao = inMemory;
+        }
+        // Timed below the cache so loanDao.* latencies are database round trips
+        if (AppConfig.getBoolean("metrics.enabled", true)) {
+            loanDao = TimingProxy.wrap(LoanDao.class, loanDao, "loanDao", MetricsRegistry.getInstance());
+        }
+        if (AppConfig.getBoolean("journal.enabled", false)) {
+            writeBehind = openJournal(loanDao);
+            loanDao = writeBehind;
+        }
+        if (AppConfig.getBoolean("cache.receivable.enabled", true)) {
+            loanDao = new CachingLoanDao(loanDao,
+                AppConfig.getInt("cache.receivable.max.size", 10000),
+                AppConfig.getLong("cache.receivable.ttl.seconds", 300));
+        }
+        return loanDao;
+    }
+
+    private static WriteBehindLoanDao openJournal(LoanDao loanDao) {
+        Path file = Paths.get(AppConfig.getString("journal.file", "emi-payments.journal"));
+        try {
+            PaymentJournal journal = PaymentJournal.open(file,
+                AppConfig.getInt("journal.size.mb", 64) * 1024 * 1024,
+                AppConfig.getBoolean("journal.sync", true));
+            WriteBehindLoanDao journaled = new WriteBehindLoanDao(loanDao, journal,
+                AppConfig.getInt("journal.flush.batch.size", 500),
+                AppConfig.getLong("journal.flush.interval.ms", 50),
+                AppConfig.getLong("journal.retry.interval.ms", 1000),
+                AppConfig.getLong("journal.append.timeout.ms", 5000),
+                // Resolved on first use: the shared EmiService is built on top of this LoanDao
+                (installments, amount) -> EmiServiceFactory.getEmiService().calculateAllocation(installments, amount));
+            if (journaled.getRecoveredCount() > 0) {
+                LOG.info("Recovered {} journaled payments from {}", journaled.getRecoveredCount(), file);
+            }
+            journaled.start();
+            return journaled;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open payment journal " + file, e);
+        }
+    }
+
+    private static class Holder {
+        private static final LoanDao INSTANCE = create();
+    }
+}
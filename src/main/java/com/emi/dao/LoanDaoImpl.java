@@ -3,36 +3,91 @@ package com.emi.dao;
 import com.emi.model.Receivable;
 import com.emi.model.ReceiptPayment;
 import com.emi.model.Allocation;
+import com.emi.model.PendingBalance;
 import com.emi.util.HibernateUtil;
+import jakarta.persistence.OptimisticLockException;
+import org.hibernate.LockMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.StaleStateException;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
+import org.hibernate.query.MutationQuery;
 import org.hibernate.query.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Implementation of LoanDao interface
  * Contains Hibernate-based database operations for EMI payment system
+ * Writes go through a StatelessSession: receipts and allocations are only ever
+ * appended, so they skip the first-level cache and dirty checking and are
+ * sent as plain (batched) INSERTs
+ * The pending balance of each account (LMS_PENDING_BALANCE_POOJA) is updated
+ * in the same transaction as its receivables, so outstanding amounts are read
+ * by primary key instead of summed over the receivables
  *
  * @author EMI Payment System
  * @version 1.0
  */
 public class LoanDaoImpl implements LoanDao {
 
+    private static final Logger LOG = LoggerFactory.getLogger(LoanDaoImpl.class);
+
+    private static final String REQUEST_ID_CONSTRAINT = "UK_RECEIPTPAYMENT_REQUEST_ID";
+    private static final String RECEIPT_NO_CONSTRAINT = "UK_RECEIPTPAYMENT_RECEIPT_NO";
+    // Oracle rejects IN lists longer than 1000 elements (ORA-01795)
+    static final int MAX_IN_LIST_SIZE = 1000;
+
     @Override
     public Receivable findReceivableByLoanAccountNo(String loanAccountNo) {
+        return Receivable.summaryOf(getPendingReceivables(loanAccountNo));
+    }
+
+    @Override
+    public Map<String, Receivable> findReceivablesByLoanAccountNos(Collection<String> loanAccountNos) {
+        Map<String, Receivable> summaries = new HashMap<>();
         Session session = null;
         try {
             session = HibernateUtil.getSessionFactory().openSession();
-            Query<Receivable> query = session.createQuery(
-                "FROM Receivable WHERE loanAccountNo = :loanAccountNo", Receivable.class);
-            query.setParameter("loanAccountNo", loanAccountNo);
-            return query.uniqueResult();
+            Query<Receivable> query = session.createNamedQuery(
+                Receivable.FIND_PENDING_BY_LOAN_ACCOUNT_NOS, Receivable.class);
+            query.setReadOnly(true);
+            for (List<String> chunk : chunks(loanAccountNos)) {
+                query.setParameterList("loanAccountNos", chunk);
+                // Rows come back grouped by account, oldest installment first
+                List<Receivable> installments = new ArrayList<>();
+                for (Receivable installment : query.list()) {
+                    if (!installments.isEmpty()
+                            && !installments.get(0).getLoanAccountNo().equals(installment.getLoanAccountNo())) {
+                        summaries.put(installments.get(0).getLoanAccountNo(), Receivable.summaryOf(installments));
+                        installments.clear();
+                    }
+                    installments.add(installment);
+                }
+                if (!installments.isEmpty()) {
+                    summaries.put(installments.get(0).getLoanAccountNo(), Receivable.summaryOf(installments));
+                }
+                session.clear();
+            }
+            return summaries;
         } catch (Exception e) {
-            System.err.println("Error finding receivable by loan account number: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+            LOG.error("Error finding receivables by loan account numbers: {}", e.getMessage());
+            throw new RuntimeException("Failed to find receivables by loan account numbers", e);
         } finally {
             if (session != null) {
                 session.close();
@@ -42,13 +97,13 @@ public class LoanDaoImpl implements LoanDao {
 
     @Override
     public ReceiptPayment saveReceiptPayment(ReceiptPayment receiptPayment) {
-        Session session = null;
+        StatelessSession session = null;
         Transaction transaction = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = HibernateUtil.getSessionFactory().openStatelessSession();
             transaction = session.beginTransaction();
 
-            session.save(receiptPayment);
+            session.insert(receiptPayment);
 
             transaction.commit();
             return receiptPayment;
@@ -56,8 +111,7 @@ public class LoanDaoImpl implements LoanDao {
             if (transaction != null) {
                 transaction.rollback();
             }
-            System.err.println("Error saving receipt payment: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error saving receipt payment", e);
             throw new RuntimeException("Failed to save receipt payment", e);
         } finally {
             if (session != null) {
@@ -68,13 +122,13 @@ public class LoanDaoImpl implements LoanDao {
 
     @Override
     public Allocation saveAllocation(Allocation allocation) {
-        Session session = null;
+        StatelessSession session = null;
         Transaction transaction = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = HibernateUtil.getSessionFactory().openStatelessSession();
             transaction = session.beginTransaction();
 
-            session.save(allocation);
+            session.insert(allocation);
 
             transaction.commit();
             return allocation;
@@ -82,8 +136,7 @@ public class LoanDaoImpl implements LoanDao {
             if (transaction != null) {
                 transaction.rollback();
             }
-            System.err.println("Error saving allocation: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error saving allocation", e);
             throw new RuntimeException("Failed to save allocation", e);
         } finally {
             if (session != null) {
@@ -92,19 +145,292 @@ public class LoanDaoImpl implements LoanDao {
         }
     }
 
+    @Override
+    public ReceiptPayment savePayment(List<Receivable> receivables, List<Allocation> allocations,
+                                      ReceiptPayment receiptPayment) {
+        StatelessSession session = null;
+        Transaction transaction = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openStatelessSession();
+            transaction = session.beginTransaction();
+
+            // Write the installments as read: UPDATE ... WHERE id = ? AND version = ?
+            for (Receivable receivable : receivables) {
+                session.update(receivable);
+            }
+            for (Allocation allocation : allocations) {
+                session.insert(allocation);
+            }
+            session.insert(receiptPayment);
+            addToPendingBalances(session, allocatedAmounts(allocations), false);
+
+            transaction.commit();
+            return receiptPayment;
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            if (isOptimisticLockFailure(e)) {
+                throw new StaleReceivableException(receiptPayment.getLoanAccountNo(), e);
+            }
+            if (receiptPayment.getRequestId() != null && isConstraintViolation(e, REQUEST_ID_CONSTRAINT)) {
+                throw new DuplicatePaymentRequestException(receiptPayment.getRequestId(), e);
+            }
+            LOG.error("Error saving payment", e);
+            throw new RuntimeException("Failed to save payment", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @Override
+    public void saveReceivables(List<Receivable> receivables) {
+        StatelessSession session = null;
+        Transaction transaction = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openStatelessSession();
+            // Unbatched, so a new account's balance can be summed from the rows just inserted
+            session.setJdbcBatchSize(1);
+            transaction = session.beginTransaction();
+
+            Map<String, BigDecimal> added = new TreeMap<>();
+            for (Receivable receivable : receivables) {
+                session.insert(receivable);
+                added.merge(receivable.getLoanAccountNo(), receivable.getTotalAmount(), BigDecimal::add);
+            }
+            addToPendingBalances(session, added, true);
+
+            transaction.commit();
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            LOG.error("Error saving receivables: {}", e.getMessage());
+            throw new RuntimeException("Failed to save receivables", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @Override
+    public void savePayments(List<Allocation> allocations, List<ReceiptPayment> receiptPayments, int batchSize) {
+        StatelessSession session = null;
+        Transaction transaction = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openStatelessSession();
+            session.setJdbcBatchSize(batchSize);
+            transaction = session.beginTransaction();
+
+            MutationQuery settle = session.createNamedMutationQuery(Receivable.SETTLE_BY_ID);
+            for (Allocation allocation : allocations) {
+                settle.setParameter("id", allocation.getReceivableId());
+                settle.setParameter("penalty", allocation.getAllocatedPenalty());
+                settle.setParameter("interest", allocation.getAllocatedInterest());
+                settle.setParameter("principal", allocation.getAllocatedPrincipal());
+                settle.setParameter("version", allocation.getReceivableVersion(), Long.class);
+                if (settle.executeUpdate() == 0) {
+                    throw new StaleReceivableException(allocation.getLoanAccountNo(), null);
+                }
+            }
+            addToPendingBalances(session, allocatedAmounts(allocations), false);
+            // Inserts go out in JDBC batches of batchSize, one table at a time;
+            // nothing is kept in a persistence context, so no flush/clear is needed
+            for (Allocation allocation : allocations) {
+                session.insert(allocation);
+            }
+            for (ReceiptPayment receiptPayment : receiptPayments) {
+                session.insert(receiptPayment);
+            }
+
+            transaction.commit();
+        } catch (StaleReceivableException e) {
+            transaction.rollback();
+            // A receipt posted before (a replayed journal entry) finds its installments already settled
+            if (anyReceiptPosted(session, receiptPayments)) {
+                throw new DuplicateReceiptException(e);
+            }
+            throw e;
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            if (isConstraintViolation(e, RECEIPT_NO_CONSTRAINT) || isConstraintViolation(e, REQUEST_ID_CONSTRAINT)) {
+                throw new DuplicateReceiptException(e);
+            }
+            LOG.error("Error saving payment batch: {}", e.getMessage());
+            throw new RuntimeException("Failed to save payment batch", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @Override
+    public ReceiptPayment findReceiptPaymentByRequestId(String requestId) {
+        Session session = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openSession();
+            Query<ReceiptPayment> query = session.createNamedQuery(
+                ReceiptPayment.FIND_BY_REQUEST_ID, ReceiptPayment.class);
+            query.setParameter("requestId", requestId);
+            return query.uniqueResult();
+        } catch (Exception e) {
+            LOG.error("Error finding receipt payment by request id: {}", e.getMessage());
+            throw new RuntimeException("Failed to find receipt payment by request id", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @Override
+    public List<Allocation> findAllocationsByRequestId(String requestId) {
+        Session session = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openSession();
+            Query<Allocation> query = session.createNamedQuery(Allocation.FIND_BY_REQUEST_ID, Allocation.class);
+            query.setParameter("requestId", requestId);
+            return query.list();
+        } catch (Exception e) {
+            LOG.error("Error finding allocations by request id: {}", e.getMessage());
+            throw new RuntimeException("Failed to find allocations by request id", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @Override
+    public HistoryPage<ReceiptHistoryEntry> findReceiptHistory(String loanAccountNo, HistoryCursor after,
+                                                               int pageSize) {
+        return findHistory("receipt", ReceiptPayment.FIND_HISTORY, ReceiptPayment.FIND_HISTORY_AFTER,
+            ReceiptHistoryEntry.class, ReceiptHistoryEntry::getCursor, loanAccountNo, after, pageSize);
+    }
+
+    @Override
+    public HistoryPage<AllocationHistoryEntry> findAllocationHistory(String loanAccountNo, HistoryCursor after,
+                                                                     int pageSize) {
+        return findHistory("allocation", Allocation.FIND_HISTORY, Allocation.FIND_HISTORY_AFTER,
+            AllocationHistoryEntry.class, AllocationHistoryEntry::getCursor, loanAccountNo, after, pageSize);
+    }
+
+    /**
+     * Read one keyset page of history as projections
+     * One row beyond the page is fetched to tell whether an older page exists
+     *
+     * @param firstPageQuery named query for the newest entries
+     * @param nextPageQuery named query for the entries after afterDate/afterId
+     */
+    private static <T> HistoryPage<T> findHistory(String history, String firstPageQuery, String nextPageQuery,
+                                                  Class<T> entryType, Function<T, HistoryCursor> cursorOf,
+                                                  String loanAccountNo, HistoryCursor after, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be greater than zero");
+        }
+        StatelessSession session = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openStatelessSession();
+            Query<T> query = session.createNamedQuery(after == null ? firstPageQuery : nextPageQuery, entryType);
+            query.setParameter("loanAccountNo", loanAccountNo);
+            if (after != null) {
+                query.setParameter("afterDate", after.getDate());
+                query.setParameter("afterId", after.getId());
+            }
+            query.setMaxResults(pageSize + 1);
+            List<T> entries = query.list();
+            if (entries.size() <= pageSize) {
+                return new HistoryPage<>(entries, null);
+            }
+            entries = entries.subList(0, pageSize);
+            return new HistoryPage<>(entries, cursorOf.apply(entries.get(pageSize - 1)));
+        } catch (Exception e) {
+            LOG.error("Error finding {} history: {}", history, e.getMessage());
+            throw new RuntimeException("Failed to find " + history + " history", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
     @Override
     public List<Receivable> getPendingReceivables(String loanAccountNo) {
         Session session = null;
         try {
             session = HibernateUtil.getSessionFactory().openSession();
-            Query<Receivable> query = session.createQuery(
-                "FROM Receivable WHERE loanAccountNo = :loanAccountNo AND totalAmount > 0", Receivable.class);
+            Query<Receivable> query = session.createNamedQuery(
+                Receivable.FIND_PENDING_BY_LOAN_ACCOUNT_NO, Receivable.class);
             query.setParameter("loanAccountNo", loanAccountNo);
             return query.list();
         } catch (Exception e) {
-            System.err.println("Error getting pending receivables: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+            LOG.error("Error getting pending receivables: {}", e.getMessage());
+            throw new RuntimeException("Failed to get pending receivables", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @Override
+    public long streamPendingReceivables(int fetchSize, Consumer<Receivable> consumer) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be greater than zero");
+        }
+        // A stateless session keeps no persistence context, so scrolled rows are never retained
+        StatelessSession session = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openStatelessSession();
+            Query<Receivable> query = session.createNamedQuery(Receivable.FIND_ALL_PENDING, Receivable.class);
+            query.setFetchSize(fetchSize);
+            long count = 0;
+            try (ScrollableResults<Receivable> rows = query.scroll(ScrollMode.FORWARD_ONLY)) {
+                while (rows.next()) {
+                    consumer.accept(rows.get());
+                    count++;
+                }
+            }
+            return count;
+        } catch (Exception e) {
+            LOG.error("Error streaming pending receivables: {}", e.getMessage());
+            throw new RuntimeException("Failed to stream pending receivables", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @Override
+    public long streamLoanAccountNos(long afterId, int fetchSize, Consumer<String> consumer) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be greater than zero");
+        }
+        StatelessSession session = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openStatelessSession();
+            Query<Object[]> query = session.createNamedQuery(Receivable.FIND_LOAN_ACCOUNT_NOS_AFTER_ID, Object[].class);
+            query.setParameter("afterId", afterId);
+            query.setFetchSize(fetchSize);
+            long highestId = afterId;
+            try (ScrollableResults<Object[]> rows = query.scroll(ScrollMode.FORWARD_ONLY)) {
+                while (rows.next()) {
+                    Object[] row = rows.get();
+                    consumer.accept((String) row[1]);
+                    highestId = (Long) row[0];
+                }
+            }
+            return highestId;
+        } catch (Exception e) {
+            LOG.error("Error streaming loan account numbers: {}", e.getMessage());
+            throw new RuntimeException("Failed to stream loan account numbers", e);
         } finally {
             if (session != null) {
                 session.close();
@@ -117,14 +443,17 @@ public class LoanDaoImpl implements LoanDao {
         Session session = null;
         try {
             session = HibernateUtil.getSessionFactory().openSession();
-            Query<BigDecimal> query = session.createQuery(
-                "SELECT COALESCE(SUM(totalAmount), 0) FROM Receivable WHERE loanAccountNo = :loanAccountNo",
-                BigDecimal.class);
+            PendingBalance balance = session.get(PendingBalance.class, loanAccountNo);
+            if (balance != null) {
+                return balance.getTotalPending();
+            }
+            // No balance recorded (receivables loaded outside the application): sum them
+            Query<BigDecimal> query = session.createNamedQuery(
+                Receivable.TOTAL_PENDING_BY_LOAN_ACCOUNT_NO, BigDecimal.class);
             query.setParameter("loanAccountNo", loanAccountNo);
             return query.uniqueResult();
         } catch (Exception e) {
-            System.err.println("Error calculating total pending amount: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error calculating total pending amount", e);
             return BigDecimal.ZERO;
         } finally {
             if (session != null) {
@@ -132,4 +461,199 @@ public class LoanDaoImpl implements LoanDao {
             }
         }
     }
+
+    @Override
+    public Map<String, BigDecimal> getTotalPendingAmounts(Collection<String> loanAccountNos) {
+        Map<String, BigDecimal> totals = new HashMap<>();
+        Session session = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openSession();
+            session.setDefaultReadOnly(true);
+            Query<PendingBalance> balances = session.createNamedQuery(
+                PendingBalance.FIND_BY_LOAN_ACCOUNT_NOS, PendingBalance.class);
+            Query<Object[]> sums = session.createNamedQuery(
+                Receivable.TOTAL_PENDING_BY_LOAN_ACCOUNT_NOS, Object[].class);
+            for (List<String> chunk : chunks(loanAccountNos)) {
+                balances.setParameterList("loanAccountNos", chunk);
+                for (PendingBalance balance : balances.list()) {
+                    totals.put(balance.getLoanAccountNo(), balance.getTotalPending());
+                }
+                session.clear();
+
+                List<String> unrecorded = new ArrayList<>();
+                for (String loanAccountNo : chunk) {
+                    if (!totals.containsKey(loanAccountNo)) {
+                        totals.put(loanAccountNo, BigDecimal.ZERO);
+                        unrecorded.add(loanAccountNo);
+                    }
+                }
+                if (!unrecorded.isEmpty()) {
+                    sums.setParameterList("loanAccountNos", unrecorded);
+                    for (Object[] row : sums.list()) {
+                        if (row[1] != null) {
+                            totals.put((String) row[0], (BigDecimal) row[1]);
+                        }
+                    }
+                }
+            }
+            return totals;
+        } catch (Exception e) {
+            LOG.error("Error calculating total pending amounts: {}", e.getMessage());
+            throw new RuntimeException("Failed to calculate total pending amounts", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @Override
+    public List<PendingBalanceMismatch> verifyPendingBalances() {
+        StatelessSession session = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openStatelessSession();
+            List<PendingBalanceMismatch> mismatches = new ArrayList<>();
+            for (Object[] row : session.createNamedQuery(PendingBalance.FIND_MISMATCHED, Object[].class).list()) {
+                mismatches.add(new PendingBalanceMismatch((String) row[0], (BigDecimal) row[1], (BigDecimal) row[2]));
+            }
+            for (Object[] row : session.createNamedQuery(PendingBalance.FIND_ORPHANED, Object[].class).list()) {
+                mismatches.add(new PendingBalanceMismatch((String) row[0], (BigDecimal) row[1], BigDecimal.ZERO));
+            }
+            mismatches.sort(Comparator.comparing(PendingBalanceMismatch::getLoanAccountNo));
+            return mismatches;
+        } catch (Exception e) {
+            LOG.error("Error verifying pending balances: {}", e.getMessage());
+            throw new RuntimeException("Failed to verify pending balances", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * Recompute each account in its own short transaction
+     * The balance row is locked before the receivables are summed: a payment
+     * that already updated the row has committed by then and is in the sum, and
+     * one that has not yet reached the row waits and applies its amount on top
+     */
+    @Override
+    public int rebuildPendingBalances(Collection<String> loanAccountNos) {
+        StatelessSession session = null;
+        Transaction transaction = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openStatelessSession();
+            MutationQuery recompute = session.createNamedMutationQuery(PendingBalance.RECOMPUTE_BY_LOAN_ACCOUNT_NO);
+            MutationQuery insert = session.createNamedMutationQuery(PendingBalance.INSERT_FROM_RECEIVABLES);
+            int recorded = 0;
+            for (String loanAccountNo : new TreeSet<>(loanAccountNos)) {
+                transaction = session.beginTransaction();
+                PendingBalance balance = session.get(PendingBalance.class, loanAccountNo, LockMode.PESSIMISTIC_WRITE);
+                MutationQuery rebuild = balance != null ? recompute : insert;
+                rebuild.setParameter("loanAccountNo", loanAccountNo);
+                recorded += rebuild.executeUpdate();
+                transaction.commit();
+            }
+            return recorded;
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            LOG.error("Error rebuilding pending balances: {}", e.getMessage());
+            throw new RuntimeException("Failed to rebuild pending balances", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * Add amounts to the pending balance of accounts
+     * Callers pass the accounts sorted, so concurrent transactions lock balance rows in the same order
+     *
+     * @param amounts amount to add by loan account number, negative to deduct
+     * @param insertMissing record the balance of an account that has none from its receivables
+     */
+    static void addToPendingBalances(StatelessSession session, Map<String, BigDecimal> amounts,
+                                     boolean insertMissing) {
+        MutationQuery add = session.createNamedMutationQuery(PendingBalance.ADD_BY_LOAN_ACCOUNT_NO);
+        for (Map.Entry<String, BigDecimal> amount : amounts.entrySet()) {
+            add.setParameter("loanAccountNo", amount.getKey());
+            add.setParameter("amount", amount.getValue());
+            // An account without a balance row is summed on read until it is rebuilt
+            if (add.executeUpdate() == 0 && insertMissing) {
+                session.createNamedMutationQuery(PendingBalance.INSERT_FROM_RECEIVABLES)
+                    .setParameter("loanAccountNo", amount.getKey())
+                    .executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Total the allocations by account, in account order, negated for deduction from the pending balance
+     */
+    private static Map<String, BigDecimal> allocatedAmounts(List<Allocation> allocations) {
+        Map<String, BigDecimal> amounts = new TreeMap<>();
+        for (Allocation allocation : allocations) {
+            amounts.merge(allocation.getLoanAccountNo(),
+                allocation.getAllocatedPenalty().add(allocation.getAllocatedEmi()).negate(), BigDecimal::add);
+        }
+        return amounts;
+    }
+
+    /**
+     * Check whether any of the receipt numbers is already in LMS_RECEIPTPAYMENT_DTL_POOJA
+     */
+    private static boolean anyReceiptPosted(StatelessSession session, List<ReceiptPayment> receiptPayments) {
+        List<String> receiptNos = new ArrayList<>(receiptPayments.size());
+        for (ReceiptPayment receiptPayment : receiptPayments) {
+            receiptNos.add(receiptPayment.getReceiptNo());
+        }
+        Query<Long> query = session.createNamedQuery(ReceiptPayment.COUNT_BY_RECEIPT_NOS, Long.class);
+        for (List<String> chunk : chunks(receiptNos)) {
+            query.setParameterList("receiptNos", chunk);
+            if (query.uniqueResult() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Split loan account numbers into distinct IN lists of at most MAX_IN_LIST_SIZE
+     */
+    static List<List<String>> chunks(Collection<String> loanAccountNos) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(loanAccountNos));
+        List<List<String>> chunks = new ArrayList<>((distinct.size() + MAX_IN_LIST_SIZE - 1) / MAX_IN_LIST_SIZE);
+        for (int from = 0; from < distinct.size(); from += MAX_IN_LIST_SIZE) {
+            chunks.add(distinct.subList(from, Math.min(from + MAX_IN_LIST_SIZE, distinct.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Check whether a failure was caused by violating the named constraint
+     * The constraint name appears in the driver message on both Oracle (ORA-00001) and H2
+     */
+    private static boolean isConstraintViolation(Throwable failure, String constraintName) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().toUpperCase().contains(constraintName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether a failure was caused by a version check on update
+     */
+    static boolean isOptimisticLockFailure(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof OptimisticLockException || t instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
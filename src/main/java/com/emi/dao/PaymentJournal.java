@@ -0,0 +1,365 @@
+package com.emi.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal in a fixed-size memory-mapped file, used as a ring
+ * Records are appended at the write position and released, oldest first,
+ * once they have been written to the database; released space is reused.
+ *
+ * File layout: a 64-byte header (magic, format, checkpoint offset and the
+ * sequence of the first unreleased record) followed by the record area.
+ * Each record is [int length][long sequence][int crc][payload]; a length
+ * of -1 (or fewer than 16 bytes left) means the next record starts at the
+ * beginning of the record area. On open, records are read from the
+ * checkpoint for as long as their sequence numbers follow on and their CRC
+ * matches, so a record torn by a crash ends recovery.
+ *
+ * An append that does not fit in the free space waits for records to be
+ * released, up to a timeout, which is how a slow database pushes back on
+ * payment posting. Safe for concurrent use.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class PaymentJournal implements Closeable {
+
+    private static final int MAGIC = 0x454D494A; // "EMIJ"
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int CHECKPOINT_OFFSET_POS = 8;
+    private static final int CHECKPOINT_SEQUENCE_POS = 16;
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int WRAP = -1;
+
+    /**
+     * A record read back from the journal on open
+     */
+    public static final class Record {
+        private final long sequence;
+        private final byte[] payload;
+
+        Record(long sequence, byte[] payload) {
+            this.sequence = sequence;
+            this.payload = payload;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final boolean syncOnAppend;
+    private final int end;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition spaceFreed = lock.newCondition();
+    // End offset of every unreleased record, oldest first (index i is sequence firstSequence + i)
+    private final Deque<Integer> recordEnds = new ArrayDeque<>();
+    private final List<Record> recovered;
+    private long firstSequence;
+    private long nextSequence;
+    private int readPosition;
+    private int writePosition;
+    private long usedBytes;
+    private boolean closed;
+
+    private PaymentJournal(Path file, FileChannel channel, MappedByteBuffer buffer, boolean syncOnAppend) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.syncOnAppend = syncOnAppend;
+        this.end = buffer.capacity();
+        this.recovered = recover();
+    }
+
+    /**
+     * Open a journal, creating the file if it does not exist
+     * Records left unreleased by the previous run are available from getRecoveredRecords
+     *
+     * @param file journal file, on local disk
+     * @param sizeBytes size of the file; an existing journal keeps its own size
+     * @param syncOnAppend force every appended record to disk before append returns
+     * @return the open journal
+     * @throws IOException if the file cannot be opened or is not a payment journal
+     */
+    public static PaymentJournal open(Path file, int sizeBytes, boolean syncOnAppend) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            int size = created ? sizeBytes : (int) Math.min(channel.size(), Integer.MAX_VALUE);
+            if (size < HEADER_SIZE + 4 * RECORD_HEADER_SIZE) {
+                throw new IllegalArgumentException("Journal size is too small: " + size + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (created) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, FORMAT);
+                buffer.putLong(CHECKPOINT_OFFSET_POS, HEADER_SIZE);
+                buffer.putLong(CHECKPOINT_SEQUENCE_POS, 1);
+                buffer.force();
+            } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+                throw new IOException("Not a payment journal: " + file);
+            }
+            return new PaymentJournal(file, channel, buffer, syncOnAppend);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the records the previous run appended but never released, oldest first
+     */
+    public List<Record> getRecoveredRecords() {
+        return recovered;
+    }
+
+    /**
+     * Append a record, waiting for space if the journal is full
+     *
+     * @param payload record contents
+     * @param timeoutMillis longest time to wait for space
+     * @return sequence number of the record
+     * @throws JournalFullException if no space was released in time
+     */
+    public long append(byte[] payload, long timeoutMillis) {
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        if (recordSize >= end - HEADER_SIZE) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit the journal");
+        }
+        lock.lock();
+        try {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            // Strictly less than the capacity, so the write position never catches up with the read position
+            while (!closed && usedBytes + wasteBefore(recordSize) + recordSize >= end - HEADER_SIZE) {
+                if (remainingNanos <= 0) {
+                    throw new JournalFullException(file, usedBytes);
+                }
+                remainingNanos = spaceFreed.awaitNanos(remainingNanos);
+            }
+            if (closed) {
+                throw new IllegalStateException("Payment journal is closed: " + file);
+            }
+
+            int waste = wasteBefore(recordSize);
+            if (writePosition + recordSize > end) {
+                if (waste >= 4) {
+                    buffer.putInt(writePosition, WRAP);
+                    if (syncOnAppend) {
+                        buffer.force(writePosition, 4);
+                    }
+                }
+                writePosition = HEADER_SIZE;
+            }
+            int start = writePosition;
+            long sequence = nextSequence++;
+            buffer.putInt(start, payload.length);
+            buffer.putLong(start + 4, sequence);
+            buffer.putInt(start + 12, crc(sequence, payload));
+            buffer.put(start + RECORD_HEADER_SIZE, payload);
+            if (syncOnAppend) {
+                buffer.force(start, recordSize);
+            }
+            writePosition = start + recordSize;
+            usedBytes += waste + recordSize;
+            recordEnds.addLast(writePosition);
+            return sequence;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JournalFullException(file, usedBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release every record up to and including a sequence number, making its space reusable
+     * The checkpoint is forced to disk, so released records are not recovered after a restart
+     *
+     * @param sequence sequence of the last record written to the database
+     */
+    public void release(long sequence) {
+        lock.lock();
+        try {
+            if (sequence < firstSequence) {
+                return;
+            }
+            if (sequence >= nextSequence) {
+                throw new IllegalArgumentException("Record " + sequence + " has not been appended");
+            }
+            int newReadPosition = readPosition;
+            while (firstSequence <= sequence) {
+                newReadPosition = recordEnds.removeFirst();
+                firstSequence++;
+            }
+            usedBytes -= newReadPosition >= readPosition
+                ? newReadPosition - readPosition
+                : (end - readPosition) + (newReadPosition - HEADER_SIZE);
+            readPosition = newReadPosition;
+            if (recordEnds.isEmpty()) {
+                // Empty again: waste from wrapping has been released as well
+                usedBytes = 0;
+            }
+
+            buffer.putLong(CHECKPOINT_OFFSET_POS, readPosition);
+            buffer.putLong(CHECKPOINT_SEQUENCE_POS, firstSequence);
+            buffer.force(0, HEADER_SIZE);
+            spaceFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of appended records not yet released
+     */
+    public int getPendingRecords() {
+        lock.lock();
+        try {
+            return recordEnds.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the sequence of the oldest unreleased record, or of the next record when none is left
+     */
+    public long getFirstPendingSequence() {
+        lock.lock();
+        try {
+            return firstSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the bytes held by unreleased records
+     */
+    public long getUsedBytes() {
+        lock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the bytes available to records
+     */
+    public long getCapacityBytes() {
+        return end - HEADER_SIZE;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Force outstanding writes and close the file
+     * Unreleased records stay in the file and are recovered on the next open
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.force();
+            spaceFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        channel.close();
+    }
+
+    /**
+     * Bytes skipped at the end of the record area when the record does not fit before it
+     */
+    private int wasteBefore(int recordSize) {
+        return writePosition + recordSize > end ? end - writePosition : 0;
+    }
+
+    /**
+     * Read the unreleased records from the checkpoint and position the journal after them
+     */
+    private List<Record> recover() {
+        long checkpointOffset = buffer.getLong(CHECKPOINT_OFFSET_POS);
+        firstSequence = buffer.getLong(CHECKPOINT_SEQUENCE_POS);
+        if (checkpointOffset < HEADER_SIZE || checkpointOffset > end) {
+            throw new IllegalStateException("Corrupt payment journal checkpoint: " + checkpointOffset);
+        }
+        readPosition = (int) checkpointOffset;
+        nextSequence = firstSequence;
+
+        List<Record> records = new ArrayList<>();
+        int position = readPosition;
+        long scanned = 0;
+        int lastEnd = readPosition;
+        long usedAtLastEnd = 0;
+        while (scanned < end - HEADER_SIZE) {
+            if (end - position < RECORD_HEADER_SIZE || buffer.getInt(position) == WRAP) {
+                scanned += end - position;
+                position = HEADER_SIZE;
+                continue;
+            }
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > end - position - RECORD_HEADER_SIZE) {
+                break;
+            }
+            long sequence = buffer.getLong(position + 4);
+            if (sequence != nextSequence) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + RECORD_HEADER_SIZE, payload);
+            if (buffer.getInt(position + 12) != crc(sequence, payload)) {
+                break;
+            }
+            records.add(new Record(sequence, payload));
+            nextSequence++;
+            position += RECORD_HEADER_SIZE + length;
+            scanned += RECORD_HEADER_SIZE + length;
+            recordEnds.addLast(position);
+            lastEnd = position;
+            usedAtLastEnd = scanned;
+        }
+        writePosition = lastEnd;
+        usedBytes = usedAtLastEnd;
+        return List.copyOf(records);
+    }
+
+    private static int crc(long sequence, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putLong(0, sequence));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,51 @@
+package com.emi.dao;
+
+import com.emi.model.PenaltyAccrualPartition;
+import com.emi.model.Receivable;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Data Access Object interface for the end-of-day penalty accrual
+ * A run for a business date splits the loan accounts with overdue
+ * installments into ranges (partitions), which can be accrued in parallel and
+ * are checkpointed as they go, so a failed run resumes where it stopped
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public interface PenaltyAccrualDao {
+
+    /**
+     * Start or resume the accrual run of a business date
+     * The first call for a date splits the accounts that have pending
+     * installments due before it, not yet accrued to it, into about
+     * partitionCount ranges of equal account count and records them; later
+     * calls return the recorded partitions, done or not, with their checkpoints
+     *
+     * @param businessDate the date penalties are accrued to
+     * @param partitionCount partitions to split a new run into
+     * @return partitions of the run in partition order; empty if nothing is overdue
+     */
+    List<PenaltyAccrualPartition> startRun(LocalDate businessDate, int partitionCount);
+
+    /**
+     * Accrue penalties on the overdue installments of one partition
+     * Installments are read from the partition's checkpoint in account order,
+     * batchSize at a time. Each batch is written in one transaction with JDBC
+     * batched, version-checked updates: the accrued amount is added to the
+     * penalty, total amount and pending balance, penalty_accrued_to is set to
+     * the business date, and the checkpoint moves to the batch's last account.
+     * A batch that a payment changed meanwhile is read again and retried.
+     *
+     * @param partition partition from startRun
+     * @param batchSize installments per transaction and JDBC batch
+     * @param accrual penalty to add to an installment as read, zero for none
+     * @return the partition, done, with its cumulative totals
+     */
+    PenaltyAccrualPartition accruePartition(PenaltyAccrualPartition partition, int batchSize,
+                                            Function<Receivable, BigDecimal> accrual);
+}
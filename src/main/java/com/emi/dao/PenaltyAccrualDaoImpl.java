@@ -0,0 +1,192 @@
+package com.emi.dao;
+
+import com.emi.model.PenaltyAccrualPartition;
+import com.emi.model.Receivable;
+import com.emi.util.HibernateUtil;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.query.MutationQuery;
+import org.hibernate.query.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Implementation of PenaltyAccrualDao interface
+ * Each partition is accrued through its own StatelessSession, so a run holds
+ * one pooled connection per partition in progress. Installments leave the
+ * accrual query once penalty_accrued_to reaches the business date, so every
+ * batch is read from the checkpoint account onwards and an account split
+ * across batches is simply finished by the next one.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class PenaltyAccrualDaoImpl implements PenaltyAccrualDao {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PenaltyAccrualDaoImpl.class);
+
+    private static final int FETCH_SIZE = 1000;
+    // Attempts at a batch whose installments keep being changed by payments
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+
+    @Override
+    public List<PenaltyAccrualPartition> startRun(LocalDate businessDate, int partitionCount) {
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("Partition count must be greater than zero");
+        }
+        StatelessSession session = null;
+        Transaction transaction = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openStatelessSession();
+            transaction = session.beginTransaction();
+
+            List<PenaltyAccrualPartition> partitions = session.createNamedQuery(
+                    PenaltyAccrualPartition.FIND_BY_BUSINESS_DATE, PenaltyAccrualPartition.class)
+                .setParameter("businessDate", businessDate)
+                .list();
+            if (!partitions.isEmpty()) {
+                transaction.commit();
+                return partitions;
+            }
+
+            long accounts = session.createNamedQuery(Receivable.COUNT_ACCOUNTS_TO_ACCRUE, Long.class)
+                .setParameter("businessDate", businessDate)
+                .uniqueResult();
+            long accountsPerPartition = Math.max(1, (accounts + partitionCount - 1) / partitionCount);
+            Query<String> overdue = session.createNamedQuery(Receivable.FIND_ACCOUNTS_TO_ACCRUE, String.class);
+            overdue.setParameter("businessDate", businessDate);
+            overdue.setFetchSize(FETCH_SIZE);
+            try (ScrollableResults<String> rows = overdue.scroll(ScrollMode.FORWARD_ONLY)) {
+                long index = 0;
+                PenaltyAccrualPartition current = null;
+                while (rows.next()) {
+                    String loanAccountNo = rows.get();
+                    if (index++ % accountsPerPartition == 0) {
+                        current = new PenaltyAccrualPartition(businessDate, partitions.size(),
+                            loanAccountNo, loanAccountNo);
+                        partitions.add(current);
+                    } else {
+                        current.setToAccountNo(loanAccountNo);
+                    }
+                }
+            }
+            for (PenaltyAccrualPartition partition : partitions) {
+                session.insert(partition);
+            }
+
+            transaction.commit();
+            return partitions;
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            LOG.error("Error starting penalty accrual for {}: {}", businessDate, e.getMessage());
+            throw new RuntimeException("Failed to start penalty accrual for " + businessDate, e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @Override
+    public PenaltyAccrualPartition accruePartition(PenaltyAccrualPartition partition, int batchSize,
+                                                   Function<Receivable, BigDecimal> accrual) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than zero");
+        }
+        LocalDate businessDate = partition.getBusinessDate();
+        StatelessSession session = null;
+        Transaction transaction = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openStatelessSession();
+            session.setJdbcBatchSize(batchSize);
+            Query<Receivable> pending = session.createNamedQuery(Receivable.FIND_TO_ACCRUE_IN_RANGE, Receivable.class);
+            pending.setParameter("toAccountNo", partition.getToAccountNo());
+            pending.setParameter("businessDate", businessDate);
+            pending.setMaxResults(batchSize);
+            MutationQuery checkpoint = session.createNamedMutationQuery(PenaltyAccrualPartition.CHECKPOINT);
+            checkpoint.setParameter("businessDate", businessDate);
+            checkpoint.setParameter("partitionNo", partition.getPartitionNo());
+
+            String fromAccountNo = partition.getCheckpointAccountNo() != null
+                ? partition.getCheckpointAccountNo() : partition.getFromAccountNo();
+            int attempt = 1;
+            while (true) {
+                transaction = session.beginTransaction();
+                pending.setParameter("fromAccountNo", fromAccountNo);
+                List<Receivable> installments = pending.list();
+                if (installments.isEmpty()) {
+                    session.createNamedMutationQuery(PenaltyAccrualPartition.COMPLETE)
+                        .setParameter("businessDate", businessDate)
+                        .setParameter("partitionNo", partition.getPartitionNo())
+                        .executeUpdate();
+                    transaction.commit();
+                    partition.setStatus(PenaltyAccrualPartition.DONE);
+                    return partition;
+                }
+
+                // Versioned UPDATEs, sent as one JDBC batch before the first balance update
+                Map<String, BigDecimal> accrued = new TreeMap<>();
+                BigDecimal batchPenalty = BigDecimal.ZERO;
+                for (Receivable installment : installments) {
+                    BigDecimal amount = accrual.apply(installment);
+                    if (amount.signum() > 0) {
+                        BigDecimal penalty = installment.getPenalty() != null ? installment.getPenalty() : BigDecimal.ZERO;
+                        installment.setPenalty(penalty.add(amount));
+                        installment.setTotalAmount(installment.getTotalAmount().add(amount));
+                        accrued.merge(installment.getLoanAccountNo(), amount, BigDecimal::add);
+                        batchPenalty = batchPenalty.add(amount);
+                    }
+                    installment.setPenaltyAccruedTo(businessDate);
+                    session.update(installment);
+                }
+                String lastAccountNo = installments.get(installments.size() - 1).getLoanAccountNo();
+                try {
+                    LoanDaoImpl.addToPendingBalances(session, accrued, false);
+                    checkpoint.setParameter("checkpointAccountNo", lastAccountNo);
+                    checkpoint.setParameter("installments", (long) installments.size());
+                    checkpoint.setParameter("penalty", batchPenalty);
+                    checkpoint.executeUpdate();
+                    transaction.commit();
+                } catch (RuntimeException e) {
+                    if (!LoanDaoImpl.isOptimisticLockFailure(e) || attempt >= MAX_BATCH_ATTEMPTS) {
+                        throw e;
+                    }
+                    // A payment settled one of the installments after it was read: read the batch again
+                    if (transaction.isActive()) {
+                        transaction.rollback();
+                    }
+                    attempt++;
+                    continue;
+                }
+                attempt = 1;
+                fromAccountNo = lastAccountNo;
+                partition.setCheckpointAccountNo(lastAccountNo);
+                partition.setInstallmentsAccrued(partition.getInstallmentsAccrued() + installments.size());
+                partition.setPenaltyAccrued(partition.getPenaltyAccrued().add(batchPenalty));
+            }
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            LOG.error("Error accruing penalties for {} partition {}: {}", businessDate, partition.getPartitionNo(),
+                e.getMessage());
+            throw new RuntimeException("Failed to accrue penalties for partition " + partition.getPartitionNo(), e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.emi.dao;
+
+import java.math.BigDecimal;
+
+/**
+ * A loan account whose recorded pending balance differs from the sum of its receivables
+ * Reported by LoanDao.verifyPendingBalances
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class PendingBalanceMismatch {
+
+    private final String loanAccountNo;
+    private final BigDecimal recordedAmount;
+    private final BigDecimal actualAmount;
+
+    public PendingBalanceMismatch(String loanAccountNo, BigDecimal recordedAmount, BigDecimal actualAmount) {
+        this.loanAccountNo = loanAccountNo;
+        this.recordedAmount = recordedAmount;
+        this.actualAmount = actualAmount;
+    }
+
+    public String getLoanAccountNo() {
+        return loanAccountNo;
+    }
+
+    /**
+     * Get the recorded pending balance
+     *
+     * @return recorded amount, or null if the account has no balance recorded
+     */
+    public BigDecimal getRecordedAmount() {
+        return recordedAmount;
+    }
+
+    /**
+     * Get the sum of total_amount over the account's receivables
+     */
+    public BigDecimal getActualAmount() {
+        return actualAmount;
+    }
+
+    @Override
+    public String toString() {
+        return loanAccountNo + ": recorded " + (recordedAmount != null ? recordedAmount : "none")
+            + ", receivables " + actualAmount;
+    }
+}
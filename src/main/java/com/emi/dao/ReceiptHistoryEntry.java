@@ -0,0 +1,62 @@
+package com.emi.dao;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A receipt in a loan account's payment history
+ * Read as a projection of LMS_RECEIPTPAYMENT_DTL_POOJA, so listing history
+ * does not load ReceiptPayment entities
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class ReceiptHistoryEntry {
+
+    private final Long id;
+    private final String receiptNo;
+    private final LocalDateTime paymentDate;
+    private final BigDecimal paidAmount;
+    private final String paymentMode;
+
+    public ReceiptHistoryEntry(Long id, String receiptNo, LocalDateTime paymentDate, BigDecimal paidAmount,
+                               String paymentMode) {
+        this.id = id;
+        this.receiptNo = receiptNo;
+        this.paymentDate = paymentDate;
+        this.paidAmount = paidAmount;
+        this.paymentMode = paymentMode;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getReceiptNo() {
+        return receiptNo;
+    }
+
+    public LocalDateTime getPaymentDate() {
+        return paymentDate;
+    }
+
+    public BigDecimal getPaidAmount() {
+        return paidAmount;
+    }
+
+    public String getPaymentMode() {
+        return paymentMode;
+    }
+
+    /**
+     * Get the position of this receipt, to read the history after it
+     */
+    public HistoryCursor getCursor() {
+        return new HistoryCursor(paymentDate, id);
+    }
+
+    @Override
+    public String toString() {
+        return paymentDate + " " + receiptNo + " " + paidAmount + " " + paymentMode;
+    }
+}
@@ -0,0 +1,25 @@
+package com.emi.dao;
+
+/**
+ * Thrown when a payment cannot be settled because the receivable changed
+ * after it was read, e.g. another teller posted against the same dues
+ * The caller may re-read the receivable and try again
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class StaleReceivableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String loanAccountNo;
+
+    public StaleReceivableException(String loanAccountNo, Throwable cause) {
+        super("Receivable for loan account " + loanAccountNo + " was changed by another payment", cause);
+        this.loanAccountNo = loanAccountNo;
+    }
+
+    public String getLoanAccountNo() {
+        return loanAccountNo;
+    }
+}
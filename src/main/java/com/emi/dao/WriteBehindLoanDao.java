@@ -0,0 +1,834 @@
+package com.emi.dao;
+
+import com.emi.model.Allocation;
+import com.emi.model.ReceiptPayment;
+import com.emi.model.Receivable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind LoanDao: payments are journaled locally and written to the database in the background
+ * savePayment checks the installments as LoanDaoImpl would (same versions,
+ * same duplicate idempotency key), appends the payment to a PaymentJournal
+ * and returns without waiting for Oracle. A flusher thread writes journaled
+ * payments to LMS_RECEIPTPAYMENT_DTL_POOJA and LMS_ALLOCATION_DTL_POOJA with
+ * the guarded bulk settlement of savePayments, in batches, and releases them
+ * from the journal once committed. Payments still in the journal when the
+ * process stops are written after the next start.
+ *
+ * Reads see journaled payments as if they were already written: pending
+ * installments, totals and idempotency lookups are adjusted by the payments
+ * still waiting for the database. streamPendingReceivables and the payment
+ * history read the database only. When the database falls behind, the
+ * journal fills up and savePayment waits for space, failing with
+ * JournalFullException after the append timeout.
+ *
+ * Each journaled allocation carries the installment version it was checked
+ * against, and is only settled while the database still has that version.
+ * When an installment changed first (the penalty accrual job, or another
+ * writer that cannot see the journal), the payment is allocated again
+ * against the installments as the database has them and written with the
+ * same receipt. Only a payment that can no longer be applied, because the
+ * account has nothing left to pay or its installments keep changing, is
+ * rejected and appended to a .rejected file next to the journal for manual
+ * follow-up.
+ *
+ * Only one JVM may post payments against the database in this mode: its
+ * journaled payments are allocated ahead of a payment another writer makes
+ * in the meantime, which that writer cannot see.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class WriteBehindLoanDao implements LoanDao, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindLoanDao.class);
+
+    // Format 2 adds the installment version to each allocation; format 1 records settle unchecked
+    private static final int RECORD_FORMAT = 2;
+    private static final int ACCOUNT_LOCKS = 64;
+
+    private final LoanDao delegate;
+    private final PaymentJournal journal;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long retryIntervalMillis;
+    private final long appendTimeoutMillis;
+    private final Allocator allocator;
+    private final Path rejectedFile;
+    private final Object[] accountLocks = new Object[ACCOUNT_LOCKS];
+
+    // Journaled payments not yet in the database, by journal sequence; guards the maps below
+    private final TreeMap<Long, PendingPayment> pending = new TreeMap<>();
+    private final Map<Long, Deduction> deductionsByReceivable = new HashMap<>();
+    private final Map<String, BigDecimal> pendingTotalByAccount = new HashMap<>();
+    private final Map<String, Integer> pendingCountByAccount = new HashMap<>();
+    private final Map<String, PendingPayment> pendingByRequestId = new HashMap<>();
+    private long nextSequenceToFlush;
+
+    // Odd while a batch is being committed and removed from the maps above
+    private volatile long flushEpoch;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile boolean running;
+    private Thread flusher;
+
+    private final LongAdder journaled = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder reallocated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final int recovered;
+
+    /**
+     * @param delegate LoanDao that writes to the database
+     * @param journal open journal; payments it recovered are queued for the database
+     * @param batchSize payments per database batch
+     * @param flushIntervalMillis longest time a payment waits in the journal when no batch fills up
+     * @param retryIntervalMillis pause before retrying after the database failed
+     * @param appendTimeoutMillis longest time savePayment waits for journal space
+     * @param allocator allocates a payment again when its installments changed before it was written;
+     *                  null rejects such payments instead
+     */
+    public WriteBehindLoanDao(LoanDao delegate, PaymentJournal journal, int batchSize, long flushIntervalMillis,
+                              long retryIntervalMillis, long appendTimeoutMillis, Allocator allocator) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than zero");
+        }
+        this.delegate = delegate;
+        this.journal = journal;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.retryIntervalMillis = retryIntervalMillis;
+        this.appendTimeoutMillis = appendTimeoutMillis;
+        this.allocator = allocator;
+        this.rejectedFile = journal.getFile().resolveSibling(journal.getFile().getFileName() + ".rejected");
+        for (int i = 0; i < ACCOUNT_LOCKS; i++) {
+            accountLocks[i] = new Object();
+        }
+
+        nextSequenceToFlush = journal.getFirstPendingSequence();
+        for (PaymentJournal.Record record : journal.getRecoveredRecords()) {
+            addPending(decode(record.getSequence(), record.getPayload()));
+        }
+        recovered = journal.getRecoveredRecords().size();
+    }
+
+    /**
+     * Start the background flusher
+     */
+    public synchronized void start() {
+        if (flusher != null) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "payment-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Stop the flusher, write what is left in the journal and close it
+     * Payments that cannot be written now stay in the journal for the next start
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        running = false;
+        if (flusher != null) {
+            synchronized (pending) {
+                pending.notifyAll();
+            }
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flusher = null;
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOG.warn("Payments left in journal {}: {}", journal.getFile(), e.getMessage());
+        }
+        journal.close();
+    }
+
+    @Override
+    public Receivable findReceivableByLoanAccountNo(String loanAccountNo) {
+        return Receivable.summaryOf(getPendingReceivables(loanAccountNo));
+    }
+
+    @Override
+    public Map<String, Receivable> findReceivablesByLoanAccountNos(Collection<String> loanAccountNos) {
+        Map<String, Receivable> summaries = new HashMap<>();
+        Set<String> journaledAccounts = new HashSet<>();
+        stableRead(() -> {
+            summaries.clear();
+            summaries.putAll(delegate.findReceivablesByLoanAccountNos(loanAccountNos));
+            journaledAccounts.clear();
+            synchronized (pending) {
+                for (String loanAccountNo : loanAccountNos) {
+                    if (pendingTotalByAccount.containsKey(loanAccountNo)) {
+                        journaledAccounts.add(loanAccountNo);
+                    }
+                }
+            }
+            return null;
+        });
+        for (String loanAccountNo : journaledAccounts) {
+            Receivable summary = findReceivableByLoanAccountNo(loanAccountNo);
+            if (summary != null) {
+                summaries.put(loanAccountNo, summary);
+            } else {
+                summaries.remove(loanAccountNo);
+            }
+        }
+        return summaries;
+    }
+
+    @Override
+    public ReceiptPayment saveReceiptPayment(ReceiptPayment receiptPayment) {
+        return delegate.saveReceiptPayment(receiptPayment);
+    }
+
+    @Override
+    public Allocation saveAllocation(Allocation allocation) {
+        return delegate.saveAllocation(allocation);
+    }
+
+    /**
+     * Journal a payment; it is written to the database by the flusher
+     * The receipt and allocations are not assigned database ids here.
+     *
+     * @throws StaleReceivableException if an installment changed since it was read
+     * @throws DuplicatePaymentRequestException if the idempotency key was already used
+     * @throws JournalFullException if the database is too far behind to accept the payment
+     */
+    @Override
+    public ReceiptPayment savePayment(List<Receivable> receivables, List<Allocation> allocations,
+                                      ReceiptPayment receiptPayment) {
+        String loanAccountNo = receiptPayment.getLoanAccountNo();
+        synchronized (lockFor(loanAccountNo)) {
+            // Keys already in the database were looked up by EmiServiceImpl; the unique key cannot see the journal
+            String requestId = receiptPayment.getRequestId();
+            if (requestId != null) {
+                synchronized (pending) {
+                    if (pendingByRequestId.containsKey(requestId)) {
+                        throw new DuplicatePaymentRequestException(requestId, null);
+                    }
+                }
+            }
+            // The version check the database would make, against the journaled state
+            List<Receivable> current = getPendingReceivables(loanAccountNo);
+            for (Receivable receivable : receivables) {
+                Receivable latest = find(current, receivable.getId());
+                if (latest == null || latest.getVersion() != receivable.getVersion()) {
+                    throw new StaleReceivableException(loanAccountNo, null);
+                }
+            }
+
+            byte[] record = encode(receiptPayment, allocations);
+            long sequence = journal.append(record, appendTimeoutMillis);
+            PendingPayment payment = decode(sequence, record);
+            synchronized (pending) {
+                addPending(payment);
+                if (pending.size() >= batchSize) {
+                    pending.notifyAll();
+                }
+            }
+            journaled.increment();
+            for (Receivable receivable : receivables) {
+                receivable.setVersion(receivable.getVersion() + 1);
+            }
+            return receiptPayment;
+        }
+    }
+
+    @Override
+    public void savePayments(List<Allocation> allocations, List<ReceiptPayment> receiptPayments, int batchSize) {
+        delegate.savePayments(allocations, receiptPayments, batchSize);
+    }
+
+    @Override
+    public void saveReceivables(List<Receivable> receivables) {
+        delegate.saveReceivables(receivables);
+    }
+
+    @Override
+    public ReceiptPayment findReceiptPaymentByRequestId(String requestId) {
+        synchronized (pending) {
+            PendingPayment payment = pendingByRequestId.get(requestId);
+            if (payment != null) {
+                return payment.receiptPayment;
+            }
+        }
+        // A batch is committed before it leaves the journal, so a payment is always found in one of the two
+        return delegate.findReceiptPaymentByRequestId(requestId);
+    }
+
+    @Override
+    public List<Allocation> findAllocationsByRequestId(String requestId) {
+        synchronized (pending) {
+            PendingPayment payment = pendingByRequestId.get(requestId);
+            if (payment != null) {
+                return new ArrayList<>(payment.allocations);
+            }
+        }
+        return delegate.findAllocationsByRequestId(requestId);
+    }
+
+    /**
+     * Read receipt history as stored in the database
+     * Payments still in the journal have no id yet and are listed once written
+     */
+    @Override
+    public HistoryPage<ReceiptHistoryEntry> findReceiptHistory(String loanAccountNo, HistoryCursor after,
+                                                               int pageSize) {
+        return delegate.findReceiptHistory(loanAccountNo, after, pageSize);
+    }
+
+    /**
+     * Read allocation history as stored in the database
+     * Payments still in the journal have no id yet and are listed once written
+     */
+    @Override
+    public HistoryPage<AllocationHistoryEntry> findAllocationHistory(String loanAccountNo, HistoryCursor after,
+                                                                     int pageSize) {
+        return delegate.findAllocationHistory(loanAccountNo, after, pageSize);
+    }
+
+    @Override
+    public List<Receivable> getPendingReceivables(String loanAccountNo) {
+        return stableRead(() -> {
+            List<Receivable> installments = delegate.getPendingReceivables(loanAccountNo);
+            List<Receivable> adjusted = new ArrayList<>(installments.size());
+            synchronized (pending) {
+                for (Receivable installment : installments) {
+                    Deduction deduction = deductionsByReceivable.get(installment.getId());
+                    if (deduction != null) {
+                        deduction.applyTo(installment);
+                    }
+                    if (installment.getTotalAmount().signum() > 0) {
+                        adjusted.add(installment);
+                    }
+                }
+            }
+            return adjusted;
+        });
+    }
+
+    /**
+     * Stream pending installments as stored in the database
+     * Payments still in the journal are not deducted
+     */
+    @Override
+    public long streamPendingReceivables(int fetchSize, Consumer<Receivable> consumer) {
+        return delegate.streamPendingReceivables(fetchSize, consumer);
+    }
+
+    @Override
+    public long streamLoanAccountNos(long afterId, int fetchSize, Consumer<String> consumer) {
+        return delegate.streamLoanAccountNos(afterId, fetchSize, consumer);
+    }
+
+    @Override
+    public BigDecimal getTotalPendingAmount(String loanAccountNo) {
+        return stableRead(() -> {
+            BigDecimal total = delegate.getTotalPendingAmount(loanAccountNo);
+            synchronized (pending) {
+                BigDecimal journaledTotal = pendingTotalByAccount.get(loanAccountNo);
+                return journaledTotal != null ? total.subtract(journaledTotal) : total;
+            }
+        });
+    }
+
+    @Override
+    public Map<String, BigDecimal> getTotalPendingAmounts(Collection<String> loanAccountNos) {
+        return stableRead(() -> {
+            Map<String, BigDecimal> totals = delegate.getTotalPendingAmounts(loanAccountNos);
+            synchronized (pending) {
+                for (Map.Entry<String, BigDecimal> entry : totals.entrySet()) {
+                    BigDecimal journaledTotal = pendingTotalByAccount.get(entry.getKey());
+                    if (journaledTotal != null) {
+                        entry.setValue(entry.getValue().subtract(journaledTotal));
+                    }
+                }
+            }
+            return totals;
+        });
+    }
+
+    /**
+     * Compare the balances as stored in the database
+     * Journaled payments are in neither the balances nor the receivables yet
+     */
+    @Override
+    public List<PendingBalanceMismatch> verifyPendingBalances() {
+        return delegate.verifyPendingBalances();
+    }
+
+    @Override
+    public int rebuildPendingBalances(Collection<String> loanAccountNos) {
+        return delegate.rebuildPendingBalances(loanAccountNos);
+    }
+
+    /**
+     * Write every journaled payment to the database now
+     *
+     * @return number of payments written or rejected
+     * @throws RuntimeException if the database failed; payments not written stay journaled
+     */
+    public int flush() {
+        int total = 0;
+        int count;
+        while ((count = flushBatch()) > 0) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Get the number of payments journaled but not yet written to the database
+     */
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    public long getJournaledCount() {
+        return journaled.sum();
+    }
+
+    public long getFlushedCount() {
+        return flushed.sum();
+    }
+
+    /**
+     * Get the number of payments written with a new allocation because their installments changed first
+     */
+    public long getReallocatedCount() {
+        return reallocated.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Get the number of payments found in the journal on start, left by a previous run
+     */
+    public int getRecoveredCount() {
+        return recovered;
+    }
+
+    public PaymentJournal getJournal() {
+        return journal;
+    }
+
+    private void runFlusher() {
+        while (running) {
+            synchronized (pending) {
+                if (running && pending.size() < batchSize) {
+                    try {
+                        pending.wait(flushIntervalMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                LOG.warn("Error writing journaled payments, will retry: {}", e.getMessage());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(retryIntervalMillis));
+            }
+        }
+    }
+
+    /**
+     * Write the oldest journaled payments in one batch, falling back to one
+     * payment at a time to re-allocate or set aside payments the database rejects
+     *
+     * @return number of payments written or rejected, 0 if none are waiting
+     */
+    private int flushBatch() {
+        flushLock.lock();
+        try {
+            List<PendingPayment> batch = new ArrayList<>();
+            synchronized (pending) {
+                // Only consecutive sequences: a payment appended earlier may not have been added yet
+                long expected = nextSequenceToFlush;
+                for (Map.Entry<Long, PendingPayment> entry : pending.entrySet()) {
+                    if (entry.getKey() != expected || batch.size() == batchSize) {
+                        break;
+                    }
+                    batch.add(entry.getValue());
+                    expected++;
+                }
+            }
+            if (batch.isEmpty()) {
+                return 0;
+            }
+
+            List<Allocation> allocations = new ArrayList<>();
+            List<ReceiptPayment> receiptPayments = new ArrayList<>(batch.size());
+            for (PendingPayment payment : batch) {
+                allocations.addAll(payment.allocations);
+                receiptPayments.add(payment.receiptPayment);
+            }
+
+            int done = 0;
+            RuntimeException failure = null;
+            flushEpoch++;
+            try {
+                try {
+                    delegate.savePayments(allocations, receiptPayments, batchSize);
+                    done = batch.size();
+                    flushed.add(done);
+                } catch (RuntimeException e) {
+                    for (PendingPayment payment : batch) {
+                        try {
+                            write(payment);
+                        } catch (RuntimeException databaseFailure) {
+                            failure = databaseFailure;
+                            break;
+                        }
+                        done++;
+                    }
+                }
+                synchronized (pending) {
+                    for (PendingPayment payment : batch.subList(0, done)) {
+                        removePending(payment);
+                    }
+                }
+            } finally {
+                flushEpoch++;
+            }
+            if (done > 0) {
+                journal.release(batch.get(done - 1).sequence);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return done;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Write one journaled payment on its own, re-allocating it if its installments changed since it was journaled
+     */
+    private void write(PendingPayment payment) {
+        try {
+            delegate.savePayments(payment.allocations, List.of(payment.receiptPayment), batchSize);
+            flushed.increment();
+        } catch (DuplicateReceiptException duplicate) {
+            // Written before a crash that came before its release from the journal
+            flushed.increment();
+        } catch (StaleReceivableException stale) {
+            StaleReceivableException cause = stale;
+            try {
+                if (reallocate(payment)) {
+                    flushed.increment();
+                    reallocated.increment();
+                    return;
+                }
+            } catch (StaleReceivableException again) {
+                cause = again;
+            }
+            reject(payment, cause);
+        }
+    }
+
+    /**
+     * Allocate a journaled payment again against the installments as the database has them now, and write it
+     * The payment's entry in the journal is left as it was; a replay finds the receipt already written.
+     *
+     * @return false if there is no allocator or the account has nothing left to pay
+     * @throws StaleReceivableException if the installments changed again before the write
+     */
+    private boolean reallocate(PendingPayment payment) {
+        ReceiptPayment receipt = payment.receiptPayment;
+        if (allocator == null) {
+            return false;
+        }
+        List<Receivable> installments = delegate.getPendingReceivables(receipt.getLoanAccountNo());
+        if (installments == null || installments.isEmpty()) {
+            return false;
+        }
+        List<Allocation> allocations = allocator.allocate(installments, receipt.getPaidAmount());
+        for (Allocation allocation : allocations) {
+            allocation.setRequestId(receipt.getRequestId());
+            allocation.setReceiptNo(receipt.getReceiptNo());
+        }
+        receipt.setId(null);
+        delegate.savePayments(allocations, List.of(receipt), batchSize);
+        LOG.warn("Journaled payment {} allocated again: installments of {} changed before it was written",
+            receipt.getReceiptNo(), receipt.getLoanAccountNo());
+        return true;
+    }
+
+    private void reject(PendingPayment payment, StaleReceivableException cause) {
+        rejected.increment();
+        ReceiptPayment receipt = payment.receiptPayment;
+        LOG.error("Journaled payment {} rejected by the database: {}", receipt.getReceiptNo(), cause.getMessage());
+        String line = String.join(",", receipt.getReceiptNo(), receipt.getLoanAccountNo(),
+            receipt.getPaidAmount().toPlainString(), receipt.getPaymentMode(), String.valueOf(receipt.getPaymentDate()),
+            receipt.getRequestId() != null ? receipt.getRequestId() : "") + System.lineSeparator();
+        try {
+            Files.write(rejectedFile, line.getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LOG.error("Error recording rejected payment {}", receipt.getReceiptNo(), e);
+        }
+    }
+
+    /**
+     * Run a read of the database plus the journaled payments so that it does
+     * not straddle a batch being committed, which would count it twice
+     */
+    private <T> T stableRead(Supplier<T> read) {
+        while (true) {
+            long epoch = flushEpoch;
+            if ((epoch & 1) != 0) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+                continue;
+            }
+            T result = read.get();
+            if (flushEpoch == epoch) {
+                return result;
+            }
+        }
+    }
+
+    // Callers hold the pending monitor, except during construction
+    private void addPending(PendingPayment payment) {
+        pending.put(payment.sequence, payment);
+        BigDecimal total = payment.receiptPayment.getPaidAmount().subtract(unallocated(payment));
+        pendingTotalByAccount.merge(payment.receiptPayment.getLoanAccountNo(), total, BigDecimal::add);
+        pendingCountByAccount.merge(payment.receiptPayment.getLoanAccountNo(), 1, Integer::sum);
+        if (payment.receiptPayment.getRequestId() != null) {
+            pendingByRequestId.put(payment.receiptPayment.getRequestId(), payment);
+        }
+        for (Allocation allocation : payment.allocations) {
+            deductionsByReceivable.computeIfAbsent(allocation.getReceivableId(), id -> new Deduction()).add(allocation);
+        }
+    }
+
+    private void removePending(PendingPayment payment) {
+        pending.remove(payment.sequence);
+        nextSequenceToFlush = payment.sequence + 1;
+        String loanAccountNo = payment.receiptPayment.getLoanAccountNo();
+        BigDecimal total = pendingTotalByAccount.get(loanAccountNo)
+            .subtract(payment.receiptPayment.getPaidAmount().subtract(unallocated(payment)));
+        if (pendingCountByAccount.merge(loanAccountNo, -1, Integer::sum) > 0) {
+            pendingTotalByAccount.put(loanAccountNo, total);
+        } else {
+            pendingCountByAccount.remove(loanAccountNo);
+            pendingTotalByAccount.remove(loanAccountNo);
+        }
+        if (payment.receiptPayment.getRequestId() != null) {
+            pendingByRequestId.remove(payment.receiptPayment.getRequestId());
+        }
+        for (Allocation allocation : payment.allocations) {
+            Deduction deduction = deductionsByReceivable.get(allocation.getReceivableId());
+            if (deduction.remove(allocation)) {
+                deductionsByReceivable.remove(allocation.getReceivableId());
+            }
+        }
+    }
+
+    /**
+     * Part of the paid amount that settled nothing (overpayment)
+     */
+    private static BigDecimal unallocated(PendingPayment payment) {
+        BigDecimal remainder = payment.receiptPayment.getPaidAmount();
+        for (Allocation allocation : payment.allocations) {
+            remainder = remainder.subtract(allocation.getAllocatedPenalty()).subtract(allocation.getAllocatedEmi());
+        }
+        return remainder;
+    }
+
+    private Object lockFor(String loanAccountNo) {
+        return accountLocks[Math.floorMod(loanAccountNo.hashCode(), ACCOUNT_LOCKS)];
+    }
+
+    private static Receivable find(List<Receivable> installments, Long id) {
+        for (Receivable installment : installments) {
+            if (installment.getId().equals(id)) {
+                return installment;
+            }
+        }
+        return null;
+    }
+
+    static byte[] encode(ReceiptPayment receiptPayment, List<Allocation> allocations) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + allocations.size() * 128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(RECORD_FORMAT);
+            out.writeUTF(receiptPayment.getLoanAccountNo());
+            out.writeUTF(receiptPayment.getPaidAmount().toPlainString());
+            out.writeUTF(receiptPayment.getPaymentMode());
+            out.writeUTF(receiptPayment.getReceiptNo());
+            out.writeUTF(receiptPayment.getPaymentDate().toString());
+            writeOptional(out, receiptPayment.getRequestId());
+            out.writeInt(allocations.size());
+            for (Allocation allocation : allocations) {
+                out.writeLong(allocation.getReceivableId());
+                out.writeUTF(allocation.getAllocatedPenalty().toPlainString());
+                out.writeUTF(allocation.getAllocatedInterest().toPlainString());
+                out.writeUTF(allocation.getAllocatedPrincipal().toPlainString());
+                out.writeUTF(allocation.getAllocationDate().toString());
+                out.writeBoolean(allocation.getReceivableVersion() != null);
+                if (allocation.getReceivableVersion() != null) {
+                    out.writeLong(allocation.getReceivableVersion());
+                }
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static PendingPayment decode(long sequence, byte[] record) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            int format = in.readInt();
+            if (format != 1 && format != RECORD_FORMAT) {
+                throw new IllegalStateException("Unknown journal record format " + format + " at " + sequence);
+            }
+            String loanAccountNo = in.readUTF();
+            ReceiptPayment receiptPayment = new ReceiptPayment(loanAccountNo, new BigDecimal(in.readUTF()),
+                in.readUTF(), in.readUTF());
+            receiptPayment.setPaymentDate(LocalDateTime.parse(in.readUTF()));
+            receiptPayment.setRequestId(readOptional(in));
+            int count = in.readInt();
+            List<Allocation> allocations = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Allocation allocation = new Allocation(loanAccountNo, in.readLong(), new BigDecimal(in.readUTF()),
+                    new BigDecimal(in.readUTF()), new BigDecimal(in.readUTF()), LocalDateTime.parse(in.readUTF()));
+                if (format >= 2 && in.readBoolean()) {
+                    allocation.setReceivableVersion(in.readLong());
+                }
+                allocation.setRequestId(receiptPayment.getRequestId());
+                allocation.setReceiptNo(receiptPayment.getReceiptNo());
+                allocations.add(allocation);
+            }
+            return new PendingPayment(sequence, receiptPayment, allocations);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeOptional(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readOptional(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Spreads a payment across pending installments, oldest first, as EmiService.calculateAllocation does
+     */
+    @FunctionalInterface
+    public interface Allocator {
+
+        /**
+         * @param installments pending installments, oldest first
+         * @param paymentAmount the payment amount
+         * @return one Allocation per installment the payment reaches, each with the installment version
+         */
+        List<Allocation> allocate(List<Receivable> installments, BigDecimal paymentAmount);
+    }
+
+    /**
+     * A journaled payment, as it will be written to the database
+     */
+    static final class PendingPayment {
+        final long sequence;
+        final ReceiptPayment receiptPayment;
+        final List<Allocation> allocations;
+
+        PendingPayment(long sequence, ReceiptPayment receiptPayment, List<Allocation> allocations) {
+            this.sequence = sequence;
+            this.receiptPayment = receiptPayment;
+            this.allocations = allocations;
+        }
+    }
+
+    /**
+     * Amounts journaled payments take off one installment
+     */
+    private static final class Deduction {
+        private BigDecimal penalty = BigDecimal.ZERO;
+        private BigDecimal interest = BigDecimal.ZERO;
+        private BigDecimal principal = BigDecimal.ZERO;
+        private int payments;
+
+        void add(Allocation allocation) {
+            penalty = penalty.add(allocation.getAllocatedPenalty());
+            interest = interest.add(allocation.getAllocatedInterest());
+            principal = principal.add(allocation.getAllocatedPrincipal());
+            payments++;
+        }
+
+        /**
+         * @return true when no journaled payment is left for the installment
+         */
+        boolean remove(Allocation allocation) {
+            penalty = penalty.subtract(allocation.getAllocatedPenalty());
+            interest = interest.subtract(allocation.getAllocatedInterest());
+            principal = principal.subtract(allocation.getAllocatedPrincipal());
+            return --payments == 0;
+        }
+
+        /**
+         * Deduct from an installment as SETTLE_BY_ID will, including its version bump per payment
+         */
+        void applyTo(Receivable installment) {
+            installment.setPenalty(installment.getPenalty().subtract(penalty));
+            installment.setInterestAmount(installment.getInterestAmount().subtract(interest));
+            installment.setPrincipalAmount(installment.getPrincipalAmount().subtract(principal));
+            installment.setEmiAmount(installment.getEmiAmount().subtract(interest).subtract(principal));
+            installment.setTotalAmount(installment.getTotalAmount()
+                .subtract(penalty).subtract(interest).subtract(principal));
+            installment.setVersion(installment.getVersion() + payments);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.emi.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of per-operation metrics
+ * One shared instance per JVM collects timings from every instrumented component
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get or create the metrics for an operation
+     *
+     * @param name operation name, e.g. loanDao.findReceivableByLoanAccountNo
+     * @return OperationMetrics for the name
+     */
+    public OperationMetrics operation(String name) {
+        OperationMetrics metrics = operations.get(name);
+        return metrics != null ? metrics : operations.computeIfAbsent(name, OperationMetrics::new);
+    }
+
+    /**
+     * Get all recorded operations sorted by name
+     *
+     * @return list of OperationMetrics
+     */
+    public List<OperationMetrics> getOperations() {
+        List<OperationMetrics> list = new ArrayList<>(operations.values());
+        list.sort(Comparator.comparing(OperationMetrics::getName));
+        return list;
+    }
+}
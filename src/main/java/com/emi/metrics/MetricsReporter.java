@@ -0,0 +1,193 @@
+package com.emi.metrics;
+
+import com.emi.dao.CachingLoanDao;
+import com.emi.dao.LoanDaoFactory;
+import com.emi.util.HibernateUtil;
+import com.emi.util.PoolMetrics;
+import org.hibernate.stat.Statistics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renders operation metrics together with Hibernate, connection pool and
+ * receivable cache statistics, either as a console table or in the
+ * Prometheus text exposition format
+ * Sources that have not been started yet (no SessionFactory, no pool) are
+ * left out rather than started just to be reported
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class MetricsReporter {
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private final MetricsRegistry registry;
+
+    public MetricsReporter() {
+        this(MetricsRegistry.getInstance());
+    }
+
+    public MetricsReporter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Format all metrics as a human readable report
+     *
+     * @return multi-line report
+     */
+    public String formatReport() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%-45s %10s %8s %10s %10s %10s%n",
+            "Operation", "Count", "Errors", "p50 ms", "p95 ms", "p99 ms"));
+        List<OperationMetrics> operations = registry.getOperations();
+        if (operations.isEmpty()) {
+            out.append("(no operations recorded)").append(System.lineSeparator());
+        }
+        for (OperationMetrics op : operations) {
+            out.append(String.format(Locale.ROOT, "%-45s %10d %8d %10.3f %10.3f %10.3f%n",
+                op.getName(), op.getCount(), op.getErrorCount(),
+                millis(op.getLatencyNanos(0.5)), millis(op.getLatencyNanos(0.95)),
+                millis(op.getLatencyNanos(0.99))));
+        }
+
+        Statistics statistics = HibernateUtil.getStatistics();
+        if (statistics != null && statistics.isStatisticsEnabled()) {
+            out.append(String.format(Locale.ROOT,
+                "Hibernate: queries=%d, maxQueryMs=%d, slowestQuery=%s, inserts=%d, updates=%d, "
+                    + "statements=%d, transactions=%d, sessions=%d%n",
+                statistics.getQueryExecutionCount(), statistics.getQueryExecutionMaxTime(),
+                statistics.getQueryExecutionMaxTimeQueryString(), statistics.getEntityInsertCount(),
+                statistics.getEntityUpdateCount(), statistics.getPrepareStatementCount(),
+                statistics.getTransactionCount(), statistics.getSessionOpenCount()));
+        }
+
+        PoolMetrics pool = HibernateUtil.getPoolMetrics();
+        if (pool != null) {
+            out.append("Pool: ").append(pool).append(System.lineSeparator());
+        }
+
+        CachingLoanDao cache = LoanDaoFactory.getReceivableCache();
+        if (cache != null) {
+            out.append(String.format(Locale.ROOT, "Receivable cache: size=%d, hits=%d, misses=%d, evictions=%d, hitRatio=%.3f%n",
+                cache.size(), cache.getHitCount(), cache.getMissCount(), cache.getEvictionCount(),
+                cache.getHitRatio()));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Render all metrics in the Prometheus text exposition format
+     *
+     * @return exposition text
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        List<OperationMetrics> operations = registry.getOperations();
+
+        header(out, "emi_operation_duration_seconds", "summary", "Latency of EmiService and LoanDao operations");
+        for (OperationMetrics op : operations) {
+            String label = "operation=\"" + op.getName() + "\"";
+            for (double quantile : QUANTILES) {
+                sample(out, "emi_operation_duration_seconds", label + ",quantile=\"" + quantile + "\"",
+                    seconds(op.getLatencyNanos(quantile)));
+            }
+            sample(out, "emi_operation_duration_seconds_sum", label, seconds(op.getTotalNanos()));
+            sample(out, "emi_operation_duration_seconds_count", label, op.getCount());
+        }
+        header(out, "emi_operation_errors_total", "counter", "Operations that ended with an exception");
+        for (OperationMetrics op : operations) {
+            sample(out, "emi_operation_errors_total", "operation=\"" + op.getName() + "\"", op.getErrorCount());
+        }
+
+        Statistics statistics = HibernateUtil.getStatistics();
+        if (statistics != null && statistics.isStatisticsEnabled()) {
+            counter(out, "emi_hibernate_query_executions_total", "HQL query executions",
+                statistics.getQueryExecutionCount());
+            gauge(out, "emi_hibernate_query_execution_max_seconds", "Slowest HQL query execution",
+                statistics.getQueryExecutionMaxTime() / 1000.0);
+            counter(out, "emi_hibernate_entity_inserts_total", "Entity inserts", statistics.getEntityInsertCount());
+            counter(out, "emi_hibernate_entity_updates_total", "Entity updates", statistics.getEntityUpdateCount());
+            counter(out, "emi_hibernate_prepared_statements_total", "JDBC statements prepared",
+                statistics.getPrepareStatementCount());
+            counter(out, "emi_hibernate_transactions_total", "Completed transactions", statistics.getTransactionCount());
+            counter(out, "emi_hibernate_sessions_opened_total", "Sessions opened", statistics.getSessionOpenCount());
+        }
+
+        PoolMetrics pool = HibernateUtil.getPoolMetrics();
+        if (pool != null) {
+            gauge(out, "emi_pool_max_connections", "Maximum pool size", pool.getMaximumPoolSize());
+            gauge(out, "emi_pool_active_connections", "Connections in use", pool.getActiveConnections());
+            gauge(out, "emi_pool_idle_connections", "Idle connections", pool.getIdleConnections());
+            gauge(out, "emi_pool_pending_threads", "Threads waiting for a connection", pool.getThreadsAwaitingConnection());
+            counter(out, "emi_pool_acquires_total", "Connection acquisitions", pool.getAcquireCount());
+            gauge(out, "emi_pool_acquire_seconds_avg", "Average connection acquisition time",
+                pool.getAverageAcquireMillis() / 1000.0);
+            gauge(out, "emi_pool_acquire_seconds_max", "Slowest connection acquisition",
+                pool.getMaxAcquireMillis() / 1000.0);
+            counter(out, "emi_pool_timeouts_total", "Connection acquisition timeouts", pool.getConnectionTimeouts());
+        }
+
+        CachingLoanDao cache = LoanDaoFactory.getReceivableCache();
+        if (cache != null) {
+            gauge(out, "emi_receivable_cache_size", "Cached receivables", cache.size());
+            counter(out, "emi_receivable_cache_hits_total", "Receivable cache hits", cache.getHitCount());
+            counter(out, "emi_receivable_cache_misses_total", "Receivable cache misses", cache.getMissCount());
+            counter(out, "emi_receivable_cache_evictions_total", "Receivable cache evictions", cache.getEvictionCount());
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write the Prometheus exposition to a file, e.g. for the node exporter textfile collector
+     *
+     * @param file target file
+     * @throws IOException if the file cannot be written
+     */
+    public void writePrometheus(Path file) throws IOException {
+        Files.write(file, toPrometheus().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void counter(StringBuilder out, String name, String help, double value) {
+        header(out, name, "counter", help);
+        sample(out, name, null, value);
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        header(out, name, "gauge", help);
+        sample(out, name, null, value);
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+}
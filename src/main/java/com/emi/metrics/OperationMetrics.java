@@ -0,0 +1,63 @@
+package com.emi.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call count, error count and latency distribution of one operation
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class OperationMetrics {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    public OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Record one completed call
+     *
+     * @param elapsedNanos call duration
+     * @param failed whether the call ended with an exception
+     */
+    public void record(long elapsedNanos, boolean failed) {
+        count.increment();
+        totalNanos.add(elapsedNanos);
+        histogram.record(elapsedNanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Get latency at a quantile in nanoseconds
+     *
+     * @param quantile between 0 and 1
+     * @return latency in nanoseconds
+     */
+    public long getLatencyNanos(double quantile) {
+        return histogram.getValueAtQuantile(quantile);
+    }
+}
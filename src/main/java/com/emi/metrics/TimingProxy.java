@@ -0,0 +1,65 @@
+package com.emi.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dynamic proxy that times every interface method of a target object
+ * Each call records its latency and whether it threw under "prefix.methodName",
+ * so new interface methods are instrumented without touching this class
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public final class TimingProxy implements InvocationHandler {
+
+    private final Object target;
+    private final String prefix;
+    private final MetricsRegistry registry;
+    private final Map<Method, OperationMetrics> metricsByMethod = new ConcurrentHashMap<>();
+
+    private TimingProxy(Object target, String prefix, MetricsRegistry registry) {
+        this.target = target;
+        this.prefix = prefix;
+        this.registry = registry;
+    }
+
+    /**
+     * Wrap a target so every call through the interface is timed
+     *
+     * @param type interface to expose
+     * @param target implementation to delegate to
+     * @param prefix metric name prefix, e.g. loanDao
+     * @param registry registry receiving the timings
+     * @return timed proxy implementing the interface
+     */
+    public static <T> T wrap(Class<T> type, T target, String prefix, MetricsRegistry registry) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+            new TimingProxy(target, prefix, registry)));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(target, args);
+        }
+
+        OperationMetrics metrics = metricsByMethod.computeIfAbsent(method,
+            m -> registry.operation(prefix + "." + m.getName()));
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = method.invoke(target, args);
+            failed = false;
+            return result;
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            metrics.record(System.nanoTime() - start, failed);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.emi.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
@@ -13,37 +15,94 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "LMS_ALLOCATION_DTL_POOJA")
+@NamedQuery(name = Allocation.FIND_BY_REQUEST_ID,
+    query = "FROM Allocation WHERE requestId = :requestId ORDER BY id")
+// Allocation history, newest first, read as keyset pages off IX_ALLOCATION_ACCOUNT_KEYSET
+@NamedQuery(name = Allocation.FIND_HISTORY,
+    query = "SELECT new com.emi.dao.AllocationHistoryEntry(a.id, a.receiptNo, a.receivableId, a.allocationDate, "
+        + "a.allocatedPenalty, a.allocatedInterest, a.allocatedPrincipal) FROM Allocation a "
+        + "WHERE a.loanAccountNo = :loanAccountNo AND a.allocationDate IS NOT NULL "
+        + "ORDER BY a.loanAccountNo, a.allocationDate DESC, a.id DESC")
+@NamedQuery(name = Allocation.FIND_HISTORY_AFTER,
+    query = "SELECT new com.emi.dao.AllocationHistoryEntry(a.id, a.receiptNo, a.receivableId, a.allocationDate, "
+        + "a.allocatedPenalty, a.allocatedInterest, a.allocatedPrincipal) FROM Allocation a "
+        + "WHERE a.loanAccountNo = :loanAccountNo AND a.allocationDate <= :afterDate "
+        + "AND (a.allocationDate < :afterDate OR a.id < :afterId) "
+        + "ORDER BY a.loanAccountNo, a.allocationDate DESC, a.id DESC")
 public class Allocation {
 
+    public static final String FIND_BY_REQUEST_ID = "Allocation.findByRequestId";
+    public static final String FIND_HISTORY = "Allocation.findHistory";
+    public static final String FIND_HISTORY_AFTER = "Allocation.findHistoryAfter";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "allocation_seq")
-    @SequenceGenerator(name = "allocation_seq", sequenceName = "ALLOCATION_SEQ_POOJA", allocationSize = 1)
+    @GeneratedValue(generator = "allocation_seq")
+    @GenericGenerator(name = "allocation_seq", strategy = "com.emi.util.PooledSequenceGenerator",
+        parameters = @Parameter(name = "sequence_name", value = "ALLOCATION_SEQ_POOJA"))
     @Column(name = "id")
     private Long id;
 
     @Column(name = "loan_account_no", nullable = false, length = 50)
     private String loanAccountNo;
 
+    // Installment (receivable row) this allocation settles
+    @Column(name = "receivable_id")
+    private Long receivableId;
+
     @Column(name = "allocated_penalty", precision = 15, scale = 2)
     private BigDecimal allocatedPenalty;
 
+    // allocated_interest + allocated_principal
     @Column(name = "allocated_emi", precision = 15, scale = 2)
     private BigDecimal allocatedEmi;
 
+    @Column(name = "allocated_interest", precision = 15, scale = 2)
+    private BigDecimal allocatedInterest;
+
+    @Column(name = "allocated_principal", precision = 15, scale = 2)
+    private BigDecimal allocatedPrincipal;
+
     @Column(name = "allocation_date")
     private LocalDateTime allocationDate;
 
+    // Idempotency key of the payment this allocation belongs to
+    @Column(name = "request_id", length = 64)
+    private String requestId;
+
+    // Receipt of the payment this allocation belongs to
+    @Column(name = "receipt_no", length = 50)
+    private String receiptNo;
+
+    // Version of the installment the allocation was calculated against; savePayments
+    // settles it only while the installment is unchanged. Not stored; null skips the check
+    @Transient
+    private Long receivableVersion;
+
     // Default constructor
     public Allocation() {}
 
-    // Constructor with parameters
+    // Constructor with parameters; the whole EMI part is treated as principal
     public Allocation(String loanAccountNo, BigDecimal allocatedPenalty, BigDecimal allocatedEmi) {
         this.loanAccountNo = loanAccountNo;
         this.allocatedPenalty = allocatedPenalty;
         this.allocatedEmi = allocatedEmi;
+        this.allocatedInterest = BigDecimal.ZERO;
+        this.allocatedPrincipal = allocatedEmi;
         this.allocationDate = LocalDateTime.now();
     }
 
+    // Constructor for the part of a payment allocated to one installment
+    public Allocation(String loanAccountNo, Long receivableId, BigDecimal allocatedPenalty,
+                      BigDecimal allocatedInterest, BigDecimal allocatedPrincipal, LocalDateTime allocationDate) {
+        this.loanAccountNo = loanAccountNo;
+        this.receivableId = receivableId;
+        this.allocatedPenalty = allocatedPenalty;
+        this.allocatedInterest = allocatedInterest;
+        this.allocatedPrincipal = allocatedPrincipal;
+        this.allocatedEmi = allocatedInterest.add(allocatedPrincipal);
+        this.allocationDate = allocationDate;
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -61,6 +120,14 @@ public class Allocation {
         this.loanAccountNo = loanAccountNo;
     }
 
+    public Long getReceivableId() {
+        return receivableId;
+    }
+
+    public void setReceivableId(Long receivableId) {
+        this.receivableId = receivableId;
+    }
+
     public BigDecimal getAllocatedPenalty() {
         return allocatedPenalty;
     }
@@ -77,6 +144,22 @@ public class Allocation {
         this.allocatedEmi = allocatedEmi;
     }
 
+    public BigDecimal getAllocatedInterest() {
+        return allocatedInterest;
+    }
+
+    public void setAllocatedInterest(BigDecimal allocatedInterest) {
+        this.allocatedInterest = allocatedInterest;
+    }
+
+    public BigDecimal getAllocatedPrincipal() {
+        return allocatedPrincipal;
+    }
+
+    public void setAllocatedPrincipal(BigDecimal allocatedPrincipal) {
+        this.allocatedPrincipal = allocatedPrincipal;
+    }
+
     public LocalDateTime getAllocationDate() {
         return allocationDate;
     }
@@ -85,14 +168,43 @@ public class Allocation {
         this.allocationDate = allocationDate;
     }
 
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
+
+    public String getReceiptNo() {
+        return receiptNo;
+    }
+
+    public void setReceiptNo(String receiptNo) {
+        this.receiptNo = receiptNo;
+    }
+
+    public Long getReceivableVersion() {
+        return receivableVersion;
+    }
+
+    public void setReceivableVersion(Long receivableVersion) {
+        this.receivableVersion = receivableVersion;
+    }
+
     @Override
     public String toString() {
         return "Allocation{" +
                 "id=" + id +
                 ", loanAccountNo='" + loanAccountNo + '\'' +
+                ", receivableId=" + receivableId +
                 ", allocatedPenalty=" + allocatedPenalty +
                 ", allocatedEmi=" + allocatedEmi +
+                ", allocatedInterest=" + allocatedInterest +
+                ", allocatedPrincipal=" + allocatedPrincipal +
                 ", allocationDate=" + allocationDate +
+                ", requestId='" + requestId + '\'' +
+                ", receiptNo='" + receiptNo + '\'' +
                 '}';
     }
 }
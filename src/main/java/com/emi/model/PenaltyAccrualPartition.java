@@ -0,0 +1,212 @@
+package com.emi.model;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Entity class representing LMS_PENALTY_ACCRUAL table
+ * One range of loan accounts in a penalty accrual run, with the checkpoint of
+ * the last account committed (see db/migration/V10__penalty_accrual.sql)
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+@Entity
+@Table(name = "LMS_PENALTY_ACCRUAL_POOJA")
+@IdClass(PenaltyAccrualPartition.Key.class)
+@NamedQueries({
+    @NamedQuery(name = PenaltyAccrualPartition.FIND_BY_BUSINESS_DATE,
+        query = "FROM PenaltyAccrualPartition WHERE businessDate = :businessDate ORDER BY partitionNo"),
+    @NamedQuery(name = PenaltyAccrualPartition.CHECKPOINT,
+        query = "UPDATE PenaltyAccrualPartition SET checkpointAccountNo = :checkpointAccountNo, "
+            + "installmentsAccrued = installmentsAccrued + :installments, "
+            + "penaltyAccrued = penaltyAccrued + :penalty, updatedDate = local_datetime "
+            + "WHERE businessDate = :businessDate AND partitionNo = :partitionNo"),
+    @NamedQuery(name = PenaltyAccrualPartition.COMPLETE,
+        query = "UPDATE PenaltyAccrualPartition SET status = '" + PenaltyAccrualPartition.DONE + "', "
+            + "updatedDate = local_datetime WHERE businessDate = :businessDate AND partitionNo = :partitionNo")
+})
+public class PenaltyAccrualPartition {
+
+    public static final String FIND_BY_BUSINESS_DATE = "PenaltyAccrualPartition.findByBusinessDate";
+    public static final String CHECKPOINT = "PenaltyAccrualPartition.checkpoint";
+    public static final String COMPLETE = "PenaltyAccrualPartition.complete";
+
+    public static final String PENDING = "PENDING";
+    public static final String DONE = "DONE";
+
+    @Id
+    @Column(name = "business_date")
+    private LocalDate businessDate;
+
+    @Id
+    @Column(name = "partition_no")
+    private int partitionNo;
+
+    // First and last loan account of the range, inclusive
+    @Column(name = "from_account_no", nullable = false, length = 50)
+    private String fromAccountNo;
+
+    @Column(name = "to_account_no", nullable = false, length = 50)
+    private String toAccountNo;
+
+    // Last account whose installments were committed; the partition resumes from it
+    @Column(name = "checkpoint_account_no", length = 50)
+    private String checkpointAccountNo;
+
+    @Column(name = "status", nullable = false, length = 10)
+    private String status;
+
+    @Column(name = "installments_accrued", nullable = false)
+    private long installmentsAccrued;
+
+    @Column(name = "penalty_accrued", precision = 15, scale = 2, nullable = false)
+    private BigDecimal penaltyAccrued;
+
+    @Column(name = "updated_date")
+    private LocalDateTime updatedDate;
+
+    // Default constructor
+    public PenaltyAccrualPartition() {}
+
+    // Constructor for a new partition of a run
+    public PenaltyAccrualPartition(LocalDate businessDate, int partitionNo, String fromAccountNo, String toAccountNo) {
+        this.businessDate = businessDate;
+        this.partitionNo = partitionNo;
+        this.fromAccountNo = fromAccountNo;
+        this.toAccountNo = toAccountNo;
+        this.status = PENDING;
+        this.penaltyAccrued = BigDecimal.ZERO;
+        this.updatedDate = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public LocalDate getBusinessDate() {
+        return businessDate;
+    }
+
+    public void setBusinessDate(LocalDate businessDate) {
+        this.businessDate = businessDate;
+    }
+
+    public int getPartitionNo() {
+        return partitionNo;
+    }
+
+    public void setPartitionNo(int partitionNo) {
+        this.partitionNo = partitionNo;
+    }
+
+    public String getFromAccountNo() {
+        return fromAccountNo;
+    }
+
+    public void setFromAccountNo(String fromAccountNo) {
+        this.fromAccountNo = fromAccountNo;
+    }
+
+    public String getToAccountNo() {
+        return toAccountNo;
+    }
+
+    public void setToAccountNo(String toAccountNo) {
+        this.toAccountNo = toAccountNo;
+    }
+
+    public String getCheckpointAccountNo() {
+        return checkpointAccountNo;
+    }
+
+    public void setCheckpointAccountNo(String checkpointAccountNo) {
+        this.checkpointAccountNo = checkpointAccountNo;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public boolean isDone() {
+        return DONE.equals(status);
+    }
+
+    public long getInstallmentsAccrued() {
+        return installmentsAccrued;
+    }
+
+    public void setInstallmentsAccrued(long installmentsAccrued) {
+        this.installmentsAccrued = installmentsAccrued;
+    }
+
+    public BigDecimal getPenaltyAccrued() {
+        return penaltyAccrued;
+    }
+
+    public void setPenaltyAccrued(BigDecimal penaltyAccrued) {
+        this.penaltyAccrued = penaltyAccrued;
+    }
+
+    public LocalDateTime getUpdatedDate() {
+        return updatedDate;
+    }
+
+    public void setUpdatedDate(LocalDateTime updatedDate) {
+        this.updatedDate = updatedDate;
+    }
+
+    @Override
+    public String toString() {
+        return "PenaltyAccrualPartition{" +
+                "businessDate=" + businessDate +
+                ", partitionNo=" + partitionNo +
+                ", fromAccountNo='" + fromAccountNo + '\'' +
+                ", toAccountNo='" + toAccountNo + '\'' +
+                ", checkpointAccountNo='" + checkpointAccountNo + '\'' +
+                ", status='" + status + '\'' +
+                ", installmentsAccrued=" + installmentsAccrued +
+                ", penaltyAccrued=" + penaltyAccrued +
+                '}';
+    }
+
+    /**
+     * Primary key: business date and partition number
+     */
+    public static class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private LocalDate businessDate;
+        private int partitionNo;
+
+        public Key() {}
+
+        public Key(LocalDate businessDate, int partitionNo) {
+            this.businessDate = businessDate;
+            this.partitionNo = partitionNo;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return partitionNo == other.partitionNo && Objects.equals(businessDate, other.businessDate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(businessDate, partitionNo);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.emi.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Entity class representing LMS_PENDING_BALANCE table
+ * Holds the total pending amount of each loan account, kept equal to the sum
+ * of total_amount over the account's receivables (see db/migration/V7__pending_balance.sql)
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+@Entity
+@Table(name = "LMS_PENDING_BALANCE_POOJA")
+@NamedQueries({
+    @NamedQuery(name = PendingBalance.FIND_BY_LOAN_ACCOUNT_NOS,
+        query = "FROM PendingBalance WHERE loanAccountNo IN (:loanAccountNos)"),
+    @NamedQuery(name = PendingBalance.ADD_BY_LOAN_ACCOUNT_NO,
+        query = "UPDATE PendingBalance SET totalPending = totalPending + :amount, updatedDate = local_datetime "
+            + "WHERE loanAccountNo = :loanAccountNo"),
+    @NamedQuery(name = PendingBalance.INSERT_FROM_RECEIVABLES,
+        query = "INSERT INTO PendingBalance (loanAccountNo, totalPending, updatedDate) "
+            + "SELECT r.loanAccountNo, COALESCE(SUM(r.totalAmount), 0), local_datetime FROM Receivable r "
+            + "WHERE r.loanAccountNo = :loanAccountNo GROUP BY r.loanAccountNo"),
+    @NamedQuery(name = PendingBalance.RECOMPUTE_BY_LOAN_ACCOUNT_NO,
+        query = "UPDATE PendingBalance b SET b.totalPending = (SELECT COALESCE(SUM(r.totalAmount), 0) "
+            + "FROM Receivable r WHERE r.loanAccountNo = b.loanAccountNo), b.updatedDate = local_datetime "
+            + "WHERE b.loanAccountNo = :loanAccountNo"),
+    @NamedQuery(name = PendingBalance.FIND_MISMATCHED,
+        query = "SELECT r.loanAccountNo, b.totalPending, COALESCE(SUM(r.totalAmount), 0) FROM Receivable r "
+            + "LEFT JOIN PendingBalance b ON b.loanAccountNo = r.loanAccountNo "
+            + "GROUP BY r.loanAccountNo, b.totalPending "
+            + "HAVING b.totalPending IS NULL OR b.totalPending <> COALESCE(SUM(r.totalAmount), 0)"),
+    @NamedQuery(name = PendingBalance.FIND_ORPHANED,
+        query = "SELECT b.loanAccountNo, b.totalPending FROM PendingBalance b WHERE b.totalPending <> 0 "
+            + "AND b.loanAccountNo NOT IN (SELECT r.loanAccountNo FROM Receivable r)")
+})
+public class PendingBalance {
+
+    public static final String FIND_BY_LOAN_ACCOUNT_NOS = "PendingBalance.findByLoanAccountNos";
+    public static final String ADD_BY_LOAN_ACCOUNT_NO = "PendingBalance.addByLoanAccountNo";
+    public static final String INSERT_FROM_RECEIVABLES = "PendingBalance.insertFromReceivables";
+    public static final String RECOMPUTE_BY_LOAN_ACCOUNT_NO = "PendingBalance.recomputeByLoanAccountNo";
+    public static final String FIND_MISMATCHED = "PendingBalance.findMismatched";
+    public static final String FIND_ORPHANED = "PendingBalance.findOrphaned";
+
+    @Id
+    @Column(name = "loan_account_no", length = 50)
+    private String loanAccountNo;
+
+    @Column(name = "total_pending", precision = 15, scale = 2, nullable = false)
+    private BigDecimal totalPending;
+
+    @Column(name = "updated_date")
+    private LocalDateTime updatedDate;
+
+    // Default constructor
+    public PendingBalance() {}
+
+    // Getters and Setters
+    public String getLoanAccountNo() {
+        return loanAccountNo;
+    }
+
+    public void setLoanAccountNo(String loanAccountNo) {
+        this.loanAccountNo = loanAccountNo;
+    }
+
+    public BigDecimal getTotalPending() {
+        return totalPending;
+    }
+
+    public void setTotalPending(BigDecimal totalPending) {
+        this.totalPending = totalPending;
+    }
+
+    public LocalDateTime getUpdatedDate() {
+        return updatedDate;
+    }
+
+    public void setUpdatedDate(LocalDateTime updatedDate) {
+        this.updatedDate = updatedDate;
+    }
+
+    @Override
+    public String toString() {
+        return "PendingBalance{" +
+                "loanAccountNo='" + loanAccountNo + '\'' +
+                ", totalPending=" + totalPending +
+                ", updatedDate=" + updatedDate +
+                '}';
+    }
+}
@@ -1,6 +1,8 @@
 package com.emi.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
@@ -13,11 +15,31 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "LMS_RECEIPTPAYMENT_DTL_POOJA")
+@NamedQuery(name = ReceiptPayment.FIND_BY_REQUEST_ID,
+    query = "FROM ReceiptPayment WHERE requestId = :requestId")
+@NamedQuery(name = ReceiptPayment.COUNT_BY_RECEIPT_NOS,
+    query = "SELECT COUNT(r) FROM ReceiptPayment r WHERE r.receiptNo IN (:receiptNos)")
+// Payment history, newest first, read as keyset pages off IX_RECEIPTPAYMENT_ACCOUNT_KEYSET
+@NamedQuery(name = ReceiptPayment.FIND_HISTORY,
+    query = "SELECT new com.emi.dao.ReceiptHistoryEntry(r.id, r.receiptNo, r.paymentDate, r.paidAmount, "
+        + "r.paymentMode) FROM ReceiptPayment r WHERE r.loanAccountNo = :loanAccountNo "
+        + "AND r.paymentDate IS NOT NULL ORDER BY r.loanAccountNo, r.paymentDate DESC, r.id DESC")
+@NamedQuery(name = ReceiptPayment.FIND_HISTORY_AFTER,
+    query = "SELECT new com.emi.dao.ReceiptHistoryEntry(r.id, r.receiptNo, r.paymentDate, r.paidAmount, "
+        + "r.paymentMode) FROM ReceiptPayment r WHERE r.loanAccountNo = :loanAccountNo "
+        + "AND r.paymentDate <= :afterDate AND (r.paymentDate < :afterDate OR r.id < :afterId) "
+        + "ORDER BY r.loanAccountNo, r.paymentDate DESC, r.id DESC")
 public class ReceiptPayment {
 
+    public static final String FIND_BY_REQUEST_ID = "ReceiptPayment.findByRequestId";
+    public static final String COUNT_BY_RECEIPT_NOS = "ReceiptPayment.countByReceiptNos";
+    public static final String FIND_HISTORY = "ReceiptPayment.findHistory";
+    public static final String FIND_HISTORY_AFTER = "ReceiptPayment.findHistoryAfter";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "receipt_seq")
-    @SequenceGenerator(name = "receipt_seq", sequenceName = "LMS_RECEIPTPAYMENT_SEQ_POOJA", allocationSize = 1)
+    @GeneratedValue(generator = "receipt_seq")
+    @GenericGenerator(name = "receipt_seq", strategy = "com.emi.util.PooledSequenceGenerator",
+        parameters = @Parameter(name = "sequence_name", value = "LMS_RECEIPTPAYMENT_SEQ_POOJA"))
     @Column(name = "id")
     private Long id;
 
@@ -30,12 +52,16 @@ public class ReceiptPayment {
     @Column(name = "payment_mode", length = 20)
     private String paymentMode;
 
-    @Column(name = "receipt_no", length = 50)
+    @Column(name = "receipt_no", length = 50, unique = true)
     private String receiptNo;
 
     @Column(name = "payment_date")
     private LocalDateTime paymentDate;
 
+    // Client idempotency key; unique, so a replayed submission cannot post twice
+    @Column(name = "request_id", length = 64, unique = true)
+    private String requestId;
+
     // Default constructor
     public ReceiptPayment() {}
 
@@ -97,6 +123,14 @@ public class ReceiptPayment {
         this.paymentDate = paymentDate;
     }
 
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
+
     @Override
     public String toString() {
         return "ReceiptPayment{" +
@@ -106,6 +140,7 @@ public class ReceiptPayment {
                 ", paymentMode='" + paymentMode + '\'' +
                 ", receiptNo='" + receiptNo + '\'' +
                 ", paymentDate=" + paymentDate +
+                ", requestId='" + requestId + '\'' +
                 '}';
     }
 }
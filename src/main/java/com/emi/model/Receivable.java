@@ -1,8 +1,12 @@
 package com.emi.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Entity class representing LMS_RECEIVABLEPAYBLE_DTL table
@@ -13,39 +17,155 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "LMS_RECEIVABLEPAYBLE_DTL_POOJA")
+@NamedQueries({
+    @NamedQuery(name = Receivable.FIND_PENDING_BY_LOAN_ACCOUNT_NO,
+        query = "FROM Receivable WHERE loanAccountNo = :loanAccountNo AND totalAmount > 0 ORDER BY dueDate, id"),
+    @NamedQuery(name = Receivable.FIND_PENDING_BY_LOAN_ACCOUNT_NOS,
+        query = "FROM Receivable WHERE loanAccountNo IN (:loanAccountNos) AND totalAmount > 0 "
+            + "ORDER BY loanAccountNo, dueDate, id"),
+    @NamedQuery(name = Receivable.FIND_ALL_PENDING,
+        query = "FROM Receivable WHERE totalAmount > 0 ORDER BY loanAccountNo, dueDate, id"),
+    @NamedQuery(name = Receivable.FIND_LOAN_ACCOUNT_NOS_AFTER_ID,
+        query = "SELECT id, loanAccountNo FROM Receivable WHERE id > :afterId ORDER BY id"),
+    @NamedQuery(name = Receivable.TOTAL_PENDING_BY_LOAN_ACCOUNT_NO,
+        query = "SELECT COALESCE(SUM(totalAmount), 0) FROM Receivable WHERE loanAccountNo = :loanAccountNo"),
+    @NamedQuery(name = Receivable.TOTAL_PENDING_BY_LOAN_ACCOUNT_NOS,
+        query = "SELECT loanAccountNo, SUM(totalAmount) FROM Receivable WHERE loanAccountNo IN (:loanAccountNos) "
+            + "GROUP BY loanAccountNo"),
+    @NamedQuery(name = Receivable.SETTLE_BY_ID,
+        query = "UPDATE Receivable SET penalty = penalty - :penalty, interestAmount = interestAmount - :interest, "
+            + "principalAmount = principalAmount - :principal, emiAmount = emiAmount - :interest - :principal, "
+            + "totalAmount = totalAmount - :penalty - :interest - :principal, version = version + 1 "
+            + "WHERE id = :id AND penalty >= :penalty AND interestAmount >= :interest "
+            + "AND principalAmount >= :principal AND (:version IS NULL OR version = :version)"),
+    // Penalty accrual: pending installments due before the business date and not yet accrued to it
+    @NamedQuery(name = Receivable.COUNT_ACCOUNTS_TO_ACCRUE,
+        query = "SELECT COUNT(DISTINCT loanAccountNo) FROM Receivable WHERE totalAmount > 0 "
+            + "AND dueDate < :businessDate AND (penaltyAccruedTo IS NULL OR penaltyAccruedTo < :businessDate)"),
+    @NamedQuery(name = Receivable.FIND_ACCOUNTS_TO_ACCRUE,
+        query = "SELECT DISTINCT loanAccountNo FROM Receivable WHERE totalAmount > 0 "
+            + "AND dueDate < :businessDate AND (penaltyAccruedTo IS NULL OR penaltyAccruedTo < :businessDate) "
+            + "ORDER BY loanAccountNo"),
+    @NamedQuery(name = Receivable.FIND_TO_ACCRUE_IN_RANGE,
+        query = "FROM Receivable WHERE loanAccountNo >= :fromAccountNo AND loanAccountNo <= :toAccountNo "
+            + "AND totalAmount > 0 AND dueDate < :businessDate "
+            + "AND (penaltyAccruedTo IS NULL OR penaltyAccruedTo < :businessDate) ORDER BY loanAccountNo")
+})
 public class Receivable {
 
+    // Named queries are compiled and checked when the SessionFactory is built
+    public static final String FIND_PENDING_BY_LOAN_ACCOUNT_NO = "Receivable.findPendingByLoanAccountNo";
+    public static final String FIND_PENDING_BY_LOAN_ACCOUNT_NOS = "Receivable.findPendingByLoanAccountNos";
+    public static final String FIND_ALL_PENDING = "Receivable.findAllPending";
+    public static final String FIND_LOAN_ACCOUNT_NOS_AFTER_ID = "Receivable.findLoanAccountNosAfterId";
+    public static final String TOTAL_PENDING_BY_LOAN_ACCOUNT_NO = "Receivable.totalPendingByLoanAccountNo";
+    public static final String TOTAL_PENDING_BY_LOAN_ACCOUNT_NOS = "Receivable.totalPendingByLoanAccountNos";
+    public static final String SETTLE_BY_ID = "Receivable.settleById";
+    public static final String COUNT_ACCOUNTS_TO_ACCRUE = "Receivable.countAccountsToAccrue";
+    public static final String FIND_ACCOUNTS_TO_ACCRUE = "Receivable.findAccountsToAccrue";
+    public static final String FIND_TO_ACCRUE_IN_RANGE = "Receivable.findToAccrueInRange";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "receivable_seq")
-    @SequenceGenerator(name = "receivable_seq", sequenceName = "RECEIVABLE_SEQ_POOJA", allocationSize = 1)
+    @GeneratedValue(generator = "receivable_seq")
+    @GenericGenerator(name = "receivable_seq", strategy = "com.emi.util.PooledSequenceGenerator",
+        parameters = @Parameter(name = "sequence_name", value = "RECEIVABLE_SEQ_POOJA"))
     @Column(name = "id")
     private Long id;
 
     @Column(name = "loan_account_no", nullable = false, length = 50)
     private String loanAccountNo;
 
+    // Installment amount due: interest_amount + principal_amount
     @Column(name = "emi_amount", precision = 15, scale = 2)
     private BigDecimal emiAmount;
 
+    @Column(name = "interest_amount", precision = 15, scale = 2)
+    private BigDecimal interestAmount;
+
+    @Column(name = "principal_amount", precision = 15, scale = 2)
+    private BigDecimal principalAmount;
+
     @Column(name = "penalty", precision = 15, scale = 2)
     private BigDecimal penalty;
 
     @Column(name = "total_amount", precision = 15, scale = 2)
     private BigDecimal totalAmount;
 
+    @Column(name = "due_date")
+    private LocalDate dueDate;
+
     @Column(name = "created_date")
     private LocalDateTime createdDate;
 
+    // Business date the penalty has been accrued to; null until the first accrual after the due date
+    @Column(name = "penalty_accrued_to")
+    private LocalDate penaltyAccruedTo;
+
+    // Optimistic lock: updates are conditional on the version that was read
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
     // Default constructor
     public Receivable() {}
 
-    // Constructor with parameters
+    // Constructor with parameters; the whole EMI is treated as principal, due today
     public Receivable(String loanAccountNo, BigDecimal emiAmount, BigDecimal penalty, BigDecimal totalAmount) {
         this.loanAccountNo = loanAccountNo;
         this.emiAmount = emiAmount;
+        this.interestAmount = BigDecimal.ZERO;
+        this.principalAmount = emiAmount;
         this.penalty = penalty;
         this.totalAmount = totalAmount;
         this.createdDate = LocalDateTime.now();
+        this.dueDate = createdDate.toLocalDate();
+    }
+
+    // Constructor for one installment of a loan
+    public Receivable(String loanAccountNo, LocalDate dueDate, BigDecimal principalAmount,
+                      BigDecimal interestAmount, BigDecimal penalty) {
+        this.loanAccountNo = loanAccountNo;
+        this.dueDate = dueDate;
+        this.principalAmount = principalAmount;
+        this.interestAmount = interestAmount;
+        this.emiAmount = principalAmount.add(interestAmount);
+        this.penalty = penalty;
+        this.totalAmount = emiAmount.add(penalty);
+        this.createdDate = LocalDateTime.now();
+    }
+
+    /**
+     * Build the account-level view of a loan's pending installments
+     * Amounts are summed over the installments and the due date is the oldest
+     * one; the summary is not persistent and carries no id or version
+     *
+     * @param installments pending installments of one loan account, oldest first
+     * @return summary Receivable, or null if nothing is pending
+     */
+    public static Receivable summaryOf(List<Receivable> installments) {
+        if (installments == null || installments.isEmpty()) {
+            return null;
+        }
+        Receivable summary = new Receivable();
+        summary.loanAccountNo = installments.get(0).getLoanAccountNo();
+        summary.dueDate = installments.get(0).getDueDate();
+        summary.emiAmount = BigDecimal.ZERO;
+        summary.interestAmount = BigDecimal.ZERO;
+        summary.principalAmount = BigDecimal.ZERO;
+        summary.penalty = BigDecimal.ZERO;
+        summary.totalAmount = BigDecimal.ZERO;
+        for (Receivable installment : installments) {
+            summary.emiAmount = summary.emiAmount.add(orZero(installment.getEmiAmount()));
+            summary.interestAmount = summary.interestAmount.add(orZero(installment.getInterestAmount()));
+            summary.principalAmount = summary.principalAmount.add(orZero(installment.getPrincipalAmount()));
+            summary.penalty = summary.penalty.add(orZero(installment.getPenalty()));
+            summary.totalAmount = summary.totalAmount.add(orZero(installment.getTotalAmount()));
+        }
+        return summary;
+    }
+
+    private static BigDecimal orZero(BigDecimal amount) {
+        return amount != null ? amount : BigDecimal.ZERO;
     }
 
     // Getters and Setters
@@ -73,6 +193,22 @@ public class Receivable {
         this.emiAmount = emiAmount;
     }
 
+    public BigDecimal getInterestAmount() {
+        return interestAmount;
+    }
+
+    public void setInterestAmount(BigDecimal interestAmount) {
+        this.interestAmount = interestAmount;
+    }
+
+    public BigDecimal getPrincipalAmount() {
+        return principalAmount;
+    }
+
+    public void setPrincipalAmount(BigDecimal principalAmount) {
+        this.principalAmount = principalAmount;
+    }
+
     public BigDecimal getPenalty() {
         return penalty;
     }
@@ -89,6 +225,14 @@ public class Receivable {
         this.totalAmount = totalAmount;
     }
 
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    public void setDueDate(LocalDate dueDate) {
+        this.dueDate = dueDate;
+    }
+
     public LocalDateTime getCreatedDate() {
         return createdDate;
     }
@@ -97,15 +241,36 @@ public class Receivable {
         this.createdDate = createdDate;
     }
 
+    public LocalDate getPenaltyAccruedTo() {
+        return penaltyAccruedTo;
+    }
+
+    public void setPenaltyAccruedTo(LocalDate penaltyAccruedTo) {
+        this.penaltyAccruedTo = penaltyAccruedTo;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Receivable{" +
                 "id=" + id +
                 ", loanAccountNo='" + loanAccountNo + '\'' +
                 ", emiAmount=" + emiAmount +
+                ", interestAmount=" + interestAmount +
+                ", principalAmount=" + principalAmount +
                 ", penalty=" + penalty +
                 ", totalAmount=" + totalAmount +
+                ", dueDate=" + dueDate +
                 ", createdDate=" + createdDate +
+                ", penaltyAccruedTo=" + penaltyAccruedTo +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,155 @@
+package com.emi.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Spreads one payment across the pending installments of a loan account
+ * Installments are paid oldest first; within an installment the payment goes
+ * to penalty, interest and principal in the configured waterfall order, and
+ * the next installment is only touched once the current one is fully paid.
+ *
+ * Amounts are scaled longs in paise held in flat arrays, one slot per
+ * installment and component (index installment * COMPONENTS + component
+ * ordinal), so allocating across hundreds of installments is a single pass
+ * with no BigDecimal arithmetic or per-installment objects. Instances are
+ * immutable and safe for concurrent use.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class AllocationEngine {
+
+    public static final String DEFAULT_WATERFALL = "PENALTY,INTEREST,PRINCIPAL";
+
+    /**
+     * Parts of an installment a payment can be allocated to
+     */
+    public enum Component {
+        PENALTY, INTEREST, PRINCIPAL
+    }
+
+    public static final int COMPONENTS = Component.values().length;
+
+    private final int[] waterfall;
+
+    /**
+     * @param waterfall comma-separated components, e.g. PENALTY,INTEREST,PRINCIPAL
+     */
+    public AllocationEngine(String waterfall) {
+        this(parse(waterfall));
+    }
+
+    /**
+     * @param waterfall every component exactly once, in the order payments settle them
+     */
+    public AllocationEngine(List<Component> waterfall) {
+        Set<Component> seen = EnumSet.noneOf(Component.class);
+        for (Component component : waterfall) {
+            if (!seen.add(component)) {
+                throw new IllegalArgumentException("Allocation waterfall lists " + component + " twice");
+            }
+        }
+        if (seen.size() != COMPONENTS) {
+            throw new IllegalArgumentException("Allocation waterfall must list each of "
+                + EnumSet.allOf(Component.class) + " once: " + waterfall);
+        }
+        this.waterfall = new int[COMPONENTS];
+        for (int i = 0; i < COMPONENTS; i++) {
+            this.waterfall[i] = waterfall.get(i).ordinal();
+        }
+    }
+
+    /**
+     * Get the order in which components of an installment are settled
+     *
+     * @return components in waterfall order
+     */
+    public List<Component> getWaterfall() {
+        List<Component> order = new ArrayList<>(COMPONENTS);
+        for (int ordinal : waterfall) {
+            order.add(Component.values()[ordinal]);
+        }
+        return Collections.unmodifiableList(order);
+    }
+
+    /**
+     * Allocate a payment across installments
+     *
+     * @param dues amounts due in paise, indexed installment * COMPONENTS + component ordinal,
+     *             installments oldest first
+     * @param installments number of installments in dues
+     * @param payment payment amount in paise
+     * @param allocated receives the amount allocated to each slot of dues, same layout
+     * @return paise left over once every installment is fully paid
+     */
+    public long allocate(long[] dues, int installments, long payment, long[] allocated) {
+        int slots = installments * COMPONENTS;
+        if (dues.length < slots || allocated.length < slots) {
+            throw new IllegalArgumentException("Arrays hold fewer than " + installments + " installments");
+        }
+        if (payment < 0) {
+            throw new IllegalArgumentException("Payment amount must not be negative");
+        }
+
+        long remaining = payment;
+        int base = 0;
+        for (; base < slots && remaining > 0; base += COMPONENTS) {
+            for (int i = 0; i < COMPONENTS; i++) {
+                int slot = base + waterfall[i];
+                long amount = Math.min(Math.max(dues[slot], 0), remaining);
+                allocated[slot] = amount;
+                remaining -= amount;
+            }
+        }
+        // Installments the payment did not reach get nothing
+        for (int slot = base; slot < slots; slot++) {
+            allocated[slot] = 0;
+        }
+        return remaining;
+    }
+
+    /**
+     * Convert an amount to paise
+     *
+     * @param amount amount in rupees with at most two decimal places, or null for zero
+     * @return amount in paise
+     */
+    public static long toPaise(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        try {
+            // Moving the point of a scale-2 amount keeps it in BigDecimal's compact long form
+            return amount.movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount must have at most two decimal places: " + amount);
+        }
+    }
+
+    /**
+     * Convert paise back to an amount in rupees with two decimal places
+     */
+    public static BigDecimal fromPaise(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+
+    private static List<Component> parse(String waterfall) {
+        if (waterfall == null || waterfall.trim().isEmpty()) {
+            throw new IllegalArgumentException("Allocation waterfall is required");
+        }
+        List<Component> components = new ArrayList<>(COMPONENTS);
+        for (String name : waterfall.split(",")) {
+            try {
+                components.add(Component.valueOf(name.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown allocation component: " + name.trim());
+            }
+        }
+        return components;
+    }
+}
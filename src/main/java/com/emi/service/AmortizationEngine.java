@@ -0,0 +1,216 @@
+package com.emi.service;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the EMI and month-by-month amortization schedule of a loan
+ * The EMI is P * r * (1 + r)^n / ((1 + r)^n - 1) for monthly rate r, rounded
+ * half up to the paisa. Every month's interest is the opening balance times
+ * the annual rate / 1200, rounded half up to the paisa; the rest of the EMI
+ * repays principal, and the last installment repays whatever is left.
+ *
+ * Two modes produce the same schedules. EXACT works in BigDecimal. FAST
+ * works in paise and basis points held in longs, writing rows into a flat
+ * array the caller can reuse (index installment * COLUMNS + column), with
+ * (1 + r)^n the only floating-point step; its interest rounding is integer
+ * arithmetic, so it matches EXACT to the paisa. Instances are stateless and
+ * safe for concurrent use.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class AmortizationEngine {
+
+    /**
+     * Arithmetic used to compute a schedule
+     */
+    public enum Mode {
+        EXACT, FAST
+    }
+
+    // Columns of a schedule row, in paise
+    public static final int EMI = 0;
+    public static final int INTEREST = 1;
+    public static final int PRINCIPAL = 2;
+    public static final int BALANCE = 3;
+    public static final int COLUMNS = 4;
+
+    public static final int MAX_TENURE_MONTHS = 600;
+
+    // Annual basis points over twelve months in percent: interest = balance * bps / 120000
+    private static final long BPS_MONTHS = 120_000L;
+    private static final BigDecimal PERCENT_MONTHS = new BigDecimal("1200");
+    private static final MathContext PRECISION = MathContext.DECIMAL128;
+
+    /**
+     * Compute the EMI of a loan in BigDecimal
+     *
+     * @param principal amount lent, in rupees with at most two decimal places
+     * @param annualRatePercent annual interest rate in percent
+     * @param tenureMonths number of monthly installments
+     * @return EMI rounded half up to the paisa
+     */
+    public BigDecimal emi(BigDecimal principal, BigDecimal annualRatePercent, int tenureMonths) {
+        validate(AllocationEngine.toPaise(principal), annualRatePercent.signum(), tenureMonths);
+        return exactEmi(principal, annualRatePercent, tenureMonths);
+    }
+
+    /**
+     * Compute the EMI of a loan in paise and basis points
+     *
+     * @param principalPaise amount lent, in paise
+     * @param annualRateBps annual interest rate in basis points, e.g. 1050 for 10.50%
+     * @param tenureMonths number of monthly installments
+     * @return EMI in paise, rounded half up
+     */
+    public long emi(long principalPaise, int annualRateBps, int tenureMonths) {
+        validate(principalPaise, annualRateBps, tenureMonths);
+        checkRange(principalPaise, annualRateBps);
+        return fastEmi(principalPaise, annualRateBps, tenureMonths);
+    }
+
+    /**
+     * Compute the schedule of a loan
+     *
+     * @param loan principal, rate and tenure; FAST needs a rate with at most two decimal places
+     * @param mode arithmetic to use
+     * @return the schedule, one row per installment
+     */
+    public AmortizationSchedule schedule(LoanTerms loan, Mode mode) {
+        int tenureMonths = loan.getTenureMonths();
+        validate(AllocationEngine.toPaise(loan.getPrincipal()), loan.getAnnualRatePercent().signum(), tenureMonths);
+        long[] rows = new long[tenureMonths * COLUMNS];
+        if (mode == Mode.EXACT) {
+            exactSchedule(loan.getPrincipal(), loan.getAnnualRatePercent(), tenureMonths, rows);
+        } else {
+            long principalPaise = AllocationEngine.toPaise(loan.getPrincipal());
+            int annualRateBps = toBps(loan.getAnnualRatePercent());
+            checkRange(principalPaise, annualRateBps);
+            fastSchedule(principalPaise, annualRateBps, tenureMonths, rows);
+        }
+        return new AmortizationSchedule(rows, tenureMonths);
+    }
+
+    /**
+     * Compute the schedule of a loan into a caller-owned array, without allocating
+     *
+     * @param principalPaise amount lent, in paise
+     * @param annualRateBps annual interest rate in basis points
+     * @param tenureMonths number of monthly installments
+     * @param rows receives one row per installment, indexed installment * COLUMNS + column;
+     *             at least tenureMonths * COLUMNS long
+     * @return total interest over the loan, in paise
+     */
+    public long schedule(long principalPaise, int annualRateBps, int tenureMonths, long[] rows) {
+        validate(principalPaise, annualRateBps, tenureMonths);
+        if (rows.length < tenureMonths * COLUMNS) {
+            throw new IllegalArgumentException("Array holds fewer than " + tenureMonths + " installments");
+        }
+        checkRange(principalPaise, annualRateBps);
+        return fastSchedule(principalPaise, annualRateBps, tenureMonths, rows);
+    }
+
+    /**
+     * Compute the schedules of many loans in parallel, on the common ForkJoinPool
+     *
+     * @param loans principal, rate and tenure of each loan
+     * @param mode arithmetic to use
+     * @return schedules in the order of loans
+     */
+    public AmortizationSchedule[] schedules(List<LoanTerms> loans, Mode mode) {
+        AmortizationSchedule[] schedules = new AmortizationSchedule[loans.size()];
+        IntStream.range(0, schedules.length).parallel()
+            .forEach(i -> schedules[i] = schedule(loans.get(i), mode));
+        return schedules;
+    }
+
+    /**
+     * Convert an annual rate in percent to basis points
+     *
+     * @param annualRatePercent rate with at most two decimal places
+     * @return rate in basis points
+     */
+    public static int toBps(BigDecimal annualRatePercent) {
+        try {
+            return annualRatePercent.movePointRight(2).intValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Rate must have at most two decimal places: " + annualRatePercent);
+        }
+    }
+
+    private static BigDecimal exactEmi(BigDecimal principal, BigDecimal annualRatePercent, int tenureMonths) {
+        if (annualRatePercent.signum() == 0) {
+            return principal.divide(BigDecimal.valueOf(tenureMonths), 2, RoundingMode.HALF_UP);
+        }
+        BigDecimal monthlyRate = annualRatePercent.divide(PERCENT_MONTHS, PRECISION);
+        BigDecimal growth = BigDecimal.ONE.add(monthlyRate).pow(tenureMonths, PRECISION);
+        return principal.multiply(monthlyRate).multiply(growth)
+            .divide(growth.subtract(BigDecimal.ONE), 2, RoundingMode.HALF_UP);
+    }
+
+    private static long fastEmi(long principalPaise, int annualRateBps, int tenureMonths) {
+        if (annualRateBps == 0) {
+            return (2 * principalPaise + tenureMonths) / (2L * tenureMonths);
+        }
+        double monthlyRate = annualRateBps / (double) BPS_MONTHS;
+        double growth = Math.pow(1 + monthlyRate, tenureMonths);
+        return Math.round(principalPaise * monthlyRate * growth / (growth - 1));
+    }
+
+    private static void exactSchedule(BigDecimal principal, BigDecimal annualRatePercent, int tenureMonths,
+                                      long[] rows) {
+        BigDecimal emi = exactEmi(principal, annualRatePercent, tenureMonths);
+        BigDecimal balance = principal;
+        for (int month = 0; month < tenureMonths; month++) {
+            BigDecimal interest = balance.multiply(annualRatePercent).divide(PERCENT_MONTHS, 2, RoundingMode.HALF_UP);
+            BigDecimal repaid = month == tenureMonths - 1 ? balance : emi.subtract(interest).min(balance);
+            balance = balance.subtract(repaid);
+            int row = month * COLUMNS;
+            rows[row + EMI] = AllocationEngine.toPaise(interest.add(repaid));
+            rows[row + INTEREST] = AllocationEngine.toPaise(interest);
+            rows[row + PRINCIPAL] = AllocationEngine.toPaise(repaid);
+            rows[row + BALANCE] = AllocationEngine.toPaise(balance);
+        }
+    }
+
+    private static long fastSchedule(long principalPaise, int annualRateBps, int tenureMonths, long[] rows) {
+        long emi = fastEmi(principalPaise, annualRateBps, tenureMonths);
+        long balance = principalPaise;
+        long totalInterest = 0;
+        int last = (tenureMonths - 1) * COLUMNS;
+        for (int row = 0; row <= last; row += COLUMNS) {
+            long interest = (balance * annualRateBps + BPS_MONTHS / 2) / BPS_MONTHS;
+            long repaid = row == last ? balance : Math.min(emi - interest, balance);
+            balance -= repaid;
+            totalInterest += interest;
+            rows[row + EMI] = interest + repaid;
+            rows[row + INTEREST] = interest;
+            rows[row + PRINCIPAL] = repaid;
+            rows[row + BALANCE] = balance;
+        }
+        return totalInterest;
+    }
+
+    // FAST multiplies the balance by the rate in a long
+    private static void checkRange(long principalPaise, int annualRateBps) {
+        if (annualRateBps > 0 && principalPaise > Long.MAX_VALUE / annualRateBps) {
+            throw new IllegalArgumentException("Principal too large for FAST mode at this rate; use EXACT");
+        }
+    }
+
+    private static void validate(long principalPaise, int rateSign, int tenureMonths) {
+        if (principalPaise <= 0) {
+            throw new IllegalArgumentException("Principal must be greater than zero");
+        }
+        if (rateSign < 0) {
+            throw new IllegalArgumentException("Interest rate cannot be negative");
+        }
+        if (tenureMonths <= 0 || tenureMonths > MAX_TENURE_MONTHS) {
+            throw new IllegalArgumentException("Tenure must be between 1 and " + MAX_TENURE_MONTHS + " months");
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.emi.service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Month-by-month repayment schedule of a loan, as produced by AmortizationEngine
+ * Amounts are held in paise in the engine's row layout; installments are
+ * numbered from 1
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public final class AmortizationSchedule {
+
+    private final long[] rows;
+    private final int installments;
+
+    AmortizationSchedule(long[] rows, int installments) {
+        this.rows = rows;
+        this.installments = installments;
+    }
+
+    public int getInstallments() {
+        return installments;
+    }
+
+    /**
+     * Get the EMI of the loan; the last installment may be smaller
+     */
+    public BigDecimal getEmi() {
+        return getEmi(1);
+    }
+
+    public BigDecimal getEmi(int installment) {
+        return amount(installment, AmortizationEngine.EMI);
+    }
+
+    public BigDecimal getInterest(int installment) {
+        return amount(installment, AmortizationEngine.INTEREST);
+    }
+
+    public BigDecimal getPrincipal(int installment) {
+        return amount(installment, AmortizationEngine.PRINCIPAL);
+    }
+
+    /**
+     * Get the principal still owed once an installment is paid
+     */
+    public BigDecimal getBalance(int installment) {
+        return amount(installment, AmortizationEngine.BALANCE);
+    }
+
+    public BigDecimal getTotalInterest() {
+        return AllocationEngine.fromPaise(total(AmortizationEngine.INTEREST));
+    }
+
+    public BigDecimal getTotalPayment() {
+        return AllocationEngine.fromPaise(total(AmortizationEngine.EMI));
+    }
+
+    private BigDecimal amount(int installment, int column) {
+        if (installment < 1 || installment > installments) {
+            throw new IndexOutOfBoundsException("Installment " + installment + " of " + installments);
+        }
+        return AllocationEngine.fromPaise(rows[(installment - 1) * AmortizationEngine.COLUMNS + column]);
+    }
+
+    private long total(int column) {
+        long total = 0;
+        for (int row = 0; row < installments; row++) {
+            total += rows[row * AmortizationEngine.COLUMNS + column];
+        }
+        return total;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AmortizationSchedule)) {
+            return false;
+        }
+        AmortizationSchedule other = (AmortizationSchedule) o;
+        int slots = installments * AmortizationEngine.COLUMNS;
+        return installments == other.installments
+            && Arrays.equals(rows, 0, slots, other.rows, 0, slots);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = installments;
+        for (int slot = 0; slot < installments * AmortizationEngine.COLUMNS; slot++) {
+            hash = 31 * hash + Long.hashCode(rows[slot]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "AmortizationSchedule{" +
+                "installments=" + installments +
+                ", emi=" + getEmi() +
+                ", totalInterest=" + getTotalInterest() +
+                '}';
+    }
+}
@@ -0,0 +1,112 @@
+package com.emi.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk payment run
+ * Tracks posted rows, per-row failures and overall throughput
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class BulkPaymentReport {
+
+    private long totalRows;
+    private long postedRows;
+    private long elapsedNanos;
+    private final List<RowFailure> failures = new ArrayList<>();
+
+    void rowRead() {
+        totalRows++;
+    }
+
+    void rowsPosted(int count) {
+        postedRows += count;
+    }
+
+    void rowFailed(long lineNumber, String loanAccountNo, String reason) {
+        failures.add(new RowFailure(lineNumber, loanAccountNo, reason));
+    }
+
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public long getPostedRows() {
+        return postedRows;
+    }
+
+    public long getFailedRows() {
+        return failures.size();
+    }
+
+    public List<RowFailure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000L;
+    }
+
+    /**
+     * Get throughput of the run
+     *
+     * @return rows read per second, posted or failed
+     */
+    public double getRowsPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0.0;
+        }
+        return totalRows * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkPaymentReport{" +
+                "totalRows=" + totalRows +
+                ", postedRows=" + postedRows +
+                ", failedRows=" + failures.size() +
+                ", elapsedMillis=" + getElapsedMillis() +
+                ", rowsPerSecond=" + String.format("%.1f", getRowsPerSecond()) +
+                '}';
+    }
+
+    /**
+     * A single row that could not be posted
+     */
+    public static class RowFailure {
+
+        private final long lineNumber;
+        private final String loanAccountNo;
+        private final String reason;
+
+        public RowFailure(long lineNumber, String loanAccountNo, String reason) {
+            this.lineNumber = lineNumber;
+            this.loanAccountNo = loanAccountNo;
+            this.reason = reason;
+        }
+
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getLoanAccountNo() {
+            return loanAccountNo;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + lineNumber + " [" + loanAccountNo + "]: " + reason;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.emi.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+
+/**
+ * Service interface for bulk payment ingestion
+ * Posts end-of-day bank and NACH payment files in JDBC batches
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public interface BulkPaymentService {
+
+    /**
+     * Process a CSV payment file
+     * Each line holds loan account number, payment amount and payment mode
+     *
+     * @param csvFile the payment file to process
+     * @return BulkPaymentReport with throughput and per-row failures
+     * @throws IOException if the file cannot be read
+     */
+    BulkPaymentReport processFile(Path csvFile) throws IOException;
+
+    /**
+     * Process CSV payment rows from a reader
+     * Rows are streamed; only one batch is held in memory at a time
+     *
+     * @param reader source of CSV payment rows
+     * @return BulkPaymentReport with throughput and per-row failures
+     * @throws IOException if the source cannot be read
+     */
+    BulkPaymentReport process(Reader reader) throws IOException;
+}
@@ -0,0 +1,271 @@
+package com.emi.service;
+
+import com.emi.dao.LoanDao;
+import com.emi.dao.LoanDaoFactory;
+import com.emi.dao.StaleReceivableException;
+import com.emi.model.Allocation;
+import com.emi.model.ReceiptPayment;
+import com.emi.model.Receivable;
+import com.emi.util.AppConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Implementation of BulkPaymentService interface
+ * Streams CSV rows, allocates each one through EmiService and writes
+ * receipts and allocations in configurable JDBC batches
+ * A batch never holds two rows for the same account, so every row is
+ * allocated against the dues left by the rows before it
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class BulkPaymentServiceImpl implements BulkPaymentService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkPaymentServiceImpl.class);
+
+    private final EmiService emiService;
+    private final LoanDao loanDao;
+    private final int batchSize;
+
+    public BulkPaymentServiceImpl() {
+        this(EmiServiceFactory.getEmiService(), LoanDaoFactory.getLoanDao(), AppConfig.getInt("bulk.batch.size", 500));
+    }
+
+    public BulkPaymentServiceImpl(int batchSize) {
+        this(EmiServiceFactory.getEmiService(), LoanDaoFactory.getLoanDao(), batchSize);
+    }
+
+    public BulkPaymentServiceImpl(EmiService emiService, LoanDao loanDao, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than zero");
+        }
+        this.emiService = emiService;
+        this.loanDao = loanDao;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public BulkPaymentReport processFile(Path csvFile) throws IOException {
+        try (Reader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+            return process(reader);
+        }
+    }
+
+    @Override
+    public BulkPaymentReport process(Reader reader) throws IOException {
+        BulkPaymentReport report = new BulkPaymentReport();
+        PendingBatch batch = new PendingBatch(batchSize);
+        long start = System.nanoTime();
+
+        BufferedReader lines = reader instanceof BufferedReader
+            ? (BufferedReader) reader : new BufferedReader(reader);
+        String line;
+        long lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty() || (lineNumber == 1 && isHeader(line))) {
+                continue;
+            }
+
+            report.rowRead();
+            String loanAccountNo = null;
+            try {
+                String[] fields = line.split(",", -1);
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException("Expected 3 fields but found " + fields.length);
+                }
+                loanAccountNo = fields[0].trim();
+                BigDecimal paymentAmount = parseAmount(fields[1].trim());
+                String paymentMode = fields[2].trim().toUpperCase();
+
+                // A second row for an account allocates against the dues left by the first
+                if (batch.contains(loanAccountNo)) {
+                    flush(batch, report);
+                }
+                batch.add(lineNumber, prepare(loanAccountNo, paymentAmount, paymentMode));
+            } catch (IllegalArgumentException e) {
+                report.rowFailed(lineNumber, loanAccountNo, e.getMessage());
+            }
+
+            if (batch.isFull()) {
+                flush(batch, report);
+            }
+        }
+        flush(batch, report);
+
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+
+    /**
+     * Validate a row and build its allocations and receipt
+     * Applies the same rules as EmiService.processPayment
+     */
+    private PreparedPayment prepare(String loanAccountNo, BigDecimal paymentAmount, String paymentMode) {
+        if (!emiService.validateLoanAccount(loanAccountNo)) {
+            throw new IllegalArgumentException("Invalid loan account number: " + loanAccountNo);
+        }
+        if (paymentAmount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Payment amount must be greater than zero");
+        }
+        if (paymentMode.isEmpty()) {
+            throw new IllegalArgumentException("Payment mode is required");
+        }
+
+        return allocate(new ReceiptPayment(
+            loanAccountNo, paymentAmount, paymentMode, emiService.generateReceiptNumber()));
+    }
+
+    /**
+     * Read the account's pending installments and allocate a receipt's amount across them
+     */
+    private PreparedPayment allocate(ReceiptPayment receiptPayment) {
+        String loanAccountNo = receiptPayment.getLoanAccountNo();
+        List<Receivable> installments = loanDao.getPendingReceivables(loanAccountNo);
+        if (installments == null || installments.isEmpty()) {
+            throw new IllegalArgumentException("No pending EMI found for loan account: " + loanAccountNo);
+        }
+
+        List<Allocation> allocations = emiService.calculateAllocation(installments, receiptPayment.getPaidAmount());
+        for (Allocation allocation : allocations) {
+            allocation.setReceiptNo(receiptPayment.getReceiptNo());
+        }
+        return new PreparedPayment(allocations, receiptPayment);
+    }
+
+    /**
+     * Write the pending batch in one transaction
+     * If the batch fails, fall back to payment-by-payment saves so one bad row
+     * does not take the rest of the batch down with it; a payment whose
+     * installments changed since they were read is allocated again once
+     */
+    private void flush(PendingBatch batch, BulkPaymentReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            loanDao.savePayments(batch.allocations, batch.receiptPayments, batchSize);
+            report.rowsPosted(batch.size());
+        } catch (RuntimeException batchFailure) {
+            LOG.warn("Batch of lines {}-{} failed, saving payment by payment", batch.lineNumbers.get(0),
+                batch.lineNumbers.get(batch.size() - 1), batchFailure);
+            for (int i = 0; i < batch.size(); i++) {
+                PreparedPayment payment = batch.payments.get(i);
+                payment.receiptPayment.setId(null);
+                for (Allocation allocation : payment.allocations) {
+                    allocation.setId(null);
+                }
+                try {
+                    try {
+                        loanDao.savePayments(payment.allocations, List.of(payment.receiptPayment), batchSize);
+                    } catch (StaleReceivableException stale) {
+                        payment.receiptPayment.setId(null);
+                        payment = allocate(payment.receiptPayment);
+                        loanDao.savePayments(payment.allocations, List.of(payment.receiptPayment), batchSize);
+                    }
+                    report.rowsPosted(1);
+                } catch (RuntimeException rowFailure) {
+                    report.rowFailed(batch.lineNumbers.get(i), payment.receiptPayment.getLoanAccountNo(),
+                        rootMessage(rowFailure));
+                }
+            }
+        }
+        batch.clear();
+    }
+
+    private boolean isHeader(String line) {
+        return line.trim().toLowerCase().startsWith("loan");
+    }
+
+    private BigDecimal parseAmount(String value) {
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid payment amount: " + value);
+        }
+    }
+
+    private String rootMessage(Throwable throwable) {
+        Throwable root = throwable;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+
+    private static class PreparedPayment {
+
+        private final List<Allocation> allocations;
+        private final ReceiptPayment receiptPayment;
+
+        PreparedPayment(List<Allocation> allocations, ReceiptPayment receiptPayment) {
+            this.allocations = allocations;
+            this.receiptPayment = receiptPayment;
+        }
+    }
+
+    private static class PendingBatch {
+
+        private final int capacity;
+        private final List<Long> lineNumbers;
+        private final List<PreparedPayment> payments;
+        private final List<Allocation> allocations;
+        private final List<ReceiptPayment> receiptPayments;
+        private final Set<String> loanAccountNos;
+
+        PendingBatch(int capacity) {
+            this.capacity = capacity;
+            this.lineNumbers = new ArrayList<>(capacity);
+            this.payments = new ArrayList<>(capacity);
+            this.allocations = new ArrayList<>(capacity);
+            this.receiptPayments = new ArrayList<>(capacity);
+            this.loanAccountNos = new HashSet<>();
+        }
+
+        void add(long lineNumber, PreparedPayment payment) {
+            lineNumbers.add(lineNumber);
+            payments.add(payment);
+            allocations.addAll(payment.allocations);
+            receiptPayments.add(payment.receiptPayment);
+            loanAccountNos.add(payment.receiptPayment.getLoanAccountNo());
+        }
+
+        boolean contains(String loanAccountNo) {
+            return loanAccountNos.contains(loanAccountNo);
+        }
+
+        int size() {
+            return payments.size();
+        }
+
+        boolean isEmpty() {
+            return payments.isEmpty();
+        }
+
+        boolean isFull() {
+            return payments.size() >= capacity;
+        }
+
+        void clear() {
+            lineNumbers.clear();
+            payments.clear();
+            allocations.clear();
+            receiptPayments.clear();
+            loanAccountNos.clear();
+        }
+    }
+}
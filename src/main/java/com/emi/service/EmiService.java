@@ -1,9 +1,13 @@
 package com.emi.service;
 
+import com.emi.dao.AllocationHistoryEntry;
+import com.emi.dao.HistoryCursor;
+import com.emi.dao.HistoryPage;
+import com.emi.dao.ReceiptHistoryEntry;
 import com.emi.model.Receivable;
-import com.emi.model.ReceiptPayment;
 import com.emi.model.Allocation;
 import java.math.BigDecimal;
+import java.util.List;
 
 /**
  * Service interface for EMI payment business logic
@@ -16,13 +20,35 @@ public interface EmiService {
 
     /**
      * Process EMI payment for a loan account
+     * The payment is spread across the account's pending installments, oldest
+     * first (see AllocationEngine); a payment smaller than the dues settles
+     * them partially. The allocations are deducted from the installments in the
+     * same transaction that saves the receipt; concurrent payments for the same
+     * account are retried against the updated dues up to
+     * payment.settle.max.attempts times
      *
      * @param loanAccountNo the loan account number
      * @param paymentAmount the payment amount
      * @param paymentMode the payment mode (CASH, CHEQUE, ONLINE, etc.)
-     * @return ReceiptPayment object with payment details
+     * @return PaymentResult with the saved receipt and its allocations
+     * @throws com.emi.dao.StaleReceivableException if the receivable kept changing on every attempt
      */
-    ReceiptPayment processPayment(String loanAccountNo, BigDecimal paymentAmount, String paymentMode);
+    PaymentResult processPayment(String loanAccountNo, BigDecimal paymentAmount, String paymentMode);
+
+    /**
+     * Process EMI payment for a loan account at most once per request id
+     * A replayed request (same request id) returns the original receipt and
+     * allocations without allocating again or drawing new ids; a request id
+     * reused for a different account or amount is rejected
+     *
+     * @param requestId client idempotency key, 1 to 64 characters, or null for no deduplication
+     * @param loanAccountNo the loan account number
+     * @param paymentAmount the payment amount
+     * @param paymentMode the payment mode (CASH, CHEQUE, ONLINE, etc.)
+     * @return PaymentResult with the saved (or original) receipt and its allocations
+     */
+    PaymentResult processPayment(String requestId, String loanAccountNo, BigDecimal paymentAmount,
+                                 String paymentMode);
 
     /**
      * Get pending EMI details for a loan account
@@ -33,16 +59,60 @@ public interface EmiService {
     Receivable getPendingEmiDetails(String loanAccountNo);
 
     /**
-     * Calculate allocation of payment amount to penalty and EMI
+     * Get one page of the receipts posted to a loan account, newest first
+     * Pass the page's next cursor back to read the following (older) page;
+     * every page costs the same however far back it is
      *
      * @param loanAccountNo the loan account number
+     * @param after next cursor of the previous page, or null for the newest receipts
+     * @param pageSize receipts per page, 1 to 100
+     * @return page of receipts
+     */
+    HistoryPage<ReceiptHistoryEntry> getReceiptHistory(String loanAccountNo, HistoryCursor after, int pageSize);
+
+    /**
+     * Get one page of the allocations of a loan account's receipts to its installments, newest first
+     *
+     * @param loanAccountNo the loan account number
+     * @param after next cursor of the previous page, or null for the newest allocations
+     * @param pageSize allocations per page, 1 to 100
+     * @return page of allocations
+     */
+    HistoryPage<AllocationHistoryEntry> getAllocationHistory(String loanAccountNo, HistoryCursor after,
+                                                             int pageSize);
+
+    /**
+     * Calculate allocation of payment amount across the pending installments of a loan account
+     *
+     * @param loanAccountNo the loan account number
+     * @param paymentAmount the payment amount
+     * @return one Allocation per installment the payment reaches, oldest first
+     */
+    List<Allocation> calculateAllocation(String loanAccountNo, BigDecimal paymentAmount);
+
+    /**
+     * Calculate allocation of payment amount across already loaded installments
+     *
+     * @param installments pending installments of one loan account, oldest first
+     * @param paymentAmount the payment amount
+     * @return one Allocation per installment the payment reaches, oldest first
+     */
+    List<Allocation> calculateAllocation(List<Receivable> installments, BigDecimal paymentAmount);
+
+    /**
+     * Calculate allocation of payment amount against a single installment
+     *
+     * @param receivable the installment to allocate against
      * @param paymentAmount the payment amount
      * @return Allocation object with allocation details
      */
-    Allocation calculateAllocation(String loanAccountNo, BigDecimal paymentAmount);
+    Allocation calculateAllocation(Receivable receivable, BigDecimal paymentAmount);
 
     /**
      * Validate loan account number
+     * Checks the configured format (account.number.min.length to
+     * account.number.max.length digits) and, when account.filter.enabled is
+     * set, that the account is in the loan book, without a database round trip
      *
      * @param loanAccountNo the loan account number to validate
      * @return true if valid, false otherwise
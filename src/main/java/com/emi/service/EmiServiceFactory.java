@@ -0,0 +1,39 @@
+package com.emi.service;
+
+import com.emi.metrics.MetricsRegistry;
+import com.emi.metrics.TimingProxy;
+import com.emi.util.AppConfig;
+
+/**
+ * Factory for the JVM-wide EmiService instance
+ * The console, HTTP server and bulk ingestion share one instance, timed
+ * under emiService.* when metrics.enabled is set
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public final class EmiServiceFactory {
+
+    private EmiServiceFactory() {}
+
+    /**
+     * Get the shared EmiService
+     *
+     * @return shared EmiService instance
+     */
+    public static EmiService getEmiService() {
+        return Holder.INSTANCE;
+    }
+
+    private static EmiService create() {
+        EmiService emiService = new EmiServiceImpl();
+        if (AppConfig.getBoolean("metrics.enabled", true)) {
+            emiService = TimingProxy.wrap(EmiService.class, emiService, "emiService", MetricsRegistry.getInstance());
+        }
+        return emiService;
+    }
+
+    private static class Holder {
+        private static final EmiService INSTANCE = create();
+    }
+}
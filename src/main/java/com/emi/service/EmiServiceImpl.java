@@ -1,32 +1,101 @@
 package com.emi.service;
 
+import com.emi.dao.AllocationHistoryEntry;
+import com.emi.dao.HistoryCursor;
+import com.emi.dao.HistoryPage;
 import com.emi.dao.LoanDao;
-import com.emi.dao.LoanDaoImpl;
+import com.emi.dao.LoanDaoFactory;
+import com.emi.dao.ReceiptHistoryEntry;
+import com.emi.dao.StaleReceivableException;
 import com.emi.model.Receivable;
 import com.emi.model.ReceiptPayment;
 import com.emi.model.Allocation;
+import com.emi.util.AppConfig;
+import com.emi.util.SqlTraceFilter;
+import org.slf4j.MDC;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Implementation of EmiService interface
- * Contains business logic for EMI payment processing
+ * Contains business logic for EMI payment processing. The LoanDao, receipt
+ * number generator and account validator are passed in through the
+ * constructor; the no-argument constructor uses the shared LoanDao from
+ * LoanDaoFactory and checks accounts against the loan book when
+ * account.filter.enabled is set
  *
  * @author EMI Payment System
  * @version 1.0
  */
 public class EmiServiceImpl implements EmiService {
 
-    private LoanDao loanDao;
+    private static final int MAX_REQUEST_ID_LENGTH = 64;
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+    private static final int PENALTY = AllocationEngine.Component.PENALTY.ordinal();
+    private static final int INTEREST = AllocationEngine.Component.INTEREST.ordinal();
+    private static final int PRINCIPAL = AllocationEngine.Component.PRINCIPAL.ordinal();
+
+    private final LoanDao loanDao;
+    private final ReceiptNumberGenerator receiptNumberGenerator;
+    private final int maxSettleAttempts;
+    private final IdempotencyIndex idempotencyIndex;
+    private final AllocationEngine allocationEngine;
+    private final LoanAccountValidator accountValidator;
 
     public EmiServiceImpl() {
-        this.loanDao = new LoanDaoImpl();
+        this(LoanDaoFactory.getLoanDao(), SnowflakeReceiptNumberGenerator.getInstance(),
+            LoanAccountValidator.fromConfig(LoanDaoFactory.getLoanDao()));
+    }
+
+    public EmiServiceImpl(LoanDao loanDao, ReceiptNumberGenerator receiptNumberGenerator) {
+        this(loanDao, receiptNumberGenerator, LoanAccountValidator.fromConfig());
+    }
+
+    private EmiServiceImpl(LoanDao loanDao, ReceiptNumberGenerator receiptNumberGenerator,
+                           LoanAccountValidator accountValidator) {
+        this(loanDao, receiptNumberGenerator, AppConfig.getInt("payment.settle.max.attempts", 3),
+            new IdempotencyIndex(AppConfig.getInt("idempotency.index.max.size", 100000)),
+            new AllocationEngine(AppConfig.getString("allocation.waterfall", AllocationEngine.DEFAULT_WATERFALL)),
+            accountValidator);
+    }
+
+    public EmiServiceImpl(LoanDao loanDao, ReceiptNumberGenerator receiptNumberGenerator, int maxSettleAttempts,
+                          IdempotencyIndex idempotencyIndex, AllocationEngine allocationEngine,
+                          LoanAccountValidator accountValidator) {
+        if (maxSettleAttempts <= 0) {
+            throw new IllegalArgumentException("Settle attempts must be greater than zero");
+        }
+        this.loanDao = loanDao;
+        this.receiptNumberGenerator = receiptNumberGenerator;
+        this.maxSettleAttempts = maxSettleAttempts;
+        this.idempotencyIndex = idempotencyIndex;
+        this.allocationEngine = allocationEngine;
+        this.accountValidator = accountValidator;
     }
 
     @Override
-    public ReceiptPayment processPayment(String loanAccountNo, BigDecimal paymentAmount, String paymentMode) {
+    public PaymentResult processPayment(String loanAccountNo, BigDecimal paymentAmount, String paymentMode) {
+        return processPayment(null, loanAccountNo, paymentAmount, paymentMode);
+    }
+
+    @Override
+    public PaymentResult processPayment(String requestId, String loanAccountNo, BigDecimal paymentAmount,
+                                        String paymentMode) {
+        // Tag this request's log lines with the account, and its SQL when the account is traced
+        MDC.put(SqlTraceFilter.LOAN_ACCOUNT_KEY, loanAccountNo);
+        try {
+            return post(requestId, loanAccountNo, paymentAmount, paymentMode);
+        } finally {
+            MDC.remove(SqlTraceFilter.LOAN_ACCOUNT_KEY);
+        }
+    }
+
+    private PaymentResult post(String requestId, String loanAccountNo, BigDecimal paymentAmount, String paymentMode) {
         // Validate loan account
         if (!validateLoanAccount(loanAccountNo)) {
             throw new IllegalArgumentException("Invalid loan account number: " + loanAccountNo);
@@ -36,32 +105,128 @@ public class EmiServiceImpl implements EmiService {
         if (paymentAmount == null || paymentAmount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Payment amount must be greater than zero");
         }
-
-        // Get pending EMI details
-        Receivable receivable = loanDao.findReceivableByLoanAccountNo(loanAccountNo);
-        if (receivable == null) {
-            throw new IllegalArgumentException("No pending EMI found for loan account: " + loanAccountNo);
+        if (paymentAmount.stripTrailingZeros().scale() > 2) {
+            throw new IllegalArgumentException("Payment amount must have at most two decimal places");
         }
 
-        // Check if payment amount is sufficient
-        BigDecimal totalPending = receivable.getTotalAmount();
-        if (paymentAmount.compareTo(totalPending) < 0) {
-            throw new IllegalArgumentException("Payment amount is less than total pending amount");
+        if (requestId == null) {
+            return settle(null, loanAccountNo, paymentAmount, paymentMode);
+        }
+        if (requestId.trim().isEmpty() || requestId.length() > MAX_REQUEST_ID_LENGTH) {
+            throw new IllegalArgumentException("Request id must be 1 to " + MAX_REQUEST_ID_LENGTH + " characters");
         }
 
-        // Calculate allocation
-        Allocation allocation = calculateAllocation(loanAccountNo, paymentAmount);
+        // A recent or in-flight submission with the same key answers the replay from memory
+        CompletableFuture<PaymentResult> pending = new CompletableFuture<>();
+        CompletableFuture<PaymentResult> earlier = idempotencyIndex.claim(requestId, pending);
+        if (earlier != null) {
+            return replay(requestId, await(earlier), loanAccountNo, paymentAmount);
+        }
 
-        // Save allocation
-        loanDao.saveAllocation(allocation);
+        try {
+            PaymentResult result;
+            try {
+                result = settle(requestId, loanAccountNo, paymentAmount, paymentMode);
+            } catch (RuntimeException e) {
+                // Posted by another instance, or before this index saw it: the unique
+                // constraint rejected the insert (or the dues are already settled)
+                PaymentResult original = findPostedPayment(requestId);
+                if (original == null) {
+                    throw e;
+                }
+                result = replay(requestId, original, loanAccountNo, paymentAmount);
+            }
+            pending.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            idempotencyIndex.release(requestId, pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+    }
 
-        // Create receipt payment record
+    /**
+     * Allocate the payment across the pending installments and settle it
+     * If another payment changed an installment after we read it, re-read and
+     * re-allocate against the new dues, a bounded number of times
+     */
+    private PaymentResult settle(String requestId, String loanAccountNo, BigDecimal paymentAmount,
+                                 String paymentMode) {
         String receiptNo = generateReceiptNumber();
-        ReceiptPayment receiptPayment = new ReceiptPayment(loanAccountNo, paymentAmount, paymentMode, receiptNo);
-        receiptPayment.setPaymentDate(LocalDateTime.now());
 
-        // Save receipt payment
-        return loanDao.saveReceiptPayment(receiptPayment);
+        for (int attempt = 1; ; attempt++) {
+            List<Receivable> installments = loanDao.getPendingReceivables(loanAccountNo);
+            if (installments == null || installments.isEmpty()) {
+                throw new IllegalArgumentException("No pending EMI found for loan account: " + loanAccountNo);
+            }
+
+            // Calculate allocations in memory against the loaded installments
+            List<Receivable> settled = new ArrayList<>();
+            List<Allocation> allocations = allocate(installments, paymentAmount, settled);
+            for (Allocation allocation : allocations) {
+                allocation.setRequestId(requestId);
+                allocation.setReceiptNo(receiptNo);
+            }
+
+            // Create receipt payment record
+            ReceiptPayment receiptPayment = new ReceiptPayment(loanAccountNo, paymentAmount, paymentMode, receiptNo);
+            receiptPayment.setPaymentDate(LocalDateTime.now());
+            receiptPayment.setRequestId(requestId);
+
+            // Deduct the allocations and save them with the receipt in one unit of work
+            for (int i = 0; i < allocations.size(); i++) {
+                deductAllocation(settled.get(i), allocations.get(i));
+            }
+            try {
+                loanDao.savePayment(settled, allocations, receiptPayment);
+                return new PaymentResult(receiptPayment, allocations);
+            } catch (StaleReceivableException e) {
+                if (attempt >= maxSettleAttempts) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Load a payment already posted with the request id
+     *
+     * @return PaymentResult marked as replayed, or null if nothing was posted with the id
+     */
+    private PaymentResult findPostedPayment(String requestId) {
+        ReceiptPayment receiptPayment = loanDao.findReceiptPaymentByRequestId(requestId);
+        if (receiptPayment == null) {
+            return null;
+        }
+        return new PaymentResult(receiptPayment, loanDao.findAllocationsByRequestId(requestId), true);
+    }
+
+    /**
+     * Return the original result for a replayed request, refusing a key reused for a different payment
+     */
+    private PaymentResult replay(String requestId, PaymentResult original, String loanAccountNo,
+                                 BigDecimal paymentAmount) {
+        ReceiptPayment receiptPayment = original.getReceiptPayment();
+        if (!receiptPayment.getLoanAccountNo().equals(loanAccountNo)
+                || receiptPayment.getPaidAmount().compareTo(paymentAmount) != 0) {
+            throw new IllegalArgumentException("Request id " + requestId + " was already used for a different payment");
+        }
+        return original.asReplay();
+    }
+
+    /**
+     * Wait for an in-flight submission with the same request id
+     * A failed submission fails its replays the same way
+     */
+    private static PaymentResult await(CompletableFuture<PaymentResult> earlier) {
+        try {
+            return earlier.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
     }
 
     @Override
@@ -70,53 +235,155 @@ public class EmiServiceImpl implements EmiService {
             throw new IllegalArgumentException("Invalid loan account number: " + loanAccountNo);
         }
 
-        return loanDao.findReceivableByLoanAccountNo(loanAccountNo);
+        MDC.put(SqlTraceFilter.LOAN_ACCOUNT_KEY, loanAccountNo);
+        try {
+            return loanDao.findReceivableByLoanAccountNo(loanAccountNo);
+        } finally {
+            MDC.remove(SqlTraceFilter.LOAN_ACCOUNT_KEY);
+        }
+    }
+
+    @Override
+    public HistoryPage<ReceiptHistoryEntry> getReceiptHistory(String loanAccountNo, HistoryCursor after,
+                                                              int pageSize) {
+        validateHistoryRequest(loanAccountNo, pageSize);
+        MDC.put(SqlTraceFilter.LOAN_ACCOUNT_KEY, loanAccountNo);
+        try {
+            return loanDao.findReceiptHistory(loanAccountNo, after, pageSize);
+        } finally {
+            MDC.remove(SqlTraceFilter.LOAN_ACCOUNT_KEY);
+        }
+    }
+
+    @Override
+    public HistoryPage<AllocationHistoryEntry> getAllocationHistory(String loanAccountNo, HistoryCursor after,
+                                                                    int pageSize) {
+        validateHistoryRequest(loanAccountNo, pageSize);
+        MDC.put(SqlTraceFilter.LOAN_ACCOUNT_KEY, loanAccountNo);
+        try {
+            return loanDao.findAllocationHistory(loanAccountNo, after, pageSize);
+        } finally {
+            MDC.remove(SqlTraceFilter.LOAN_ACCOUNT_KEY);
+        }
+    }
+
+    private void validateHistoryRequest(String loanAccountNo, int pageSize) {
+        if (!validateLoanAccount(loanAccountNo)) {
+            throw new IllegalArgumentException("Invalid loan account number: " + loanAccountNo);
+        }
+        if (pageSize <= 0 || pageSize > MAX_HISTORY_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be 1 to " + MAX_HISTORY_PAGE_SIZE);
+        }
     }
 
     @Override
-    public Allocation calculateAllocation(String loanAccountNo, BigDecimal paymentAmount) {
-        Receivable receivable = loanDao.findReceivableByLoanAccountNo(loanAccountNo);
+    public List<Allocation> calculateAllocation(String loanAccountNo, BigDecimal paymentAmount) {
+        List<Receivable> installments = loanDao.getPendingReceivables(loanAccountNo);
 
-        if (receivable == null) {
+        if (installments == null || installments.isEmpty()) {
             throw new IllegalArgumentException("No receivable found for loan account: " + loanAccountNo);
         }
 
-        BigDecimal penalty = receivable.getPenalty() != null ? receivable.getPenalty() : BigDecimal.ZERO;
-        BigDecimal emiAmount = receivable.getEmiAmount() != null ? receivable.getEmiAmount() : BigDecimal.ZERO;
+        return calculateAllocation(installments, paymentAmount);
+    }
 
-        // Allocate to penalty first, then to EMI
-        BigDecimal allocatedPenalty = BigDecimal.ZERO;
-        BigDecimal allocatedEmi = BigDecimal.ZERO;
+    @Override
+    public List<Allocation> calculateAllocation(List<Receivable> installments, BigDecimal paymentAmount) {
+        return allocate(installments, paymentAmount, null);
+    }
 
-        if (paymentAmount.compareTo(penalty) >= 0) {
-            allocatedPenalty = penalty;
-            BigDecimal remainingAmount = paymentAmount.subtract(penalty);
+    @Override
+    public Allocation calculateAllocation(Receivable receivable, BigDecimal paymentAmount) {
+        List<Allocation> allocations = allocate(List.of(receivable), paymentAmount, null);
+        if (allocations.isEmpty()) {
+            return new Allocation(receivable.getLoanAccountNo(), receivable.getId(), BigDecimal.ZERO.setScale(2),
+                BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), LocalDateTime.now());
+        }
+        return allocations.get(0);
+    }
 
-            if (remainingAmount.compareTo(emiAmount) >= 0) {
-                allocatedEmi = emiAmount;
-            } else {
-                allocatedEmi = remainingAmount;
+    /**
+     * Run the allocation engine over the installments the payment can reach
+     * Only installments up to the first one the payment cannot fully cover are
+     * converted to paise, so a small payment against a long schedule stays cheap
+     *
+     * @param installments pending installments, oldest first
+     * @param paymentAmount the payment amount
+     * @param settled if not null, receives the installment of each returned allocation
+     * @return one Allocation per installment that received part of the payment
+     */
+    private List<Allocation> allocate(List<Receivable> installments, BigDecimal paymentAmount,
+                                      List<Receivable> settled) {
+        long payment = AllocationEngine.toPaise(paymentAmount);
+        int reached = 0;
+        long covered = 0;
+        long[] dues = new long[installments.size() * AllocationEngine.COMPONENTS];
+        while (reached < installments.size() && covered < payment) {
+            Receivable installment = installments.get(reached);
+            int base = reached * AllocationEngine.COMPONENTS;
+            dues[base + PENALTY] = AllocationEngine.toPaise(installment.getPenalty());
+            dues[base + INTEREST] = AllocationEngine.toPaise(installment.getInterestAmount());
+            dues[base + PRINCIPAL] = AllocationEngine.toPaise(installment.getPrincipalAmount());
+            covered += dues[base + PENALTY] + dues[base + INTEREST] + dues[base + PRINCIPAL];
+            reached++;
+        }
+
+        long[] allocated = new long[reached * AllocationEngine.COMPONENTS];
+        allocationEngine.allocate(dues, reached, payment, allocated);
+
+        // One timestamp for the whole payment; reading the clock per installment dominated the cost
+        LocalDateTime allocationDate = LocalDateTime.now();
+        List<Allocation> allocations = new ArrayList<>(reached);
+        for (int i = 0; i < reached; i++) {
+            int base = i * AllocationEngine.COMPONENTS;
+            if (allocated[base + PENALTY] == 0 && allocated[base + INTEREST] == 0 && allocated[base + PRINCIPAL] == 0) {
+                continue;
+            }
+            Receivable installment = installments.get(i);
+            Allocation allocation = new Allocation(installment.getLoanAccountNo(), installment.getId(),
+                AllocationEngine.fromPaise(allocated[base + PENALTY]),
+                AllocationEngine.fromPaise(allocated[base + INTEREST]),
+                AllocationEngine.fromPaise(allocated[base + PRINCIPAL]), allocationDate);
+            if (installment.getId() != null) {
+                allocation.setReceivableVersion(installment.getVersion());
+            }
+            allocations.add(allocation);
+            if (settled != null) {
+                settled.add(installment);
             }
-        } else {
-            allocatedPenalty = paymentAmount;
         }
+        return allocations;
+    }
+
+    /**
+     * Reduce the installment's dues by the allocated amounts
+     *
+     * @param receivable installment to settle, as read
+     * @param allocation allocation computed against it
+     */
+    private void deductAllocation(Receivable receivable, Allocation allocation) {
+        receivable.setPenalty(orZero(receivable.getPenalty()).subtract(allocation.getAllocatedPenalty()));
+        receivable.setInterestAmount(orZero(receivable.getInterestAmount())
+            .subtract(allocation.getAllocatedInterest()));
+        receivable.setPrincipalAmount(orZero(receivable.getPrincipalAmount())
+            .subtract(allocation.getAllocatedPrincipal()));
+        receivable.setEmiAmount(orZero(receivable.getEmiAmount()).subtract(allocation.getAllocatedEmi()));
+        receivable.setTotalAmount(receivable.getTotalAmount()
+            .subtract(allocation.getAllocatedPenalty())
+            .subtract(allocation.getAllocatedEmi()));
+    }
 
-        return new Allocation(loanAccountNo, allocatedPenalty, allocatedEmi);
+    private static BigDecimal orZero(BigDecimal amount) {
+        return amount != null ? amount : BigDecimal.ZERO;
     }
 
     @Override
     public boolean validateLoanAccount(String loanAccountNo) {
-        // Basic validation - check if loan account number is not null or empty
-        // In a real application, this would validate against the database
-        return loanAccountNo != null && !loanAccountNo.trim().isEmpty() && loanAccountNo.matches("\\d+");
+        return accountValidator.isValid(loanAccountNo);
     }
 
     @Override
     public String generateReceiptNumber() {
-        // Generate a simple receipt number with timestamp and random number
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
-        String timestamp = LocalDateTime.now().format(formatter);
-        String random = String.format("%03d", new Random().nextInt(1000));
-        return "RCP" + timestamp + random;
+        return receiptNumberGenerator.nextReceiptNumber();
     }
 }
@@ -0,0 +1,34 @@
+package com.emi.service;
+
+/**
+ * Layouts supported by the pending receivable export
+ * CSV has a header line; FIXED_WIDTH has none and pads every field to the
+ * width of its database column so downstream loaders can slice by position
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public enum ExportFormat {
+    CSV, FIXED_WIDTH;
+
+    /**
+     * Parse a format name as given on the command line
+     *
+     * @param name csv, fixed or fixed_width, in any case
+     * @return the matching ExportFormat
+     */
+    public static ExportFormat parse(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Export format is required");
+        }
+        switch (name.trim().toUpperCase()) {
+            case "CSV":
+                return CSV;
+            case "FIXED":
+            case "FIXED_WIDTH":
+                return FIXED_WIDTH;
+            default:
+                throw new IllegalArgumentException("Unknown export format: " + name + ". Use csv or fixed.");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.emi.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bounded in-memory index of recent payment results by client request id
+ * Serves replays of recent requests without touching the database and makes a
+ * concurrent duplicate wait for the first submission instead of racing it.
+ * Only the most recent maxSize keys are kept; older replays fall through to
+ * the unique constraint on the receipts table.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class IdempotencyIndex {
+
+    private final Map<String, CompletableFuture<PaymentResult>> entries;
+
+    public IdempotencyIndex(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Index size must be greater than zero");
+        }
+        this.entries = new LinkedHashMap<String, CompletableFuture<PaymentResult>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<PaymentResult>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Claim a request id for processing
+     *
+     * @param requestId the client request id
+     * @param pending future the caller completes once the payment is posted
+     * @return the future of an earlier submission with the same id, or null if the caller now owns it
+     */
+    public CompletableFuture<PaymentResult> claim(String requestId, CompletableFuture<PaymentResult> pending) {
+        synchronized (entries) {
+            CompletableFuture<PaymentResult> existing = entries.get(requestId);
+            if (existing != null) {
+                return existing;
+            }
+            entries.put(requestId, pending);
+            return null;
+        }
+    }
+
+    /**
+     * Release a claim whose payment failed, so a later retry is processed afresh
+     *
+     * @param requestId the client request id
+     * @param pending the future passed to claim
+     */
+    public void release(String requestId, CompletableFuture<PaymentResult> pending) {
+        synchronized (entries) {
+            entries.remove(requestId, pending);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
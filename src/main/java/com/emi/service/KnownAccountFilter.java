@@ -0,0 +1,269 @@
+package com.emi.service;
+
+import com.emi.dao.LoanDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of the loan account numbers in the loan book
+ * Lets validation turn away account numbers that have no installments
+ * without a database round trip. Every account that was loaded is
+ * reported as known; an unknown account is reported as known with about
+ * falsePositiveRate probability and then simply finds nothing in the database.
+ *
+ * The filter is read in full from LoanDao.streamLoanAccountNos by rebuild,
+ * then topped up by refresh with the installments added since the highest
+ * id seen. Installment ids come from pooled sequence blocks, so another JVM
+ * can add an installment below that id; the periodic rebuild picks those up
+ * and resizes the filter when the book outgrows it. Until then such a new
+ * account is reported as unknown and its payments are refused as invalid.
+ * Until the first load succeeds every account is reported as known.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class KnownAccountFilter implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KnownAccountFilter.class);
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final LoanDao loanDao;
+    private final int expectedAccounts;
+    private final double falsePositiveRate;
+    private final Object refreshLock = new Object();
+    private volatile Bits bits;
+    // Guarded by refreshLock
+    private long highestId;
+    private volatile boolean running;
+    private Thread refresher;
+
+    public KnownAccountFilter(LoanDao loanDao, int expectedAccounts, double falsePositiveRate) {
+        if (expectedAccounts <= 0) {
+            throw new IllegalArgumentException("Expected accounts must be greater than zero");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        this.loanDao = loanDao;
+        this.expectedAccounts = expectedAccounts;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * Check whether a loan account may exist
+     *
+     * @param loanAccountNo the loan account number
+     * @return false only if the account is certainly not in the loan book (true until the first load)
+     */
+    public boolean mightContain(CharSequence loanAccountNo) {
+        Bits current = bits;
+        return current == null || current.mightContain(loanAccountNo);
+    }
+
+    /**
+     * Read every loan account number into a new filter and swap it in
+     * The new filter is sized for twice the accounts seen so far, at least expectedAccounts
+     *
+     * @return number of installments read
+     */
+    public long rebuild() {
+        synchronized (refreshLock) {
+            Bits current = bits;
+            int capacity = expectedAccounts;
+            if (current != null) {
+                capacity = (int) Math.max(capacity, Math.min(Integer.MAX_VALUE / 2, 2L * current.getAccountCount()));
+            }
+            Bits rebuilt = new Bits(capacity, falsePositiveRate);
+            long[] rows = new long[1];
+            long highest = loanDao.streamLoanAccountNos(0, FETCH_SIZE, loanAccountNo -> {
+                rebuilt.put(loanAccountNo);
+                rows[0]++;
+            });
+            bits = rebuilt;
+            highestId = highest;
+            return rows[0];
+        }
+    }
+
+    /**
+     * Add the accounts of installments created since the last load
+     * Loads the whole book if nothing is loaded yet, and rebuilds once the
+     * filter holds more accounts than it was sized for
+     *
+     * @return number of installments read
+     */
+    public long refresh() {
+        synchronized (refreshLock) {
+            Bits current = bits;
+            if (current == null) {
+                return rebuild();
+            }
+            long[] rows = new long[1];
+            highestId = loanDao.streamLoanAccountNos(highestId, FETCH_SIZE, loanAccountNo -> {
+                current.put(loanAccountNo);
+                rows[0]++;
+            });
+            if (current.getAccountCount() > current.capacity) {
+                rows[0] += rebuild();
+            }
+            return rows[0];
+        }
+    }
+
+    /**
+     * Start refreshing in the background
+     *
+     * @param refreshSeconds seconds between refreshes
+     * @param rebuildMinutes minutes between full rebuilds, 0 for none
+     */
+    public synchronized void start(long refreshSeconds, long rebuildMinutes) {
+        if (refreshSeconds <= 0) {
+            throw new IllegalArgumentException("Refresh interval must be greater than zero");
+        }
+        if (refresher != null) {
+            return;
+        }
+        running = true;
+        refresher = new Thread(() -> runRefresher(refreshSeconds, rebuildMinutes), "account-filter-refresh");
+        refresher.setDaemon(true);
+        refresher.start();
+    }
+
+    /**
+     * Stop background refreshing; the filter keeps answering from what it holds
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (refresher != null) {
+            refresher.interrupt();
+            try {
+                refresher.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            refresher = null;
+        }
+    }
+
+    public boolean isLoaded() {
+        return bits != null;
+    }
+
+    /**
+     * Get the number of distinct accounts added, which may undercount by the false positive rate
+     */
+    public int getAccountCount() {
+        Bits current = bits;
+        return current != null ? current.getAccountCount() : 0;
+    }
+
+    private void runRefresher(long refreshSeconds, long rebuildMinutes) {
+        long nextRebuild = rebuildMinutes > 0 ? System.nanoTime() + TimeUnit.MINUTES.toNanos(rebuildMinutes) : 0;
+        while (running) {
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(refreshSeconds));
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                if (nextRebuild != 0 && System.nanoTime() - nextRebuild >= 0) {
+                    rebuild();
+                    nextRebuild = System.nanoTime() + TimeUnit.MINUTES.toNanos(rebuildMinutes);
+                } else {
+                    refresh();
+                }
+            } catch (RuntimeException e) {
+                LOG.warn("Error refreshing known loan accounts, will retry: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Fixed-size bit array with its hash count, safe for concurrent put and read
+     */
+    private static final class Bits {
+
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashCount;
+        private final int capacity;
+        private final AtomicInteger accounts = new AtomicInteger();
+
+        Bits(int capacity, double falsePositiveRate) {
+            double ln2 = Math.log(2);
+            long bitsNeeded = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+            this.words = new AtomicLongArray((int) Math.max(1, (bitsNeeded + 63) >>> 6));
+            this.bitCount = (long) words.length() << 6;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * ln2));
+            this.capacity = capacity;
+        }
+
+        boolean mightContain(CharSequence key) {
+            long hash = hash(key);
+            long h1 = mix(hash);
+            long h2 = mix(hash + 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void put(CharSequence key) {
+            long hash = hash(key);
+            long h1 = mix(hash);
+            long h2 = mix(hash + 0x9E3779B97F4A7C15L) | 1;
+            boolean changed = false;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+                long mask = 1L << bit;
+                int index = (int) (bit >>> 6);
+                long word = words.get(index);
+                while ((word & mask) == 0) {
+                    long witness = words.compareAndExchange(index, word, word | mask);
+                    if (witness == word) {
+                        changed = true;
+                        break;
+                    }
+                    word = witness;
+                }
+            }
+            // An account that set no new bit was added before (or is a false positive)
+            if (changed) {
+                accounts.incrementAndGet();
+            }
+        }
+
+        int getAccountCount() {
+            return accounts.get();
+        }
+
+        // FNV-1a over the characters, so no bytes are copied out of the string
+        private static long hash(CharSequence key) {
+            long hash = 0xCBF29CE484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                hash ^= key.charAt(i);
+                hash *= 0x100000001B3L;
+            }
+            return hash;
+        }
+
+        // MurmurHash3 finalizer: spreads FNV's weak low bits across the word
+        private static long mix(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xFF51AFD7ED558CCDL;
+            hash ^= hash >>> 33;
+            hash *= 0xC4CEB93FE1A85EC3L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
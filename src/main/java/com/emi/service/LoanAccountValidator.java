@@ -0,0 +1,114 @@
+package com.emi.service;
+
+import com.emi.dao.LoanDao;
+import com.emi.util.AppConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loan account number validation
+ * An account number is valid when it is minLength to maxLength ASCII digits
+ * and, if a KnownAccountFilter is given, the filter does not rule it out.
+ * The check scans the characters in place, so it allocates nothing and
+ * needs no regular expression.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class LoanAccountValidator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoanAccountValidator.class);
+
+    private final int minLength;
+    private final int maxLength;
+    private final KnownAccountFilter knownAccounts;
+
+    public LoanAccountValidator(int minLength, int maxLength, KnownAccountFilter knownAccounts) {
+        if (minLength <= 0 || maxLength < minLength) {
+            throw new IllegalArgumentException("Invalid account number length " + minLength + "-" + maxLength);
+        }
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.knownAccounts = knownAccounts;
+    }
+
+    /**
+     * Create a validator that checks the format only, with the lengths from
+     * account.number.min.length and account.number.max.length
+     */
+    public static LoanAccountValidator fromConfig() {
+        return new LoanAccountValidator(AppConfig.getInt("account.number.min.length", 1),
+            AppConfig.getInt("account.number.max.length", 20), null);
+    }
+
+    /**
+     * Create a validator for the configured format that also checks the
+     * account against the loan book when account.filter.enabled is set
+     * The filter is loaded now and refreshed in the background; if the loan
+     * book cannot be read, accounts are checked for format only until a
+     * refresh succeeds.
+     *
+     * @param loanDao the LoanDao to read loan account numbers from
+     * @return validator, with a started KnownAccountFilter if enabled
+     */
+    public static LoanAccountValidator fromConfig(LoanDao loanDao) {
+        LoanAccountValidator formatOnly = fromConfig();
+        if (!AppConfig.getBoolean("account.filter.enabled", false)) {
+            return formatOnly;
+        }
+        KnownAccountFilter filter = new KnownAccountFilter(loanDao,
+            AppConfig.getInt("account.filter.expected.accounts", 1000000),
+            AppConfig.getDouble("account.filter.false.positive.rate", 0.01));
+        try {
+            long rows = filter.rebuild();
+            LOG.info("Loaded {} loan accounts ({} installments)", filter.getAccountCount(), rows);
+        } catch (RuntimeException e) {
+            LOG.warn("Known loan accounts not loaded, checking format only: {}", e.getMessage());
+        }
+        filter.start(AppConfig.getLong("account.filter.refresh.seconds", 60),
+            AppConfig.getLong("account.filter.rebuild.minutes", 60));
+        return new LoanAccountValidator(formatOnly.minLength, formatOnly.maxLength, filter);
+    }
+
+    /**
+     * Check the format of a loan account number
+     *
+     * @param loanAccountNo the loan account number
+     * @return true if it is minLength to maxLength digits
+     */
+    public boolean isWellFormed(CharSequence loanAccountNo) {
+        if (loanAccountNo == null) {
+            return false;
+        }
+        int length = loanAccountNo.length();
+        if (length < minLength || length > maxLength) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = loanAccountNo.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check the format of a loan account number and, with a filter, that it may exist
+     *
+     * @param loanAccountNo the loan account number
+     * @return true if well formed and not ruled out by the known account filter
+     */
+    public boolean isValid(CharSequence loanAccountNo) {
+        return isWellFormed(loanAccountNo) && (knownAccounts == null || knownAccounts.mightContain(loanAccountNo));
+    }
+
+    /**
+     * Get the known account filter
+     *
+     * @return KnownAccountFilter, or null if only the format is checked
+     */
+    public KnownAccountFilter getKnownAccounts() {
+        return knownAccounts;
+    }
+}
@@ -0,0 +1,48 @@
+package com.emi.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Principal, annual rate and tenure of a loan, the input of AmortizationEngine
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public final class LoanTerms {
+
+    private final BigDecimal principal;
+    private final BigDecimal annualRatePercent;
+    private final int tenureMonths;
+
+    /**
+     * @param principal amount lent, in rupees with at most two decimal places
+     * @param annualRatePercent annual interest rate in percent, e.g. 10.50
+     * @param tenureMonths number of monthly installments
+     */
+    public LoanTerms(BigDecimal principal, BigDecimal annualRatePercent, int tenureMonths) {
+        this.principal = principal;
+        this.annualRatePercent = annualRatePercent;
+        this.tenureMonths = tenureMonths;
+    }
+
+    public BigDecimal getPrincipal() {
+        return principal;
+    }
+
+    public BigDecimal getAnnualRatePercent() {
+        return annualRatePercent;
+    }
+
+    public int getTenureMonths() {
+        return tenureMonths;
+    }
+
+    @Override
+    public String toString() {
+        return "LoanTerms{" +
+                "principal=" + principal +
+                ", annualRatePercent=" + annualRatePercent +
+                ", tenureMonths=" + tenureMonths +
+                '}';
+    }
+}
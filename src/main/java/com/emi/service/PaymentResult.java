@@ -0,0 +1,100 @@
+package com.emi.service;
+
+import com.emi.model.Allocation;
+import com.emi.model.ReceiptPayment;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Result of a processed EMI payment
+ * Carries the saved receipt together with one allocation per installment the
+ * payment settled (oldest first), and whether it was returned for a replayed
+ * request rather than posted now
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class PaymentResult {
+
+    private final ReceiptPayment receiptPayment;
+    private final List<Allocation> allocations;
+    private final boolean replayed;
+
+    public PaymentResult(ReceiptPayment receiptPayment, List<Allocation> allocations) {
+        this(receiptPayment, allocations, false);
+    }
+
+    public PaymentResult(ReceiptPayment receiptPayment, List<Allocation> allocations, boolean replayed) {
+        this.receiptPayment = receiptPayment;
+        this.allocations = List.copyOf(allocations);
+        this.replayed = replayed;
+    }
+
+    public ReceiptPayment getReceiptPayment() {
+        return receiptPayment;
+    }
+
+    public List<Allocation> getAllocations() {
+        return allocations;
+    }
+
+    public boolean isReplayed() {
+        return replayed;
+    }
+
+    public BigDecimal getAllocatedPenalty() {
+        return sum(Allocation::getAllocatedPenalty);
+    }
+
+    public BigDecimal getAllocatedInterest() {
+        return sum(Allocation::getAllocatedInterest);
+    }
+
+    public BigDecimal getAllocatedPrincipal() {
+        return sum(Allocation::getAllocatedPrincipal);
+    }
+
+    public BigDecimal getAllocatedEmi() {
+        return sum(Allocation::getAllocatedEmi);
+    }
+
+    /**
+     * Get the part of the paid amount left over once every pending installment was settled
+     *
+     * @return unallocated amount, zero unless the payment exceeded the dues
+     */
+    public BigDecimal getUnallocatedAmount() {
+        return receiptPayment.getPaidAmount().subtract(getAllocatedPenalty()).subtract(getAllocatedEmi());
+    }
+
+    /**
+     * Get this result as returned to a replayed request
+     *
+     * @return PaymentResult for the same receipt and allocations, marked as replayed
+     */
+    public PaymentResult asReplay() {
+        return replayed ? this : new PaymentResult(receiptPayment, allocations, true);
+    }
+
+    private BigDecimal sum(Function<Allocation, BigDecimal> component) {
+        BigDecimal total = BigDecimal.ZERO.setScale(2);
+        for (Allocation allocation : allocations) {
+            BigDecimal amount = component.apply(allocation);
+            if (amount != null) {
+                total = total.add(amount);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentResult{" +
+                "receiptPayment=" + receiptPayment +
+                ", allocations=" + allocations +
+                ", replayed=" + replayed +
+                '}';
+    }
+}
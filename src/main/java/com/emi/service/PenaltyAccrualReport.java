@@ -0,0 +1,139 @@
+package com.emi.service;
+
+import com.emi.model.PenaltyAccrualPartition;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a penalty accrual run
+ * Totals cover every partition of the business date that is done, including
+ * those a previous run of the date completed
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class PenaltyAccrualReport {
+
+    private final LocalDate businessDate;
+    private final int partitions;
+    private int resumedPartitions;
+    private int completedPartitions;
+    private long installmentsAccrued;
+    private BigDecimal penaltyAccrued = BigDecimal.ZERO;
+    private long elapsedNanos;
+    private final List<PartitionFailure> failures = new ArrayList<>();
+
+    PenaltyAccrualReport(LocalDate businessDate, int partitions) {
+        this.businessDate = businessDate;
+        this.partitions = partitions;
+    }
+
+    void partitionDone(PenaltyAccrualPartition partition, boolean byEarlierRun) {
+        if (byEarlierRun) {
+            resumedPartitions++;
+        }
+        completedPartitions++;
+        installmentsAccrued += partition.getInstallmentsAccrued();
+        penaltyAccrued = penaltyAccrued.add(partition.getPenaltyAccrued());
+    }
+
+    void partitionFailed(PenaltyAccrualPartition partition, String reason) {
+        failures.add(new PartitionFailure(partition.getPartitionNo(), partition.getCheckpointAccountNo(), reason));
+    }
+
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public LocalDate getBusinessDate() {
+        return businessDate;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Get the partitions a previous run of the business date had already completed
+     *
+     * @return partitions skipped by this run
+     */
+    public int getResumedPartitions() {
+        return resumedPartitions;
+    }
+
+    public int getCompletedPartitions() {
+        return completedPartitions;
+    }
+
+    public int getFailedPartitions() {
+        return failures.size();
+    }
+
+    public List<PartitionFailure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    public long getInstallmentsAccrued() {
+        return installmentsAccrued;
+    }
+
+    public BigDecimal getPenaltyAccrued() {
+        return penaltyAccrued;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000L;
+    }
+
+    @Override
+    public String toString() {
+        return "PenaltyAccrualReport{" +
+                "businessDate=" + businessDate +
+                ", partitions=" + partitions +
+                ", completedPartitions=" + completedPartitions +
+                ", resumedPartitions=" + resumedPartitions +
+                ", failedPartitions=" + failures.size() +
+                ", installmentsAccrued=" + installmentsAccrued +
+                ", penaltyAccrued=" + penaltyAccrued +
+                ", elapsedMillis=" + getElapsedMillis() +
+                '}';
+    }
+
+    /**
+     * A partition that stopped before it was done; running the date again resumes it
+     */
+    public static class PartitionFailure {
+
+        private final int partitionNo;
+        private final String checkpointAccountNo;
+        private final String reason;
+
+        public PartitionFailure(int partitionNo, String checkpointAccountNo, String reason) {
+            this.partitionNo = partitionNo;
+            this.checkpointAccountNo = checkpointAccountNo;
+            this.reason = reason;
+        }
+
+        public int getPartitionNo() {
+            return partitionNo;
+        }
+
+        public String getCheckpointAccountNo() {
+            return checkpointAccountNo;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "partition " + partitionNo + " [after " + checkpointAccountNo + "]: " + reason;
+        }
+    }
+}
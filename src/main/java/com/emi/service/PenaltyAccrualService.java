@@ -0,0 +1,25 @@
+package com.emi.service;
+
+import java.time.LocalDate;
+
+/**
+ * Service interface for the end-of-day penalty accrual
+ * Accrues the daily penalty on every overdue installment of the loan book,
+ * in account range partitions run in parallel
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public interface PenaltyAccrualService {
+
+    /**
+     * Accrue penalties up to a business date
+     * Running a date again resumes its partitions that failed or were
+     * interrupted from their checkpoints; installments already accrued to the
+     * date are not accrued again
+     *
+     * @param businessDate the date penalties are accrued to
+     * @return PenaltyAccrualReport with the totals of the date and per-partition failures
+     */
+    PenaltyAccrualReport accrue(LocalDate businessDate);
+}
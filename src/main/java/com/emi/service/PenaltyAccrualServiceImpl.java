@@ -0,0 +1,110 @@
+package com.emi.service;
+
+import com.emi.dao.PenaltyAccrualDao;
+import com.emi.dao.PenaltyAccrualDaoImpl;
+import com.emi.model.PenaltyAccrualPartition;
+import com.emi.util.AppConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Implementation of PenaltyAccrualService interface
+ * Partitions run on a ForkJoinPool of penalty.accrual.parallelism threads,
+ * each holding one pooled connection while it accrues, so the configured
+ * parallelism is capped one below pool.maximum.size to leave a connection for
+ * payments. A failed partition does not stop the others.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class PenaltyAccrualServiceImpl implements PenaltyAccrualService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PenaltyAccrualServiceImpl.class);
+
+    private final PenaltyAccrualDao accrualDao;
+    private final PenaltyCalculator calculator;
+    private final int parallelism;
+    private final int partitionCount;
+    private final int batchSize;
+
+    public PenaltyAccrualServiceImpl() {
+        this(new PenaltyAccrualDaoImpl(), new PenaltyCalculator(),
+            Math.min(AppConfig.getInt("penalty.accrual.parallelism", 4),
+                Math.max(1, AppConfig.getInt("pool.maximum.size", 10) - 1)),
+            AppConfig.getInt("penalty.accrual.partitions", 32),
+            AppConfig.getInt("penalty.accrual.batch.size", 500));
+    }
+
+    public PenaltyAccrualServiceImpl(PenaltyAccrualDao accrualDao, PenaltyCalculator calculator,
+                                     int parallelism, int partitionCount, int batchSize) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than zero");
+        }
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("Partition count must be greater than zero");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than zero");
+        }
+        this.accrualDao = accrualDao;
+        this.calculator = calculator;
+        this.parallelism = parallelism;
+        this.partitionCount = partitionCount;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public PenaltyAccrualReport accrue(LocalDate businessDate) {
+        long start = System.nanoTime();
+        List<PenaltyAccrualPartition> partitions = accrualDao.startRun(businessDate, partitionCount);
+        PenaltyAccrualReport report = new PenaltyAccrualReport(businessDate, partitions.size());
+
+        List<PenaltyAccrualPartition> remaining = new ArrayList<>();
+        for (PenaltyAccrualPartition partition : partitions) {
+            if (partition.isDone()) {
+                report.partitionDone(partition, true);
+            } else {
+                remaining.add(partition);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<PenaltyAccrualPartition>> tasks = new ArrayList<>();
+            for (PenaltyAccrualPartition partition : remaining) {
+                tasks.add(pool.submit(() -> accrualDao.accruePartition(partition, batchSize,
+                    installment -> calculator.accrual(installment, businessDate))));
+            }
+            for (int i = 0; i < tasks.size(); i++) {
+                try {
+                    report.partitionDone(tasks.get(i).join(), false);
+                } catch (RuntimeException e) {
+                    PenaltyAccrualPartition partition = remaining.get(i);
+                    LOG.error("Penalty accrual for {} partition {} failed: {}", businessDate,
+                        partition.getPartitionNo(), e.getMessage());
+                    report.partitionFailed(partition, rootMessage(e));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        report.finish(System.nanoTime() - start);
+        LOG.info("{}", report);
+        return report;
+    }
+
+    private static String rootMessage(Throwable failure) {
+        Throwable cause = failure;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+}
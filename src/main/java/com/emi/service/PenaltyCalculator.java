@@ -0,0 +1,67 @@
+package com.emi.service;
+
+import com.emi.model.Receivable;
+import com.emi.util.AppConfig;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Daily penalty on overdue installments
+ * An installment accrues the annual penalty rate on its unpaid interest and
+ * principal for every day it is overdue after the grace days, from the day
+ * after it was last accrued to, so a missed run is caught up by the next one
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class PenaltyCalculator {
+
+    private static final BigDecimal DAYS_PER_YEAR_PERCENT = new BigDecimal("36500");
+
+    private final BigDecimal annualRatePercent;
+    private final int graceDays;
+
+    public PenaltyCalculator() {
+        this(new BigDecimal(AppConfig.getString("penalty.rate.percent.per.annum", "24")),
+            AppConfig.getInt("penalty.grace.days", 0));
+    }
+
+    public PenaltyCalculator(BigDecimal annualRatePercent, int graceDays) {
+        if (annualRatePercent.signum() < 0) {
+            throw new IllegalArgumentException("Penalty rate cannot be negative");
+        }
+        if (graceDays < 0) {
+            throw new IllegalArgumentException("Grace days cannot be negative");
+        }
+        this.annualRatePercent = annualRatePercent;
+        this.graceDays = graceDays;
+    }
+
+    /**
+     * Calculate the penalty an installment accrues up to a business date
+     *
+     * @param installment the installment, with its due date and penalty_accrued_to
+     * @param businessDate the date penalties are accrued to
+     * @return penalty to add, rounded to paise; zero if nothing is due
+     */
+    public BigDecimal accrual(Receivable installment, LocalDate businessDate) {
+        LocalDate accruedFrom = installment.getDueDate().plusDays(graceDays);
+        if (installment.getPenaltyAccruedTo() != null && installment.getPenaltyAccruedTo().isAfter(accruedFrom)) {
+            accruedFrom = installment.getPenaltyAccruedTo();
+        }
+        long days = ChronoUnit.DAYS.between(accruedFrom, businessDate);
+        BigDecimal overdue = orZero(installment.getInterestAmount()).add(orZero(installment.getPrincipalAmount()));
+        if (days <= 0 || overdue.signum() <= 0) {
+            return BigDecimal.ZERO.setScale(2);
+        }
+        return overdue.multiply(annualRatePercent).multiply(BigDecimal.valueOf(days))
+            .divide(DAYS_PER_YEAR_PERCENT, 2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal orZero(BigDecimal amount) {
+        return amount != null ? amount : BigDecimal.ZERO;
+    }
+}
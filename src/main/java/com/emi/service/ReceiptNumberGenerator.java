@@ -0,0 +1,18 @@
+package com.emi.service;
+
+/**
+ * Strategy interface for receipt number generation
+ * Implementations must be thread-safe and never return the same number twice
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public interface ReceiptNumberGenerator {
+
+    /**
+     * Generate the next receipt number
+     *
+     * @return unique receipt number
+     */
+    String nextReceiptNumber();
+}
@@ -0,0 +1,38 @@
+package com.emi.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+
+/**
+ * Service interface for exporting the pending receivables of the whole loan book
+ * Feeds overdue reports and collection systems without loading the portfolio
+ * into memory
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public interface ReceivableExportService {
+
+    /**
+     * Export every pending installment to a file
+     *
+     * @param file the file to create or overwrite
+     * @param format output layout
+     * @return number of installments written
+     * @throws IOException if the file cannot be written
+     */
+    long exportFile(Path file, ExportFormat format) throws IOException;
+
+    /**
+     * Export every pending installment to a writer
+     * Rows are streamed from the database and written one at a time, so memory
+     * use stays constant regardless of portfolio size
+     *
+     * @param writer destination, not closed by this method
+     * @param format output layout
+     * @return number of installments written
+     * @throws IOException if the destination cannot be written
+     */
+    long export(Writer writer, ExportFormat format) throws IOException;
+}
@@ -0,0 +1,150 @@
+package com.emi.service;
+
+import com.emi.dao.LoanDao;
+import com.emi.dao.LoanDaoFactory;
+import com.emi.model.Receivable;
+import com.emi.util.AppConfig;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Implementation of ReceivableExportService interface
+ * Streams pending installments from LoanDao through a forward-only cursor and
+ * formats each one into a reused line buffer, so neither the rows nor the
+ * output are ever held in memory as a whole
+ *
+ * Columns, in order: loan account number, due date, principal, interest,
+ * penalty and total amount due
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class ReceivableExportServiceImpl implements ReceivableExportService {
+
+    static final String CSV_HEADER = "loan_account_no,due_date,principal_amount,interest_amount,penalty,total_amount";
+    // Widths follow the columns: loan_account_no VARCHAR2(50), DATE as yyyy-MM-dd, NUMBER(15,2) with sign
+    static final int ACCOUNT_WIDTH = 50;
+    static final int DATE_WIDTH = 10;
+    static final int AMOUNT_WIDTH = 17;
+
+    private final LoanDao loanDao;
+    private final int fetchSize;
+
+    public ReceivableExportServiceImpl() {
+        this(LoanDaoFactory.getLoanDao(), AppConfig.getInt("export.fetch.size", 1000));
+    }
+
+    public ReceivableExportServiceImpl(LoanDao loanDao, int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be greater than zero");
+        }
+        this.loanDao = loanDao;
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public long exportFile(Path file, ExportFormat format) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            return export(writer, format);
+        }
+    }
+
+    @Override
+    public long export(Writer writer, ExportFormat format) throws IOException {
+        Writer out = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+        StringBuilder line = new StringBuilder(256);
+        if (format == ExportFormat.CSV) {
+            out.write(CSV_HEADER);
+            out.write('\n');
+        }
+
+        long rows;
+        try {
+            rows = loanDao.streamPendingReceivables(fetchSize, installment -> {
+                line.setLength(0);
+                if (format == ExportFormat.CSV) {
+                    appendCsv(line, installment);
+                } else {
+                    appendFixedWidth(line, installment);
+                }
+                line.append('\n');
+                try {
+                    out.append(line);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            // The DAO wraps failures of the consumer; report write errors as such
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                }
+            }
+            throw e;
+        }
+        out.flush();
+        return rows;
+    }
+
+    static void appendCsv(StringBuilder line, Receivable installment) {
+        String loanAccountNo = installment.getLoanAccountNo();
+        if (loanAccountNo.indexOf(',') >= 0 || loanAccountNo.indexOf('"') >= 0) {
+            line.append('"').append(loanAccountNo.replace("\"", "\"\"")).append('"');
+        } else {
+            line.append(loanAccountNo);
+        }
+        line.append(',');
+        if (installment.getDueDate() != null) {
+            line.append(installment.getDueDate());
+        }
+        line.append(',').append(amount(installment.getPrincipalAmount()))
+            .append(',').append(amount(installment.getInterestAmount()))
+            .append(',').append(amount(installment.getPenalty()))
+            .append(',').append(amount(installment.getTotalAmount()));
+    }
+
+    static void appendFixedWidth(StringBuilder line, Receivable installment) {
+        padRight(line, installment.getLoanAccountNo(), ACCOUNT_WIDTH);
+        padRight(line, installment.getDueDate() != null ? installment.getDueDate().toString() : "", DATE_WIDTH);
+        padLeft(line, amount(installment.getPrincipalAmount()), AMOUNT_WIDTH);
+        padLeft(line, amount(installment.getInterestAmount()), AMOUNT_WIDTH);
+        padLeft(line, amount(installment.getPenalty()), AMOUNT_WIDTH);
+        padLeft(line, amount(installment.getTotalAmount()), AMOUNT_WIDTH);
+    }
+
+    private static String amount(BigDecimal value) {
+        // Drivers return NUMBER(15,2) values with the scale they were stored with
+        return value != null ? value.setScale(2, RoundingMode.UNNECESSARY).toPlainString() : "0.00";
+    }
+
+    private static void padRight(StringBuilder line, String value, int width) {
+        checkWidth(value, width);
+        line.append(value);
+        for (int i = value.length(); i < width; i++) {
+            line.append(' ');
+        }
+    }
+
+    private static void padLeft(StringBuilder line, String value, int width) {
+        checkWidth(value, width);
+        for (int i = value.length(); i < width; i++) {
+            line.append(' ');
+        }
+        line.append(value);
+    }
+
+    private static void checkWidth(String value, int width) {
+        if (value.length() > width) {
+            throw new IllegalArgumentException("Value does not fit a fixed-width field of " + width + ": " + value);
+        }
+    }
+}
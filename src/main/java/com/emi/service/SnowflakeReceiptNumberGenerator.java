@@ -0,0 +1,104 @@
+package com.emi.service;
+
+import com.emi.util.AppConfig;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style receipt number generator
+ * Builds a 63-bit id from a millisecond timestamp (41 bits), a node id (10 bits)
+ * and a per-millisecond sequence (12 bits), rendered as "RCP" plus 19 zero-padded
+ * digits so receipt numbers sort in issue order.
+ *
+ * The timestamp and sequence are packed into one AtomicLong and advanced with
+ * compare-and-set, so callers never block. When 4096 numbers are issued within
+ * one millisecond, or the wall clock steps backwards, the generator keeps
+ * counting on its own logical clock instead of waiting, which keeps numbers
+ * unique within a JVM. Uniqueness across JVMs comes from receipt.node.id,
+ * which must be different for every running instance.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class SnowflakeReceiptNumberGenerator implements ReceiptNumberGenerator {
+
+    public static final String NODE_ID_PROPERTY = "receipt.node.id";
+
+    /** 2024-01-01T00:00:00Z, gives about 69 years of 41-bit timestamps */
+    static final long EPOCH_MILLIS = 1704067200000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final String PREFIX = "RCP";
+    private static final int DIGITS = 19;
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> {
+        char[] buffer = new char[PREFIX.length() + DIGITS];
+        PREFIX.getChars(0, PREFIX.length(), buffer, 0);
+        return buffer;
+    });
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeReceiptNumberGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    public SnowflakeReceiptNumberGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the JVM-wide generator for the configured node id
+     * All services in one JVM must share it, since two generators with the
+     * same node id can issue the same number
+     *
+     * @return shared generator instance
+     */
+    public static SnowflakeReceiptNumberGenerator getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Generate the next numeric id
+     *
+     * @return unique, increasing id
+     */
+    public long nextId() {
+        long current;
+        long next;
+        do {
+            current = state.get();
+            long now = clock.getAsLong() - EPOCH_MILLIS;
+            // Sequence overflow carries into the timestamp bits, borrowing the next millisecond
+            next = now > (current >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : current + 1;
+        } while (!state.compareAndSet(current, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | sequence;
+    }
+
+    @Override
+    public String nextReceiptNumber() {
+        long id = nextId();
+        char[] buffer = BUFFER.get();
+        for (int i = buffer.length - 1; i >= PREFIX.length(); i--) {
+            buffer[i] = (char) ('0' + (id % 10));
+            id /= 10;
+        }
+        return new String(buffer);
+    }
+
+    private static class Holder {
+        private static final SnowflakeReceiptNumberGenerator INSTANCE =
+            new SnowflakeReceiptNumberGenerator(AppConfig.getInt(NODE_ID_PROPERTY, 0));
+    }
+}
@@ -0,0 +1,88 @@
+package com.emi.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Application configuration utility class
+ * Loads emi.properties from the classpath, then an optional external file
+ * given by the emi.config system property, then JVM system properties,
+ * each later source overriding the earlier one
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public final class AppConfig {
+
+    private static final String DEFAULT_RESOURCE = "emi.properties";
+    private static final String EXTERNAL_CONFIG_PROPERTY = "emi.config";
+
+    private static final Properties PROPERTIES = load();
+
+    private AppConfig() {}
+
+    private static Properties load() {
+        Properties properties = new Properties();
+
+        try (InputStream in = AppConfig.class.getClassLoader().getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load " + DEFAULT_RESOURCE, e);
+        }
+
+        String externalConfig = System.getProperty(EXTERNAL_CONFIG_PROPERTY);
+        if (externalConfig != null && !externalConfig.trim().isEmpty()) {
+            Path path = Paths.get(externalConfig.trim());
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load external configuration: " + path, e);
+            }
+        }
+
+        return properties;
+    }
+
+    /**
+     * Get a configuration value
+     *
+     * @param key the property key
+     * @param defaultValue value returned when the key is not configured
+     * @return the configured value or the default
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = PROPERTIES.getProperty(key);
+        }
+        return value != null ? value.trim() : defaultValue;
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    public static double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+}
@@ -0,0 +1,50 @@
+package com.emi.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Timings of the persistence layer warm-up
+ * Makes cold-start latency visible at application start
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class BootstrapReport {
+
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+
+    void phase(String name, long elapsedNanos) {
+        phaseNanos.put(name, elapsedNanos);
+    }
+
+    /**
+     * Get elapsed time of each phase in the order they ran
+     *
+     * @return phase name to elapsed milliseconds
+     */
+    public Map<String, Long> getPhaseMillis() {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        phaseNanos.forEach((name, nanos) -> millis.put(name, nanos / 1_000_000L));
+        return millis;
+    }
+
+    public long getTotalMillis() {
+        long total = 0;
+        for (long nanos : phaseNanos.values()) {
+            total += nanos;
+        }
+        return total / 1_000_000L;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Bootstrap completed in ").append(getTotalMillis()).append(" ms (");
+        String separator = "";
+        for (Map.Entry<String, Long> phase : getPhaseMillis().entrySet()) {
+            sb.append(separator).append(phase.getKey()).append(": ").append(phase.getValue()).append(" ms");
+            separator = ", ";
+        }
+        return sb.append(')').toString();
+    }
+}
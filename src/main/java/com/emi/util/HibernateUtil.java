@@ -1,65 +1,258 @@
 package com.emi.util;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.service.ServiceRegistry;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.emi.model.Receivable;
 import com.emi.model.ReceiptPayment;
 import com.emi.model.Allocation;
+import com.emi.model.PenaltyAccrualPartition;
+import com.emi.model.PendingBalance;
 
 /**
  * Hibernate utility class for managing SessionFactory
- * Provides centralized database connection management
+ * Provides centralized database connection management backed by a HikariCP pool
  *
  * @author EMI Payment System
  * @version 1.0
  */
 public class HibernateUtil {
 
-    private static SessionFactory sessionFactory;
+    public static final String CONFIG_RESOURCE_PROPERTY = "hibernate.config";
+    public static final String DEFAULT_CONFIG_RESOURCE = "hibernate.cfg.xml";
+    private static final Logger LOG = LoggerFactory.getLogger(HibernateUtil.class);
+    private static final String SCHEMA_INIT_SCRIPTS_PROPERTY = "emi.schema.init_scripts";
+    private static final String SCHEMA_SEED_SCRIPTS_PROPERTY = "emi.schema.seed_scripts";
+
+    private static volatile SessionFactory sessionFactory;
+    private static volatile HikariDataSource dataSource;
+    private static volatile PoolMetricsTracker poolMetricsTracker;
 
     /**
      * Get Hibernate SessionFactory instance
-     * Creates SessionFactory if it doesn't exist
+     * Creates SessionFactory if it doesn't exist; concurrent first callers wait
+     * for a single build instead of each building their own factory and pool
      *
      * @return SessionFactory instance
      */
     public static SessionFactory getSessionFactory() {
-        if (sessionFactory == null) {
-            try {
-                // Create configuration
-                Configuration configuration = new Configuration();
-
-                // Add annotated classes
-                configuration.addAnnotatedClass(Receivable.class);
-                configuration.addAnnotatedClass(ReceiptPayment.class);
-                configuration.addAnnotatedClass(Allocation.class);
-
-                // Build SessionFactory
-                ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
-                    .applySettings(configuration.getProperties())
-                    .build();
-
-                sessionFactory = configuration.buildSessionFactory(serviceRegistry);
-
-            } catch (Exception e) {
-                System.err.println("SessionFactory creation failed: " + e.getMessage());
-                e.printStackTrace();
-                throw new RuntimeException("Failed to create SessionFactory", e);
+        SessionFactory factory = sessionFactory;
+        if (factory == null) {
+            synchronized (HibernateUtil.class) {
+                factory = sessionFactory;
+                if (factory == null) {
+                    factory = buildSessionFactory();
+                    sessionFactory = factory;
+                }
+            }
+        }
+        return factory;
+    }
+
+    /**
+     * Warm up the persistence layer before the first request
+     * Builds the SessionFactory (validating the mapping against the schema and
+     * compiling the named HQL queries) and opens the pool's minimum idle
+     * connections, capped at its maximum size, recording how long each phase took
+     *
+     * @return BootstrapReport with per-phase timings
+     */
+    public static BootstrapReport warmUp() {
+        BootstrapReport report = new BootstrapReport();
+
+        long start = System.nanoTime();
+        getSessionFactory();
+        report.phase("session factory", System.nanoTime() - start);
+
+        start = System.nanoTime();
+        // As the pool was built, never more than pool.maximum.size: borrowing past it would block and fail
+        HikariDataSource pool = dataSource;
+        int opened = openConnections(Math.min(pool.getMinimumIdle(), pool.getMaximumPoolSize()));
+        report.phase("connections (" + opened + ")", System.nanoTime() - start);
+
+        return report;
+    }
+
+    /**
+     * Borrow the given number of connections at once so the pool creates them now
+     */
+    private static int openConnections(int count) {
+        List<Connection> connections = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                connections.add(dataSource.getConnection());
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to open pool connections", e);
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException ignored) {
+                    // returning to the pool; nothing to recover
+                }
             }
         }
-        return sessionFactory;
+        return connections.size();
+    }
+
+    /**
+     * Build the SessionFactory and its connection pool
+     * Only called while holding the HibernateUtil class lock
+     *
+     * @return new SessionFactory instance
+     */
+    private static SessionFactory buildSessionFactory() {
+        try {
+            // Create configuration from hibernate.cfg.xml, or the profile named by hibernate.config
+            Configuration configuration = new Configuration().configure(
+                AppConfig.getString(CONFIG_RESOURCE_PROPERTY, DEFAULT_CONFIG_RESOURCE));
+
+            // Add annotated classes
+            configuration.addAnnotatedClass(Receivable.class);
+            configuration.addAnnotatedClass(ReceiptPayment.class);
+            configuration.addAnnotatedClass(Allocation.class);
+            configuration.addAnnotatedClass(PendingBalance.class);
+            configuration.addAnnotatedClass(PenaltyAccrualPartition.class);
+
+            // Hand Hibernate the pooled DataSource instead of its built-in pool
+            dataSource = createDataSource(configuration);
+
+            // Embedded database profiles build their schema from the migration scripts
+            String initScripts = configuration.getProperty(SCHEMA_INIT_SCRIPTS_PROPERTY);
+            if (initScripts != null) {
+                SchemaInitializer.run(dataSource, initScripts);
+                // Optional data for load rigs, e.g. -Demi.schema.seed_scripts=db/seed/load_test_accounts.sql
+                String seedScripts = AppConfig.getString(SCHEMA_SEED_SCRIPTS_PROPERTY, null);
+                if (seedScripts != null) {
+                    SchemaInitializer.run(dataSource, seedScripts);
+                }
+            }
+            configuration.getProperties().put(AvailableSettings.DATASOURCE, dataSource);
+            // Credentials belong to the pool; Hibernate would otherwise call getConnection(user, password)
+            configuration.getProperties().remove(AvailableSettings.USER);
+            configuration.getProperties().remove(AvailableSettings.PASS);
+            configuration.setProperty(AvailableSettings.CONNECTION_PROVIDER_DISABLES_AUTOCOMMIT, "true");
+            // Statements slower than this are logged to org.hibernate.SQL_SLOW (see logback.xml); 0 disables
+            configuration.setProperty(AvailableSettings.LOG_SLOW_QUERY,
+                String.valueOf(AppConfig.getLong("log.slow.query.ms", 200)));
+
+            // Build SessionFactory
+            ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
+                .applySettings(configuration.getProperties())
+                .build();
+
+            return configuration.buildSessionFactory(serviceRegistry);
+
+        } catch (Exception e) {
+            LOG.error("SessionFactory creation failed", e);
+            closeDataSource();
+            throw new RuntimeException("Failed to create SessionFactory", e);
+        }
+    }
+
+    /**
+     * Build the HikariCP pool
+     * Connection details default to hibernate.cfg.xml and can be overridden with
+     * db.* settings; pool sizing, timeouts, statement cache and leak detection
+     * come from pool.* settings (see emi.properties)
+     *
+     * @param configuration Hibernate configuration holding the default connection details
+     * @return started HikariDataSource
+     */
+    private static HikariDataSource createDataSource(Configuration configuration) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(AppConfig.getString("pool.name", "emi-pool"));
+        config.setDriverClassName(AppConfig.getString("db.driver",
+            configuration.getProperty(AvailableSettings.DRIVER)));
+        config.setJdbcUrl(AppConfig.getString("db.url", configuration.getProperty(AvailableSettings.URL)));
+        config.setUsername(AppConfig.getString("db.username", configuration.getProperty(AvailableSettings.USER)));
+        config.setPassword(AppConfig.getString("db.password", configuration.getProperty(AvailableSettings.PASS)));
+        config.setAutoCommit(false);
+
+        config.setMaximumPoolSize(AppConfig.getInt("pool.maximum.size", 10));
+        config.setMinimumIdle(AppConfig.getInt("pool.minimum.idle", 10));
+        config.setConnectionTimeout(AppConfig.getLong("pool.connection.timeout.ms", 5000));
+        config.setIdleTimeout(AppConfig.getLong("pool.idle.timeout.ms", 600000));
+        config.setMaxLifetime(AppConfig.getLong("pool.max.lifetime.ms", 1800000));
+        config.setValidationTimeout(AppConfig.getLong("pool.validation.timeout.ms", 3000));
+        config.setLeakDetectionThreshold(AppConfig.getLong("pool.leak.detection.threshold.ms", 0));
+        config.setRegisterMbeans(AppConfig.getBoolean("pool.register.mbeans", true));
+        // Fail the bootstrap quickly when the database is unreachable; the next caller retries it
+        config.setInitializationFailTimeout(AppConfig.getLong("pool.initialization.fail.timeout.ms", 1));
+
+        // Oracle driver-side statement cache, kept per pooled connection
+        int statementCacheSize = AppConfig.getInt("pool.statement.cache.size", 50);
+        config.addDataSourceProperty("oracle.jdbc.implicitStatementCacheSize", String.valueOf(statementCacheSize));
+
+        poolMetricsTracker = new PoolMetricsTracker();
+        config.setMetricsTrackerFactory((poolName, poolStats) -> poolMetricsTracker);
+
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Get a snapshot of connection pool metrics
+     *
+     * @return PoolMetrics, or null if the pool has not been started
+     */
+    public static PoolMetrics getPoolMetrics() {
+        HikariDataSource pool = dataSource;
+        if (pool == null || pool.isClosed()) {
+            return null;
+        }
+        HikariPoolMXBean poolBean = pool.getHikariPoolMXBean();
+        if (poolBean == null) {
+            return null;
+        }
+        return new PoolMetrics(pool.getMaximumPoolSize(), poolBean.getActiveConnections(),
+            poolBean.getIdleConnections(), poolBean.getTotalConnections(),
+            poolBean.getThreadsAwaitingConnection(), poolMetricsTracker);
+    }
+
+    /**
+     * Get Hibernate statistics without starting Hibernate
+     * Counters are only collected when hibernate.generate_statistics is enabled
+     *
+     * @return Statistics, or null if the SessionFactory has not been built
+     */
+    public static Statistics getStatistics() {
+        SessionFactory factory = sessionFactory;
+        if (factory == null || factory.isClosed()) {
+            return null;
+        }
+        return factory.getStatistics();
     }
 
     /**
      * Shutdown Hibernate SessionFactory
      * Should be called when application is shutting down
      */
-    public static void shutdown() {
+    public static synchronized void shutdown() {
         if (sessionFactory != null && !sessionFactory.isClosed()) {
             sessionFactory.close();
         }
+        sessionFactory = null;
+        closeDataSource();
+    }
+
+    private static void closeDataSource() {
+        if (dataSource != null && !dataSource.isClosed()) {
+            dataSource.close();
+        }
     }
 }
@@ -0,0 +1,93 @@
+package com.emi.util;
+
+/**
+ * Point-in-time snapshot of connection pool metrics
+ * Used to size the pool against the number of concurrent tellers
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class PoolMetrics {
+
+    private final int maximumPoolSize;
+    private final int activeConnections;
+    private final int idleConnections;
+    private final int totalConnections;
+    private final int threadsAwaitingConnection;
+    private final long acquireCount;
+    private final double averageAcquireMillis;
+    private final double maxAcquireMillis;
+    private final double averageUsageMillis;
+    private final long connectionTimeouts;
+
+    public PoolMetrics(int maximumPoolSize, int activeConnections, int idleConnections, int totalConnections,
+                       int threadsAwaitingConnection, PoolMetricsTracker tracker) {
+        this.maximumPoolSize = maximumPoolSize;
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.totalConnections = totalConnections;
+        this.threadsAwaitingConnection = threadsAwaitingConnection;
+        this.acquireCount = tracker.getAcquireCount();
+        this.averageAcquireMillis = acquireCount == 0 ? 0.0 : tracker.getAcquireNanos() / 1_000_000.0 / acquireCount;
+        this.maxAcquireMillis = tracker.getMaxAcquireNanos() / 1_000_000.0;
+        long usageCount = tracker.getUsageCount();
+        this.averageUsageMillis = usageCount == 0 ? 0.0 : (double) tracker.getUsageMillis() / usageCount;
+        this.connectionTimeouts = tracker.getTimeouts();
+    }
+
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections;
+    }
+
+    public int getThreadsAwaitingConnection() {
+        return threadsAwaitingConnection;
+    }
+
+    public long getAcquireCount() {
+        return acquireCount;
+    }
+
+    public double getAverageAcquireMillis() {
+        return averageAcquireMillis;
+    }
+
+    public double getMaxAcquireMillis() {
+        return maxAcquireMillis;
+    }
+
+    public double getAverageUsageMillis() {
+        return averageUsageMillis;
+    }
+
+    public long getConnectionTimeouts() {
+        return connectionTimeouts;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolMetrics{" +
+                "max=" + maximumPoolSize +
+                ", active=" + activeConnections +
+                ", idle=" + idleConnections +
+                ", total=" + totalConnections +
+                ", waiting=" + threadsAwaitingConnection +
+                ", acquires=" + acquireCount +
+                ", avgAcquireMs=" + String.format("%.3f", averageAcquireMillis) +
+                ", maxAcquireMs=" + String.format("%.3f", maxAcquireMillis) +
+                ", avgUsageMs=" + String.format("%.3f", averageUsageMillis) +
+                ", timeouts=" + connectionTimeouts +
+                '}';
+    }
+}
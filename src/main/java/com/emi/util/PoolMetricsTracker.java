@@ -0,0 +1,65 @@
+package com.emi.util;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HikariCP metrics tracker that accumulates connection acquire and usage times
+ * Hikari calls it on every borrow and return, so it only uses striped adders
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class PoolMetricsTracker implements IMetricsTracker {
+
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAccumulator maxAcquireNanos = new LongAccumulator(Math::max, 0L);
+    private final LongAdder usageCount = new LongAdder();
+    private final LongAdder usageMillis = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquireCount.increment();
+        acquireNanos.add(elapsedAcquiredNanos);
+        maxAcquireNanos.accumulate(elapsedAcquiredNanos);
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usageCount.increment();
+        usageMillis.add(elapsedBorrowedMillis);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    public long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    public long getAcquireNanos() {
+        return acquireNanos.sum();
+    }
+
+    public long getMaxAcquireNanos() {
+        return maxAcquireNanos.get();
+    }
+
+    public long getUsageCount() {
+        return usageCount.sum();
+    }
+
+    public long getUsageMillis() {
+        return usageMillis.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+}
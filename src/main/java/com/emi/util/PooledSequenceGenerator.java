@@ -0,0 +1,38 @@
+package com.emi.util;
+
+import org.hibernate.MappingException;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Sequence-based identifier generator using the pooled-lo optimizer
+ * Each NEXTVAL call reserves a block of ids [value, value + increment) that is
+ * handed out in memory, so inserts no longer pay a sequence round trip each
+ * and Hibernate can send them as JDBC batches.
+ * The increment comes from the id.sequence.increment setting and must equal
+ * the INCREMENT BY of the database sequences (see db/migration/V2__pooled_id_sequences.sql)
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String INCREMENT_PROPERTY = "id.sequence.increment";
+    public static final int DEFAULT_INCREMENT = 50;
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        int increment = AppConfig.getInt(INCREMENT_PROPERTY, DEFAULT_INCREMENT);
+        if (increment <= 0) {
+            throw new MappingException(INCREMENT_PROPERTY + " must be greater than zero");
+        }
+
+        parameters.setProperty(INCREMENT_PARAM, String.valueOf(increment));
+        parameters.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        super.configure(type, parameters, serviceRegistry);
+    }
+}
@@ -0,0 +1,74 @@
+package com.emi.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+
+/**
+ * Runs SQL schema scripts from the classpath against a DataSource
+ * Used by embedded database profiles to build the schema from the same
+ * db/migration scripts that are applied to Oracle
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public final class SchemaInitializer {
+
+    private SchemaInitializer() {}
+
+    /**
+     * Execute each script in order, statement by statement, in one transaction
+     *
+     * @param dataSource target database
+     * @param scriptResources comma-separated classpath resources
+     */
+    public static void run(DataSource dataSource, String scriptResources) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String resource : scriptResources.split(",")) {
+                for (String sql : readStatements(resource.trim())) {
+                    statement.execute(sql);
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to initialize schema from " + scriptResources, e);
+        }
+    }
+
+    /**
+     * Split a script into statements on ';', dropping '--' comment lines
+     */
+    static List<String> readStatements(String resource) {
+        String script;
+        try (InputStream in = SchemaInitializer.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Schema script not found on classpath: " + resource);
+            }
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read schema script " + resource, e);
+        }
+
+        StringBuilder withoutComments = new StringBuilder();
+        for (String line : script.split("\\R")) {
+            if (!line.trim().startsWith("--")) {
+                withoutComments.append(line).append('\n');
+            }
+        }
+
+        List<String> statements = new ArrayList<>();
+        for (String sql : withoutComments.toString().split(";")) {
+            if (!sql.trim().isEmpty()) {
+                statements.add(sql.trim());
+            }
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,87 @@
+package com.emi.util;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Logback turbo filter that logs the SQL of selected loan accounts only
+ * Hibernate's statement logger (org.hibernate.SQL) stays off, except on a
+ * thread whose MDC loanAccountNo is traced. Accounts are traced and
+ * untraced at runtime (POST/DELETE /admin/sql-trace), so one customer's
+ * queries can be captured in production without printing every statement. Registered in logback.xml.
+ *
+ * With nothing traced the filter returns at once; Hibernate checks the level
+ * before it builds a statement log line, so untraced requests pay nothing.
+ * Bind parameters are not covered: Hibernate reads that logger's level once
+ * at startup, so it cannot be switched per request.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class SqlTraceFilter extends TurboFilter {
+
+    /**
+     * MDC key holding the loan account of the request being served
+     */
+    public static final String LOAN_ACCOUNT_KEY = "loanAccountNo";
+
+    private static final String SQL_LOGGER = "org.hibernate.SQL";
+
+    // Copy on write: read on every log call, changed by an operator
+    private static volatile Set<String> tracedAccounts = Collections.emptySet();
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+                              Throwable t) {
+        Set<String> traced = tracedAccounts;
+        if (traced.isEmpty() || logger == null) {
+            return FilterReply.NEUTRAL;
+        }
+        if (!SQL_LOGGER.equals(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        String loanAccountNo = MDC.get(LOAN_ACCOUNT_KEY);
+        return loanAccountNo != null && traced.contains(loanAccountNo) ? FilterReply.ACCEPT : FilterReply.NEUTRAL;
+    }
+
+    /**
+     * Start logging the SQL run for a loan account
+     *
+     * @param loanAccountNo the loan account number
+     */
+    public static synchronized void trace(String loanAccountNo) {
+        Set<String> traced = new HashSet<>(tracedAccounts);
+        traced.add(loanAccountNo);
+        tracedAccounts = Collections.unmodifiableSet(traced);
+    }
+
+    /**
+     * Stop logging the SQL run for a loan account
+     *
+     * @param loanAccountNo the loan account number
+     */
+    public static synchronized void untrace(String loanAccountNo) {
+        Set<String> traced = new HashSet<>(tracedAccounts);
+        traced.remove(loanAccountNo);
+        tracedAccounts = Collections.unmodifiableSet(traced);
+    }
+
+    /**
+     * Stop logging SQL for every account
+     */
+    public static synchronized void untraceAll() {
+        tracedAccounts = Collections.emptySet();
+    }
+
+    public static Set<String> getTracedAccounts() {
+        return tracedAccounts;
+    }
+}
@@ -0,0 +1,29 @@
+-- V10: End-of-day penalty accrual
+-- Late-payment penalty is accrued nightly on the EMI still owed by each overdue installment
+-- (MainApp --penalties). penalty_accrued_to is the business date the installment's penalty
+-- covers; each run accrues the days since then and moves it to the run's business date, so
+-- running a date twice adds nothing and a night that was skipped is caught up by the next.
+-- Penalties already on the book were set by the LMS up to today, so overdue installments
+-- start from today; installments added later accrue from their due date.
+--
+-- LMS_PENALTY_ACCRUAL_POOJA holds the partitions of each run: a range of loan accounts, the
+-- last account committed (checkpoint) and whether the partition is done. A failed run is
+-- restarted with the same business date and resumes every unfinished partition from its
+-- checkpoint.
+
+ALTER TABLE LMS_RECEIVABLEPAYBLE_DTL_POOJA ADD penalty_accrued_to DATE;
+
+UPDATE LMS_RECEIVABLEPAYBLE_DTL_POOJA SET penalty_accrued_to = TRUNC(SYSDATE) WHERE due_date < TRUNC(SYSDATE);
+
+CREATE TABLE LMS_PENALTY_ACCRUAL_POOJA (
+    business_date DATE NOT NULL,
+    partition_no NUMBER(5) NOT NULL,
+    from_account_no VARCHAR2(50) NOT NULL,
+    to_account_no VARCHAR2(50) NOT NULL,
+    checkpoint_account_no VARCHAR2(50),
+    status VARCHAR2(10) NOT NULL,
+    installments_accrued NUMBER(12) DEFAULT 0 NOT NULL,
+    penalty_accrued NUMBER(15,2) DEFAULT 0 NOT NULL,
+    updated_date TIMESTAMP,
+    CONSTRAINT PK_PENALTY_ACCRUAL PRIMARY KEY (business_date, partition_no)
+);
@@ -0,0 +1,34 @@
+-- V1: Baseline schema for the EMI payment tables
+-- Matches the tables and sequences created by "New Text Document.txt" before pooled ids
+
+CREATE SEQUENCE ALLOCATION_SEQ_POOJA START WITH 1 INCREMENT BY 1 NOCACHE NOCYCLE;
+
+CREATE TABLE LMS_ALLOCATION_DTL_POOJA (
+    id NUMBER PRIMARY KEY,
+    loan_account_no VARCHAR2(50) NOT NULL,
+    allocated_penalty NUMBER(15,2),
+    allocated_emi NUMBER(15,2),
+    allocation_date TIMESTAMP
+);
+
+CREATE SEQUENCE LMS_RECEIPTPAYMENT_SEQ_POOJA START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE LMS_RECEIPTPAYMENT_DTL_POOJA (
+    id NUMBER PRIMARY KEY,
+    loan_account_no VARCHAR2(50) NOT NULL,
+    paid_amount NUMBER(15,2),
+    payment_mode VARCHAR2(20),
+    receipt_no VARCHAR2(50),
+    payment_date TIMESTAMP
+);
+
+CREATE SEQUENCE RECEIVABLE_SEQ_POOJA START WITH 1 INCREMENT BY 1 NOCACHE NOCYCLE;
+
+CREATE TABLE LMS_RECEIVABLEPAYBLE_DTL_POOJA (
+    id NUMBER PRIMARY KEY,
+    loan_account_no VARCHAR2(50) NOT NULL,
+    emi_amount NUMBER(15,2),
+    penalty NUMBER(15,2),
+    total_amount NUMBER(15,2),
+    created_date TIMESTAMP
+);
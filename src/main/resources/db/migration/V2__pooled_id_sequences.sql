@@ -0,0 +1,24 @@
+-- V2: Pooled id sequences
+-- The entities use the pooled-lo optimizer (PooledSequenceGenerator): every NEXTVAL
+-- reserves the block [value, value + 50) for one JVM, so the sequences must advance
+-- by the same step as id.sequence.increment in emi.properties.
+--
+-- Cutover is safe for rows created with INCREMENT BY 1 (including the sample data):
+-- the next NEXTVAL after this change is last_value + 50, which is above every id
+-- already issued, so reserved blocks never overlap existing rows.
+--
+-- Order of operations:
+--   1. Stop application instances still running with allocationSize = 1
+--   2. Run this script
+--   3. Start the new build (it refuses to start if the increments do not match)
+
+ALTER SEQUENCE ALLOCATION_SEQ_POOJA INCREMENT BY 50;
+ALTER SEQUENCE LMS_RECEIPTPAYMENT_SEQ_POOJA INCREMENT BY 50;
+ALTER SEQUENCE RECEIVABLE_SEQ_POOJA INCREMENT BY 50;
+
+-- Verification: every sequence must be at or above the highest id in its table
+-- SELECT 'ALLOCATION', MAX(id), (SELECT last_number FROM user_sequences WHERE sequence_name = 'ALLOCATION_SEQ_POOJA') FROM LMS_ALLOCATION_DTL_POOJA
+-- UNION ALL
+-- SELECT 'RECEIPT', MAX(id), (SELECT last_number FROM user_sequences WHERE sequence_name = 'LMS_RECEIPTPAYMENT_SEQ_POOJA') FROM LMS_RECEIPTPAYMENT_DTL_POOJA
+-- UNION ALL
+-- SELECT 'RECEIVABLE', MAX(id), (SELECT last_number FROM user_sequences WHERE sequence_name = 'RECEIVABLE_SEQ_POOJA') FROM LMS_RECEIVABLEPAYBLE_DTL_POOJA;
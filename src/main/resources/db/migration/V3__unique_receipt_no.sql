@@ -0,0 +1,6 @@
+-- V3: Receipt numbers must be unique
+-- Guards against duplicate receipt numbers from misconfigured nodes (two JVMs sharing receipt.node.id).
+-- Check for existing duplicates before applying:
+-- SELECT receipt_no, COUNT(*) FROM LMS_RECEIPTPAYMENT_DTL_POOJA GROUP BY receipt_no HAVING COUNT(*) > 1;
+
+ALTER TABLE LMS_RECEIPTPAYMENT_DTL_POOJA ADD CONSTRAINT UK_RECEIPTPAYMENT_RECEIPT_NO UNIQUE (receipt_no);
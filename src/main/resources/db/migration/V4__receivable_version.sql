@@ -0,0 +1,10 @@
+-- V4: Optimistic locking on receivables
+-- Payments now reduce emi_amount, penalty and total_amount in the same transaction as the
+-- receipt and allocation inserts. Each update is conditional on the version that was read
+-- (UPDATE ... WHERE id = ? AND version = ?), so two tellers posting against the same dues
+-- cannot both succeed; the loser re-reads the receivable and retries.
+--
+-- Existing rows start at version 0. Stop application instances built without the version
+-- mapping before applying, otherwise their updates would not advance the version.
+
+ALTER TABLE LMS_RECEIVABLEPAYBLE_DTL_POOJA ADD version NUMBER(19) DEFAULT 0 NOT NULL;
@@ -0,0 +1,12 @@
+-- V5: Idempotent payment submission
+-- Clients send an idempotency key with each payment (Idempotency-Key header / requestId).
+-- The unique constraint is the authority for deduplication across JVMs and restarts:
+-- a replayed request that reaches the database fails the insert and the original receipt
+-- is returned instead. Existing rows keep a NULL key; Oracle does not index all-NULL keys,
+-- so they never collide.
+-- The allocation row carries the same key so the original allocation can be returned too.
+
+ALTER TABLE LMS_RECEIPTPAYMENT_DTL_POOJA ADD request_id VARCHAR2(64);
+ALTER TABLE LMS_RECEIPTPAYMENT_DTL_POOJA ADD CONSTRAINT UK_RECEIPTPAYMENT_REQUEST_ID UNIQUE (request_id);
+ALTER TABLE LMS_ALLOCATION_DTL_POOJA ADD request_id VARCHAR2(64);
+CREATE INDEX IX_ALLOCATION_REQUEST_ID ON LMS_ALLOCATION_DTL_POOJA (request_id);
@@ -0,0 +1,24 @@
+-- V6: Multi-installment allocation
+-- An account can now have several pending installments (one receivable row each). A payment
+-- is spread across them oldest first, and within an installment across penalty, interest and
+-- principal in the order set by allocation.waterfall.
+--
+-- Receivables split the EMI into interest and principal (emi_amount stays their sum) and get
+-- a due date that orders them. Existing rows had no split, so the whole EMI is treated as
+-- principal and the due date is taken from the creation date.
+--
+-- Allocations record the installment they settle, the interest/principal split and the
+-- receipt they belong to; one payment writes one allocation row per installment it touches.
+
+ALTER TABLE LMS_RECEIVABLEPAYBLE_DTL_POOJA ADD interest_amount NUMBER(15,2) DEFAULT 0 NOT NULL;
+ALTER TABLE LMS_RECEIVABLEPAYBLE_DTL_POOJA ADD principal_amount NUMBER(15,2);
+ALTER TABLE LMS_RECEIVABLEPAYBLE_DTL_POOJA ADD due_date DATE;
+UPDATE LMS_RECEIVABLEPAYBLE_DTL_POOJA
+   SET principal_amount = emi_amount,
+       due_date = TRUNC(NVL(created_date, SYSDATE));
+
+ALTER TABLE LMS_ALLOCATION_DTL_POOJA ADD receivable_id NUMBER;
+ALTER TABLE LMS_ALLOCATION_DTL_POOJA ADD allocated_interest NUMBER(15,2) DEFAULT 0 NOT NULL;
+ALTER TABLE LMS_ALLOCATION_DTL_POOJA ADD allocated_principal NUMBER(15,2);
+ALTER TABLE LMS_ALLOCATION_DTL_POOJA ADD receipt_no VARCHAR2(50);
+UPDATE LMS_ALLOCATION_DTL_POOJA SET allocated_principal = allocated_emi;
@@ -0,0 +1,21 @@
+-- V7: Per-account pending balance
+-- Outstanding-balance lookups read one row per account by primary key instead of summing
+-- the account's receivables. The application keeps the row in step in the same transaction
+-- that changes the receivables: creating installments adds to it (inserting the row from the
+-- account's receivables if it is missing) and settling a payment subtracts what was allocated.
+--
+-- Receivables loaded outside the application (e.g. by the LMS) do not touch this table.
+-- Accounts without a row fall back to summing their receivables; for the rest, run
+-- "MainApp --balances verify" to list accounts whose row disagrees with the receivables and
+-- "MainApp --balances rebuild" to recompute them. Both are safe while payments are posted.
+
+CREATE TABLE LMS_PENDING_BALANCE_POOJA (
+    loan_account_no VARCHAR2(50) PRIMARY KEY,
+    total_pending NUMBER(15,2) DEFAULT 0 NOT NULL,
+    updated_date TIMESTAMP
+);
+
+INSERT INTO LMS_PENDING_BALANCE_POOJA (loan_account_no, total_pending, updated_date)
+SELECT loan_account_no, NVL(SUM(total_amount), 0), SYSTIMESTAMP
+  FROM LMS_RECEIVABLEPAYBLE_DTL_POOJA
+ GROUP BY loan_account_no;
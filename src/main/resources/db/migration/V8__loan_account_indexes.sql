@@ -0,0 +1,17 @@
+-- V8: Loan account indexes
+-- Every read of the three detail tables is by loan_account_no, but only the primary keys
+-- were indexed, so each lookup scanned the whole table.
+--
+-- IX_RECEIVABLE_ACCOUNT_PENDING serves the pending installment lookups (loan_account_no = ?
+-- AND total_amount > 0) and covers the SUM(total_amount) fallback for accounts without a
+-- pending balance row. Settling a payment changes total_amount, so it also moves the entry.
+-- IX_RECEIPTPAYMENT_ACCOUNT_DATE and IX_ALLOCATION_ACCOUNT_DATE serve payment history by
+-- account, newest first.
+--
+-- On a live Oracle database add ONLINE to each statement so that payments are not blocked
+-- while the indexes are built. QueryPlanTest checks the plan of every LoanDaoImpl query
+-- against the embedded database.
+
+CREATE INDEX IX_RECEIVABLE_ACCOUNT_PENDING ON LMS_RECEIVABLEPAYBLE_DTL_POOJA (loan_account_no, total_amount);
+CREATE INDEX IX_RECEIPTPAYMENT_ACCOUNT_DATE ON LMS_RECEIPTPAYMENT_DTL_POOJA (loan_account_no, payment_date);
+CREATE INDEX IX_ALLOCATION_ACCOUNT_DATE ON LMS_ALLOCATION_DTL_POOJA (loan_account_no, allocation_date);
@@ -0,0 +1,16 @@
+-- V9: Payment history keyset indexes
+-- Payment history is read newest first in pages ordered by (date, id) and continued
+-- from the last (date, id) shown (LoanDao.findReceiptHistory / findAllocationHistory).
+-- With id in the index, in the same descending order as the history, each page is a
+-- bounded range scan that stops after one page however far back it starts; the V8
+-- indexes without id had to sort every receipt of the account before the first row came
+-- back. The queries also order by loan_account_no (a single value), so that H2 sees the
+-- whole index order and skips the sort as Oracle does.
+--
+-- On a live Oracle database add ONLINE to the CREATE statements so that payments are
+-- not blocked while the indexes are built.
+
+CREATE INDEX IX_RECEIPTPAYMENT_ACCOUNT_KEYSET ON LMS_RECEIPTPAYMENT_DTL_POOJA (loan_account_no, payment_date DESC, id DESC);
+DROP INDEX IX_RECEIPTPAYMENT_ACCOUNT_DATE;
+CREATE INDEX IX_ALLOCATION_ACCOUNT_KEYSET ON LMS_ALLOCATION_DTL_POOJA (loan_account_no, allocation_date DESC, id DESC);
+DROP INDEX IX_ALLOCATION_ACCOUNT_DATE;
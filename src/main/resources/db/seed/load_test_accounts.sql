@@ -0,0 +1,18 @@
+-- Load test book for the embedded H2 profile (not a migration; never run against Oracle)
+-- 10000 accounts numbered from 100000, each with two monthly installments of 4000.00
+-- principal, 1000.00 interest and 150.00 penalty. InMemoryLoanDao.seedLoadTestAccounts
+-- builds the same book for dao.type=memory.
+
+INSERT INTO LMS_RECEIVABLEPAYBLE_DTL_POOJA (id, loan_account_no, due_date, principal_amount,
+    interest_amount, emi_amount, penalty, total_amount, created_date, version)
+SELECT X + 1, CAST(100000 + MOD(X, 10000) AS VARCHAR), DATEADD('MONTH', X / 10000, DATE '2026-01-05'),
+    4000.00, 1000.00, 5000.00, 150.00, 5150.00, CURRENT_TIMESTAMP, 0
+FROM SYSTEM_RANGE(0, 19999);
+
+-- Ids from the sequence start above the seeded rows
+ALTER SEQUENCE RECEIVABLE_SEQ_POOJA RESTART WITH 20001;
+
+-- Pending balances of the seeded accounts, as V7 would have backfilled them
+INSERT INTO LMS_PENDING_BALANCE_POOJA (loan_account_no, total_pending, updated_date)
+SELECT loan_account_no, SUM(total_amount), CURRENT_TIMESTAMP
+FROM LMS_RECEIVABLEPAYBLE_DTL_POOJA GROUP BY loan_account_no;
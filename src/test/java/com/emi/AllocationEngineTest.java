@@ -0,0 +1,134 @@
+package com.emi;
+
+import com.emi.service.AllocationEngine;
+import com.emi.service.AllocationEngine.Component;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Unit tests for AllocationEngine
+ * Tests installment order, the configurable waterfall, partial payments,
+ * overpayments and allocation across a long schedule
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class AllocationEngineTest {
+
+    private static final int PENALTY = Component.PENALTY.ordinal();
+    private static final int INTEREST = Component.INTEREST.ordinal();
+    private static final int PRINCIPAL = Component.PRINCIPAL.ordinal();
+
+    @Test
+    @DisplayName("Should pay installments oldest first and components in waterfall order")
+    public void testDefaultWaterfall() {
+        AllocationEngine engine = new AllocationEngine(AllocationEngine.DEFAULT_WATERFALL);
+        long[] dues = dues(new long[] {100, 1000, 4000}, new long[] {50, 1000, 4000});
+        long[] allocated = new long[dues.length];
+
+        long unallocated = engine.allocate(dues, 2, 5900, allocated);
+
+        Assertions.assertEquals(0, unallocated);
+        Assertions.assertEquals(100, allocated[PENALTY]);
+        Assertions.assertEquals(1000, allocated[INTEREST]);
+        Assertions.assertEquals(4000, allocated[PRINCIPAL]);
+        Assertions.assertEquals(50, allocated[3 + PENALTY]);
+        Assertions.assertEquals(750, allocated[3 + INTEREST]);
+        Assertions.assertEquals(0, allocated[3 + PRINCIPAL]);
+    }
+
+    @Test
+    @DisplayName("Should settle components in the configured order")
+    public void testConfiguredWaterfall() {
+        AllocationEngine engine = new AllocationEngine("principal, interest, penalty");
+        long[] dues = dues(new long[] {100, 1000, 4000});
+        long[] allocated = new long[dues.length];
+
+        engine.allocate(dues, 1, 4500, allocated);
+
+        Assertions.assertEquals(List.of(Component.PRINCIPAL, Component.INTEREST, Component.PENALTY),
+            engine.getWaterfall());
+        Assertions.assertEquals(4000, allocated[PRINCIPAL]);
+        Assertions.assertEquals(500, allocated[INTEREST]);
+        Assertions.assertEquals(0, allocated[PENALTY]);
+    }
+
+    @Test
+    @DisplayName("Should return the excess once every installment is paid and clear unreached slots")
+    public void testOverpaymentAndReuse() {
+        AllocationEngine engine = new AllocationEngine(AllocationEngine.DEFAULT_WATERFALL);
+        long[] dues = dues(new long[] {0, 200, 800}, new long[] {0, 200, 800});
+        long[] allocated = new long[dues.length];
+
+        Assertions.assertEquals(500, engine.allocate(dues, 2, 2500, allocated));
+
+        // Arrays are reused between payments; a smaller payment must not leave old amounts behind
+        Assertions.assertEquals(0, engine.allocate(dues, 2, 300, allocated));
+        Assertions.assertEquals(200, allocated[INTEREST]);
+        Assertions.assertEquals(100, allocated[PRINCIPAL]);
+        Assertions.assertEquals(0, allocated[3 + INTEREST]);
+        Assertions.assertEquals(0, allocated[3 + PRINCIPAL]);
+    }
+
+    @Test
+    @DisplayName("Should allocate across hundreds of installments without losing a paisa")
+    public void testLongSchedule() {
+        int installments = 360;
+        AllocationEngine engine = new AllocationEngine(AllocationEngine.DEFAULT_WATERFALL);
+        long[] dues = new long[installments * AllocationEngine.COMPONENTS];
+        long total = 0;
+        for (int i = 0; i < installments; i++) {
+            dues[i * 3 + PENALTY] = i % 7 == 0 ? 1_500 : 0;
+            dues[i * 3 + INTEREST] = 80_000 - i * 150L;
+            dues[i * 3 + PRINCIPAL] = 120_000 + i * 150L;
+            total += dues[i * 3 + PENALTY] + dues[i * 3 + INTEREST] + dues[i * 3 + PRINCIPAL];
+        }
+        long[] allocated = new long[dues.length];
+
+        long payment = total - 12_345;
+        Assertions.assertEquals(0, engine.allocate(dues, installments, payment, allocated));
+
+        long sum = 0;
+        for (long amount : allocated) {
+            sum += amount;
+        }
+        Assertions.assertEquals(payment, sum);
+        // Only the last installment is short, and it is short on principal
+        Assertions.assertEquals(dues[359 * 3 + PRINCIPAL] - 12_345, allocated[359 * 3 + PRINCIPAL]);
+        Assertions.assertEquals(dues[358 * 3 + PRINCIPAL], allocated[358 * 3 + PRINCIPAL]);
+    }
+
+    @Test
+    @DisplayName("Should reject waterfalls that do not list each component once")
+    public void testInvalidWaterfall() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AllocationEngine("PENALTY,INTEREST"));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new AllocationEngine("PENALTY,PENALTY,PRINCIPAL"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AllocationEngine("PENALTY,FEES,PRINCIPAL"));
+    }
+
+    @Test
+    @DisplayName("Should convert amounts to and from paise exactly")
+    public void testPaiseConversion() {
+        Assertions.assertEquals(515_000, AllocationEngine.toPaise(new BigDecimal("5150.00")));
+        Assertions.assertEquals(515_000, AllocationEngine.toPaise(new BigDecimal("5150")));
+        Assertions.assertEquals(0, AllocationEngine.toPaise(null));
+        Assertions.assertEquals(new BigDecimal("5150.05"), AllocationEngine.fromPaise(515_005));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> AllocationEngine.toPaise(new BigDecimal("10.005")));
+    }
+
+    private static long[] dues(long[]... installments) {
+        long[] dues = new long[installments.length * AllocationEngine.COMPONENTS];
+        for (int i = 0; i < installments.length; i++) {
+            dues[i * 3 + PENALTY] = installments[i][0];
+            dues[i * 3 + INTEREST] = installments[i][1];
+            dues[i * 3 + PRINCIPAL] = installments[i][2];
+        }
+        return dues;
+    }
+}
@@ -0,0 +1,141 @@
+package com.emi;
+
+import com.emi.service.AllocationEngine;
+import com.emi.service.AmortizationEngine;
+import com.emi.service.AmortizationEngine.Mode;
+import com.emi.service.AmortizationSchedule;
+import com.emi.service.LoanTerms;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for AmortizationEngine
+ * Tests the EMI formula, how each month splits into interest and principal,
+ * zero-rate loans, that the fast mode matches the exact mode to the paisa and
+ * that batches come back in input order
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class AmortizationEngineTest {
+
+    private final AmortizationEngine engine = new AmortizationEngine();
+
+    @Test
+    @DisplayName("Should compute the EMI from principal, rate and tenure")
+    public void testEmi() {
+        Assertions.assertEquals(new BigDecimal("8884.88"),
+            engine.emi(new BigDecimal("100000.00"), new BigDecimal("12"), 12));
+        Assertions.assertEquals(888488, engine.emi(10_000_000L, 1200, 12));
+        Assertions.assertEquals(new BigDecimal("43391.16"),
+            engine.emi(new BigDecimal("5000000.00"), new BigDecimal("8.50"), 240));
+        Assertions.assertEquals(4339116, engine.emi(500_000_000L, 850, 240));
+    }
+
+    @Test
+    @DisplayName("Should split each installment into interest on the balance and principal")
+    public void testSchedule() {
+        AmortizationSchedule schedule = engine.schedule(loan("100000.00", "12", 12), Mode.EXACT);
+
+        Assertions.assertEquals(12, schedule.getInstallments());
+        Assertions.assertEquals(new BigDecimal("8884.88"), schedule.getEmi());
+        Assertions.assertEquals(new BigDecimal("1000.00"), schedule.getInterest(1));
+        Assertions.assertEquals(new BigDecimal("7884.88"), schedule.getPrincipal(1));
+        Assertions.assertEquals(new BigDecimal("92115.12"), schedule.getBalance(1));
+        Assertions.assertEquals(new BigDecimal("921.15"), schedule.getInterest(2));
+        Assertions.assertEquals(new BigDecimal("0.00"), schedule.getBalance(12));
+
+        BigDecimal repaid = BigDecimal.ZERO;
+        for (int installment = 1; installment <= 12; installment++) {
+            repaid = repaid.add(schedule.getPrincipal(installment));
+            Assertions.assertEquals(schedule.getEmi(installment),
+                schedule.getInterest(installment).add(schedule.getPrincipal(installment)));
+        }
+        Assertions.assertEquals(new BigDecimal("100000.00"), repaid);
+        Assertions.assertEquals(schedule.getTotalPayment().subtract(repaid), schedule.getTotalInterest());
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> schedule.getEmi(13));
+    }
+
+    @Test
+    @DisplayName("Should repay a zero-rate loan in equal parts, the last one taking the remainder")
+    public void testZeroRate() {
+        AmortizationSchedule schedule = engine.schedule(loan("1000.00", "0", 3), Mode.EXACT);
+        Assertions.assertEquals(new BigDecimal("333.33"), schedule.getEmi());
+        Assertions.assertEquals(new BigDecimal("333.34"), schedule.getEmi(3));
+        Assertions.assertEquals(0, schedule.getTotalInterest().signum());
+        Assertions.assertEquals(schedule, engine.schedule(loan("1000.00", "0", 3), Mode.FAST));
+
+        // An EMI rounded up never repays more than is owed
+        AmortizationSchedule tiny = engine.schedule(loan("0.04", "0", 6), Mode.FAST);
+        Assertions.assertEquals(new BigDecimal("0.00"), tiny.getBalance(4));
+        Assertions.assertEquals(new BigDecimal("0.00"), tiny.getEmi(6));
+    }
+
+    @Test
+    @DisplayName("Should produce the same schedules in fast and exact mode")
+    public void testFastMatchesExact() {
+        for (String principal : new String[] {"10000.00", "249999.99", "1500000.00", "75000000.00"}) {
+            for (String rate : new String[] {"0.01", "7.25", "8.65", "10.99", "12", "18.50", "36"}) {
+                for (int tenure : new int[] {1, 6, 37, 120, 360, 600}) {
+                    LoanTerms loan = loan(principal, rate, tenure);
+                    Assertions.assertEquals(engine.schedule(loan, Mode.EXACT), engine.schedule(loan, Mode.FAST),
+                        loan.toString());
+                }
+            }
+        }
+
+        // Reusing the caller's array
+        long[] rows = new long[AmortizationEngine.MAX_TENURE_MONTHS * AmortizationEngine.COLUMNS];
+        long totalInterest = engine.schedule(10_000_000L, 1200, 12, rows);
+        Assertions.assertEquals(AllocationEngine.toPaise(
+            engine.schedule(loan("100000.00", "12", 12), Mode.EXACT).getTotalInterest()), totalInterest);
+        Assertions.assertEquals(0, rows[11 * AmortizationEngine.COLUMNS + AmortizationEngine.BALANCE]);
+    }
+
+    @Test
+    @DisplayName("Should compute a batch of schedules in parallel, in input order")
+    public void testBatch() {
+        List<LoanTerms> loans = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            loans.add(new LoanTerms(BigDecimal.valueOf(100_000 + i * 137L),
+                BigDecimal.valueOf(600 + i % 900, 2), 12 + i % 349));
+        }
+
+        AmortizationSchedule[] exact = engine.schedules(loans, Mode.EXACT);
+        AmortizationSchedule[] fast = engine.schedules(loans, Mode.FAST);
+
+        Assertions.assertEquals(loans.size(), exact.length);
+        for (int i = 0; i < loans.size(); i++) {
+            Assertions.assertEquals(engine.schedule(loans.get(i), Mode.EXACT), exact[i]);
+            Assertions.assertEquals(exact[i], fast[i]);
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject invalid loan terms")
+    public void testValidation() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> engine.schedule(loan("0.00", "12", 12), Mode.EXACT));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> engine.schedule(loan("1000.00", "-1", 12), Mode.EXACT));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> engine.schedule(loan("1000.00", "12", 0), Mode.FAST));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> engine.schedule(loan("1000.00", "12", AmortizationEngine.MAX_TENURE_MONTHS + 1), Mode.FAST));
+        // Basis points hold two decimal places of a percent
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> engine.schedule(loan("1000.00", "8.125", 12), Mode.FAST));
+        Assertions.assertNotNull(engine.schedule(loan("1000.00", "8.125", 12), Mode.EXACT));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> engine.schedule(10_000L, 1200, 12, new long[10]));
+    }
+
+    private static LoanTerms loan(String principal, String rate, int tenureMonths) {
+        return new LoanTerms(new BigDecimal(principal), new BigDecimal(rate), tenureMonths);
+    }
+}
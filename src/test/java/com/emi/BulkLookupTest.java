@@ -0,0 +1,140 @@
+package com.emi;
+
+import com.emi.dao.CachingLoanDao;
+import com.emi.dao.LoanDao;
+import com.emi.dao.LoanDaoImpl;
+import com.emi.model.Receivable;
+import com.emi.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multi-account lookup tests against embedded H2
+ * Tests that the set-based lookups return the same dues as the per-account
+ * ones across several IN-list chunks, and handle settled, unknown and
+ * repeated account numbers
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class BulkLookupTest {
+
+    // Spans three IN lists of at most 1000 accounts
+    private static final int ACCOUNTS = 2500;
+
+    private final LoanDao loanDao = new LoanDaoImpl();
+
+    @BeforeAll
+    public static void startDatabase() {
+        H2TestDatabase.start("lookup");
+        LocalDate firstDue = LocalDate.of(2026, 1, 5);
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                String loanAccountNo = account(i);
+                if (i % 10 == 0) {
+                    // Fully settled account: rows exist but nothing is pending
+                    session.persist(new Receivable(loanAccountNo, firstDue, BigDecimal.ZERO.setScale(2),
+                        BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2)));
+                    continue;
+                }
+                int installments = i % 3 + 1;
+                for (int n = 0; n < installments; n++) {
+                    session.persist(new Receivable(loanAccountNo, firstDue.plusMonths(n),
+                        new BigDecimal("4000.00"), BigDecimal.valueOf(100_000 + i, 2), new BigDecimal("150.00")));
+                }
+                if (i % 50 == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+            transaction.commit();
+        }
+    }
+
+    @AfterAll
+    public static void stopDatabase() {
+        H2TestDatabase.stop();
+    }
+
+    @Test
+    @DisplayName("Should match per-account lookups across IN-list chunks")
+    public void testMatchesSingleAccountLookups() {
+        List<String> loanAccountNos = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            loanAccountNos.add(account(i));
+        }
+
+        Map<String, Receivable> summaries = loanDao.findReceivablesByLoanAccountNos(loanAccountNos);
+        Map<String, BigDecimal> totals = loanDao.getTotalPendingAmounts(loanAccountNos);
+
+        Assertions.assertEquals(ACCOUNTS - ACCOUNTS / 10, summaries.size());
+        Assertions.assertEquals(ACCOUNTS, totals.size());
+        for (String loanAccountNo : loanAccountNos) {
+            Receivable expected = loanDao.findReceivableByLoanAccountNo(loanAccountNo);
+            Receivable actual = summaries.get(loanAccountNo);
+            if (expected == null) {
+                Assertions.assertNull(actual, loanAccountNo);
+            } else {
+                Assertions.assertNotNull(actual, loanAccountNo);
+                Assertions.assertEquals(expected.getDueDate(), actual.getDueDate(), loanAccountNo);
+                Assertions.assertEquals(expected.getPenalty(), actual.getPenalty(), loanAccountNo);
+                Assertions.assertEquals(expected.getInterestAmount(), actual.getInterestAmount(), loanAccountNo);
+                Assertions.assertEquals(expected.getPrincipalAmount(), actual.getPrincipalAmount(), loanAccountNo);
+                Assertions.assertEquals(expected.getTotalAmount(), actual.getTotalAmount(), loanAccountNo);
+            }
+            Assertions.assertEquals(0, loanDao.getTotalPendingAmount(loanAccountNo)
+                .compareTo(totals.get(loanAccountNo)), loanAccountNo);
+        }
+
+        // Three installments of 4000.00 + 1000.02 + 150.00
+        Assertions.assertEquals(new BigDecimal("15450.06"), summaries.get(account(2)).getTotalAmount());
+    }
+
+    @Test
+    @DisplayName("Should ignore repeated account numbers and report unknown accounts")
+    public void testDuplicatesAndUnknownAccounts() {
+        List<String> loanAccountNos = List.of(account(1), account(1), account(10), "UNKNOWN", account(1));
+
+        Map<String, Receivable> summaries = loanDao.findReceivablesByLoanAccountNos(loanAccountNos);
+        Map<String, BigDecimal> totals = loanDao.getTotalPendingAmounts(loanAccountNos);
+
+        Assertions.assertEquals(1, summaries.size());
+        Assertions.assertEquals(new BigDecimal("10300.02"), summaries.get(account(1)).getTotalAmount());
+        Assertions.assertEquals(3, totals.size());
+        Assertions.assertEquals(0, totals.get(account(10)).signum());
+        Assertions.assertEquals(0, totals.get("UNKNOWN").signum());
+        Assertions.assertTrue(loanDao.findReceivablesByLoanAccountNos(List.of()).isEmpty());
+        Assertions.assertTrue(loanDao.getTotalPendingAmounts(List.of()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should serve cached accounts and look up only the rest")
+    public void testCachingPassThrough() {
+        CachingLoanDao cachingDao = new CachingLoanDao(loanDao, 100, 60);
+        cachingDao.getPendingReceivables(account(1));
+
+        Map<String, Receivable> summaries = cachingDao.findReceivablesByLoanAccountNos(
+            List.of(account(1), account(2), account(10)));
+
+        Assertions.assertEquals(2, summaries.size());
+        Assertions.assertEquals(new BigDecimal("15450.06"), summaries.get(account(2)).getTotalAmount());
+        Assertions.assertEquals(1, cachingDao.getHitCount());
+        Assertions.assertEquals(3, cachingDao.getMissCount());
+    }
+
+    private static String account(int i) {
+        return String.valueOf(100_000 + i);
+    }
+}
@@ -0,0 +1,102 @@
+package com.emi;
+
+import com.emi.model.Receivable;
+import com.emi.service.BulkPaymentReport;
+import com.emi.service.BulkPaymentService;
+import com.emi.service.BulkPaymentServiceImpl;
+import com.emi.service.EmiServiceImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Unit tests for BulkPaymentService
+ * Uses a stub LoanDao so batching and failure handling run without a database
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class BulkPaymentServiceTest {
+
+    private StubLoanDao loanDao;
+    private BulkPaymentService bulkPaymentService;
+
+    @BeforeEach
+    public void setUp() {
+        loanDao = new StubLoanDao();
+        loanDao.addReceivable(new Receivable("1001", new BigDecimal("5000.00"),
+            new BigDecimal("150.00"), new BigDecimal("5150.00")));
+        loanDao.addReceivable(new Receivable("1002", new BigDecimal("4500.00"),
+            new BigDecimal("200.00"), new BigDecimal("4700.00")));
+        loanDao.addReceivable(new Receivable("1003", new BigDecimal("5500.00"),
+            BigDecimal.ZERO, new BigDecimal("5500.00")));
+        bulkPaymentService = new BulkPaymentServiceImpl(new EmiServiceImpl(), loanDao, 2);
+    }
+
+    @Test
+    @DisplayName("Should post valid rows in batches of the configured size")
+    public void testProcessWritesBatches() throws Exception {
+        String csv = "loan_account_no,amount,mode\n"
+            + "1001,5150.00,NACH\n"
+            + "1002,4700.00,NACH\n"
+            + "1003,6000.00,CASH\n";
+
+        BulkPaymentReport report = bulkPaymentService.process(new StringReader(csv));
+
+        Assertions.assertEquals(3, report.getTotalRows());
+        Assertions.assertEquals(3, report.getPostedRows());
+        Assertions.assertEquals(0, report.getFailedRows());
+        Assertions.assertEquals(List.of(2, 1), loanDao.batchSizes);
+        Assertions.assertEquals(new BigDecimal("150.00"), loanDao.savedAllocations.get(0).getAllocatedPenalty());
+        Assertions.assertEquals(new BigDecimal("5000.00"), loanDao.savedAllocations.get(0).getAllocatedEmi());
+        Assertions.assertEquals("NACH", loanDao.savedReceipts.get(0).getPaymentMode());
+        Assertions.assertEquals(0, loanDao.getTotalPendingAmount("1001").signum());
+        Assertions.assertEquals(0, loanDao.getTotalPendingAmount("1003").signum());
+    }
+
+    @Test
+    @DisplayName("Should record invalid rows without aborting the run")
+    public void testProcessRecordsRowFailures() throws Exception {
+        String csv = "1001,5150.00,NACH\n"
+            + "abc,100.00,CASH\n"
+            + "9999,100.00,CASH\n"
+            + "1002,100.00,CASH\n"
+            + "1002,not-a-number,CASH\n"
+            + "1002,4700.00,ONLINE\n";
+
+        BulkPaymentReport report = bulkPaymentService.process(new StringReader(csv));
+
+        Assertions.assertEquals(6, report.getTotalRows());
+        Assertions.assertEquals(3, report.getPostedRows());
+        Assertions.assertEquals(3, report.getFailedRows());
+        Assertions.assertEquals(2, report.getFailures().get(0).getLineNumber());
+        Assertions.assertTrue(report.getFailures().get(1).getReason().contains("No pending EMI"));
+        Assertions.assertTrue(report.getFailures().get(2).getReason().contains("Invalid payment amount"));
+
+        // The partial payment went to penalty; the later row for 1002 was allocated against what it left
+        Assertions.assertEquals(new BigDecimal("100.00"), loanDao.savedAllocations.get(1).getAllocatedPenalty());
+        Assertions.assertEquals(new BigDecimal("100.00"), loanDao.savedAllocations.get(2).getAllocatedPenalty());
+        Assertions.assertEquals(new BigDecimal("4500.00"), loanDao.savedAllocations.get(2).getAllocatedEmi());
+        Assertions.assertEquals(0, loanDao.getTotalPendingAmount("1002").signum());
+    }
+
+    @Test
+    @DisplayName("Should isolate the failing row when a batch write fails")
+    public void testProcessFallsBackToRowWrites() throws Exception {
+        loanDao.failingAccount = "1002";
+        String csv = "1001,5150.00,NACH\n"
+            + "1002,4700.00,NACH\n";
+
+        BulkPaymentReport report = bulkPaymentService.process(new StringReader(csv));
+
+        Assertions.assertEquals(1, report.getPostedRows());
+        Assertions.assertEquals(1, report.getFailedRows());
+        Assertions.assertEquals("1002", report.getFailures().get(0).getLoanAccountNo());
+        Assertions.assertEquals("1001", loanDao.savedReceipts.get(0).getLoanAccountNo());
+    }
+}
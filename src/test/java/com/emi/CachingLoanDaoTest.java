@@ -0,0 +1,109 @@
+package com.emi;
+
+import com.emi.dao.CachingLoanDao;
+import com.emi.model.Allocation;
+import com.emi.model.ReceiptPayment;
+import com.emi.model.Receivable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for CachingLoanDao
+ * Tests read-through, size and TTL eviction, and eviction on payment
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class CachingLoanDaoTest {
+
+    private StubLoanDao delegate;
+    private AtomicLong clock;
+    private CachingLoanDao cachingLoanDao;
+
+    @BeforeEach
+    public void setUp() {
+        delegate = new StubLoanDao();
+        for (int i = 1; i <= 3; i++) {
+            String loanAccountNo = "100" + i;
+            delegate.addReceivable(new Receivable(loanAccountNo, new BigDecimal("5000.00"),
+                new BigDecimal("150.00"), new BigDecimal("5150.00")));
+        }
+        clock = new AtomicLong();
+        cachingLoanDao = new CachingLoanDao(delegate, 2, 60, clock::get);
+    }
+
+    @Test
+    @DisplayName("Should serve repeated lookups from the cache")
+    public void testReadThrough() {
+        Receivable first = cachingLoanDao.findReceivableByLoanAccountNo("1001");
+        Receivable second = cachingLoanDao.findReceivableByLoanAccountNo("1001");
+
+        Assertions.assertEquals(1, delegate.lookupCount.get());
+        Assertions.assertEquals(1, cachingLoanDao.getHitCount());
+        Assertions.assertEquals(1, cachingLoanDao.getMissCount());
+        Assertions.assertEquals(first.getTotalAmount(), second.getTotalAmount());
+        Assertions.assertNotSame(first, second);
+    }
+
+    @Test
+    @DisplayName("Should not cache missing accounts")
+    public void testMissingAccountNotCached() {
+        Assertions.assertNull(cachingLoanDao.findReceivableByLoanAccountNo("9999"));
+        Assertions.assertNull(cachingLoanDao.findReceivableByLoanAccountNo("9999"));
+
+        Assertions.assertEquals(2, delegate.lookupCount.get());
+        Assertions.assertEquals(0, cachingLoanDao.size());
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently used entry beyond the size bound")
+    public void testSizeEviction() {
+        cachingLoanDao.findReceivableByLoanAccountNo("1001");
+        cachingLoanDao.findReceivableByLoanAccountNo("1002");
+        cachingLoanDao.findReceivableByLoanAccountNo("1001");
+        cachingLoanDao.findReceivableByLoanAccountNo("1003");
+
+        Assertions.assertEquals(2, cachingLoanDao.size());
+        Assertions.assertEquals(1, cachingLoanDao.getEvictionCount());
+
+        cachingLoanDao.findReceivableByLoanAccountNo("1001");
+        Assertions.assertEquals(3, delegate.lookupCount.get());
+        cachingLoanDao.findReceivableByLoanAccountNo("1002");
+        Assertions.assertEquals(4, delegate.lookupCount.get());
+    }
+
+    @Test
+    @DisplayName("Should reload entries older than the TTL")
+    public void testTtlEviction() {
+        cachingLoanDao.findReceivableByLoanAccountNo("1001");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        cachingLoanDao.findReceivableByLoanAccountNo("1001");
+        Assertions.assertEquals(1, delegate.lookupCount.get());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        cachingLoanDao.findReceivableByLoanAccountNo("1001");
+        Assertions.assertEquals(2, delegate.lookupCount.get());
+    }
+
+    @Test
+    @DisplayName("Should evict the account when a payment is posted for it")
+    public void testEvictOnPayment() {
+        cachingLoanDao.findReceivableByLoanAccountNo("1001");
+        cachingLoanDao.findReceivableByLoanAccountNo("1002");
+
+        cachingLoanDao.savePayment(delegate.installments("1001"),
+            List.of(new Allocation("1001", new BigDecimal("150.00"), new BigDecimal("5000.00"))),
+            new ReceiptPayment("1001", new BigDecimal("5150.00"), "CASH", "RCP1"));
+
+        cachingLoanDao.findReceivableByLoanAccountNo("1001");
+        cachingLoanDao.findReceivableByLoanAccountNo("1002");
+        Assertions.assertEquals(3, delegate.lookupCount.get());
+    }
+}
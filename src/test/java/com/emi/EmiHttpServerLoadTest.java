@@ -0,0 +1,184 @@
+package com.emi;
+
+import com.emi.controller.EmiHttpServer;
+import com.emi.model.Receivable;
+import com.emi.service.EmiServiceImpl;
+import com.emi.service.SnowflakeReceiptNumberGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test for EmiHttpServer
+ * Drives enquiries and payments from concurrent clients against a LoanDao stand-in
+ * with a fixed per-call latency standing in for Oracle round trips, and checks
+ * that throughput scales with clients. A payment settles its account, so each
+ * payment goes to a fresh account.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class EmiHttpServerLoadTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmiHttpServerLoadTest.class);
+
+    private static final int REQUESTS_PER_CLIENT = 20;
+    private static final long DAO_LATENCY_MILLIS = 40;
+    private static final int PAYABLE_ACCOUNTS = 1000;
+
+    private StubLoanDao loanDao;
+    private EmiHttpServer server;
+    private HttpClient client;
+    private final AtomicInteger nextPayableAccount = new AtomicInteger(2000);
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        loanDao = new StubLoanDao();
+        loanDao.latencyMillis = DAO_LATENCY_MILLIS;
+        loanDao.addReceivable(new Receivable("1001", new BigDecimal("5000.00"),
+            new BigDecimal("150.00"), new BigDecimal("5150.00")));
+        for (int i = 0; i < PAYABLE_ACCOUNTS; i++) {
+            String loanAccountNo = String.valueOf(2000 + i);
+            loanDao.addReceivable(new Receivable(loanAccountNo, new BigDecimal("5000.00"),
+                new BigDecimal("150.00"), new BigDecimal("5150.00")));
+        }
+
+        EmiServiceImpl emiService = new EmiServiceImpl(loanDao, new SnowflakeReceiptNumberGenerator(1));
+        server = new EmiHttpServer(emiService, 0, 32);
+        server.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(1);
+    }
+
+    @Test
+    @DisplayName("Should serve enquiry and payment requests")
+    public void testEndpoints() throws Exception {
+        HttpResponse<String> pending = client.send(pendingRequest("1001"), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, pending.statusCode());
+        Assertions.assertTrue(pending.body().contains("\"totalAmount\":5150.00"));
+
+        HttpResponse<String> payment = client.send(paymentRequest("1001", "5150.00", "CASH"),
+            HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, payment.statusCode());
+        Assertions.assertTrue(payment.body().contains("\"allocatedPenalty\":150.00"));
+        Assertions.assertTrue(payment.body().contains("\"receiptNo\":\"RCP"));
+
+        Assertions.assertEquals(400, client.send(pendingRequest("abc"), HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertEquals(404, client.send(pendingRequest("9999"), HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertEquals(400, client.send(paymentRequest("1001", "5150.00", "BITCOIN"),
+            HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        // A partial payment settles penalty first
+        HttpResponse<String> partial = client.send(paymentRequest("2000", "10.00", "CASH"),
+            HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, partial.statusCode());
+        Assertions.assertTrue(partial.body().contains("\"allocatedPenalty\":10.00"), partial.body());
+        Assertions.assertTrue(partial.body().contains("\"allocatedEmi\":0.00"), partial.body());
+
+        // The first payment settled the account, so a second one has nothing to pay
+        Assertions.assertEquals(404, client.send(pendingRequest("1001"), HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertEquals(400, client.send(paymentRequest("1001", "5150.00", "CASH"),
+            HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    @DisplayName("Should escape control characters echoed in error bodies")
+    public void testErrorBodyEscapesControlCharacters() throws Exception {
+        HttpResponse<String> newline = client.send(pendingRequest("10%0A01"), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(400, newline.statusCode());
+        Assertions.assertEquals("{\"error\":\"Invalid loan account number: 10\\n01\"}", newline.body());
+
+        HttpResponse<String> amount = client.send(paymentRequest("1001", "5%09%01%22", "CASH"),
+            HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(400, amount.statusCode());
+        Assertions.assertEquals("{\"error\":\"Invalid payment amount: 5\\t\\u0001\\\"\"}", amount.body());
+    }
+
+    @Test
+    @DisplayName("Should scale throughput with concurrent clients")
+    public void testThroughputScalesWithClients() throws Exception {
+        // Warm up the server, the JIT and the client connections
+        runClients(16);
+        runClients(16);
+
+        double single = runClients(1);
+        double four = runClients(4);
+        double sixteen = runClients(16);
+        LOG.info("Throughput (req/s): 1 client={}, 4 clients={}, 16 clients={}",
+            Math.round(single), Math.round(four), Math.round(sixteen));
+
+        // Requests mostly wait on the (simulated) database, so throughput must grow with clients
+        Assertions.assertTrue(four > 2.5 * single, "4 clients should be well above 1 client");
+        Assertions.assertTrue(sixteen > 5 * single, "16 clients should be well above 1 client");
+        Assertions.assertEquals(loanDao.savedReceipts.size(),
+            loanDao.savedReceipts.stream().map(r -> r.getReceiptNo()).distinct().count());
+    }
+
+    /**
+     * Run the given number of clients, each sending alternating enquiries and payments
+     *
+     * @return requests per second across all clients
+     */
+    private double runClients(int clients) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int c = 0; c < clients; c++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                        HttpRequest request = i % 2 == 0
+                            ? pendingRequest("1001")
+                            : paymentRequest(String.valueOf(nextPayableAccount.getAndIncrement()), "5150.00", "ONLINE");
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        Assertions.assertEquals(200, response.statusCode(), response.body());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            return clients * REQUESTS_PER_CLIENT * 1_000_000_000.0 / elapsed;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private HttpRequest pendingRequest(String loanAccountNo) {
+        return HttpRequest.newBuilder(URI.create(baseUrl() + "/emi/pending?loanAccountNo=" + loanAccountNo))
+            .GET().build();
+    }
+
+    private HttpRequest paymentRequest(String loanAccountNo, String amount, String mode) {
+        String form = "loanAccountNo=" + loanAccountNo + "&amount=" + amount + "&mode=" + mode;
+        return HttpRequest.newBuilder(URI.create(baseUrl() + "/emi/payments"))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(form)).build();
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + server.getPort();
+    }
+}
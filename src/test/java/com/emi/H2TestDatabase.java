@@ -0,0 +1,50 @@
+package com.emi;
+
+import com.emi.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+/**
+ * Points HibernateUtil at an in-memory H2 database for one test class
+ * Uses the hibernate-h2.cfg.xml profile, which builds the schema from the
+ * db/migration scripts; each test class gets its own named database so
+ * leftovers never leak between classes
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public final class H2TestDatabase {
+
+    private H2TestDatabase() {}
+
+    /**
+     * Start Hibernate and the pool against a fresh H2 database
+     *
+     * @param name database name, unique per test class
+     */
+    public static void start(String name) {
+        HibernateUtil.shutdown();
+        System.setProperty(HibernateUtil.CONFIG_RESOURCE_PROPERTY, "hibernate-h2.cfg.xml");
+        System.setProperty("db.url", "jdbc:h2:mem:" + name + ";MODE=Oracle;DB_CLOSE_DELAY=-1");
+        System.setProperty("pool.register.mbeans", "false");
+        System.setProperty("pool.minimum.idle", "2");
+        HibernateUtil.warmUp();
+    }
+
+    /**
+     * Drop the database and restore the default Hibernate profile
+     */
+    public static void stop() {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.createNativeMutationQuery("DROP ALL OBJECTS").executeUpdate();
+            transaction.commit();
+        } finally {
+            HibernateUtil.shutdown();
+            System.clearProperty(HibernateUtil.CONFIG_RESOURCE_PROPERTY);
+            System.clearProperty("db.url");
+            System.clearProperty("pool.register.mbeans");
+            System.clearProperty("pool.minimum.idle");
+        }
+    }
+}
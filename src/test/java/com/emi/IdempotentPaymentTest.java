@@ -0,0 +1,178 @@
+package com.emi;
+
+import com.emi.dao.LoanDao;
+import com.emi.dao.LoanDaoImpl;
+import com.emi.model.Receivable;
+import com.emi.service.AllocationEngine;
+import com.emi.service.EmiServiceImpl;
+import com.emi.service.IdempotencyIndex;
+import com.emi.service.LoanAccountValidator;
+import com.emi.service.PaymentResult;
+import com.emi.service.SnowflakeReceiptNumberGenerator;
+import com.emi.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Unit tests for idempotent payment submission
+ * Tests replays served from the in-memory index, concurrent duplicates, key
+ * reuse, and replays that only the receipts table's unique key can catch
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class IdempotentPaymentTest {
+
+    private static final BigDecimal FULL_AMOUNT = new BigDecimal("5150.00");
+
+    private StubLoanDao loanDao;
+    private EmiServiceImpl emiService;
+
+    @BeforeAll
+    public static void startDatabase() {
+        H2TestDatabase.start("idempotency");
+    }
+
+    @AfterAll
+    public static void stopDatabase() {
+        H2TestDatabase.stop();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        loanDao = new StubLoanDao();
+        for (int i = 1; i <= 2; i++) {
+            loanDao.addReceivable(new Receivable("100" + i, new BigDecimal("5000.00"),
+                new BigDecimal("150.00"), FULL_AMOUNT));
+        }
+        emiService = service(loanDao, 1);
+    }
+
+    @Test
+    @DisplayName("Should return the original receipt for a replayed request without posting again")
+    public void testReplayReturnsOriginalReceipt() {
+        PaymentResult first = emiService.processPayment("req-1", "1001", FULL_AMOUNT, "CASH");
+        int lookups = loanDao.lookupCount.get();
+
+        PaymentResult replay = emiService.processPayment("req-1", "1001", FULL_AMOUNT, "CASH");
+
+        Assertions.assertFalse(first.isReplayed());
+        Assertions.assertTrue(replay.isReplayed());
+        Assertions.assertEquals(first.getReceiptPayment().getReceiptNo(), replay.getReceiptPayment().getReceiptNo());
+        Assertions.assertEquals(first.getAllocations(), replay.getAllocations());
+        Assertions.assertEquals(lookups, loanDao.lookupCount.get());
+        Assertions.assertEquals(1, loanDao.savedReceipts.size());
+        Assertions.assertEquals("req-1", loanDao.savedReceipts.get(0).getRequestId());
+    }
+
+    @Test
+    @DisplayName("Should reject a request id reused for a different payment")
+    public void testRequestIdReuseRejected() {
+        emiService.processPayment("req-2", "1001", FULL_AMOUNT, "CASH");
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> emiService.processPayment("req-2", "1002", FULL_AMOUNT, "CASH"));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> emiService.processPayment("req-2", "1001", new BigDecimal("6000.00"), "CASH"));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> emiService.processPayment(" ", "1001", FULL_AMOUNT, "CASH"));
+        Assertions.assertEquals(1, loanDao.savedReceipts.size());
+    }
+
+    @Test
+    @DisplayName("Should process a retry afresh when the first submission failed")
+    public void testFailedSubmissionNotRemembered() {
+        loanDao.failingAccount = "1001";
+        Assertions.assertThrows(RuntimeException.class,
+            () -> emiService.processPayment("req-3", "1001", FULL_AMOUNT, "CASH"));
+
+        loanDao.failingAccount = null;
+        PaymentResult retry = emiService.processPayment("req-3", "1001", FULL_AMOUNT, "CASH");
+
+        Assertions.assertFalse(retry.isReplayed());
+        Assertions.assertEquals(1, loanDao.savedReceipts.size());
+    }
+
+    @Test
+    @DisplayName("Should post once when the same request arrives on several threads at once")
+    public void testConcurrentDuplicatesPostOnce() throws Exception {
+        loanDao.latencyMillis = 50;
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<PaymentResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(clients.submit(() -> emiService.processPayment("req-4", "1001", FULL_AMOUNT, "ONLINE")));
+            }
+            String receiptNo = null;
+            for (Future<PaymentResult> future : futures) {
+                String next = future.get().getReceiptPayment().getReceiptNo();
+                Assertions.assertTrue(receiptNo == null || receiptNo.equals(next));
+                receiptNo = next;
+            }
+        } finally {
+            clients.shutdown();
+        }
+        Assertions.assertEquals(1, loanDao.savedReceipts.size());
+    }
+
+    @Test
+    @DisplayName("Should return the original receipt when another instance already posted the request")
+    public void testReplayAcrossInstancesUsesUniqueKey() {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.persist(new Receivable("8001", new BigDecimal("5000.00"), new BigDecimal("150.00"), FULL_AMOUNT));
+            session.persist(new Receivable("8002", new BigDecimal("5000.00"), new BigDecimal("150.00"), FULL_AMOUNT));
+            transaction.commit();
+        }
+        // Separate indexes stand in for two JVMs sharing the database
+        EmiServiceImpl branchA = service(new LoanDaoImpl(), 1);
+        EmiServiceImpl branchB = service(new LoanDaoImpl(), 2);
+
+        PaymentResult original = branchA.processPayment("req-db-1", "8001", FULL_AMOUNT, "CASH");
+        PaymentResult replay = branchB.processPayment("req-db-1", "8001", FULL_AMOUNT, "CASH");
+
+        Assertions.assertTrue(replay.isReplayed());
+        Assertions.assertEquals(original.getReceiptPayment().getReceiptNo(), replay.getReceiptPayment().getReceiptNo());
+        Assertions.assertEquals(0, new BigDecimal("150.00").compareTo(replay.getAllocatedPenalty()));
+
+        // Dues still pending, so only the unique constraint stops the second insert
+        branchA.processPayment("req-db-2", "8002", new BigDecimal("6000.00"), "CASH");
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.createNativeMutationQuery("UPDATE LMS_RECEIVABLEPAYBLE_DTL_POOJA SET emi_amount = 5000.00, principal_amount = 5000.00, "
+                + "penalty = 150.00, total_amount = 5150.00 WHERE loan_account_no = '8002'").executeUpdate();
+            transaction.commit();
+        }
+        PaymentResult constrained = branchB.processPayment("req-db-2", "8002", new BigDecimal("6000.00"), "CASH");
+
+        Assertions.assertTrue(constrained.isReplayed());
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Assertions.assertEquals(1L, session.createQuery(
+                "SELECT COUNT(r) FROM ReceiptPayment r WHERE r.requestId = 'req-db-2'", Long.class).uniqueResult());
+            Assertions.assertEquals(0, session.createQuery(
+                "SELECT r.totalAmount FROM Receivable r WHERE r.loanAccountNo = '8002'", BigDecimal.class)
+                .uniqueResult().compareTo(FULL_AMOUNT));
+        }
+    }
+
+    /**
+     * EmiServiceImpl with a small idempotency index of its own, standing in for one JVM
+     */
+    private static EmiServiceImpl service(LoanDao loanDao, int nodeId) {
+        return new EmiServiceImpl(loanDao, new SnowflakeReceiptNumberGenerator(nodeId), 3, new IdempotencyIndex(100),
+            new AllocationEngine(AllocationEngine.DEFAULT_WATERFALL), LoanAccountValidator.fromConfig());
+    }
+}
@@ -0,0 +1,109 @@
+package com.emi;
+
+import com.emi.dao.InMemoryLoanDao;
+import com.emi.dao.LoanDao;
+import com.emi.dao.LoanDaoImpl;
+import com.emi.model.Allocation;
+import com.emi.model.Receivable;
+import com.emi.service.EmiServiceImpl;
+import com.emi.service.KnownAccountFilter;
+import com.emi.service.PaymentResult;
+import com.emi.service.SnowflakeReceiptNumberGenerator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Load test book tests
+ * Tests that the H2 seed script and InMemoryLoanDao build the same book,
+ * and that a payment is allocated and settled the same way by the in-memory
+ * and the database LoanDao, and that both feed the known account filter
+ * the same loan accounts
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class LoadTestBookTest {
+
+    private static final int ACCOUNTS = 10_000;
+
+    private static final LoanDao database = new LoanDaoImpl();
+    private static final InMemoryLoanDao memory = new InMemoryLoanDao();
+
+    @BeforeAll
+    public static void startDatabase() {
+        System.setProperty("emi.schema.seed_scripts", "db/seed/load_test_accounts.sql");
+        try {
+            H2TestDatabase.start("seed");
+        } finally {
+            System.clearProperty("emi.schema.seed_scripts");
+        }
+        memory.seedLoadTestAccounts(ACCOUNTS);
+    }
+
+    @AfterAll
+    public static void stopDatabase() {
+        H2TestDatabase.stop();
+    }
+
+    @Test
+    @DisplayName("Should seed the same accounts in H2 and in memory")
+    public void testSameBook() {
+        for (String loanAccountNo : List.of("100000", "104999", "109999")) {
+            List<Receivable> stored = database.getPendingReceivables(loanAccountNo);
+            List<Receivable> held = memory.getPendingReceivables(loanAccountNo);
+            Assertions.assertEquals(2, stored.size(), loanAccountNo);
+            Assertions.assertEquals(2, held.size(), loanAccountNo);
+            for (int n = 0; n < 2; n++) {
+                Assertions.assertEquals(stored.get(n).getDueDate(), held.get(n).getDueDate());
+                Assertions.assertEquals(0, stored.get(n).getTotalAmount().compareTo(held.get(n).getTotalAmount()));
+            }
+        }
+        Assertions.assertTrue(database.getPendingReceivables(String.valueOf(100000 + ACCOUNTS)).isEmpty());
+        Assertions.assertTrue(memory.getPendingReceivables(String.valueOf(100000 + ACCOUNTS)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should load the same known accounts from H2 and from memory")
+    public void testSameKnownAccounts() {
+        KnownAccountFilter stored = new KnownAccountFilter(database, ACCOUNTS, 0.01);
+        KnownAccountFilter held = new KnownAccountFilter(memory, ACCOUNTS, 0.01);
+
+        Assertions.assertEquals(2 * ACCOUNTS, stored.rebuild());
+        Assertions.assertEquals(2 * ACCOUNTS, held.rebuild());
+        Assertions.assertEquals(held.getAccountCount(), stored.getAccountCount());
+        // Nothing added since the load
+        Assertions.assertEquals(0, stored.refresh());
+        for (String loanAccountNo : List.of("100000", "104999", "109999")) {
+            Assertions.assertTrue(stored.mightContain(loanAccountNo));
+        }
+    }
+
+    @Test
+    @DisplayName("Should allocate and settle a payment the same way in H2 and in memory")
+    public void testSamePayment() {
+        BigDecimal amount = new BigDecimal("6000.00");
+
+        PaymentResult stored = new EmiServiceImpl(database, new SnowflakeReceiptNumberGenerator(1))
+            .processPayment("100042", amount, "CASH");
+        PaymentResult held = new EmiServiceImpl(memory, new SnowflakeReceiptNumberGenerator(2))
+            .processPayment("100042", amount, "CASH");
+
+        Assertions.assertEquals(stored.getAllocations().size(), held.getAllocations().size());
+        for (int i = 0; i < stored.getAllocations().size(); i++) {
+            Allocation expected = stored.getAllocations().get(i);
+            Allocation actual = held.getAllocations().get(i);
+            Assertions.assertEquals(0, expected.getAllocatedPenalty().compareTo(actual.getAllocatedPenalty()));
+            Assertions.assertEquals(0, expected.getAllocatedInterest().compareTo(actual.getAllocatedInterest()));
+            Assertions.assertEquals(0, expected.getAllocatedPrincipal().compareTo(actual.getAllocatedPrincipal()));
+        }
+        Assertions.assertEquals(0, new BigDecimal("4300.00").compareTo(database.getTotalPendingAmount("100042")));
+        Assertions.assertEquals(0, new BigDecimal("4300.00").compareTo(memory.getTotalPendingAmount("100042")));
+        Assertions.assertEquals(1, memory.getReceiptCount());
+    }
+}
@@ -0,0 +1,120 @@
+package com.emi;
+
+import com.emi.dao.InMemoryLoanDao;
+import com.emi.model.Receivable;
+import com.emi.service.AllocationEngine;
+import com.emi.service.EmiServiceImpl;
+import com.emi.service.IdempotencyIndex;
+import com.emi.service.KnownAccountFilter;
+import com.emi.service.LoanAccountValidator;
+import com.emi.service.SnowflakeReceiptNumberGenerator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Loan account validation tests
+ * Tests the account number format rule, that the known account filter never
+ * rejects a loaded account and rejects nearly all unknown ones, that refresh
+ * picks up new installments and that the filter grows with the loan book
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class LoanAccountValidatorTest {
+
+    @Test
+    @DisplayName("Should accept only digits within the configured length")
+    public void testFormat() {
+        LoanAccountValidator validator = new LoanAccountValidator(4, 10, null);
+
+        Assertions.assertTrue(validator.isValid("1001"));
+        Assertions.assertTrue(validator.isValid("9876543210"));
+        Assertions.assertFalse(validator.isValid("100"));
+        Assertions.assertFalse(validator.isValid("98765432101"));
+        Assertions.assertFalse(validator.isValid(" 1001"));
+        Assertions.assertFalse(validator.isValid("10O1"));
+        Assertions.assertFalse(validator.isValid("１００１"));
+        Assertions.assertFalse(validator.isValid(null));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LoanAccountValidator(0, 10, null));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LoanAccountValidator(5, 4, null));
+    }
+
+    @Test
+    @DisplayName("Should keep every loaded account and reject nearly all unknown ones")
+    public void testKnownAccounts() {
+        InMemoryLoanDao loanDao = new InMemoryLoanDao();
+        loanDao.seedLoadTestAccounts(10_000);
+        KnownAccountFilter filter = new KnownAccountFilter(loanDao, 10_000, 0.01);
+        LoanAccountValidator validator = new LoanAccountValidator(1, 20, filter);
+
+        // Every account is accepted until the filter is loaded
+        Assertions.assertTrue(validator.isValid("999999"));
+        Assertions.assertEquals(20_000, filter.rebuild());
+        Assertions.assertEquals(10_000, filter.getAccountCount(), 100);
+
+        for (int i = 0; i < 10_000; i++) {
+            Assertions.assertTrue(validator.isValid(String.valueOf(100000 + i)));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (validator.isValid(String.valueOf(500000 + i))) {
+                falsePositives++;
+            }
+        }
+        Assertions.assertTrue(falsePositives < 300, "False positives: " + falsePositives);
+    }
+
+    @Test
+    @DisplayName("Should pick up new installments on refresh and grow past the expected size")
+    public void testRefresh() {
+        InMemoryLoanDao loanDao = new InMemoryLoanDao();
+        loanDao.addReceivable(installment("1001"));
+        KnownAccountFilter filter = new KnownAccountFilter(loanDao, 10, 0.01);
+        Assertions.assertEquals(1, filter.refresh());
+        Assertions.assertFalse(filter.mightContain("1002"));
+
+        loanDao.addReceivable(installment("1002"));
+        Assertions.assertEquals(1, filter.refresh());
+        Assertions.assertTrue(filter.mightContain("1002"));
+        Assertions.assertEquals(0, filter.refresh());
+
+        // Past 10 accounts the filter is rebuilt for twice the accounts seen
+        for (int i = 3; i <= 40; i++) {
+            loanDao.addReceivable(installment(String.valueOf(1000 + i)));
+        }
+        filter.refresh();
+        for (int i = 1; i <= 40; i++) {
+            Assertions.assertTrue(filter.mightContain(String.valueOf(1000 + i)));
+        }
+        Assertions.assertEquals(40, filter.getAccountCount(), 2);
+    }
+
+    @Test
+    @DisplayName("Should reject an unknown account before reading its installments")
+    public void testServiceRejectsUnknownAccount() {
+        StubLoanDao loanDao = new StubLoanDao();
+        loanDao.addReceivable(installment("1001"));
+        KnownAccountFilter filter = new KnownAccountFilter(loanDao, 100, 0.001);
+        filter.rebuild();
+        EmiServiceImpl emiService = new EmiServiceImpl(loanDao, new SnowflakeReceiptNumberGenerator(1), 3,
+            new IdempotencyIndex(1000), new AllocationEngine(AllocationEngine.DEFAULT_WATERFALL),
+            new LoanAccountValidator(1, 20, filter));
+
+        IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class,
+            () -> emiService.processPayment("2002", new BigDecimal("100.00"), "CASH"));
+        Assertions.assertEquals("Invalid loan account number: 2002", exception.getMessage());
+        Assertions.assertEquals(0, loanDao.lookupCount.get());
+
+        emiService.processPayment("1001", new BigDecimal("100.00"), "CASH");
+        Assertions.assertEquals(1, loanDao.savedReceipts.size());
+    }
+
+    private static Receivable installment(String loanAccountNo) {
+        return new Receivable(loanAccountNo, LocalDate.of(2026, 1, 5),
+            new BigDecimal("4000.00"), new BigDecimal("1000.00"), new BigDecimal("150.00"));
+    }
+}
@@ -0,0 +1,99 @@
+package com.emi;
+
+import com.emi.dao.LoanDao;
+import com.emi.metrics.LatencyHistogram;
+import com.emi.metrics.MetricsRegistry;
+import com.emi.metrics.MetricsReporter;
+import com.emi.metrics.OperationMetrics;
+import com.emi.metrics.TimingProxy;
+import com.emi.model.Allocation;
+import com.emi.model.ReceiptPayment;
+import com.emi.model.Receivable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Unit tests for operation metrics
+ * Tests histogram quantiles, proxy timing and Prometheus rendering
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class MetricsTest {
+
+    private MetricsRegistry registry;
+    private StubLoanDao delegate;
+    private LoanDao timedLoanDao;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new MetricsRegistry();
+        delegate = new StubLoanDao();
+        delegate.addReceivable(new Receivable("1001", new BigDecimal("5000.00"),
+            new BigDecimal("150.00"), new BigDecimal("5150.00")));
+        timedLoanDao = TimingProxy.wrap(LoanDao.class, delegate, "loanDao", registry);
+    }
+
+    @Test
+    @DisplayName("Should estimate quantiles within the bucket precision")
+    public void testHistogramQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assertions.assertEquals(0, histogram.getValueAtQuantile(0.99));
+
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertWithin(50_000_000L, histogram.getValueAtQuantile(0.5));
+        assertWithin(95_000_000L, histogram.getValueAtQuantile(0.95));
+        assertWithin(99_000_000L, histogram.getValueAtQuantile(0.99));
+    }
+
+    @Test
+    @DisplayName("Should count calls and errors per operation")
+    public void testProxyCountsCallsAndErrors() {
+        timedLoanDao.findReceivableByLoanAccountNo("1001");
+        timedLoanDao.findReceivableByLoanAccountNo("9999");
+
+        delegate.failingAccount = "1001";
+        Assertions.assertThrows(RuntimeException.class, () ->
+            timedLoanDao.savePayment(delegate.installments("1001"),
+                List.of(new Allocation("1001", BigDecimal.ZERO, new BigDecimal("10.00"))),
+                new ReceiptPayment("1001", new BigDecimal("10.00"), "CASH", "RCP1")));
+
+        OperationMetrics find = registry.operation("loanDao.findReceivableByLoanAccountNo");
+        Assertions.assertEquals(2, find.getCount());
+        Assertions.assertEquals(0, find.getErrorCount());
+        Assertions.assertTrue(find.getLatencyNanos(0.99) > 0);
+
+        OperationMetrics save = registry.operation("loanDao.savePayment");
+        Assertions.assertEquals(1, save.getCount());
+        Assertions.assertEquals(1, save.getErrorCount());
+    }
+
+    @Test
+    @DisplayName("Should render operations in Prometheus text format")
+    public void testPrometheusExport() {
+        timedLoanDao.findReceivableByLoanAccountNo("1001");
+
+        String text = new MetricsReporter(registry).toPrometheus();
+
+        Assertions.assertTrue(text.contains("# TYPE emi_operation_duration_seconds summary"));
+        Assertions.assertTrue(text.contains(
+            "emi_operation_duration_seconds_count{operation=\"loanDao.findReceivableByLoanAccountNo\"} 1"));
+        Assertions.assertTrue(text.contains(
+            "emi_operation_duration_seconds{operation=\"loanDao.findReceivableByLoanAccountNo\",quantile=\"0.99\"}"));
+        Assertions.assertTrue(text.contains(
+            "emi_operation_errors_total{operation=\"loanDao.findReceivableByLoanAccountNo\"} 0"));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        Assertions.assertTrue(Math.abs(actual - expected) <= expected / 8,
+            "expected ~" + expected + " but was " + actual);
+    }
+}
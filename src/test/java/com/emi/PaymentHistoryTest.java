@@ -0,0 +1,163 @@
+package com.emi;
+
+import com.emi.dao.AllocationHistoryEntry;
+import com.emi.dao.HistoryCursor;
+import com.emi.dao.HistoryPage;
+import com.emi.dao.InMemoryLoanDao;
+import com.emi.dao.LoanDao;
+import com.emi.dao.LoanDaoImpl;
+import com.emi.dao.ReceiptHistoryEntry;
+import com.emi.model.Allocation;
+import com.emi.model.ReceiptPayment;
+import com.emi.model.Receivable;
+import com.emi.service.EmiService;
+import com.emi.service.EmiServiceImpl;
+import com.emi.service.PaymentResult;
+import com.emi.service.SnowflakeReceiptNumberGenerator;
+import com.emi.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payment history tests against embedded H2 and the in-memory LoanDao
+ * Tests that paging through a loan account's receipts and allocations returns
+ * every entry once, newest first, including entries posted in the same
+ * instant across a page boundary, and that the service bounds page sizes
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class PaymentHistoryTest {
+
+    private static final LocalDateTime FIRST_PAYMENT = LocalDateTime.of(2026, 1, 5, 10, 0);
+
+    @BeforeAll
+    public static void startDatabase() {
+        H2TestDatabase.start("history");
+    }
+
+    @AfterAll
+    public static void stopDatabase() {
+        H2TestDatabase.stop();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.createNativeMutationQuery("DELETE FROM LMS_RECEIPTPAYMENT_DTL_POOJA").executeUpdate();
+            session.createNativeMutationQuery("DELETE FROM LMS_ALLOCATION_DTL_POOJA").executeUpdate();
+            session.createNativeMutationQuery("DELETE FROM LMS_RECEIVABLEPAYBLE_DTL_POOJA").executeUpdate();
+            session.createNativeMutationQuery("DELETE FROM LMS_PENDING_BALANCE_POOJA").executeUpdate();
+            transaction.commit();
+        }
+    }
+
+    @Test
+    @DisplayName("Should page through database history newest first without gaps or repeats")
+    public void testDatabaseHistory() {
+        assertPagesCoverHistory(new LoanDaoImpl());
+    }
+
+    @Test
+    @DisplayName("Should page through in-memory history newest first without gaps or repeats")
+    public void testInMemoryHistory() {
+        assertPagesCoverHistory(new InMemoryLoanDao());
+    }
+
+    @Test
+    @DisplayName("Should list posted payments and bound the page size")
+    public void testServiceHistory() {
+        InMemoryLoanDao loanDao = new InMemoryLoanDao();
+        loanDao.addReceivable(new Receivable("7001", LocalDate.of(2026, 1, 5),
+            new BigDecimal("4000.00"), new BigDecimal("1000.00"), new BigDecimal("150.00")));
+        EmiService emiService = new EmiServiceImpl(loanDao, new SnowflakeReceiptNumberGenerator(1));
+        PaymentResult result = emiService.processPayment("7001", new BigDecimal("5150.00"), "CASH");
+
+        HistoryPage<ReceiptHistoryEntry> receipts = emiService.getReceiptHistory("7001", null, 10);
+        Assertions.assertEquals(1, receipts.getEntries().size());
+        Assertions.assertFalse(receipts.hasNext());
+        Assertions.assertEquals(result.getReceiptPayment().getReceiptNo(), receipts.getEntries().get(0).getReceiptNo());
+        HistoryPage<AllocationHistoryEntry> allocations = emiService.getAllocationHistory("7001", null, 10);
+        Assertions.assertEquals(1, allocations.getEntries().size());
+        Assertions.assertEquals(0, new BigDecimal("4000.00").compareTo(
+            allocations.getEntries().get(0).getAllocatedPrincipal()));
+        Assertions.assertTrue(emiService.getReceiptHistory("7002", null, 10).getEntries().isEmpty());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> emiService.getReceiptHistory("7001", null, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> emiService.getReceiptHistory("7001", null, 101));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> emiService.getAllocationHistory("70A1", null, 10));
+    }
+
+    /**
+     * Post 25 receipts of one allocation each to an account, five at a time in
+     * the same instant, plus one for another account, and page through them
+     */
+    private static void assertPagesCoverHistory(LoanDao loanDao) {
+        for (int i = 0; i < 25; i++) {
+            LocalDateTime paymentDate = FIRST_PAYMENT.plusDays(i / 5);
+            ReceiptPayment receipt = new ReceiptPayment("7001", new BigDecimal(100 + i), "CASH", "RCP-" + i);
+            receipt.setPaymentDate(paymentDate);
+            loanDao.saveReceiptPayment(receipt);
+            Allocation allocation = new Allocation("7001", (long) i, BigDecimal.ZERO, BigDecimal.ZERO,
+                new BigDecimal(100 + i), paymentDate);
+            allocation.setReceiptNo("RCP-" + i);
+            loanDao.saveAllocation(allocation);
+        }
+        ReceiptPayment other = new ReceiptPayment("7002", new BigDecimal("100"), "CASH", "RCP-OTHER");
+        other.setPaymentDate(FIRST_PAYMENT);
+        loanDao.saveReceiptPayment(other);
+
+        List<HistoryCursor> receipts = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        HistoryCursor cursor = null;
+        do {
+            HistoryPage<ReceiptHistoryEntry> page = loanDao.findReceiptHistory("7001", cursor, 10);
+            for (ReceiptHistoryEntry entry : page.getEntries()) {
+                receipts.add(entry.getCursor());
+            }
+            pageSizes.add(page.getEntries().size());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        Assertions.assertEquals(List.of(10, 10, 5), pageSizes);
+        assertNewestFirst(receipts);
+
+        List<HistoryCursor> allocations = new ArrayList<>();
+        cursor = null;
+        do {
+            HistoryPage<AllocationHistoryEntry> page = loanDao.findAllocationHistory("7001", cursor, 7);
+            for (AllocationHistoryEntry entry : page.getEntries()) {
+                allocations.add(entry.getCursor());
+                Assertions.assertEquals("RCP-" + entry.getReceivableId(), entry.getReceiptNo());
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertNewestFirst(allocations);
+
+        // A page that ends exactly at the oldest entry is the last page
+        HistoryPage<ReceiptHistoryEntry> all = loanDao.findReceiptHistory("7001", null, 25);
+        Assertions.assertEquals(25, all.getEntries().size());
+        Assertions.assertFalse(all.hasNext());
+        Assertions.assertEquals(FIRST_PAYMENT, all.getEntries().get(24).getPaymentDate());
+    }
+
+    private static void assertNewestFirst(List<HistoryCursor> cursors) {
+        Assertions.assertEquals(25, cursors.size());
+        for (int i = 1; i < cursors.size(); i++) {
+            Assertions.assertTrue(cursors.get(i - 1).compareTo(cursors.get(i)) < 0,
+                cursors.get(i - 1) + " listed before " + cursors.get(i));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.emi;
+
+import com.emi.dao.JournalFullException;
+import com.emi.dao.PaymentJournal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Payment journal tests
+ * Tests that unreleased records survive a reopen, that released records do
+ * not, that the ring wraps and reuses released space, that a torn record ends
+ * recovery and that a full journal pushes back on appends
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class PaymentJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should recover unreleased records after reopening")
+    public void testRecoverAfterReopen() throws IOException {
+        Path file = directory.resolve("payments.journal");
+        try (PaymentJournal journal = PaymentJournal.open(file, 64 * 1024, true)) {
+            for (int i = 1; i <= 5; i++) {
+                Assertions.assertEquals(i, journal.append(bytes("payment-" + i), 1000));
+            }
+            journal.release(2);
+            Assertions.assertEquals(3, journal.getPendingRecords());
+        }
+
+        try (PaymentJournal journal = PaymentJournal.open(file, 64 * 1024, true)) {
+            List<PaymentJournal.Record> records = journal.getRecoveredRecords();
+            Assertions.assertEquals(3, records.size());
+            Assertions.assertEquals(3, records.get(0).getSequence());
+            Assertions.assertEquals("payment-3", text(records.get(0).getPayload()));
+            Assertions.assertEquals("payment-5", text(records.get(2).getPayload()));
+            // Appends carry on after the recovered records
+            Assertions.assertEquals(6, journal.append(bytes("payment-6"), 1000));
+        }
+    }
+
+    @Test
+    @DisplayName("Should wrap around and reuse released space")
+    public void testWrapAround() throws IOException {
+        Path file = directory.resolve("ring.journal");
+        byte[] payload = new byte[100];
+        long last = 0;
+        try (PaymentJournal journal = PaymentJournal.open(file, 4096, true)) {
+            // Far more than fits at once: every record is released two appends later
+            for (int i = 0; i < 500; i++) {
+                payload[0] = (byte) i;
+                last = journal.append(payload.clone(), 1000);
+                if (last > 2) {
+                    journal.release(last - 2);
+                }
+            }
+            Assertions.assertEquals(2, journal.getPendingRecords());
+            Assertions.assertTrue(journal.getUsedBytes() < journal.getCapacityBytes());
+        }
+
+        try (PaymentJournal journal = PaymentJournal.open(file, 4096, true)) {
+            List<PaymentJournal.Record> records = journal.getRecoveredRecords();
+            Assertions.assertEquals(2, records.size());
+            Assertions.assertEquals(last - 1, records.get(0).getSequence());
+            Assertions.assertEquals((byte) 499, records.get(1).getPayload()[0]);
+        }
+    }
+
+    @Test
+    @DisplayName("Should stop recovery at a torn record")
+    public void testTornRecord() throws IOException {
+        Path file = directory.resolve("torn.journal");
+        try (PaymentJournal journal = PaymentJournal.open(file, 64 * 1024, true)) {
+            journal.append(bytes("complete"), 1000);
+            journal.append(bytes("torn-by-crash"), 1000);
+        }
+        // Damage the payload of the second record: 64-byte header, 16 + 8 bytes of the first record
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(64 + 24 + 16 + 3);
+            raw.write('X');
+        }
+
+        try (PaymentJournal journal = PaymentJournal.open(file, 64 * 1024, true)) {
+            Assertions.assertEquals(1, journal.getRecoveredRecords().size());
+            Assertions.assertEquals("complete", text(journal.getRecoveredRecords().get(0).getPayload()));
+            // The torn record is overwritten by the next append
+            Assertions.assertEquals(2, journal.append(bytes("retried"), 1000));
+        }
+    }
+
+    @Test
+    @DisplayName("Should fail an append that finds no space in time")
+    public void testFullJournalPushesBack() throws IOException {
+        try (PaymentJournal journal = PaymentJournal.open(directory.resolve("full.journal"), 1024, false)) {
+            byte[] payload = new byte[200];
+            int appended = 0;
+            while (journal.getUsedBytes() + 2 * (16 + payload.length) < journal.getCapacityBytes()) {
+                journal.append(payload, 1000);
+                appended++;
+            }
+            journal.append(payload, 1000);
+
+            long start = System.nanoTime();
+            Assertions.assertThrows(JournalFullException.class, () -> journal.append(payload, 100));
+            Assertions.assertTrue(System.nanoTime() - start >= 90_000_000L, "Append did not wait for space");
+
+            // Releasing the oldest records lets a waiting append through, wrapping to the start
+            Thread releaser = new Thread(() -> {
+                sleep(50);
+                journal.release(2);
+            });
+            releaser.start();
+            Assertions.assertEquals(appended + 2, journal.append(payload, 5000));
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
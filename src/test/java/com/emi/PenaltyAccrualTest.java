@@ -0,0 +1,194 @@
+package com.emi;
+
+import com.emi.dao.LoanDao;
+import com.emi.dao.LoanDaoImpl;
+import com.emi.dao.PenaltyAccrualDaoImpl;
+import com.emi.model.Receivable;
+import com.emi.service.PenaltyAccrualReport;
+import com.emi.service.PenaltyAccrualServiceImpl;
+import com.emi.service.PenaltyCalculator;
+import com.emi.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Penalty accrual tests against embedded H2
+ * Tests the daily penalty, that accruing a date twice adds nothing, that a
+ * failed partition resumes from its checkpoint without accruing any
+ * installment twice, and that partitions run in parallel cover every
+ * overdue installment exactly once
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class PenaltyAccrualTest {
+
+    // 36.5% a year is 0.1% a day: 5.00 a day on 5000.00 of interest and principal
+    private static final BigDecimal RATE = new BigDecimal("36.5");
+    private static final LocalDate DUE_DATE = LocalDate.of(2026, 1, 5);
+    private static final LocalDate BUSINESS_DATE = LocalDate.of(2026, 1, 15);
+
+    private LoanDao loanDao;
+
+    @BeforeAll
+    public static void startDatabase() {
+        H2TestDatabase.start("penalties");
+    }
+
+    @AfterAll
+    public static void stopDatabase() {
+        H2TestDatabase.stop();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.createNativeMutationQuery("DELETE FROM LMS_PENALTY_ACCRUAL_POOJA").executeUpdate();
+            session.createNativeMutationQuery("DELETE FROM LMS_RECEIVABLEPAYBLE_DTL_POOJA").executeUpdate();
+            session.createNativeMutationQuery("DELETE FROM LMS_PENDING_BALANCE_POOJA").executeUpdate();
+            transaction.commit();
+        }
+        loanDao = new LoanDaoImpl();
+    }
+
+    @Test
+    @DisplayName("Should accrue the daily penalty once per business date")
+    public void testAccrueOncePerDate() {
+        loanDao.saveReceivables(List.of(installment("6001", DUE_DATE), installment("6001", LocalDate.of(2026, 2, 5)),
+            installment("6002", LocalDate.of(2026, 1, 10))));
+        PenaltyAccrualServiceImpl service = service(new PenaltyCalculator(RATE, 0), 2, 4, 10);
+
+        PenaltyAccrualReport report = service.accrue(BUSINESS_DATE);
+        Assertions.assertEquals(2, report.getInstallmentsAccrued());
+        Assertions.assertEquals(0, new BigDecimal("75.00").compareTo(report.getPenaltyAccrued()));
+        Assertions.assertEquals(0, report.getFailedPartitions());
+        Assertions.assertEquals(0, report.getResumedPartitions());
+
+        Receivable overdue = loanDao.getPendingReceivables("6001").get(0);
+        Assertions.assertEquals(0, new BigDecimal("200.00").compareTo(overdue.getPenalty()));
+        Assertions.assertEquals(0, new BigDecimal("5200.00").compareTo(overdue.getTotalAmount()));
+        Assertions.assertEquals(BUSINESS_DATE, overdue.getPenaltyAccruedTo());
+        Receivable notDue = loanDao.getPendingReceivables("6001").get(1);
+        Assertions.assertEquals(0, new BigDecimal("150.00").compareTo(notDue.getPenalty()));
+        Assertions.assertNull(notDue.getPenaltyAccruedTo());
+        Assertions.assertEquals(0, new BigDecimal("10350.00").compareTo(loanDao.getTotalPendingAmount("6001")));
+        Assertions.assertTrue(loanDao.verifyPendingBalances().isEmpty());
+
+        // The same date again finds its partitions done
+        PenaltyAccrualReport again = service.accrue(BUSINESS_DATE);
+        Assertions.assertEquals(again.getPartitions(), again.getResumedPartitions());
+        Assertions.assertEquals(0, new BigDecimal("75.00").compareTo(again.getPenaltyAccrued()));
+        Assertions.assertEquals(0, new BigDecimal("10350.00").compareTo(loanDao.getTotalPendingAmount("6001")));
+
+        // The next date accrues one more day
+        PenaltyAccrualReport nextDay = service.accrue(BUSINESS_DATE.plusDays(1));
+        Assertions.assertEquals(0, new BigDecimal("10.00").compareTo(nextDay.getPenaltyAccrued()));
+        Assertions.assertEquals(0, new BigDecimal("10355.00").compareTo(loanDao.getTotalPendingAmount("6001")));
+        Assertions.assertTrue(loanDao.verifyPendingBalances().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should resume a failed partition from its checkpoint without accruing twice")
+    public void testResumeFailedPartition() {
+        List<Receivable> installments = new ArrayList<>();
+        for (int account = 7001; account <= 7006; account++) {
+            installments.add(installment(String.valueOf(account), DUE_DATE));
+        }
+        loanDao.saveReceivables(installments);
+
+        boolean[] failing = {true};
+        PenaltyCalculator calculator = new PenaltyCalculator(RATE, 0) {
+            @Override
+            public BigDecimal accrual(Receivable installment, LocalDate businessDate) {
+                if (failing[0] && installment.getLoanAccountNo().equals("7005")) {
+                    throw new IllegalStateException("Calculation failed for 7005");
+                }
+                return super.accrual(installment, businessDate);
+            }
+        };
+        PenaltyAccrualServiceImpl service = service(calculator, 2, 2, 1);
+
+        PenaltyAccrualReport failed = service.accrue(BUSINESS_DATE);
+        Assertions.assertEquals(2, failed.getPartitions());
+        Assertions.assertEquals(1, failed.getCompletedPartitions());
+        Assertions.assertEquals(1, failed.getFailedPartitions());
+        Assertions.assertEquals(1, failed.getFailures().get(0).getPartitionNo());
+        Assertions.assertEquals("7004", failed.getFailures().get(0).getCheckpointAccountNo());
+        Assertions.assertEquals("Calculation failed for 7005", failed.getFailures().get(0).getReason());
+        Assertions.assertEquals(0, new BigDecimal("5150.00").compareTo(loanDao.getTotalPendingAmount("7005")));
+
+        failing[0] = false;
+        PenaltyAccrualReport resumed = service.accrue(BUSINESS_DATE);
+        Assertions.assertEquals(1, resumed.getResumedPartitions());
+        Assertions.assertEquals(2, resumed.getCompletedPartitions());
+        Assertions.assertEquals(0, resumed.getFailedPartitions());
+        Assertions.assertEquals(6, resumed.getInstallmentsAccrued());
+        Assertions.assertEquals(0, new BigDecimal("300.00").compareTo(resumed.getPenaltyAccrued()));
+        for (int account = 7001; account <= 7006; account++) {
+            Assertions.assertEquals(0, new BigDecimal("5200.00").compareTo(
+                loanDao.getTotalPendingAmount(String.valueOf(account))), "account " + account);
+        }
+        Assertions.assertTrue(loanDao.verifyPendingBalances().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should accrue every overdue installment exactly once across parallel partitions")
+    public void testParallelPartitions() {
+        List<Receivable> installments = new ArrayList<>();
+        for (int account = 10000; account < 10200; account++) {
+            installments.add(installment(String.valueOf(account), DUE_DATE));
+            installments.add(installment(String.valueOf(account), DUE_DATE.plusDays(5)));
+        }
+        loanDao.saveReceivables(installments);
+
+        // Batches of 7 split accounts' installments across transactions
+        PenaltyAccrualReport report = service(new PenaltyCalculator(RATE, 0), 4, 8, 7).accrue(BUSINESS_DATE);
+        Assertions.assertEquals(8, report.getPartitions());
+        Assertions.assertEquals(8, report.getCompletedPartitions());
+        Assertions.assertEquals(400, report.getInstallmentsAccrued());
+        Assertions.assertEquals(0, new BigDecimal("15000.00").compareTo(report.getPenaltyAccrued()));
+        for (int account = 10000; account < 10200; account++) {
+            List<Receivable> accrued = loanDao.getPendingReceivables(String.valueOf(account));
+            Assertions.assertEquals(0, new BigDecimal("200.00").compareTo(accrued.get(0).getPenalty()));
+            Assertions.assertEquals(0, new BigDecimal("175.00").compareTo(accrued.get(1).getPenalty()));
+        }
+        Assertions.assertTrue(loanDao.verifyPendingBalances().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should start accruing after the grace days and catch up missed dates")
+    public void testCalculator() {
+        PenaltyCalculator calculator = new PenaltyCalculator(RATE, 3);
+        Receivable installment = installment("6001", DUE_DATE);
+        Assertions.assertEquals(0, calculator.accrual(installment, DUE_DATE.plusDays(3)).signum());
+        Assertions.assertEquals(0, new BigDecimal("35.00").compareTo(calculator.accrual(installment, BUSINESS_DATE)));
+
+        installment.setPenaltyAccruedTo(LocalDate.of(2026, 1, 12));
+        Assertions.assertEquals(0, new BigDecimal("15.00").compareTo(calculator.accrual(installment, BUSINESS_DATE)));
+        Assertions.assertEquals(0, calculator.accrual(installment, LocalDate.of(2026, 1, 12)).signum());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new PenaltyCalculator(RATE, -1));
+    }
+
+    private static PenaltyAccrualServiceImpl service(PenaltyCalculator calculator, int parallelism,
+                                                     int partitions, int batchSize) {
+        return new PenaltyAccrualServiceImpl(new PenaltyAccrualDaoImpl(), calculator, parallelism, partitions,
+            batchSize);
+    }
+
+    private static Receivable installment(String loanAccountNo, LocalDate dueDate) {
+        return new Receivable(loanAccountNo, dueDate,
+            new BigDecimal("4000.00"), new BigDecimal("1000.00"), new BigDecimal("150.00"));
+    }
+}
@@ -0,0 +1,141 @@
+package com.emi;
+
+import com.emi.dao.InMemoryLoanDao;
+import com.emi.dao.LoanDao;
+import com.emi.dao.LoanDaoImpl;
+import com.emi.dao.PendingBalanceMismatch;
+import com.emi.model.Receivable;
+import com.emi.service.BulkPaymentServiceImpl;
+import com.emi.service.EmiServiceImpl;
+import com.emi.service.SnowflakeReceiptNumberGenerator;
+import com.emi.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Pending balance tests against embedded H2 and the in-memory LoanDao
+ * Tests that the recorded balance follows new installments, single and bulk
+ * payments, that it is what outstanding amounts are read from, and that
+ * verify finds and rebuild repairs balances of receivables changed behind
+ * the application's back
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class PendingBalanceTest {
+
+    private LoanDao loanDao;
+
+    @BeforeAll
+    public static void startDatabase() {
+        H2TestDatabase.start("balance");
+    }
+
+    @AfterAll
+    public static void stopDatabase() {
+        H2TestDatabase.stop();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.createNativeMutationQuery("DELETE FROM LMS_RECEIPTPAYMENT_DTL_POOJA").executeUpdate();
+            session.createNativeMutationQuery("DELETE FROM LMS_ALLOCATION_DTL_POOJA").executeUpdate();
+            session.createNativeMutationQuery("DELETE FROM LMS_RECEIVABLEPAYBLE_DTL_POOJA").executeUpdate();
+            session.createNativeMutationQuery("DELETE FROM LMS_PENDING_BALANCE_POOJA").executeUpdate();
+            transaction.commit();
+        }
+        loanDao = new LoanDaoImpl();
+    }
+
+    @Test
+    @DisplayName("Should keep the recorded balance in step with new installments and payments")
+    public void testBalanceFollowsPayments() throws Exception {
+        assertBalanceFollowsPayments(loanDao);
+        Assertions.assertEquals(0, new BigDecimal("4300.00").compareTo(recordedBalance("8001")));
+    }
+
+    @Test
+    @DisplayName("Should keep the in-memory balance in step with new installments and payments")
+    public void testInMemoryBalanceFollowsPayments() throws Exception {
+        assertBalanceFollowsPayments(new InMemoryLoanDao());
+    }
+
+    @Test
+    @DisplayName("Should find and rebuild balances of receivables changed outside the application")
+    public void testVerifyAndRebuild() {
+        loanDao.saveReceivables(List.of(installment("8001", 1), installment("8002", 1)));
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.persist(installment("8001", 2));
+            session.persist(installment("8003", 1));
+            session.createNativeMutationQuery("INSERT INTO LMS_PENDING_BALANCE_POOJA (loan_account_no, total_pending) "
+                + "VALUES ('8004', 100.00)").executeUpdate();
+            transaction.commit();
+        }
+
+        // 8001 still reads its recorded balance; 8003 has none and is summed instead
+        Assertions.assertEquals(0, new BigDecimal("5150.00").compareTo(loanDao.getTotalPendingAmount("8001")));
+        Assertions.assertEquals(0, new BigDecimal("5150.00").compareTo(loanDao.getTotalPendingAmount("8003")));
+        Assertions.assertEquals(0, new BigDecimal("5150.00").compareTo(
+            loanDao.getTotalPendingAmounts(List.of("8001", "8003", "9999")).get("8003")));
+
+        List<PendingBalanceMismatch> mismatches = loanDao.verifyPendingBalances();
+        Assertions.assertEquals(3, mismatches.size());
+        Assertions.assertEquals("8001", mismatches.get(0).getLoanAccountNo());
+        Assertions.assertEquals(0, new BigDecimal("5150.00").compareTo(mismatches.get(0).getRecordedAmount()));
+        Assertions.assertEquals(0, new BigDecimal("10300.00").compareTo(mismatches.get(0).getActualAmount()));
+        Assertions.assertEquals("8003", mismatches.get(1).getLoanAccountNo());
+        Assertions.assertNull(mismatches.get(1).getRecordedAmount());
+        Assertions.assertEquals("8004", mismatches.get(2).getLoanAccountNo());
+        Assertions.assertEquals(0, mismatches.get(2).getActualAmount().signum());
+
+        Assertions.assertEquals(3, loanDao.rebuildPendingBalances(List.of("8001", "8003", "8004", "9999")));
+        Assertions.assertTrue(loanDao.verifyPendingBalances().isEmpty());
+        Assertions.assertEquals(0, new BigDecimal("10300.00").compareTo(recordedBalance("8001")));
+        Assertions.assertEquals(0, new BigDecimal("5150.00").compareTo(recordedBalance("8003")));
+        Assertions.assertEquals(0, recordedBalance("8004").signum());
+    }
+
+    private static void assertBalanceFollowsPayments(LoanDao loanDao) throws Exception {
+        loanDao.saveReceivables(List.of(installment("8001", 1), installment("8001", 2), installment("8002", 1)));
+        Assertions.assertEquals(0, new BigDecimal("10300.00").compareTo(loanDao.getTotalPendingAmount("8001")));
+
+        EmiServiceImpl emiService = new EmiServiceImpl(loanDao, new SnowflakeReceiptNumberGenerator(1));
+        emiService.processPayment("8001", new BigDecimal("6000.00"), "CASH");
+        Assertions.assertEquals(0, new BigDecimal("4300.00").compareTo(loanDao.getTotalPendingAmount("8001")));
+
+        new BulkPaymentServiceImpl(emiService, loanDao, 10).process(new StringReader("8002,5000.00,NACH\n"));
+        Assertions.assertEquals(0, new BigDecimal("150.00").compareTo(loanDao.getTotalPendingAmount("8002")));
+        Assertions.assertEquals(0, loanDao.getTotalPendingAmount("9999").signum());
+
+        Assertions.assertTrue(loanDao.verifyPendingBalances().isEmpty());
+        Assertions.assertEquals(0, loanDao.rebuildPendingBalances(List.of("9999")));
+    }
+
+    private static BigDecimal recordedBalance(String loanAccountNo) {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            return session.createNativeQuery("SELECT total_pending FROM LMS_PENDING_BALANCE_POOJA "
+                + "WHERE loan_account_no = :loanAccountNo", BigDecimal.class)
+                .setParameter("loanAccountNo", loanAccountNo)
+                .uniqueResult();
+        }
+    }
+
+    private static Receivable installment(String loanAccountNo, int month) {
+        return new Receivable(loanAccountNo, LocalDate.of(2026, month, 5),
+            new BigDecimal("4000.00"), new BigDecimal("1000.00"), new BigDecimal("150.00"));
+    }
+}
@@ -0,0 +1,286 @@
+package com.emi;
+
+import com.emi.dao.DuplicateReceiptException;
+import com.emi.dao.HistoryCursor;
+import com.emi.dao.LoanDao;
+import com.emi.dao.LoanDaoImpl;
+import com.emi.dao.PenaltyAccrualDao;
+import com.emi.dao.PenaltyAccrualDaoImpl;
+import com.emi.model.Allocation;
+import com.emi.model.PenaltyAccrualPartition;
+import com.emi.model.ReceiptPayment;
+import com.emi.model.Receivable;
+import com.emi.service.BulkPaymentServiceImpl;
+import com.emi.service.EmiServiceImpl;
+import com.emi.service.PaymentResult;
+import com.emi.service.SnowflakeReceiptNumberGenerator;
+import com.emi.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Query plan regression tests against embedded H2
+ * Runs every LoanDaoImpl operation against the load test book, collects the
+ * statements it ran from H2's query statistics and checks H2's plan for each
+ * statement: lookups by
+ * account, id, receipt number or request id must use an index. Only the
+ * whole-book reads (export stream, balance verification) may scan, and only
+ * as often as they are meant to.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class QueryPlanTest {
+
+    // A table access in an H2 plan: /* PUBLIC.TABLE.tableScan */, or /* PUBLIC.INDEX: condition */;
+    // an index named without a condition is read end to end
+    private static final Pattern TABLE_ACCESS = Pattern.compile("/\\* PUBLIC\\.(\\w+)(\\.tableScan)?(:)?");
+
+    private static final Pattern EXPLAINABLE = Pattern.compile("\\s*(select|insert|update|delete|merge)\\b",
+        Pattern.CASE_INSENSITIVE);
+
+    private final LoanDao loanDao = new LoanDaoImpl();
+
+    @BeforeAll
+    public static void startDatabase() {
+        System.setProperty("emi.schema.seed_scripts", "db/seed/load_test_accounts.sql");
+        try {
+            H2TestDatabase.start("plans");
+        } finally {
+            System.clearProperty("emi.schema.seed_scripts");
+        }
+        // Payment history of the same size as the book, so the planner sees realistic row counts
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.createNativeMutationQuery("INSERT INTO LMS_RECEIPTPAYMENT_DTL_POOJA (id, loan_account_no, "
+                + "paid_amount, payment_mode, receipt_no, payment_date, request_id) "
+                + "SELECT 100000000 + X, CAST(100000 + MOD(X, 10000) AS VARCHAR), 5150.00, 'CASH', 'RCP-H' || X, "
+                + "DATEADD('DAY', X / 10000, TIMESTAMP '2025-01-05 10:00:00'), 'REQ-H' || X "
+                + "FROM SYSTEM_RANGE(0, 19999)").executeUpdate();
+            session.createNativeMutationQuery("INSERT INTO LMS_ALLOCATION_DTL_POOJA (id, loan_account_no, "
+                + "receivable_id, allocated_penalty, allocated_emi, allocated_interest, allocated_principal, "
+                + "allocation_date, receipt_no, request_id) "
+                + "SELECT 100000000 + X, CAST(100000 + MOD(X, 10000) AS VARCHAR), X + 1, 150.00, 5000.00, 1000.00, "
+                + "4000.00, DATEADD('DAY', X / 10000, TIMESTAMP '2025-01-05 10:00:00'), 'RCP-H' || X, 'REQ-H' || X "
+                + "FROM SYSTEM_RANGE(0, 19999)").executeUpdate();
+            session.createNativeMutationQuery("ANALYZE").executeUpdate();
+            transaction.commit();
+        }
+    }
+
+    @AfterAll
+    public static void stopDatabase() {
+        H2TestDatabase.stop();
+    }
+
+    @Test
+    @DisplayName("Should read installments and pending totals through indexes")
+    public void testReadsUseIndexes() {
+        assertIndexed("getPendingReceivables", () -> loanDao.getPendingReceivables("100010"));
+        assertIndexed("findReceivableByLoanAccountNo", () -> loanDao.findReceivableByLoanAccountNo("100011"));
+        assertIndexed("findReceivablesByLoanAccountNos",
+            () -> loanDao.findReceivablesByLoanAccountNos(List.of("100012", "100013", "100014")));
+        assertIndexed("streamLoanAccountNos", () -> loanDao.streamLoanAccountNos(19990, 100, loanAccountNo -> { }));
+        assertIndexed("getTotalPendingAmount", () -> loanDao.getTotalPendingAmount("100015"));
+        // An account without a balance row is summed from its receivables
+        assertIndexed("getTotalPendingAmount (no balance row)", () -> loanDao.getTotalPendingAmount("999999"));
+        assertIndexed("getTotalPendingAmounts",
+            () -> loanDao.getTotalPendingAmounts(List.of("100016", "100017", "999999")));
+        assertIndexed("findReceiptPaymentByRequestId", () -> loanDao.findReceiptPaymentByRequestId("REQ-H7"));
+        assertIndexed("findAllocationsByRequestId", () -> loanDao.findAllocationsByRequestId("REQ-H7"));
+    }
+
+    @Test
+    @DisplayName("Should settle payments and save installments through indexes")
+    public void testWritesUseIndexes() throws IOException {
+        EmiServiceImpl emiService = new EmiServiceImpl(loanDao, new SnowflakeReceiptNumberGenerator(1));
+        PaymentResult[] result = new PaymentResult[1];
+        assertIndexed("savePayment", () -> result[0] = emiService.processPayment("REQ-PLAN-1", "100020",
+            new BigDecimal("5150.00"), "CASH"));
+        assertIndexed("savePayments", () -> {
+            try {
+                new BulkPaymentServiceImpl(emiService, loanDao, 10).process(new StringReader("100021,5150.00,NACH\n"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        // Replaying a posted receipt finds its installment settled and looks the receipt number up
+        Allocation settled = result[0].getAllocations().get(0);
+        assertIndexed("savePayments (duplicate receipt)", () -> Assertions.assertThrows(
+            DuplicateReceiptException.class, () -> loanDao.savePayments(
+                List.of(new Allocation(settled.getLoanAccountNo(), settled.getReceivableId(),
+                    settled.getAllocatedPenalty(), settled.getAllocatedInterest(), settled.getAllocatedPrincipal(),
+                    LocalDateTime.now())),
+                List.of(new ReceiptPayment(settled.getLoanAccountNo(), new BigDecimal("5150.00"), "CASH",
+                    result[0].getReceiptPayment().getReceiptNo())),
+                10)));
+
+        assertIndexed("saveReceivables", () -> loanDao.saveReceivables(List.of(
+            installment("100022"), installment("999998"))));
+        assertIndexed("rebuildPendingBalances", () -> loanDao.rebuildPendingBalances(List.of("100023", "999997")));
+    }
+
+    @Test
+    @DisplayName("Should read history pages in index order, without sorting the account's history")
+    public void testHistoryPages() {
+        HistoryCursor cursor = new HistoryCursor(LocalDateTime.of(2025, 1, 6, 10, 0), 100010005L);
+        assertIndexOrdered("findReceiptHistory", () -> loanDao.findReceiptHistory("100005", null, 10));
+        assertIndexOrdered("findReceiptHistory (next page)", () -> loanDao.findReceiptHistory("100005", cursor, 10));
+        assertIndexOrdered("findAllocationHistory", () -> loanDao.findAllocationHistory("100005", null, 10));
+        assertIndexOrdered("findAllocationHistory (next page)",
+            () -> loanDao.findAllocationHistory("100005", cursor, 10));
+    }
+
+    @Test
+    @DisplayName("Should accrue a partition's penalties through indexes")
+    public void testPenaltyAccrual() {
+        PenaltyAccrualDao accrualDao = new PenaltyAccrualDaoImpl();
+        List<PenaltyAccrualPartition> partitions = new ArrayList<>();
+        // Splitting the book counts its overdue accounts and then reads them in the pending index's order
+        Assertions.assertEquals(2,
+            fullScans(() -> partitions.addAll(accrualDao.startRun(LocalDate.of(2026, 6, 1), 1000))).size());
+        assertIndexed("accruePartition", () -> accrualDao.accruePartition(partitions.get(3), 10,
+            installment -> new BigDecimal("1.00")));
+    }
+
+    @Test
+    @DisplayName("Should scan only for whole-book reads, once per table")
+    public void testWholeBookReads() {
+        // One pass over the pending installments, in account order from the pending index
+        Assertions.assertEquals(1, fullScans(() -> loanDao.streamPendingReceivables(1000, receivable -> { })).size());
+        // One pass over the receivables joined to balance rows by key, and one over the
+        // balance rows against the accounts that have receivables
+        Assertions.assertEquals(3, fullScans(loanDao::verifyPendingBalances).size());
+    }
+
+    /**
+     * Run an operation and fail with the plan of any statement that reads a whole table or index
+     */
+    private static void assertIndexed(String operation, Runnable call) {
+        List<String> scans = fullScans(call);
+        Assertions.assertTrue(scans.isEmpty(), operation + " scans:\n" + String.join("\n", scans));
+    }
+
+    /**
+     * Run a query and fail unless it reads through an index, in the index's order
+     */
+    private static void assertIndexOrdered(String operation, Runnable call) {
+        List<String> plans = plans(call);
+        for (String plan : plans) {
+            Assertions.assertTrue(plan.contains("/* index sorted */"), operation + " sorts:\n" + plan);
+        }
+        assertIndexed(operation, call);
+    }
+
+    /**
+     * Run an operation and list the full table or index reads in its plans
+     *
+     * @return the plan of each full table or index read, once per read
+     */
+    private static List<String> fullScans(Runnable call) {
+        List<String> scans = new ArrayList<>();
+        for (String plan : plans(call)) {
+            Matcher access = TABLE_ACCESS.matcher(plan);
+            while (access.find()) {
+                if (access.group(2) != null || access.group(3) == null) {
+                    scans.add(access.group(1) + " in " + plan);
+                }
+            }
+        }
+        return scans;
+    }
+
+    /**
+     * Run an operation and explain each distinct statement it ran
+     *
+     * @return the plan of each statement
+     */
+    private static List<String> plans(Runnable call) {
+        // Switching query statistics off and on clears them; they cover every connection
+        execute("SET QUERY_STATISTICS FALSE");
+        execute("SET QUERY_STATISTICS TRUE");
+        call.run();
+        List<String> statements = new ArrayList<>();
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement();
+                     ResultSet rows = statement.executeQuery(
+                         "SELECT SQL_STATEMENT FROM INFORMATION_SCHEMA.QUERY_STATISTICS")) {
+                    while (rows.next()) {
+                        // Transaction control and the statistics query itself have no plan
+                        String sql = rows.getString(1);
+                        if (EXPLAINABLE.matcher(sql).lookingAt() && !sql.contains("INFORMATION_SCHEMA")) {
+                            statements.add(sql);
+                        }
+                    }
+                }
+            });
+        }
+        execute("SET QUERY_STATISTICS FALSE");
+        Assertions.assertFalse(statements.isEmpty(), "No SQL captured");
+
+        List<String> plans = new ArrayList<>();
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            session.doWork(connection -> {
+                for (String sql : new LinkedHashSet<>(statements)) {
+                    plans.add(explain(connection, sql));
+                }
+            });
+        }
+        return plans;
+    }
+
+    private static void execute(String sql) {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(sql);
+                }
+            });
+        }
+    }
+
+    private static String explain(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+            // The plan depends on which columns are compared, not on the values
+            for (int i = 1; i <= explain.getParameterMetaData().getParameterCount(); i++) {
+                explain.setObject(i, null);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rows = explain.executeQuery()) {
+                while (rows.next()) {
+                    plan.append(rows.getString(1)).append('\n');
+                }
+            }
+            return plan.toString();
+        }
+    }
+
+    private static Receivable installment(String loanAccountNo) {
+        return new Receivable(loanAccountNo, LocalDate.of(2026, 3, 5),
+            new BigDecimal("4000.00"), new BigDecimal("1000.00"), new BigDecimal("150.00"));
+    }
+}
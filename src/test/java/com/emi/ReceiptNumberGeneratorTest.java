@@ -0,0 +1,117 @@
+package com.emi;
+
+import com.emi.service.SnowflakeReceiptNumberGenerator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for SnowflakeReceiptNumberGenerator
+ * Tests uniqueness under concurrency, clock regressions and multiple nodes
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class ReceiptNumberGeneratorTest {
+
+    @Test
+    @DisplayName("Should generate millions of unique ids across threads")
+    public void testConcurrentUniqueness() throws Exception {
+        final int threads = 8;
+        final int perThread = 500_000;
+        SnowflakeReceiptNumberGenerator generator = new SnowflakeReceiptNumberGenerator(7);
+        long[][] results = new long[threads][perThread];
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final long[] ids = results[t];
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    ids[i] = generator.nextId();
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long[] all = new long[threads * perThread];
+        for (int t = 0; t < threads; t++) {
+            // Ids seen by one thread must be strictly increasing
+            for (int i = 1; i < perThread; i++) {
+                Assertions.assertTrue(results[t][i] > results[t][i - 1]);
+            }
+            System.arraycopy(results[t], 0, all, t * perThread, perThread);
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            Assertions.assertNotEquals(all[i - 1], all[i], "Duplicate id generated");
+        }
+    }
+
+    @Test
+    @DisplayName("Should stay unique when the clock stands still or moves backwards")
+    public void testClockRegression() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        SnowflakeReceiptNumberGenerator generator = new SnowflakeReceiptNumberGenerator(1, clock::get);
+
+        Set<String> receipts = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            Assertions.assertTrue(receipts.add(generator.nextReceiptNumber()));
+        }
+        clock.addAndGet(-60_000);
+        for (int i = 0; i < 10_000; i++) {
+            Assertions.assertTrue(receipts.add(generator.nextReceiptNumber()));
+        }
+    }
+
+    @Test
+    @DisplayName("Should never overlap between nodes sharing a clock")
+    public void testDistinctNodes() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        SnowflakeReceiptNumberGenerator node1 = new SnowflakeReceiptNumberGenerator(1, clock::get);
+        SnowflakeReceiptNumberGenerator node2 = new SnowflakeReceiptNumberGenerator(2, clock::get);
+
+        Set<String> receipts = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            Assertions.assertTrue(receipts.add(node1.nextReceiptNumber()));
+            Assertions.assertTrue(receipts.add(node2.nextReceiptNumber()));
+        }
+    }
+
+    @Test
+    @DisplayName("Should format receipt numbers with fixed width")
+    public void testReceiptNumberFormat() {
+        SnowflakeReceiptNumberGenerator generator = new SnowflakeReceiptNumberGenerator(SnowflakeReceiptNumberGenerator.MAX_NODE_ID);
+        String receiptNo = generator.nextReceiptNumber();
+
+        Assertions.assertTrue(receiptNo.matches("RCP\\d{19}"));
+        long id = Long.parseLong(receiptNo.substring(3));
+        Assertions.assertEquals(SnowflakeReceiptNumberGenerator.MAX_NODE_ID, (id >>> 12) & 0x3FF);
+    }
+
+    @Test
+    @DisplayName("Should reject node ids outside the 10-bit range")
+    public void testInvalidNodeId() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SnowflakeReceiptNumberGenerator(-1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SnowflakeReceiptNumberGenerator(1024));
+    }
+}
@@ -0,0 +1,213 @@
+package com.emi;
+
+import com.emi.dao.LoanDaoImpl;
+import com.emi.model.Receivable;
+import com.emi.service.ExportFormat;
+import com.emi.service.ReceivableExportServiceImpl;
+import com.emi.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.function.Consumer;
+
+/**
+ * Pending receivable export tests
+ * Tests the cursor-based export against embedded H2 in both layouts, that
+ * write failures surface as IOException, and that scrolling a large
+ * generated book through LoanDaoImpl keeps the heap flat
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class ReceivableExportTest {
+
+    private static final int ROWS = 20_000;
+    private static final int ACCOUNTS = 4_000;
+
+    @BeforeAll
+    public static void startDatabase() {
+        H2TestDatabase.start("export");
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            // Five monthly installments per account; every seventh row is already settled
+            session.createNativeMutationQuery(
+                "INSERT INTO LMS_RECEIVABLEPAYBLE_DTL_POOJA (id, loan_account_no, due_date, principal_amount, "
+                    + "interest_amount, emi_amount, penalty, total_amount, created_date, version) "
+                    + "SELECT X + 1, 'EXP' || LPAD(CAST(MOD(X, " + ACCOUNTS + ") AS VARCHAR), 5, '0'), "
+                    + "DATEADD('MONTH', FLOOR(X / " + ACCOUNTS + "), DATE '2026-01-05'), "
+                    + "CASE WHEN MOD(X, 7) = 0 THEN 0 ELSE 4000 END, CASE WHEN MOD(X, 7) = 0 THEN 0 ELSE 1000 END, "
+                    + "CASE WHEN MOD(X, 7) = 0 THEN 0 ELSE 5000 END, CASE WHEN MOD(X, 7) = 0 THEN 0 ELSE 150 END, "
+                    + "CASE WHEN MOD(X, 7) = 0 THEN 0 ELSE 5150 END, CURRENT_TIMESTAMP, 0 "
+                    + "FROM SYSTEM_RANGE(0, " + (ROWS - 1) + ")")
+                .executeUpdate();
+            transaction.commit();
+        }
+    }
+
+    @AfterAll
+    public static void stopDatabase() {
+        H2TestDatabase.stop();
+    }
+
+    @Test
+    @DisplayName("Should export pending installments as CSV ordered by account and due date")
+    public void testCsvExport() throws IOException {
+        StringWriter out = new StringWriter();
+
+        long rows = new ReceivableExportServiceImpl(new LoanDaoImpl(), 100).export(out, ExportFormat.CSV);
+
+        long pending = ROWS - (ROWS + 6) / 7;
+        String[] lines = out.toString().split("\n");
+        Assertions.assertEquals(pending, rows);
+        Assertions.assertEquals(pending + 1, lines.length);
+        Assertions.assertEquals("loan_account_no,due_date,principal_amount,interest_amount,penalty,total_amount",
+            lines[0]);
+        // EXP00000 was settled in its first installment (row 0), so it starts in February
+        Assertions.assertEquals("EXP00000,2026-02-05,4000.00,1000.00,150.00,5150.00", lines[1]);
+
+        for (int i = 2; i < lines.length; i++) {
+            String[] previous = lines[i - 1].split(",");
+            String[] current = lines[i].split(",");
+            int byAccount = previous[0].compareTo(current[0]);
+            Assertions.assertTrue(byAccount < 0 || (byAccount == 0 && previous[1].compareTo(current[1]) < 0),
+                "Out of order at line " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("Should pad every fixed-width line to the same length")
+    public void testFixedWidthExport() throws IOException {
+        StringWriter out = new StringWriter();
+
+        new ReceivableExportServiceImpl(new LoanDaoImpl(), 500).export(out, ExportFormat.FIXED_WIDTH);
+
+        String[] lines = out.toString().split("\n");
+        Assertions.assertEquals(ROWS - (ROWS + 6) / 7, lines.length);
+        for (String line : lines) {
+            Assertions.assertEquals(128, line.length());
+        }
+        Assertions.assertEquals("EXP00000", lines[0].substring(0, 50).trim());
+        Assertions.assertEquals("2026-02-05", lines[0].substring(50, 60));
+        Assertions.assertEquals("5150.00", lines[0].substring(111).trim());
+    }
+
+    @Test
+    @DisplayName("Should report a failed write as IOException")
+    public void testWriteFailure() {
+        StubLoanDao loanDao = new StubLoanDao();
+        for (int i = 0; i < 1000; i++) {
+            loanDao.addReceivable(new Receivable(String.valueOf(1000 + i), new BigDecimal("5000.00"),
+                new BigDecimal("150.00"), new BigDecimal("5150.00")));
+        }
+        Writer failing = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("Disk full");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        IOException e = Assertions.assertThrows(IOException.class,
+            () -> new ReceivableExportServiceImpl(loanDao, 100).export(failing, ExportFormat.CSV));
+        Assertions.assertEquals("Disk full", e.getMessage());
+    }
+
+    @Test
+    @DisplayName("Should keep the heap flat while exporting a large loan book")
+    public void testFlatHeapOverLargeBook() throws IOException {
+        int rows = 300_000;
+        int sampleEvery = 25_000;
+        long pending = ROWS - (ROWS + 6) / 7;
+        long[] heap = new long[(int) ((pending + rows) / sampleEvery) + 1];
+        // A second book, twelve monthly installments per account, exported alongside the first
+        executeNative("INSERT INTO LMS_RECEIVABLEPAYBLE_DTL_POOJA (id, loan_account_no, due_date, principal_amount, "
+            + "interest_amount, emi_amount, penalty, total_amount, created_date, version) "
+            + "SELECT X + " + (ROWS + 1) + ", 'HEAP' || LPAD(CAST(FLOOR(X / 12) AS VARCHAR), 6, '0'), "
+            + "DATEADD('MONTH', MOD(X, 12), DATE '2026-01-05'), 4000 + MOD(X, 1000) / 100.0, 1000, 5000, 0, "
+            + "5000 + MOD(X, 1000) / 100.0, CURRENT_TIMESTAMP, 0 "
+            + "FROM SYSTEM_RANGE(0, " + (rows - 1) + ")");
+        try {
+            // Samples the heap from inside the cursor loop, while the stateless session is scrolling
+            LoanDaoImpl loanDao = new LoanDaoImpl() {
+                private long seen;
+
+                @Override
+                public long streamPendingReceivables(int fetchSize, Consumer<Receivable> consumer) {
+                    return super.streamPendingReceivables(fetchSize, receivable -> {
+                        if (seen % sampleEvery == 0) {
+                            heap[(int) (seen / sampleEvery)] = usedHeapAfterGc();
+                        }
+                        seen++;
+                        consumer.accept(receivable);
+                    });
+                }
+            };
+            CountingWriter out = new CountingWriter();
+
+            long exported = new ReceivableExportServiceImpl(loanDao, 1000).export(out, ExportFormat.CSV);
+
+            Assertions.assertEquals(pending + rows, exported);
+            Assertions.assertTrue(out.chars > 40L * rows, "Expected over " + 40L * rows + " chars, got " + out.chars);
+            long baseline = heap[0];
+            for (int i = 1; i < heap.length; i++) {
+                // Holding the rows or the output would grow the heap by tens of megabytes
+                Assertions.assertTrue(heap[i] - baseline < 8L * 1024 * 1024,
+                    "Heap grew by " + (heap[i] - baseline) / 1024 + " KB after " + (long) i * sampleEvery + " rows");
+            }
+        } finally {
+            executeNative("DELETE FROM LMS_RECEIVABLEPAYBLE_DTL_POOJA WHERE id > " + ROWS);
+        }
+    }
+
+    private static void executeNative(String sql) {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.createNativeMutationQuery(sql).executeUpdate();
+            transaction.commit();
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Writer that discards its output and counts the characters written
+     */
+    private static class CountingWriter extends Writer {
+
+        long chars;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            chars += length;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
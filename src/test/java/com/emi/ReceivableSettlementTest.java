@@ -0,0 +1,332 @@
+package com.emi;
+
+import com.emi.dao.CachingLoanDao;
+import com.emi.dao.DuplicateReceiptException;
+import com.emi.dao.LoanDao;
+import com.emi.dao.LoanDaoImpl;
+import com.emi.dao.StaleReceivableException;
+import com.emi.model.Allocation;
+import com.emi.model.ReceiptPayment;
+import com.emi.model.Receivable;
+import com.emi.service.BulkPaymentReport;
+import com.emi.service.BulkPaymentServiceImpl;
+import com.emi.service.EmiServiceImpl;
+import com.emi.service.PaymentResult;
+import com.emi.service.SnowflakeReceiptNumberGenerator;
+import com.emi.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Settlement tests against embedded H2
+ * Tests that payments reduce the receivable in the same transaction, that a
+ * stale read is rejected by the version check, that concurrent tellers
+ * never post twice against the same dues, and that a payment is spread over
+ * several installments oldest first
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class ReceivableSettlementTest {
+
+    private static final int ACCOUNTS = 40;
+    private static final int TELLERS = 8;
+
+    private LoanDao loanDao;
+
+    @BeforeAll
+    public static void startDatabase() {
+        H2TestDatabase.start("settlement");
+    }
+
+    @AfterAll
+    public static void stopDatabase() {
+        H2TestDatabase.stop();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.createNativeMutationQuery("DELETE FROM LMS_RECEIPTPAYMENT_DTL_POOJA").executeUpdate();
+            session.createNativeMutationQuery("DELETE FROM LMS_ALLOCATION_DTL_POOJA").executeUpdate();
+            session.createNativeMutationQuery("DELETE FROM LMS_RECEIVABLEPAYBLE_DTL_POOJA").executeUpdate();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                session.persist(new Receivable(String.valueOf(7000 + i), new BigDecimal("5000.00"),
+                    new BigDecimal("150.00"), new BigDecimal("5150.00")));
+            }
+            transaction.commit();
+        }
+        loanDao = new LoanDaoImpl();
+    }
+
+    @Test
+    @DisplayName("Should reduce the receivable in the same transaction as the receipt")
+    public void testPaymentSettlesReceivable() {
+        EmiServiceImpl emiService = new EmiServiceImpl(loanDao, new SnowflakeReceiptNumberGenerator(1));
+
+        emiService.processPayment("7000", new BigDecimal("5150.00"), "CASH");
+
+        Assertions.assertNull(loanDao.findReceivableByLoanAccountNo("7000"));
+        Receivable settled = installment("7000");
+        Assertions.assertEquals(0, settled.getTotalAmount().signum());
+        Assertions.assertEquals(0, settled.getPenalty().signum());
+        Assertions.assertEquals(0, settled.getEmiAmount().signum());
+        Assertions.assertEquals(1, settled.getVersion());
+
+        IllegalArgumentException repeat = Assertions.assertThrows(IllegalArgumentException.class,
+            () -> emiService.processPayment("7000", new BigDecimal("5150.00"), "CASH"));
+        Assertions.assertTrue(repeat.getMessage().contains("No pending EMI"));
+        Assertions.assertEquals(1L, countReceipts("7000"));
+    }
+
+    @Test
+    @DisplayName("Should reject a payment settled against a stale read and roll back its inserts")
+    public void testStaleReadRejected() {
+        List<Receivable> first = loanDao.getPendingReceivables("7001");
+        List<Receivable> second = loanDao.getPendingReceivables("7001");
+
+        settle(first, "RCP-A");
+        Assertions.assertThrows(StaleReceivableException.class, () -> settle(second, "RCP-B"));
+
+        Assertions.assertEquals(1L, countReceipts("7001"));
+        Assertions.assertEquals(1, installment("7001").getVersion());
+    }
+
+    @Test
+    @DisplayName("Should post each account exactly once when tellers race for it")
+    public void testConcurrentTellersDoNotDoublePost() throws Exception {
+        // Cached copies make stale reads more likely, which is what the version check must catch
+        LoanDao cachingLoanDao = new CachingLoanDao(loanDao, 1000, 300);
+        AtomicInteger posted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        ExecutorService tellers = Executors.newFixedThreadPool(TELLERS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < TELLERS; t++) {
+                int node = t + 1;
+                futures.add(tellers.submit(() -> {
+                    EmiServiceImpl emiService = new EmiServiceImpl(cachingLoanDao,
+                        new SnowflakeReceiptNumberGenerator(node));
+                    List<String> accounts = new ArrayList<>();
+                    for (int i = 0; i < ACCOUNTS; i++) {
+                        accounts.add(String.valueOf(7000 + i));
+                    }
+                    Collections.shuffle(accounts);
+                    for (String account : accounts) {
+                        try {
+                            emiService.processPayment(account, new BigDecimal("5150.00"), "CASH");
+                            posted.incrementAndGet();
+                        } catch (IllegalArgumentException | StaleReceivableException e) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            tellers.shutdown();
+        }
+
+        Assertions.assertEquals(ACCOUNTS, posted.get());
+        Assertions.assertEquals(ACCOUNTS * (TELLERS - 1), rejected.get());
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String account = String.valueOf(7000 + i);
+            Assertions.assertEquals(1L, countReceipts(account), account);
+            Receivable receivable = installment(account);
+            Assertions.assertEquals(0, receivable.getTotalAmount().signum(), account);
+            Assertions.assertEquals(1, receivable.getVersion(), account);
+        }
+    }
+
+    @Test
+    @DisplayName("Should settle bulk rows and reject a second row for an already settled account")
+    public void testBulkSettlement() throws Exception {
+        EmiServiceImpl emiService = new EmiServiceImpl(loanDao, new SnowflakeReceiptNumberGenerator(1));
+        BulkPaymentServiceImpl bulkPaymentService = new BulkPaymentServiceImpl(emiService, loanDao, 10);
+
+        BulkPaymentReport report = bulkPaymentService.process(new StringReader(
+            "7002,5150.00,NACH\n7003,5150.00,NACH\n7002,5150.00,NACH\n"));
+
+        Assertions.assertEquals(2, report.getPostedRows());
+        Assertions.assertEquals(1, report.getFailedRows());
+        Assertions.assertEquals(3, report.getFailures().get(0).getLineNumber());
+        Assertions.assertEquals(1L, countReceipts("7002"));
+        Assertions.assertEquals(0, loanDao.getTotalPendingAmount("7002").signum());
+        Assertions.assertEquals(0, loanDao.getTotalPendingAmount("7003").signum());
+    }
+
+    @Test
+    @DisplayName("Should allocate a bulk row again when its installment changed after it was read")
+    public void testBulkSettlementChecksVersion() throws Exception {
+        LoanDao cachingLoanDao = new CachingLoanDao(loanDao, 1000, 300);
+        EmiServiceImpl emiService = new EmiServiceImpl(cachingLoanDao, new SnowflakeReceiptNumberGenerator(1));
+        Assertions.assertEquals(1, cachingLoanDao.getPendingReceivables("7004").size());
+
+        // A penalty accrued behind the cached copy's back
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.createNativeMutationQuery("UPDATE LMS_RECEIVABLEPAYBLE_DTL_POOJA SET penalty = penalty + 100, "
+                + "total_amount = total_amount + 100, version = version + 1 WHERE loan_account_no = '7004'")
+                .executeUpdate();
+            transaction.commit();
+        }
+
+        BulkPaymentReport report = new BulkPaymentServiceImpl(emiService, cachingLoanDao, 10)
+            .process(new StringReader("7004,5150.00,NACH\n"));
+
+        // The penalty is paid first, as the waterfall requires, not skipped by the stale allocation
+        Assertions.assertEquals(1, report.getPostedRows());
+        Receivable receivable = installment("7004");
+        Assertions.assertEquals(0, receivable.getPenalty().signum());
+        Assertions.assertEquals(0, new BigDecimal("100.00").compareTo(receivable.getPrincipalAmount()));
+        Assertions.assertEquals(2, receivable.getVersion());
+        Assertions.assertEquals(1L, countReceipts("7004"));
+    }
+
+    @Test
+    @DisplayName("Should spread a partial payment over installments oldest first and write one allocation each")
+    public void testMultiInstallmentAllocation() throws Exception {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            // Added newest first to show that the due date, not insertion order, decides
+            session.persist(new Receivable("7100", LocalDate.of(2024, 3, 5), new BigDecimal("4000.00"),
+                new BigDecimal("1000.00"), BigDecimal.ZERO));
+            session.persist(new Receivable("7100", LocalDate.of(2024, 2, 5), new BigDecimal("4000.00"),
+                new BigDecimal("1000.00"), new BigDecimal("50.00")));
+            session.persist(new Receivable("7100", LocalDate.of(2024, 1, 5), new BigDecimal("4000.00"),
+                new BigDecimal("1000.00"), new BigDecimal("100.00")));
+            transaction.commit();
+        }
+        EmiServiceImpl emiService = new EmiServiceImpl(loanDao, new SnowflakeReceiptNumberGenerator(1));
+
+        PaymentResult result = emiService.processPayment("7100", new BigDecimal("6900.00"), "CASH");
+
+        // January in full (100 + 1000 + 4000), then February's penalty, interest and part of its principal
+        List<Allocation> allocations = result.getAllocations();
+        Assertions.assertEquals(2, allocations.size());
+        Assertions.assertEquals(new BigDecimal("100.00"), allocations.get(0).getAllocatedPenalty());
+        Assertions.assertEquals(new BigDecimal("4000.00"), allocations.get(0).getAllocatedPrincipal());
+        Assertions.assertEquals(new BigDecimal("50.00"), allocations.get(1).getAllocatedPenalty());
+        Assertions.assertEquals(new BigDecimal("1000.00"), allocations.get(1).getAllocatedInterest());
+        Assertions.assertEquals(new BigDecimal("750.00"), allocations.get(1).getAllocatedPrincipal());
+        Assertions.assertEquals(0, result.getUnallocatedAmount().signum());
+
+        List<Receivable> pending = loanDao.getPendingReceivables("7100");
+        Assertions.assertEquals(2, pending.size());
+        Assertions.assertEquals(LocalDate.of(2024, 2, 5), pending.get(0).getDueDate());
+        Assertions.assertEquals(0, new BigDecimal("3250.00").compareTo(pending.get(0).getPrincipalAmount()));
+        Assertions.assertEquals(0, new BigDecimal("3250.00").compareTo(pending.get(0).getTotalAmount()));
+        Assertions.assertEquals(0, new BigDecimal("8250.00").compareTo(loanDao.getTotalPendingAmount("7100")));
+
+        // The bulk path settles by installment id as well
+        BulkPaymentReport report = new BulkPaymentServiceImpl(emiService, loanDao, 10)
+            .process(new StringReader("7100,8250.00,NACH\n"));
+        Assertions.assertEquals(1, report.getPostedRows());
+        Assertions.assertEquals(0, loanDao.getTotalPendingAmount("7100").signum());
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Assertions.assertEquals(4L, session.createQuery(
+                    "SELECT COUNT(a) FROM Allocation a WHERE a.loanAccountNo = '7100'", Long.class).uniqueResult());
+        }
+    }
+
+    @Test
+    @DisplayName("Should append a bulk batch with one batched INSERT statement per table")
+    public void testBulkInsertsAreBatched() {
+        List<Allocation> allocations = new ArrayList<>();
+        List<ReceiptPayment> receipts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Receivable receivable = loanDao.getPendingReceivables(String.valueOf(7000 + i)).get(0);
+            allocations.add(new Allocation(receivable.getLoanAccountNo(), receivable.getId(), receivable.getPenalty(),
+                receivable.getInterestAmount(), receivable.getPrincipalAmount(), LocalDateTime.now()));
+            receipts.add(new ReceiptPayment(receivable.getLoanAccountNo(), new BigDecimal("5150.00"), "NACH",
+                "RCP-BATCH-" + i));
+        }
+        Statistics statistics = HibernateUtil.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try {
+            loanDao.savePayments(allocations, receipts, 100);
+
+            // One guarded UPDATE per installment and one pending balance UPDATE per account;
+            // the 80 inserts share two statements plus id blocks
+            long prepared = statistics.getPrepareStatementCount();
+            Assertions.assertTrue(prepared >= 2 * ACCOUNTS && prepared <= 2 * ACCOUNTS + 6,
+                "Prepared " + prepared + " statements");
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Assertions.assertNotNull(allocations.get(i).getId());
+            Assertions.assertNotNull(receipts.get(i).getId());
+            Assertions.assertEquals(1L, countReceipts(String.valueOf(7000 + i)));
+            Assertions.assertEquals(0, loanDao.getTotalPendingAmount(String.valueOf(7000 + i)).signum());
+        }
+
+        // Posting a receipt again is a duplicate, not a stale installment, although its installment is settled
+        Allocation first = allocations.get(0);
+        Assertions.assertThrows(DuplicateReceiptException.class, () -> loanDao.savePayments(
+            List.of(new Allocation(first.getLoanAccountNo(), first.getReceivableId(), first.getAllocatedPenalty(),
+                first.getAllocatedInterest(), first.getAllocatedPrincipal(), LocalDateTime.now())),
+            List.of(new ReceiptPayment(first.getLoanAccountNo(), new BigDecimal("5150.00"), "NACH", "RCP-BATCH-0")),
+            100));
+        Assertions.assertEquals(1L, countReceipts(String.valueOf(7000)));
+    }
+
+    private void settle(List<Receivable> installments, String receiptNo) {
+        Receivable receivable = installments.get(0);
+        Allocation allocation = new Allocation(receivable.getLoanAccountNo(), receivable.getId(),
+            receivable.getPenalty(), receivable.getInterestAmount(), receivable.getPrincipalAmount(),
+            LocalDateTime.now());
+        receivable.setPenalty(BigDecimal.ZERO);
+        receivable.setInterestAmount(BigDecimal.ZERO);
+        receivable.setPrincipalAmount(BigDecimal.ZERO);
+        receivable.setEmiAmount(BigDecimal.ZERO);
+        receivable.setTotalAmount(BigDecimal.ZERO);
+        loanDao.savePayment(installments, List.of(allocation),
+            new ReceiptPayment(receivable.getLoanAccountNo(), new BigDecimal("5150.00"), "CASH", receiptNo));
+    }
+
+    /**
+     * Load the single installment of a test account, settled or not
+     */
+    private Receivable installment(String loanAccountNo) {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            return session.createQuery("FROM Receivable WHERE loanAccountNo = :loanAccountNo", Receivable.class)
+                .setParameter("loanAccountNo", loanAccountNo)
+                .uniqueResult();
+        }
+    }
+
+    private long countReceipts(String loanAccountNo) {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            return session.createQuery(
+                    "SELECT COUNT(r) FROM ReceiptPayment r WHERE r.loanAccountNo = :loanAccountNo", Long.class)
+                .setParameter("loanAccountNo", loanAccountNo)
+                .uniqueResult();
+        }
+    }
+}
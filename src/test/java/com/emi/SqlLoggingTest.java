@@ -0,0 +1,127 @@
+package com.emi;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.emi.dao.LoanDaoImpl;
+import com.emi.model.Receivable;
+import com.emi.service.EmiService;
+import com.emi.service.EmiServiceImpl;
+import com.emi.service.SnowflakeReceiptNumberGenerator;
+import com.emi.util.HibernateUtil;
+import com.emi.util.SqlTraceFilter;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * SQL logging tests against embedded H2
+ * Tests that no SQL is logged by default, that tracing a loan account logs
+ * the statements run for that account only, and that statements slower than
+ * log.slow.query.ms are reported
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class SqlLoggingTest {
+
+    private final EmiService emiService = new EmiServiceImpl(new LoanDaoImpl(), new SnowflakeReceiptNumberGenerator(1));
+    private final ListAppender<ILoggingEvent> sqlLog = new ListAppender<>();
+    private final ListAppender<ILoggingEvent> slowLog = new ListAppender<>();
+
+    @BeforeAll
+    public static void startDatabase() {
+        System.setProperty("log.slow.query.ms", "25");
+        try {
+            H2TestDatabase.start("logging");
+        } finally {
+            System.clearProperty("log.slow.query.ms");
+        }
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            for (String loanAccountNo : new String[] {"3001", "3002"}) {
+                session.persist(new Receivable(loanAccountNo, LocalDate.of(2026, 1, 5),
+                    new BigDecimal("4000.00"), new BigDecimal("1000.00"), new BigDecimal("150.00")));
+            }
+            session.createNativeMutationQuery("CREATE ALIAS SLEEP FOR \"java.lang.Thread.sleep\"").executeUpdate();
+            transaction.commit();
+        }
+    }
+
+    @AfterAll
+    public static void stopDatabase() {
+        H2TestDatabase.stop();
+    }
+
+    @BeforeEach
+    public void attachAppenders() {
+        attach("org.hibernate.SQL", sqlLog);
+        attach("org.hibernate.SQL_SLOW", slowLog);
+        logger("org.hibernate.SQL_SLOW").setLevel(Level.INFO);
+    }
+
+    @AfterEach
+    public void detachAppenders() {
+        SqlTraceFilter.untraceAll();
+        logger("org.hibernate.SQL").detachAppender(sqlLog);
+        logger("org.hibernate.SQL_SLOW").detachAppender(slowLog);
+        logger("org.hibernate.SQL_SLOW").setLevel(null);
+    }
+
+    @Test
+    @DisplayName("Should log the SQL of traced loan accounts only")
+    public void testTraceOneAccount() {
+        emiService.getPendingEmiDetails("3001");
+        Assertions.assertTrue(sqlLog.list.isEmpty(), "SQL logged without a trace");
+
+        SqlTraceFilter.trace("3001");
+        emiService.getPendingEmiDetails("3002");
+        Assertions.assertTrue(sqlLog.list.isEmpty(), "SQL logged for an untraced account");
+
+        emiService.processPayment("3001", new BigDecimal("100.00"), "CASH");
+        Assertions.assertFalse(sqlLog.list.isEmpty());
+        for (ILoggingEvent event : sqlLog.list) {
+            Assertions.assertEquals("3001", event.getMDCPropertyMap().get(SqlTraceFilter.LOAN_ACCOUNT_KEY));
+        }
+        Assertions.assertTrue(sqlLog.list.stream()
+            .anyMatch(event -> event.getFormattedMessage().contains("LMS_RECEIPTPAYMENT_DTL_POOJA")));
+
+        SqlTraceFilter.untrace("3001");
+        int logged = sqlLog.list.size();
+        emiService.getPendingEmiDetails("3001");
+        Assertions.assertEquals(logged, sqlLog.list.size());
+    }
+
+    @Test
+    @DisplayName("Should report statements slower than the threshold")
+    public void testSlowQueryLog() {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            session.createNativeQuery("SELECT COUNT(*) FROM LMS_RECEIVABLEPAYBLE_DTL_POOJA", Long.class).getSingleResult();
+            Assertions.assertTrue(slowLog.list.isEmpty(), "Fast statement reported as slow");
+
+            session.createNativeQuery("SELECT SLEEP(50) FROM DUAL", Object.class).getSingleResult();
+        }
+        Assertions.assertEquals(1, slowLog.list.size());
+        Assertions.assertTrue(slowLog.list.get(0).getFormattedMessage().contains("SLEEP(50)"));
+    }
+
+    private static void attach(String name, ListAppender<ILoggingEvent> appender) {
+        appender.start();
+        logger(name).addAppender(appender);
+    }
+
+    private static Logger logger(String name) {
+        return (Logger) LoggerFactory.getLogger(name);
+    }
+}
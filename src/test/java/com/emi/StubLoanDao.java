@@ -0,0 +1,103 @@
+package com.emi;
+
+import com.emi.dao.InMemoryLoanDao;
+import com.emi.model.Allocation;
+import com.emi.model.ReceiptPayment;
+import com.emi.model.Receivable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * InMemoryLoanDao with hooks for tests
+ * Records saved rows, batch sizes and installment lookups, optionally fails
+ * writes for one account and can add a fixed latency per call to stand in for
+ * database round trips (discardWrites keeps long benchmark runs from settling
+ * installments or accumulating saved rows).
+ * Safe for concurrent use.
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class StubLoanDao extends InMemoryLoanDao {
+
+    final List<Allocation> savedAllocations = Collections.synchronizedList(new ArrayList<>());
+    final List<ReceiptPayment> savedReceipts = Collections.synchronizedList(new ArrayList<>());
+    final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    volatile String failingAccount;
+    volatile long latencyMillis;
+    public volatile boolean discardWrites;
+    final AtomicInteger lookupCount = new AtomicInteger();
+
+    @Override
+    public ReceiptPayment saveReceiptPayment(ReceiptPayment receiptPayment) {
+        if (!discardWrites) {
+            super.saveReceiptPayment(receiptPayment);
+            savedReceipts.add(receiptPayment);
+        }
+        return receiptPayment;
+    }
+
+    @Override
+    public Allocation saveAllocation(Allocation allocation) {
+        if (!discardWrites) {
+            super.saveAllocation(allocation);
+            savedAllocations.add(allocation);
+        }
+        return allocation;
+    }
+
+    @Override
+    public ReceiptPayment savePayment(List<Receivable> receivables, List<Allocation> allocations,
+                                      ReceiptPayment receiptPayment) {
+        if (receiptPayment.getLoanAccountNo().equals(failingAccount)) {
+            throw new RuntimeException("Failed to save payment");
+        }
+        simulateLatency();
+        if (!discardWrites) {
+            super.savePayment(receivables, allocations, receiptPayment);
+            savedAllocations.addAll(allocations);
+            savedReceipts.add(receiptPayment);
+        }
+        return receiptPayment;
+    }
+
+    @Override
+    public void savePayments(List<Allocation> allocations, List<ReceiptPayment> receiptPayments, int batchSize) {
+        for (ReceiptPayment receiptPayment : receiptPayments) {
+            if (receiptPayment.getLoanAccountNo().equals(failingAccount)) {
+                throw new RuntimeException("Failed to save payment batch");
+            }
+        }
+        super.savePayments(allocations, receiptPayments, batchSize);
+        batchSizes.add(receiptPayments.size());
+        savedAllocations.addAll(allocations);
+        savedReceipts.addAll(receiptPayments);
+    }
+
+    @Override
+    public List<Receivable> getPendingReceivables(String loanAccountNo) {
+        lookupCount.incrementAndGet();
+        simulateLatency();
+        return super.getPendingReceivables(loanAccountNo);
+    }
+
+    /**
+     * Get the pending installments of an account without counting a lookup
+     */
+    List<Receivable> installments(String loanAccountNo) {
+        return super.getPendingReceivables(loanAccountNo);
+    }
+
+    private void simulateLatency() {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
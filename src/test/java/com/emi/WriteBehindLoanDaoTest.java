@@ -0,0 +1,226 @@
+package com.emi;
+
+import com.emi.dao.JournalFullException;
+import com.emi.dao.LoanDao;
+import com.emi.dao.PaymentJournal;
+import com.emi.dao.WriteBehindLoanDao;
+import com.emi.model.Receivable;
+import com.emi.service.EmiServiceImpl;
+import com.emi.service.PaymentResult;
+import com.emi.service.SnowflakeReceiptNumberGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Write-behind journal tests, against StubLoanDao
+ * Tests that payments are acknowledged before they reach the database while
+ * reads already see them, that the flusher writes them in batches, that a
+ * journal left by a crash is replayed without double posting, that payments
+ * whose installments changed are allocated again or, when nothing is left to
+ * pay, set aside, and that a stalled database pushes back on new payments
+ *
+ * @author EMI Payment System
+ * @version 1.0
+ */
+public class WriteBehindLoanDaoTest {
+
+    private static final BigDecimal FULL_AMOUNT = new BigDecimal("5150.00");
+
+    @TempDir
+    Path directory;
+
+    private StubLoanDao database;
+    private Path journalFile;
+    private WriteBehindLoanDao writeBehind;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        database = new StubLoanDao();
+        for (int i = 1; i <= 3; i++) {
+            // Two monthly installments per account
+            for (int n = 0; n < 2; n++) {
+                database.addReceivable(new Receivable("200" + i, LocalDate.of(2026, 1 + n, 5),
+                    new BigDecimal("4000.00"), new BigDecimal("1000.00"), new BigDecimal("150.00")));
+            }
+        }
+        journalFile = directory.resolve("payments.journal");
+        writeBehind = open(64 * 1024, 100);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        writeBehind.close();
+    }
+
+    @Test
+    @DisplayName("Should acknowledge a payment from the journal and show it to reads before it is written")
+    public void testReadsSeeJournaledPayments() {
+        EmiServiceImpl emiService = service(writeBehind);
+
+        PaymentResult first = emiService.processPayment("req-1", "2001", new BigDecimal("3000.00"), "CASH");
+        PaymentResult second = emiService.processPayment("req-2", "2001", new BigDecimal("3000.00"), "CASH");
+
+        // Nothing in the database yet, but the second payment was allocated after the first
+        Assertions.assertTrue(database.savedReceipts.isEmpty());
+        Assertions.assertEquals(2, writeBehind.getPendingCount());
+        Assertions.assertEquals(new BigDecimal("4300.00"), writeBehind.getTotalPendingAmount("2001"));
+        Assertions.assertEquals(LocalDate.of(2026, 2, 5),
+            writeBehind.findReceivableByLoanAccountNo("2001").getDueDate());
+        Assertions.assertEquals(new BigDecimal("4300.00"),
+            writeBehind.getTotalPendingAmounts(List.of("2001", "2002")).get("2001"));
+        Assertions.assertEquals(new BigDecimal("4300.00"),
+            writeBehind.findReceivablesByLoanAccountNos(List.of("2001")).get("2001").getTotalAmount());
+        Assertions.assertEquals(first.getReceiptPayment().getReceiptNo(),
+            writeBehind.findReceiptPaymentByRequestId("req-1").getReceiptNo());
+        Assertions.assertEquals(second.getAllocations().size(), writeBehind.findAllocationsByRequestId("req-2").size());
+
+        Assertions.assertEquals(2, writeBehind.flush());
+
+        Assertions.assertEquals(0, writeBehind.getPendingCount());
+        Assertions.assertEquals(0, writeBehind.getJournal().getPendingRecords());
+        Assertions.assertEquals(List.of(2), database.batchSizes);
+        Assertions.assertEquals(new BigDecimal("4300.00"), database.getTotalPendingAmount("2001"));
+        Assertions.assertEquals(new BigDecimal("4300.00"), writeBehind.getTotalPendingAmount("2001"));
+        Assertions.assertEquals("req-1", database.findReceiptPaymentByRequestId("req-1").getRequestId());
+    }
+
+    @Test
+    @DisplayName("Should write journaled payments in the background")
+    public void testFlusherWritesInBackground() throws Exception {
+        writeBehind.start();
+        EmiServiceImpl emiService = service(writeBehind);
+
+        for (int i = 1; i <= 3; i++) {
+            emiService.processPayment("200" + i, FULL_AMOUNT, "ONLINE");
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writeBehind.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(0, writeBehind.getPendingCount());
+        Assertions.assertEquals(3, writeBehind.getFlushedCount());
+        Assertions.assertEquals(3, database.savedReceipts.size());
+        for (int i = 1; i <= 3; i++) {
+            Assertions.assertEquals(FULL_AMOUNT, database.getTotalPendingAmount("200" + i));
+        }
+    }
+
+    @Test
+    @DisplayName("Should replay a journal left by a crash exactly once")
+    public void testReplayAfterCrash() throws IOException {
+        EmiServiceImpl emiService = service(writeBehind);
+        PaymentResult written = emiService.processPayment("req-1", "2001", FULL_AMOUNT, "CASH");
+        emiService.processPayment("req-2", "2002", FULL_AMOUNT, "CASH");
+        // The first payment reached the database, but the crash came before its release from the journal
+        database.savePayments(written.getAllocations(), List.of(written.getReceiptPayment()), 100);
+        writeBehind.getJournal().close();
+
+        writeBehind = open(64 * 1024, 100);
+
+        Assertions.assertEquals(2, writeBehind.getRecoveredCount());
+        Assertions.assertEquals(FULL_AMOUNT, writeBehind.getTotalPendingAmount("2002"));
+        Assertions.assertNotNull(writeBehind.findReceiptPaymentByRequestId("req-2"));
+        Assertions.assertEquals(2, writeBehind.flush());
+        Assertions.assertEquals(0, writeBehind.getRejectedCount());
+        Assertions.assertEquals(2, database.savedReceipts.size());
+        Assertions.assertEquals(FULL_AMOUNT, database.getTotalPendingAmount("2001"));
+        Assertions.assertEquals(FULL_AMOUNT, database.getTotalPendingAmount("2002"));
+    }
+
+    @Test
+    @DisplayName("Should allocate a journaled payment again when its installments changed first")
+    public void testStalePaymentReallocated() {
+        EmiServiceImpl emiService = service(writeBehind);
+        PaymentResult journaled = emiService.processPayment("req-1", "2001", FULL_AMOUNT, "CASH");
+        emiService.processPayment("2002", FULL_AMOUNT, "CASH");
+        // A second JVM settles part of the same installments directly
+        service(database, 2).processPayment("2001", new BigDecimal("6000.00"), "CHEQUE");
+
+        Assertions.assertEquals(2, writeBehind.flush());
+
+        Assertions.assertEquals(0, writeBehind.getRejectedCount());
+        Assertions.assertEquals(1, writeBehind.getReallocatedCount());
+        Assertions.assertEquals(0, writeBehind.getJournal().getPendingRecords());
+        // The 4300.00 left is settled under the receipt already issued, and the rest is an overpayment
+        Assertions.assertEquals(0, database.getTotalPendingAmount("2001").signum());
+        Assertions.assertEquals(journaled.getReceiptPayment().getReceiptNo(),
+            database.findReceiptPaymentByRequestId("req-1").getReceiptNo());
+        Assertions.assertEquals(FULL_AMOUNT, database.getTotalPendingAmount("2002"));
+    }
+
+    @Test
+    @DisplayName("Should set aside a journaled payment for an account another writer paid off")
+    public void testRejectedPaymentSetAside() throws IOException {
+        EmiServiceImpl emiService = service(writeBehind);
+        PaymentResult journaled = emiService.processPayment("2001", FULL_AMOUNT, "CASH");
+        emiService.processPayment("2002", FULL_AMOUNT, "CASH");
+        // A second JVM settles both installments directly, leaving nothing for the journaled payment
+        service(database, 2).processPayment("2001", new BigDecimal("10300.00"), "CHEQUE");
+
+        Assertions.assertEquals(2, writeBehind.flush());
+
+        Assertions.assertEquals(1, writeBehind.getRejectedCount());
+        Assertions.assertEquals(0, writeBehind.getJournal().getPendingRecords());
+        Path rejected = directory.resolve("payments.journal.rejected");
+        Assertions.assertTrue(Files.readString(rejected)
+            .startsWith(journaled.getReceiptPayment().getReceiptNo() + ",2001,5150.00,CASH,"));
+        Assertions.assertEquals(FULL_AMOUNT, database.getTotalPendingAmount("2002"));
+    }
+
+    @Test
+    @DisplayName("Should push back on payments while the database is down")
+    public void testBackPressure() throws Exception {
+        writeBehind.close();
+        Files.delete(journalFile);
+        writeBehind = open(2048, 100);
+        writeBehind.start();
+        database.failingAccount = "2003";
+        EmiServiceImpl emiService = service(writeBehind);
+
+        // Payments for the failing account stall the flusher and fill the journal
+        JournalFullException full = null;
+        for (int i = 0; i < 50 && full == null; i++) {
+            try {
+                emiService.processPayment("2003", new BigDecimal("10.00"), "CASH");
+            } catch (JournalFullException e) {
+                full = e;
+            }
+        }
+        Assertions.assertNotNull(full, "Journal never filled up");
+        Assertions.assertTrue(database.savedReceipts.isEmpty());
+
+        database.failingAccount = null;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writeBehind.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(0, writeBehind.getPendingCount());
+        Assertions.assertEquals(writeBehind.getJournaledCount(), database.savedReceipts.size());
+        emiService.processPayment("2001", FULL_AMOUNT, "CASH");
+    }
+
+    private WriteBehindLoanDao open(int journalSize, long appendTimeoutMillis) throws IOException {
+        return new WriteBehindLoanDao(database, PaymentJournal.open(journalFile, journalSize, false),
+            100, 10, 10, appendTimeoutMillis, service(database, 3)::calculateAllocation);
+    }
+
+    private static EmiServiceImpl service(LoanDao loanDao) {
+        return service(loanDao, 1);
+    }
+
+    private static EmiServiceImpl service(LoanDao loanDao, int nodeId) {
+        return new EmiServiceImpl(loanDao, new SnowflakeReceiptNumberGenerator(nodeId));
+    }
+}